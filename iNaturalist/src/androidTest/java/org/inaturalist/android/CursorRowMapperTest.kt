@@ -0,0 +1,81 @@
+package org.inaturalist.android
+
+import android.database.MatrixCursor
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Test
+
+class CursorRowMapperTest {
+
+    @Test
+    fun verifyReusedPhotoReadsEachRow() {
+        val cursor = photoCursor()
+        val mapper = CursorRowMapper.forPhotos(cursor)
+
+        cursor.moveToFirst()
+        val photo = mapper.map()
+        assertEquals(101, photo.id)
+        assertEquals("CC-BY", photo.license)
+        assertEquals(true, photo.is_deleted)
+
+        cursor.moveToNext()
+        assertSame(photo, mapper.map(photo))
+        assertEquals(102, photo.id)
+        assertEquals(2, photo.position)
+        // Values that are null in the row don't keep the previous row's value
+        assertNull(photo.license)
+        assertEquals(false, photo.is_deleted)
+        cursor.close()
+    }
+
+    @Test
+    fun verifyReusedPhotoMatchesNewPhoto() {
+        val cursor = photoCursor()
+        val mapper = CursorRowMapper.forPhotos(cursor)
+        var reused: ObservationPhoto? = null
+
+        while (cursor.moveToNext()) {
+            val photo = ObservationPhoto(BetterCursor.forRows(cursor))
+            val mapped = mapper.map(reused)
+            reused = mapped
+
+            assertEquals(photo.getContentValues(), mapped.getContentValues())
+            assertEquals(photo.is_deleted_was, mapped.is_deleted_was)
+            assertEquals(photo.isDirty, mapped.isDirty)
+        }
+        cursor.close()
+    }
+
+    @Test
+    fun verifyMapAll() {
+        val cursor = MatrixCursor(Observation.PROJECTION)
+        cursor.addRow(row(Observation.PROJECTION, Observation.ID to 1, Observation.SPECIES_GUESS to "Oak"))
+        cursor.addRow(row(Observation.PROJECTION, Observation.ID to 2, Observation.SPECIES_GUESS to "Fox"))
+        cursor.moveToLast()
+
+        val observations = CursorRowMapper.forObservations(cursor).mapAll()
+
+        assertEquals(listOf(1, 2), observations.map { it.id })
+        assertEquals(listOf("Oak", "Fox"), observations.map { it.species_guess })
+        assertNotSame(observations[0], observations[1])
+        cursor.close()
+    }
+
+    private fun photoCursor(): MatrixCursor {
+        val cursor = MatrixCursor(ObservationPhoto.PROJECTION)
+        cursor.addRow(row(ObservationPhoto.PROJECTION, ObservationPhoto._ID to 1, ObservationPhoto.ID to 101,
+            ObservationPhoto.POSITION to 1, ObservationPhoto.LICENSE to "CC-BY", ObservationPhoto.IS_DELETED to 1))
+        cursor.addRow(row(ObservationPhoto.PROJECTION, ObservationPhoto._ID to 2, ObservationPhoto.ID to 102,
+            ObservationPhoto.POSITION to 2, ObservationPhoto.IS_DELETED to 0))
+        cursor.addRow(row(ObservationPhoto.PROJECTION, ObservationPhoto._ID to 3, ObservationPhoto.POSITION to 3,
+            ObservationPhoto.UPDATED_AT to 1623760000000L))
+        return cursor
+    }
+
+    private fun row(projection: Array<String>, vararg values: Pair<String, Any>): Array<Any?> {
+        val valuesByColumn = values.toMap()
+        return projection.map { valuesByColumn[it] }.toTypedArray()
+    }
+}
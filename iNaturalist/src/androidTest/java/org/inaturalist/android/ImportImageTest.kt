@@ -0,0 +1,80 @@
+package org.inaturalist.android
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.graphics.Color
+import androidx.exifinterface.media.ExifInterface
+import androidx.test.platform.app.InstrumentationRegistry
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.io.FileOutputStream
+
+class ImportImageTest {
+
+    private lateinit var context: Context
+    private lateinit var photo: File
+    private val imported = ArrayList<File>()
+
+    @Before
+    fun setUp() {
+        context = InstrumentationRegistry.getInstrumentation().targetContext
+        photo = File(context.cacheDir, "import_image_test.jpg")
+        val bitmap = Bitmap.createBitmap(PHOTO_WIDTH, PHOTO_HEIGHT, Bitmap.Config.ARGB_8888)
+        bitmap.eraseColor(Color.GREEN)
+        FileOutputStream(photo).use { bitmap.compress(Bitmap.CompressFormat.JPEG, 90, it) }
+        bitmap.recycle()
+    }
+
+    @After
+    fun cleanUp() {
+        photo.delete()
+        imported.forEach { it.delete() }
+    }
+
+    @Test
+    fun verifyImportPlainPhoto() {
+        val (resized, original) = importPhoto()
+
+        assertEquals(listOf(PHOTO_WIDTH, PHOTO_HEIGHT), getDimensions(original))
+        assertEquals(listOf(MAX_DIMENSIONS, MAX_DIMENSIONS * PHOTO_HEIGHT / PHOTO_WIDTH), getDimensions(resized))
+    }
+
+    @Test
+    fun verifyImportRotatedPhoto() {
+        val exif = ExifInterface(photo.path)
+        exif.setAttribute(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_ROTATE_90.toString())
+        exif.saveAttributes()
+
+        val (resized, original) = importPhoto()
+
+        // The rotation is applied to the pixels of both copies
+        assertEquals(listOf(PHOTO_HEIGHT, PHOTO_WIDTH), getDimensions(original))
+        assertEquals(listOf(MAX_DIMENSIONS * PHOTO_HEIGHT / PHOTO_WIDTH, MAX_DIMENSIONS), getDimensions(resized))
+    }
+
+    private fun importPhoto(): List<File> {
+        val result = ImageUtils.importImage(context, photo.path, null, MAX_DIMENSIONS)
+        assertNotNull(result)
+        val files = result!!.take(2).map { File(it) }
+        imported.addAll(files)
+        return files
+    }
+
+    private fun getDimensions(file: File): List<Int> {
+        val options = BitmapFactory.Options()
+        options.inJustDecodeBounds = true
+        BitmapFactory.decodeFile(file.path, options)
+        return listOf(options.outWidth, options.outHeight)
+    }
+
+    companion object {
+        private const val PHOTO_WIDTH = 1600
+        private const val PHOTO_HEIGHT = 1200
+        private const val MAX_DIMENSIONS = 800
+    }
+}
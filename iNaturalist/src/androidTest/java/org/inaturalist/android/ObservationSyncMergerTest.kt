@@ -0,0 +1,131 @@
+package org.inaturalist.android
+
+import android.content.ContentResolver
+import android.content.ContentValues
+import androidx.test.platform.app.InstrumentationRegistry
+import org.json.JSONArray
+import org.json.JSONObject
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.util.UUID
+
+class ObservationSyncMergerTest {
+
+    private lateinit var contentResolver: ContentResolver
+
+    @Before
+    fun setUp() {
+        contentResolver = InstrumentationRegistry.getInstrumentation().targetContext.contentResolver
+        deleteSeededRows()
+
+        val observations = (0 until EXISTING_COUNT).map { i ->
+            ContentValues().apply {
+                put(Observation.ID, FIRST_ID + i)
+                put(Observation.UUID, uuidFor(FIRST_ID + i))
+                put(Observation.USER_LOGIN, USER_LOGIN)
+                put(Observation.SPECIES_GUESS, "Seeded $i")
+            }
+        }
+        contentResolver.bulkInsert(Observation.CONTENT_URI, observations.toTypedArray())
+
+        val photos = (0 until EXISTING_COUNT).flatMap { i ->
+            (0 until PHOTOS_PER_OBSERVATION).map { j ->
+                ContentValues().apply {
+                    put(ObservationPhoto.ID, photoIdFor(FIRST_ID + i, j))
+                    put(ObservationPhoto.OBSERVATION_ID, FIRST_ID + i)
+                    put(ObservationPhoto.OBSERVATION_UUID, uuidFor(FIRST_ID + i))
+                    put(ObservationPhoto.POSITION, j)
+                }
+            }
+        }
+        contentResolver.bulkInsert(ObservationPhoto.CONTENT_URI, photos.toTypedArray())
+    }
+
+    @After
+    fun cleanUp() {
+        deleteSeededRows()
+    }
+
+    @Test
+    fun verifyMergePage() {
+        val merger = ObservationSyncMerger(contentResolver)
+        val result = merger.merge(createPage(), true)
+        contentResolver.applyBatch(Observation.AUTHORITY, result.operations)
+
+        assertEquals((EXISTING_COUNT until PAGE_SIZE).map { FIRST_ID + it }, result.newObservations.map { it.id })
+        // Constant number of queries per page, regardless of its size
+        assertTrue("Too many queries: ${merger.queryCount}", merger.queryCount <= 5)
+
+        val c = contentResolver.query(Observation.CONTENT_URI, arrayOf(Observation.SPECIES_GUESS),
+                "id = $FIRST_ID", null, null)!!
+        c.moveToFirst()
+        assertEquals("Remote $FIRST_ID", c.getString(0))
+        c.close()
+        assertEquals(PAGE_SIZE * PHOTOS_PER_OBSERVATION, getPhotoCount())
+    }
+
+    @Test
+    fun verifyMergeSamePageTwice() {
+        contentResolver.applyBatch(Observation.AUTHORITY, ObservationSyncMerger(contentResolver).merge(createPage(), true).operations)
+
+        val result = ObservationSyncMerger(contentResolver).merge(createPage(), true)
+        contentResolver.applyBatch(Observation.AUTHORITY, result.operations)
+
+        assertTrue(result.newObservations.isEmpty())
+        assertEquals(PAGE_SIZE * PHOTOS_PER_OBSERVATION, getPhotoCount())
+    }
+
+    private fun createPage() = (0 until PAGE_SIZE).associate { i ->
+        val id = FIRST_ID + i
+        id to Observation(BetterJSONObject(remoteObservationJson(id)))
+    }.toSortedMap()
+
+    private fun getPhotoCount(): Int {
+        val c = contentResolver.query(ObservationPhoto.CONTENT_URI, arrayOf(ObservationPhoto._ID),
+                "observation_id >= $FIRST_ID", null, null)!!
+        val count = c.count
+        c.close()
+        return count
+    }
+
+    private fun remoteObservationJson(id: Int): JSONObject {
+        val photos = JSONArray()
+        for (j in 0 until PHOTOS_PER_OBSERVATION) {
+            photos.put(JSONObject()
+                    .put("id", photoIdFor(id, j))
+                    .put("uuid", UUID.nameUUIDFromBytes("photo-$id-$j".toByteArray()).toString())
+                    .put("position", j)
+                    .put("photo", JSONObject().put("id", photoIdFor(id, j)).put("url", "https://example.com/$id/$j.jpg")))
+        }
+
+        return JSONObject()
+                .put("id", id)
+                .put("uuid", uuidFor(id))
+                .put("user_login", USER_LOGIN)
+                .put("species_guess", "Remote $id")
+                .put("created_at", "2020-01-01T00:00:00+00:00")
+                .put("updated_at", "2030-01-01T00:00:00+00:00")
+                .put("observation_photos", photos)
+                .put("observation_sounds", JSONArray())
+    }
+
+    private fun deleteSeededRows() {
+        contentResolver.delete(ObservationPhoto.CONTENT_URI, "observation_id >= $FIRST_ID", null)
+        contentResolver.delete(Observation.CONTENT_URI, "id >= $FIRST_ID", null)
+    }
+
+    private fun uuidFor(id: Int) = UUID.nameUUIDFromBytes("observation-$id".toByteArray()).toString()
+
+    private fun photoIdFor(observationId: Int, index: Int) = (observationId - FIRST_ID) * PHOTOS_PER_OBSERVATION + index + FIRST_ID
+
+    companion object {
+        private const val FIRST_ID = 1900000000
+        private const val PAGE_SIZE = 4
+        private const val EXISTING_COUNT = 2
+        private const val PHOTOS_PER_OBSERVATION = 2
+        private const val USER_LOGIN = "sync_merger_test_user"
+    }
+}
@@ -0,0 +1,118 @@
+package org.inaturalist.android
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.Color
+import androidx.test.platform.app.InstrumentationRegistry
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class OfflineGuideArchiveTest {
+
+    private lateinit var context: Context
+    private lateinit var guide: GuideXML
+    private lateinit var ngz: File
+
+    @Before
+    fun setUp() {
+        context = InstrumentationRegistry.getInstrumentation().targetContext
+        GuideXML.createOfflineGuidesDirectory(context)
+        guide = GuideXML(context, GUIDE_ID)
+        guide.deleteOfflineGuide()
+        ngz = File(context.cacheDir, "$GUIDE_ID.ngz")
+    }
+
+    @After
+    fun cleanUp() {
+        guide.deleteOfflineGuide()
+        ngz.delete()
+        File(File(guide.offlineGuidePath).parentFile, "outside.txt").delete()
+    }
+
+    @Test
+    fun verifyInstallKeepsPhotosInArchive() {
+        writeNgz(mapOf("$GUIDE_ID.xml" to guideXml(), "files/photo-0.jpg" to jpeg(), "files/photo-1.jpg" to jpeg()))
+
+        assertTrue(guide.installOfflineGuide(ngz.path, false))
+
+        val installed = GuideXML(context, GUIDE_ID)
+        val taxa = installed.getTaxa(GuideTaxonFilter())
+        assertEquals(2, taxa.size)
+        val photo = installed.decodeOfflinePhoto(taxa[1].getFirstPhotoLocation(GuideTaxonPhotoXML.PhotoType.LOCAL))
+        assertNotNull(photo)
+        assertEquals(PHOTO_SIZE, photo!!.width)
+        assertTrue(File(installed.offlineGuideArchivePath).exists())
+        assertFalse(File(installed.offlineGuidePath, "files").exists())
+        assertFalse(ngz.exists())
+    }
+
+    @Test
+    fun verifyMissingEntry() {
+        writeNgz(mapOf("$GUIDE_ID.xml" to guideXml()))
+
+        val archive = GuideArchive.open(ngz)!!
+        try {
+            assertNull(archive.openEntry("files/photo-0.jpg"))
+            assertNull(archive.decodeBitmap("files/photo-0.jpg"))
+            assertFalse(archive.extractEntry("files/photo-0.jpg", File(context.cacheDir, "photo-0.jpg")))
+        } finally {
+            GuideArchive.close(ngz)
+        }
+    }
+
+    @Test
+    fun verifyExtractRejectsEntriesOutsideGuide() {
+        writeNgz(mapOf("$GUIDE_ID.xml" to guideXml(), "../outside.txt" to "outside".toByteArray()))
+
+        assertTrue(guide.installOfflineGuide(ngz.path, true))
+
+        val guideDir = File(guide.offlineGuidePath)
+        assertTrue(File(guideDir, "$GUIDE_ID.xml").exists())
+        assertFalse(File(guideDir.parentFile, "outside.txt").exists())
+    }
+
+    private fun guideXml(): ByteArray {
+        val xml = StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<INatGuide>\n")
+        for (i in 0 until 2) {
+            xml.append("<GuideTaxon><name>Taxon $i</name><displayName>Taxon $i</displayName>")
+                    .append("<taxonID>${1000000 + i}</taxonID>")
+                    .append("<GuidePhoto><href type=\"local\" size=\"thumb\">files/photo-$i.jpg</href></GuidePhoto></GuideTaxon>\n")
+        }
+        return xml.append("</INatGuide>\n").toString().toByteArray()
+    }
+
+    private fun jpeg(): ByteArray {
+        val bitmap = Bitmap.createBitmap(PHOTO_SIZE, PHOTO_SIZE, Bitmap.Config.ARGB_8888)
+        bitmap.eraseColor(Color.GREEN)
+        val jpeg = ByteArrayOutputStream()
+        bitmap.compress(Bitmap.CompressFormat.JPEG, 90, jpeg)
+        bitmap.recycle()
+        return jpeg.toByteArray()
+    }
+
+    private fun writeNgz(entries: Map<String, ByteArray>) {
+        ZipOutputStream(FileOutputStream(ngz)).use { zip ->
+            for ((name, data) in entries) {
+                zip.putNextEntry(ZipEntry(name))
+                zip.write(data)
+                zip.closeEntry()
+            }
+        }
+    }
+
+    companion object {
+        private const val GUIDE_ID = "999000001"
+        private const val PHOTO_SIZE = 48
+    }
+}
@@ -0,0 +1,123 @@
+package org.inaturalist.android
+
+import android.graphics.Bitmap
+import android.graphics.Color
+import androidx.exifinterface.media.ExifInterface
+import androidx.test.platform.app.InstrumentationRegistry
+import org.junit.After
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.text.SimpleDateFormat
+import java.util.Locale
+
+class PhotoMetadataTest {
+
+    private lateinit var photo: File
+    private lateinit var copy: File
+
+    @Before
+    fun setUp() {
+        val context = InstrumentationRegistry.getInstrumentation().targetContext
+        photo = File(context.cacheDir, "photo_metadata_test.jpg")
+        copy = File(context.cacheDir, "photo_metadata_test_copy.jpg")
+        writeJpeg(photo, 64, 48)
+    }
+
+    @After
+    fun cleanUp() {
+        photo.delete()
+        copy.delete()
+    }
+
+    @Test
+    fun verifyReadLocationAndOrientation() {
+        val exif = ExifInterface(photo.path)
+        exif.setAttribute(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_ROTATE_90.toString())
+        exif.setAttribute("GPSHPositioningError", "5/1")
+        exif.setLatLong(-33.8568, -70.6483)
+        exif.saveAttributes()
+
+        val metadata = readMetadata()
+
+        assertNotNull(metadata)
+        assertEquals(90, metadata!!.rotationDegrees)
+        assertArrayEquals(doubleArrayOf(-33.8568, -70.6483), metadata.latLng, 0.0001)
+        assertEquals(5f, metadata.positionalAccuracy)
+    }
+
+    @Test
+    fun verifyDateTakenUsesOffsetTime() {
+        val exif = ExifInterface(photo.path)
+        exif.setAttribute(ExifInterface.TAG_DATETIME_ORIGINAL, "2021:06:15 14:30:00")
+        exif.setAttribute(ExifInterface.TAG_OFFSET_TIME_ORIGINAL, "+02:00")
+        exif.saveAttributes()
+
+        val metadata = readMetadata()
+
+        assertEquals("+02:00", metadata!!.timeZoneOffset)
+        assertEquals(parseUtc("2021-06-15 12:30:00"), metadata.dateTaken)
+    }
+
+    @Test
+    fun verifyDateTakenPrefersGpsTime() {
+        val exif = ExifInterface(photo.path)
+        exif.setAttribute(ExifInterface.TAG_DATETIME_ORIGINAL, "2021:06:15 14:30:00")
+        exif.setAttribute(ExifInterface.TAG_GPS_DATESTAMP, "2021:06:15")
+        exif.setAttribute(ExifInterface.TAG_GPS_TIMESTAMP, "11:30:00")
+        exif.saveAttributes()
+
+        assertEquals(parseUtc("2021-06-15 11:30:00"), readMetadata()!!.dateTaken)
+    }
+
+    @Test
+    fun verifyWriteExifIntoCopy() {
+        val exif = ExifInterface(photo.path)
+        exif.setAttribute(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_ROTATE_90.toString())
+        exif.setAttribute(ExifInterface.TAG_PIXEL_X_DIMENSION, "64")
+        exif.setAttribute(ExifInterface.TAG_PIXEL_Y_DIMENSION, "48")
+        exif.setLatLong(32.0853, 34.7818)
+        exif.saveAttributes()
+        writeJpeg(copy, 24, 32)
+
+        assertTrue(readMetadata()!!.writeExif(copy, 24, 32, true))
+
+        val copyExif = ExifInterface(copy.path)
+        assertEquals(ExifInterface.ORIENTATION_NORMAL, copyExif.getAttributeInt(ExifInterface.TAG_ORIENTATION, 0))
+        assertEquals(24, copyExif.getAttributeInt(ExifInterface.TAG_PIXEL_X_DIMENSION, 0))
+        assertEquals(32, copyExif.getAttributeInt(ExifInterface.TAG_PIXEL_Y_DIMENSION, 0))
+        assertArrayEquals(doubleArrayOf(32.0853, 34.7818), copyExif.latLong, 0.0001)
+    }
+
+    @Test
+    fun verifyPhotoWithoutExif() {
+        val metadata = readMetadata()
+
+        assertNotNull(metadata)
+        assertFalse(metadata!!.hasExif())
+        assertNull(metadata.latLng)
+        assertNull(metadata.positionalAccuracy)
+        assertNull(metadata.dateTaken)
+        assertEquals(0, metadata.rotationDegrees)
+    }
+
+    // Reads the photo directly (PhotoMetadata.read(path) caches by path, modification time and size)
+    private fun readMetadata() = FileInputStream(photo).use { PhotoMetadata.read(it) }
+
+    private fun writeJpeg(file: File, width: Int, height: Int) {
+        val bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
+        bitmap.eraseColor(Color.GREEN)
+        FileOutputStream(file).use { bitmap.compress(Bitmap.CompressFormat.JPEG, 90, it) }
+        bitmap.recycle()
+    }
+
+    private fun parseUtc(datetime: String) = SimpleDateFormat("yyyy-MM-dd HH:mm:ss Z", Locale.ENGLISH).parse("$datetime +0000")
+}
@@ -0,0 +1,122 @@
+package org.inaturalist.android
+
+import android.os.Bundle
+import android.os.Parcel
+import androidx.test.platform.app.InstrumentationRegistry
+import org.json.JSONObject
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+class SavedStateStoreTest {
+
+    private lateinit var store: SavedStateStore
+    private val converter = object : SavedStateStore.Converter<JSONObject> {
+        override fun toJSON(item: JSONObject) = item
+        override fun fromJSON(json: JSONObject) = json
+    }
+
+    @Before
+    fun setUp() {
+        store = SavedStateStore.getInstance(InstrumentationRegistry.getInstrumentation().targetContext)
+    }
+
+    @Test
+    fun verifySmallListStaysInBundle() {
+        val bundle = Bundle()
+
+        assertFalse(store.put(KEY, createObservations(5), bundle, converter))
+
+        AndroidStateBundlers.JSONListBundler().put(KEY, createObservations(5), bundle)
+        assertFalse(SavedStateStore.isSpilled(KEY, bundle))
+        assertEquals(5, AndroidStateBundlers.JSONListBundler().get(KEY, bundle)!!.size)
+    }
+
+    @Test
+    fun verifyListSpilled() {
+        val observations = createObservations(20)
+        val bundle = Bundle()
+        AndroidStateBundlers.JSONListBundler().put(KEY, observations, bundle)
+
+        assertTrue(SavedStateStore.isSpilled(KEY, bundle))
+        assertFalse(bundle.containsKey(KEY))
+
+        // Saving the same list again doesn't rewrite it
+        val unchanged = store.unchangedCount
+        AndroidStateBundlers.JSONListBundler().put(KEY, observations, Bundle())
+        assertEquals(unchanged + 1, store.unchangedCount)
+
+        // Restored after a configuration change - the same list instance
+        val parcel = Parcel.obtain()
+        parcel.writeBundle(bundle)
+        parcel.setDataPosition(0)
+        val restoredBundle = parcel.readBundle(javaClass.classLoader)!!
+        parcel.recycle()
+        assertSame(observations, AndroidStateBundlers.JSONListBundler().get(KEY, restoredBundle))
+    }
+
+    @Test
+    fun verifyRestoreFromDisk() {
+        val bundle = Bundle()
+        assertTrue(store.put(KEY, createObservations(20), bundle, converter))
+
+        // As after the process was killed - read only once the list is used
+        val loaded = store.loadedCount
+        val restored = SavedStateStore.LazyList(store, SavedStateStore.getHandle(KEY, bundle), converter)
+        assertFalse(restored.isLoaded)
+        assertEquals(loaded, store.loadedCount)
+
+        assertEquals(20, restored.size)
+        assertEquals(19, restored[19].getInt("id"))
+        assertEquals(loaded + 1, store.loadedCount)
+    }
+
+    @Test
+    fun verifyChangedListRewritten() {
+        val observations = createObservations(20)
+        assertTrue(store.put(KEY, observations, Bundle(), converter))
+
+        observations.add(JSONObject().put("id", 20))
+        observations[0].put("species_guess", "Updated")
+        val bundle = Bundle()
+        assertTrue(store.put(KEY, observations, bundle, converter))
+
+        val restored = SavedStateStore.LazyList(store, SavedStateStore.getHandle(KEY, bundle), converter)
+        assertEquals(21, restored.size)
+        assertEquals("Updated", restored[0].getString("species_guess"))
+    }
+
+    @Test
+    fun verifyRecordBundleSizesOnlyWhenEnabled() {
+        val recording = store.isRecordingBundleSizes
+        val bundle = Bundle()
+        bundle.putString(KEY, "value")
+
+        try {
+            store.setRecordBundleSizes(false)
+            store.recordBundleSize(this, bundle)
+            assertEquals(-1, store.getLastBundleSize("SavedStateStoreTest"))
+
+            store.setRecordBundleSizes(true)
+            store.recordBundleSize(this, bundle)
+            assertTrue(store.getLastBundleSize("SavedStateStoreTest") > 0)
+        } finally {
+            store.setRecordBundleSizes(recording)
+        }
+    }
+
+    private fun createObservations(count: Int): ArrayList<JSONObject> {
+        val observations = ArrayList<JSONObject>()
+        for (i in 0 until count) {
+            observations.add(JSONObject().put("id", i).put("species_guess", "Observation $i"))
+        }
+        return observations
+    }
+
+    companion object {
+        private const val KEY = "mObservations"
+    }
+}
@@ -0,0 +1,76 @@
+package org.inaturalist.android
+
+import android.content.Intent
+import org.json.JSONObject
+import org.junit.After
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class ServiceResultBusTest {
+
+    private val bus = ServiceResultBus.getInstance()
+
+    @After
+    fun cleanUp() {
+        bus.release(ACTION)
+    }
+
+    @Test
+    fun verifyEachReplyGetsItsResult() {
+        val firstReply = Intent(ACTION)
+        val secondReply = Intent(ACTION)
+        val first = page(1)
+        val second = page(2)
+
+        bus.publish(firstReply, ACTION, first)
+        bus.publish(secondReply, ACTION, second)
+
+        assertSame(first, bus.get(firstReply, ACTION, BetterJSONObject::class.java, this))
+        assertSame(second, bus.get(secondReply, ACTION, BetterJSONObject::class.java, this))
+        // Without a request ID - the latest result
+        assertSame(second, bus.get(Intent(ACTION), ACTION, BetterJSONObject::class.java, this))
+    }
+
+    @Test
+    fun verifyReleasedReplyGetsNoResult() {
+        val oldReply = Intent(ACTION)
+        val older = page(1)
+        val newer = page(2)
+
+        bus.publish(oldReply, ACTION, older)
+        assertSame(older, bus.get(oldReply, ACTION, BetterJSONObject::class.java, this))
+        bus.publish(Intent(ACTION), ACTION, newer)
+
+        assertNull(bus.get(oldReply, ACTION, BetterJSONObject::class.java, this))
+        assertSame(newer, bus.get(ACTION, BetterJSONObject::class.java, this))
+    }
+
+    @Test
+    fun verifyWrongTypeAndTake() {
+        val result = page(1)
+        bus.put(ACTION, result)
+
+        assertNull(bus.get(ACTION, SerializableJSONArray::class.java, this))
+        assertSame(result, bus.take(ACTION, BetterJSONObject::class.java, this))
+        assertNull(bus.get(ACTION, BetterJSONObject::class.java, this))
+    }
+
+    @Test
+    fun verifyBytesSavedByScreen() {
+        val result = page(1)
+        val saved = bus.bytesSavedByScreen["ServiceResultBusTest"] ?: 0L
+
+        bus.put(ACTION, result)
+        bus.get(ACTION, BetterJSONObject::class.java, this)
+
+        assertTrue(bus.bytesSavedByScreen["ServiceResultBusTest"]!! > saved)
+    }
+
+    private fun page(page: Int) = BetterJSONObject(JSONObject().put("page", page))
+
+    companion object {
+        private const val ACTION = "service_result_bus_test"
+    }
+}
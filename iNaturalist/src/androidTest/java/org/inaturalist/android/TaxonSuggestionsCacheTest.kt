@@ -0,0 +1,100 @@
+package org.inaturalist.android
+
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.graphics.Color
+import androidx.test.platform.app.InstrumentationRegistry
+import org.json.JSONArray
+import org.json.JSONObject
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.io.FileOutputStream
+import java.sql.Timestamp
+
+class TaxonSuggestionsCacheTest {
+
+    private lateinit var cache: TaxonSuggestionsCache
+    private lateinit var photo: File
+    private val observedOn = Timestamp(System.currentTimeMillis())
+
+    @Before
+    fun setUp() {
+        val context = InstrumentationRegistry.getInstrumentation().targetContext
+        cache = TaxonSuggestionsCache.getInstance(context)
+        cache.clear()
+
+        photo = File(context.cacheDir, "taxon_suggestions_test.jpg")
+        val bitmap = Bitmap.createBitmap(1200, 900, Bitmap.Config.ARGB_8888)
+        bitmap.eraseColor(Color.BLUE)
+        FileOutputStream(photo).use { bitmap.compress(Bitmap.CompressFormat.JPEG, 90, it) }
+        bitmap.recycle()
+    }
+
+    @After
+    fun cleanUp() {
+        cache.clear()
+        photo.delete()
+    }
+
+    @Test
+    fun verifyQueryImageReused() {
+        val hash = cache.getPhotoHash(photo.path)
+        val created = cache.renditionsCreated
+        val reused = cache.renditionsReused
+
+        val queryImage = cache.getQueryImage(photo.path, hash)
+        assertNotNull(queryImage)
+        assertEquals(created + 1, cache.renditionsCreated)
+        val options = BitmapFactory.Options().apply { inJustDecodeBounds = true }
+        BitmapFactory.decodeFile(queryImage, options)
+        assertEquals(640, options.outWidth)
+
+        assertEquals(queryImage, cache.getQueryImage(photo.path, cache.getPhotoHash(photo.path)))
+        assertEquals(created + 1, cache.renditionsCreated)
+        assertEquals(reused + 1, cache.renditionsReused)
+    }
+
+    @Test
+    fun verifyResultsHitAndMiss() {
+        val key = getKey(32.08531, 34.78181, 0)
+        val hits = cache.hitCount
+        val misses = cache.missCount
+        val uploadsSaved = cache.uploadsSaved
+
+        assertNull(cache.getResults(key, true))
+        assertEquals(misses + 1, cache.missCount)
+
+        val results = JSONObject().put("results", JSONArray().put(JSONObject().put("taxon", JSONObject().put("id", 47219))))
+        cache.putResults(key, BetterJSONObject(results))
+
+        val cached = cache.getResults(key, true)
+        assertEquals(47219, cached!!.getJSONArray("results").getJSONArray().getJSONObject(0).getJSONObject("taxon").getInt("id"))
+        assertNotNull(cache.getResults(key, false))
+        assertEquals(hits + 2, cache.hitCount)
+        // Only the local photo lookup saved an upload
+        assertEquals(uploadsSaved + 1, cache.uploadsSaved)
+
+        cache.clear()
+        assertNull(cache.getResults(key, true))
+    }
+
+    @Test
+    fun verifyKeyRoundsLocation() {
+        val key = getKey(32.08531, 34.78181, 0)
+
+        assertEquals(key, getKey(32.08534, 34.78179, 0))
+        assertNotEquals(key, getKey(32.09531, 34.78181, 0))
+        assertNotEquals(key, getKey(32.08531, 34.78181, 1))
+    }
+
+    private fun getKey(latitude: Double, longitude: Double, page: Int): String {
+        return TaxonSuggestionsCache.getKey("photo-hash", latitude, longitude, observedOn, INaturalistService.SUGGESTION_SOURCE_VISUAL,
+                null, null, null, null, 50, page, "en")
+    }
+}
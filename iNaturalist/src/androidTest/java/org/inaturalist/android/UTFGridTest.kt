@@ -0,0 +1,53 @@
+package org.inaturalist.android
+
+import org.json.JSONArray
+import org.json.JSONObject
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+
+class UTFGridTest {
+
+    // A 64x64 grid (4x4 pixels per cell) with two points: "obs-1" at cell (10, 10) and "obs-2" at cell (40, 50).
+    // Key 2 is encoded as '#' (the '"' character is skipped by the UTFGrid encoding).
+    private val grid = UTFGrid(JSONObject()
+        .put("grid", JSONArray((0 until 64).map { row ->
+            (0 until 64).joinToString("") { col ->
+                when {
+                    row == 10 && col == 10 -> "!"
+                    row == 50 && col == 40 -> "#"
+                    else -> " "
+                }
+            }
+        }))
+        .put("keys", JSONArray(listOf("", "obs-1", "obs-2")))
+        .put("data", JSONObject()
+            .put("obs-1", JSONObject().put("id", 1))
+            .put("obs-2", JSONObject().put("id", 2))))
+
+    @Test
+    fun verifyKeyForPixel() {
+        assertEquals("obs-1", grid.getKeyForPixel(40, 40))
+        assertEquals("obs-1", grid.getKeyForPixel(43, 43))
+        assertEquals("obs-2", grid.getKeyForPixel(161, 202))
+        assertEquals("", grid.getKeyForPixel(44, 40))
+        assertEquals("", grid.getKeyForPixel(-1, 300))
+    }
+
+    @Test
+    fun verifyExpansiveSearch() {
+        assertEquals("obs-1", grid.getKeyForPixelExpansive(48, 40))
+        assertEquals("obs-2", grid.getKeyForPixelExpansive(150, 190))
+        assertEquals("", grid.getKeyForPixelExpansive(128, 100))
+    }
+
+    @Test
+    fun verifyDataForPixel() {
+        assertEquals(2, grid.getDataForPixel(160, 200)!!.getInt("id"))
+        assertNull(grid.getDataForPixel(128, 100))
+
+        // Every caller gets its own copy of the (shared) data
+        grid.getDataForPixel(40, 40)!!.put("id", 100)
+        assertEquals(1, grid.getDataForPixel(40, 40)!!.getInt("id"))
+    }
+}
@@ -0,0 +1,192 @@
+package org.inaturalist.android
+
+import android.content.ContentResolver
+import android.content.ContentUris
+import android.content.ContentValues
+import androidx.test.platform.app.InstrumentationRegistry
+import okhttp3.MediaType
+import okhttp3.MultipartBody
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.SocketPolicy
+import org.json.JSONArray
+import org.json.JSONObject
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.io.IOException
+import java.util.UUID
+
+/**
+ * Interrupts photo uploads (using a local stand-in server) at different points, and checks what the upload
+ * journal recorded for each one - and that delivered photos the server already has aren't sent again.
+ */
+class UploadJournalTest {
+
+    private lateinit var contentResolver: ContentResolver
+    private lateinit var journal: UploadJournal
+    private lateinit var server: MockWebServer
+    private lateinit var file: File
+    private val client = OkHttpClient.Builder().retryOnConnectionFailure(false).build()
+
+    @Before
+    fun setUp() {
+        val context = InstrumentationRegistry.getInstrumentation().targetContext
+        contentResolver = context.contentResolver
+        journal = UploadJournal(contentResolver)
+        deleteEntries()
+
+        file = File(context.cacheDir, "upload_journal_test.jpg")
+        file.writeBytes(ByteArray(FILE_SIZE) { (it % 256).toByte() })
+
+        server = MockWebServer()
+        server.start()
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+        file.delete()
+        deleteEntries()
+    }
+
+    @Test
+    fun acknowledgedUploadIsCompleted() {
+        server.enqueue(MockResponse().setBody("{\"id\": 1}"))
+
+        val upload = journal.begin(MediaUpload.MEDIA_TYPE_PHOTO, MEDIA_ID, UUID.randomUUID().toString(), OBSERVATION_ID, file)
+        val response = client.newCall(uploadRequest(upload)).execute()
+        assertTrue(response.isSuccessful)
+        response.close()
+        journal.complete(upload)
+
+        assertNull(journal.get(MediaUpload.MEDIA_TYPE_PHOTO, MEDIA_ID))
+    }
+
+    @Test
+    fun uploadInterruptedAfterFileWasSentIsDelivered() {
+        server.enqueue(MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST))
+
+        val upload = journal.begin(MediaUpload.MEDIA_TYPE_PHOTO, MEDIA_ID, UUID.randomUUID().toString(), OBSERVATION_ID, file)
+        assertUploadFails(upload)
+
+        val entry = journal.get(MediaUpload.MEDIA_TYPE_PHOTO, MEDIA_ID)!!
+        assertTrue(entry.wasDelivered())
+        assertEquals(MediaUpload.STATE_SENT, entry.state)
+        assertEquals(FILE_SIZE.toLong(), entry.bytes_sent)
+        assertEquals(1, journal.getUnacknowledged(MediaUpload.MEDIA_TYPE_PHOTO, OBSERVATION_ID).size)
+    }
+
+    @Test
+    fun uploadInterruptedWhileSendingFileIsNotDelivered() {
+        server.enqueue(MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_DURING_REQUEST_BODY))
+
+        val upload = journal.begin(MediaUpload.MEDIA_TYPE_PHOTO, MEDIA_ID, UUID.randomUUID().toString(), OBSERVATION_ID, file)
+        assertUploadFails(upload)
+
+        val entry = journal.get(MediaUpload.MEDIA_TYPE_PHOTO, MEDIA_ID)!!
+        assertFalse(entry.wasDelivered())
+        assertEquals(MediaUpload.STATE_FAILED, entry.state)
+        assertTrue(journal.getUnacknowledged(MediaUpload.MEDIA_TYPE_PHOTO, OBSERVATION_ID).isEmpty())
+
+        // Retrying the upload counts as another attempt
+        val retry = journal.begin(MediaUpload.MEDIA_TYPE_PHOTO, MEDIA_ID, entry.media_uuid, OBSERVATION_ID, file)
+        assertEquals(2, retry.attempts)
+    }
+
+    @Test
+    fun deliveredPhotosOnServerAreNotSentAgain() {
+        val onServerUuid = UUID.randomUUID().toString()
+        val missingUuid = UUID.randomUUID().toString()
+
+        // Both uploads were fully sent, but no response was received
+        server.enqueue(MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST))
+        server.enqueue(MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST))
+        assertUploadFails(journal.begin(MediaUpload.MEDIA_TYPE_PHOTO, MEDIA_ID, onServerUuid, OBSERVATION_ID, file))
+        assertUploadFails(journal.begin(MediaUpload.MEDIA_TYPE_PHOTO, OTHER_MEDIA_ID, missingUuid, OBSERVATION_ID, file))
+
+        val delivered = journal.getUnacknowledged(MediaUpload.MEDIA_TYPE_PHOTO, OBSERVATION_ID)
+        assertEquals(2, delivered.size)
+
+        // The server only got the first one
+        val remotePhotos = JSONArray()
+                .put(JSONObject().put("id", 1).put("uuid", onServerUuid))
+                .put(JSONObject().put("id", 2).put("uuid", UUID.randomUUID().toString()))
+        val onServer = journal.findOnServer(delivered, remotePhotos)
+        assertEquals(1, onServer.size)
+        val upload = onServer.keys.first()
+        assertEquals(MEDIA_ID, upload.media_id)
+        assertEquals(1, onServer[upload]!!.getInt("id"))
+
+        // Acknowledged - only the missing photo is left to upload again
+        journal.complete(upload)
+        val remaining = journal.getUnacknowledged(MediaUpload.MEDIA_TYPE_PHOTO, OBSERVATION_ID)
+        assertEquals(1, remaining.size)
+        assertEquals(missingUuid, remaining[0].media_uuid)
+        assertTrue(journal.findOnServer(remaining, remotePhotos).isEmpty())
+    }
+
+    @Test
+    fun deletingPhotoRemovesItsEntry() {
+        val values = ContentValues()
+        values.put(ObservationPhoto.UUID, UUID.randomUUID().toString())
+        values.put(ObservationPhoto.OBSERVATION_ID, OBSERVATION_ID)
+        values.put(ObservationPhoto.OBSERVATION_UUID, UUID.randomUUID().toString())
+        val photoUri = contentResolver.insert(ObservationPhoto.CONTENT_URI, values)!!
+        val photoId = ContentUris.parseId(photoUri).toInt()
+
+        try {
+            journal.begin(MediaUpload.MEDIA_TYPE_PHOTO, photoId, values.getAsString(ObservationPhoto.UUID), OBSERVATION_ID, file)
+            journal.begin(MediaUpload.MEDIA_TYPE_SOUND, photoId, null, OBSERVATION_ID, file)
+
+            contentResolver.delete(photoUri, null, null)
+
+            assertNull(journal.get(MediaUpload.MEDIA_TYPE_PHOTO, photoId))
+            // A sound with the same local ID isn't affected
+            assertNotNull(journal.get(MediaUpload.MEDIA_TYPE_SOUND, photoId))
+        } finally {
+            contentResolver.delete(MediaUpload.CONTENT_URI, "media_id = ?", arrayOf(photoId.toString()))
+        }
+    }
+
+    private fun assertUploadFails(upload: MediaUpload) {
+        try {
+            client.newCall(uploadRequest(upload)).execute().close()
+            journal.complete(upload)
+            throw AssertionError("Upload should have been interrupted")
+        } catch (e: IOException) {
+            journal.fail(upload)
+        }
+    }
+
+    private fun uploadRequest(upload: MediaUpload): Request {
+        val fileBody = journal.track(upload, RequestBody.create(MediaType.parse("image/jpeg"), file))
+        val body = MultipartBody.Builder()
+                .setType(MultipartBody.FORM)
+                .addFormDataPart("observation_photo[uuid]", upload.media_uuid)
+                .addFormDataPart("file", file.name, fileBody)
+                .build()
+
+        return Request.Builder().url(server.url("/observation_photos")).post(body).build()
+    }
+
+    private fun deleteEntries() {
+        contentResolver.delete(MediaUpload.CONTENT_URI, "media_id IN (?, ?)", arrayOf(MEDIA_ID.toString(), OTHER_MEDIA_ID.toString()))
+    }
+
+    companion object {
+        private const val FILE_SIZE = 1024 * 1024
+        private const val MEDIA_ID = 1900000001
+        private const val OTHER_MEDIA_ID = 1900000002
+        private const val OBSERVATION_ID = 1900000001
+    }
+}
@@ -1,5 +1,6 @@
 package org.inaturalist.android;
 
+import android.content.Context;
 import android.net.Uri;
 import android.os.Bundle;
 import android.text.TextUtils;
@@ -171,11 +172,44 @@ public class AndroidStateBundlers {
         }
     }
 
+    // Large lists are spilled to disk, with only their handle saved in the bundle
+    private static SavedStateStore getSavedStateStore() {
+        Context context = INaturalistApp.getAppContext();
+        return context != null ? SavedStateStore.getInstance(context) : null;
+    }
+
+    private static final SavedStateStore.Converter<BetterJSONObject> BETTER_JSON_CONVERTER = new SavedStateStore.Converter<BetterJSONObject>() {
+        @Override
+        public JSONObject toJSON(BetterJSONObject item) {
+            return item.getJSONObject();
+        }
+
+        @Override
+        public BetterJSONObject fromJSON(JSONObject json) {
+            return new BetterJSONObject(json);
+        }
+    };
+
+    private static final SavedStateStore.Converter<JSONObject> JSON_CONVERTER = new SavedStateStore.Converter<JSONObject>() {
+        @Override
+        public JSONObject toJSON(JSONObject item) {
+            return item;
+        }
+
+        @Override
+        public JSONObject fromJSON(JSONObject json) {
+            return json;
+        }
+    };
+
     public static final class BetterJSONListBundler implements Bundler<List<BetterJSONObject>> {
         private static final String TAG = "BetterJSONListBundler";
 
         @Override
         public void put(@NonNull String key, @NonNull List<BetterJSONObject> value, @NonNull Bundle bundle) {
+            SavedStateStore store = getSavedStateStore();
+            if ((store != null) && store.put(key, value, bundle, BETTER_JSON_CONVERTER)) return;
+
             if (value != null) {
                 StringBuilder string = new StringBuilder();
                 string.append('[');
@@ -194,6 +228,9 @@ public class AndroidStateBundlers {
         @Nullable
         @Override
         public List<BetterJSONObject> get(@NonNull String key, @NonNull Bundle bundle) {
+            SavedStateStore store = getSavedStateStore();
+            if ((store != null) && SavedStateStore.isSpilled(key, bundle)) return store.get(key, bundle, BETTER_JSON_CONVERTER);
+
             List<BetterJSONObject> results = new ArrayList<BetterJSONObject>();
 
             if (!bundle.containsKey(key)) {
@@ -227,6 +264,9 @@ public class AndroidStateBundlers {
 
         @Override
         public void put(@NonNull String key, @NonNull List<JSONObject> value, @NonNull Bundle bundle) {
+            SavedStateStore store = getSavedStateStore();
+            if ((store != null) && store.put(key, value, bundle, JSON_CONVERTER)) return;
+
             if (value != null) {
                 JSONArray arr = new JSONArray(value);
                 bundle.putString(key, arr.toString());
@@ -236,6 +276,9 @@ public class AndroidStateBundlers {
         @Nullable
         @Override
         public List<JSONObject> get(@NonNull String key, @NonNull Bundle bundle) {
+            SavedStateStore store = getSavedStateStore();
+            if ((store != null) && SavedStateStore.isSpilled(key, bundle)) return store.get(key, bundle, JSON_CONVERTER);
+
             List<JSONObject> results = new ArrayList<JSONObject>();
 
             if (!bundle.containsKey(key)) {
@@ -0,0 +1,119 @@
+package org.inaturalist.android;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Date;
+import java.util.Locale;
+
+import okhttp3.Headers;
+
+/**
+ * The outcome of a single API call - status, headers, parsed body, errors and timing - returned by the HTTP layer
+ * of the service (instead of keeping the status of the last call in service-wide fields).
+ */
+public class ApiResponse {
+    public final String method;
+    public final String url;
+
+    // HTTP status code (0 if no response was received, e.g. a network error)
+    public int statusCode = 0;
+    public Headers headers = null;
+    // Parsed response body (a JSON object response is wrapped in an array) - null if the call failed
+    public JSONArray body = null;
+    // Errors returned by the server (the "errors" array of the response)
+    public JSONArray errors = null;
+    // Server asked us to retry after this time (503 with a Retry-After header)
+    public Date retryAfter = null;
+    public boolean serviceUnavailable = false;
+    // Whether the whole request body was written to the connection - i.e. whether a call that failed without a
+    // response might still have been processed by the server
+    public boolean requestSent = false;
+
+    public final long startedAt = System.currentTimeMillis();
+    public long durationMillis = 0;
+
+    public ApiResponse(String method, String url) {
+        this.method = method;
+        this.url = url;
+    }
+
+    /** Whether the call succeeded, and the response body was parsed */
+    public boolean isSuccessful() {
+        return body != null;
+    }
+
+    public boolean isClientError() {
+        return (statusCode >= 400) && (statusCode < 500);
+    }
+
+    /** Whether the call failed before any response was received (e.g. a network error or timeout) */
+    public boolean isNetworkError() {
+        return statusCode == 0;
+    }
+
+    /** Returns the first object of the response body (or null if there isn't one) */
+    public JSONObject getFirstResult() {
+        return ((body != null) && (body.length() > 0)) ? body.optJSONObject(0) : null;
+    }
+
+    /** Returns a copy of this response (with its own copy of the parsed body) */
+    public ApiResponse copy() {
+        return snapshot().toResponse();
+    }
+
+    /** Returns an immutable (serialized) copy of this response, which can be turned into independent responses */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Immutable copy of a response - the parsed body is kept serialized, so it can be safely shared between threads
+     * (each caller parses its own copy)
+     */
+    public static class Snapshot {
+        private final ApiResponse mResponse;
+        private final String mBody;
+        private final String mErrors;
+
+        private Snapshot(ApiResponse response) {
+            mResponse = new ApiResponse(response.method, response.url);
+            mResponse.statusCode = response.statusCode;
+            mResponse.headers = response.headers;
+            mResponse.retryAfter = response.retryAfter != null ? new Date(response.retryAfter.getTime()) : null;
+            mResponse.serviceUnavailable = response.serviceUnavailable;
+            mResponse.requestSent = response.requestSent;
+            mResponse.durationMillis = response.durationMillis;
+            mBody = response.body != null ? response.body.toString() : null;
+            mErrors = response.errors != null ? response.errors.toString() : null;
+        }
+
+        /** Returns a new response, with its own parsed body */
+        public ApiResponse toResponse() {
+            ApiResponse response = new ApiResponse(mResponse.method, mResponse.url);
+            response.statusCode = mResponse.statusCode;
+            response.headers = mResponse.headers;
+            response.retryAfter = mResponse.retryAfter != null ? new Date(mResponse.retryAfter.getTime()) : null;
+            response.serviceUnavailable = mResponse.serviceUnavailable;
+            response.requestSent = mResponse.requestSent;
+            response.durationMillis = mResponse.durationMillis;
+
+            try {
+                response.body = mBody != null ? new JSONArray(mBody) : null;
+                response.errors = mErrors != null ? new JSONArray(mErrors) : null;
+            } catch (JSONException e) {
+                // Shouldn't happen (serialized from valid JSON arrays)
+                response.body = null;
+                response.errors = null;
+            }
+
+            return response;
+        }
+    }
+
+    public String toString() {
+        return String.format(Locale.ENGLISH, "%s %s - %d in %d ms%s", method, url, statusCode, durationMillis,
+                errors != null ? " (errors: " + errors + ")" : "");
+    }
+}
@@ -0,0 +1,263 @@
+package org.inaturalist.android;
+
+import android.content.Context;
+
+import org.tinylog.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * On-disk response cache for read-mostly API endpoints (taxa, controlled terms, places, etc.), underneath the
+ * service's request path (singleton class).
+ *
+ * Responses of the endpoints listed below are kept fresh for their own TTL; after that they're revalidated using
+ * their ETag / Last-Modified headers (so an unchanged response costs only a 304). When offline, a stale response
+ * is served instead of failing - it gets revalidated on the next call made while online. Cached entries are
+ * bounded by size, and the least recently used ones are evicted first.
+ */
+public class ApiResponseCache {
+    private static final String TAG = "ApiResponseCache";
+
+    private static final String CACHE_DIRECTORY = "api_responses";
+    private static final long MAX_CACHE_SIZE_BYTES = 10 * 1024 * 1024;
+    // How old of a cached response can still be served while offline
+    private static final int MAX_STALE_DAYS = 30;
+
+    private static final long HOUR = 60 * 60;
+    private static final long DAY = 24 * HOUR;
+
+    // Cached endpoints (matched against the request path + query) and how long their responses are considered fresh
+    private static final CachedEndpoint[] CACHED_ENDPOINTS = new CachedEndpoint[] {
+            new CachedEndpoint("^/v1/taxa/\\d+\\?", DAY),
+            new CachedEndpoint("^/v1/controlled_terms(/for_taxon)?\\?", 7 * DAY),
+            new CachedEndpoint("^/v1/places/\\d+$", 7 * DAY),
+            new CachedEndpoint("^/v1/projects\\?featured=true", 6 * HOUR),
+            new CachedEndpoint("^/v1/observations/histogram\\?", DAY),
+            new CachedEndpoint("^/guides\\.json\\?per_page=", DAY)
+    };
+
+    private static class CachedEndpoint {
+        final Pattern pattern;
+        final long ttlSeconds;
+
+        CachedEndpoint(String pattern, long ttlSeconds) {
+            this.pattern = Pattern.compile(pattern);
+            this.ttlSeconds = ttlSeconds;
+        }
+    }
+
+    // Singleton instance
+    private static ApiResponseCache sInstance = null;
+
+    private final Cache mCache;
+    private final OkHttpClient mClient;
+
+    private final AtomicLong mRevalidations = new AtomicLong();
+    private final AtomicLong mNotModified = new AtomicLong();
+    private final AtomicLong mStaleServed = new AtomicLong();
+    private final AtomicLong mBytesSaved = new AtomicLong();
+
+    private ApiResponseCache(Context context) {
+        mCache = new Cache(new File(context.getCacheDir(), CACHE_DIRECTORY), MAX_CACHE_SIZE_BYTES);
+
+        // Shares the same connection pool and dispatcher as the rest of the app's HTTP calls
+        mClient = SharedHttpClient.getInstance().getClient().newBuilder()
+                .cache(mCache)
+                .addInterceptor(new OfflineInterceptor())
+                .addNetworkInterceptor(new FreshnessInterceptor())
+                .build();
+    }
+
+    public static synchronized ApiResponseCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ApiResponseCache(context.getApplicationContext());
+        }
+
+        return sInstance;
+    }
+
+    /** Returns the caching HTTP client (requests of non-cached endpoints behave exactly like the shared client) */
+    public OkHttpClient getClient() {
+        return mClient;
+    }
+
+    /** Removes all cached responses (e.g. when the user signs out) */
+    public void clear() {
+        try {
+            mCache.evictAll();
+        } catch (IOException e) {
+            Logger.tag(TAG).error(e);
+        }
+    }
+
+    public int getRequestCount() {
+        return mCache.requestCount();
+    }
+
+    /** Responses served from cache (without downloading them again - including those revalidated by a 304) */
+    public int getHitCount() {
+        return mCache.hitCount();
+    }
+
+    public float getHitRatio() {
+        int requests = mCache.requestCount();
+        return requests > 0 ? (float) mCache.hitCount() / requests : 0;
+    }
+
+    public long getRevalidationCount() {
+        return mRevalidations.get();
+    }
+
+    public long getNotModifiedCount() {
+        return mNotModified.get();
+    }
+
+    public long getStaleServedCount() {
+        return mStaleServed.get();
+    }
+
+    /** Bytes of response bodies read from cache instead of being downloaded */
+    public long getBytesSaved() {
+        return mBytesSaved.get();
+    }
+
+    public long getSize() {
+        try {
+            return mCache.size();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    public String toString() {
+        return String.format(Locale.ENGLISH, "Response cache: %d%% hits (%d / %d); %d revalidated (%d not modified); %d stale served offline; %d KB saved; %d KB used",
+                Math.round(getHitRatio() * 100), getHitCount(), getRequestCount(), getRevalidationCount(), getNotModifiedCount(),
+                getStaleServedCount(), getBytesSaved() / 1024, getSize() / 1024);
+    }
+
+    private static CachedEndpoint getCachedEndpoint(Request request) {
+        if (!request.method().equals("GET")) return null;
+
+        HttpUrl url = request.url();
+        String pathAndQuery = url.encodedPath() + (url.encodedQuery() != null ? "?" + url.encodedQuery() : "");
+        for (CachedEndpoint endpoint : CACHED_ENDPOINTS) {
+            if (endpoint.pattern.matcher(pathAndQuery).find()) return endpoint;
+        }
+
+        return null;
+    }
+
+    // Falls back to a stale cached response in case the network isn't available
+    private class OfflineInterceptor implements Interceptor {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            if (getCachedEndpoint(request) == null) return chain.proceed(request);
+
+            Response response;
+            try {
+                response = chain.proceed(request);
+            } catch (IOException e) {
+                Request cachedRequest = request.newBuilder()
+                        .cacheControl(new CacheControl.Builder()
+                                .onlyIfCached()
+                                .maxStale(MAX_STALE_DAYS, TimeUnit.DAYS)
+                                .build())
+                        .build();
+                response = chain.proceed(cachedRequest);
+                if (response.code() == 504) {
+                    // Not cached
+                    response.close();
+                    throw e;
+                }
+
+                Logger.tag(TAG).info("Offline - serving stale response for " + request.url());
+                mStaleServed.incrementAndGet();
+            }
+
+            if ((response.cacheResponse() != null) && (response.body() != null) &&
+                    ((response.networkResponse() == null) || (response.networkResponse().code() == 304))) {
+                // Body is read from cache - count its bytes as saved
+                return response.newBuilder().body(new CountingResponseBody(response.body())).build();
+            }
+
+            return response;
+        }
+    }
+
+    // Applies the per-endpoint TTL to responses coming from the network (while keeping their validators)
+    private class FreshnessInterceptor implements Interceptor {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            CachedEndpoint endpoint = getCachedEndpoint(request);
+            if (endpoint == null) return chain.proceed(request);
+
+            boolean isRevalidation = (request.header("If-None-Match") != null) || (request.header("If-Modified-Since") != null);
+            if (isRevalidation) mRevalidations.incrementAndGet();
+
+            Response response = chain.proceed(request);
+            if (response.code() == 304) {
+                mNotModified.incrementAndGet();
+            } else if (!response.isSuccessful()) {
+                return response;
+            }
+
+            return response.newBuilder()
+                    .removeHeader("Pragma")
+                    .header("Cache-Control", "max-age=" + endpoint.ttlSeconds)
+                    .build();
+        }
+    }
+
+    private class CountingResponseBody extends ResponseBody {
+        private final ResponseBody mBody;
+        private final BufferedSource mSource;
+
+        CountingResponseBody(ResponseBody body) {
+            mBody = body;
+            mSource = Okio.buffer(new ForwardingSource(body.source()) {
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    long read = super.read(sink, byteCount);
+                    if (read > 0) mBytesSaved.addAndGet(read);
+                    return read;
+                }
+            });
+        }
+
+        @Override
+        public MediaType contentType() {
+            return mBody.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return mBody.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return mSource;
+        }
+    }
+}
@@ -784,6 +784,13 @@ public class BaseFragmentActivity extends AppCompatActivity {
 
         shouldRestart = !prevLocale.equals("");
 
+        // Cached API responses might contain the signed out user's details
+        ApiResponseCache.getInstance(app).clear();
+        // Same for the resized copies of their photos (kept for taxon suggestions)
+        TaxonSuggestionsCache.getInstance(app).clear();
+        // ...and the result lists saved with screens' state
+        SavedStateStore.getInstance(app).clear();
+
 
         // Delete all locally-cached photo files
         Cursor c = app.getContentResolver().query(ObservationPhoto.CONTENT_URI,
@@ -812,8 +819,7 @@ public class BaseFragmentActivity extends AppCompatActivity {
 
         Logger.tag(TAG).debug(String.format("Deleted %d / %d / %d / %d / %d", count1, count2, count3, count4, count5));
 
-        File obsPhotoCache = new File(context.getFilesDir(), "observations_photo_info.dat");
-        obsPhotoCache.delete();
+        PhotoInfoIndex.getInstance(context).clear();
 
         if (shouldRestart) {
             app.applyLocaleSettings();
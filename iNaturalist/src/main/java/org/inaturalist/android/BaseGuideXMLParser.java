@@ -77,7 +77,7 @@ public abstract class BaseGuideXMLParser {
         }
 
         try {
-            String result = mXpath.evaluate(xpath, mRootNode);
+            String result = mXpath.evaluate(xpath, getRootNode());
             mCache.put(xpath, result); // Save result to cache
             return result;
         } catch (XPathExpressionException e) {
@@ -116,7 +116,7 @@ public abstract class BaseGuideXMLParser {
 
         NodeList nodes = null;
        try {
-           nodes = (NodeList)mXpath.evaluate(xpath, mRootNode, XPathConstants.NODESET);
+           nodes = (NodeList)mXpath.evaluate(xpath, getRootNode(), XPathConstants.NODESET);
         } catch (XPathExpressionException e) {
             Logger.tag(TAG).error(e);
             return null;
@@ -68,7 +68,7 @@ public abstract class BaseTab extends Fragment implements ProjectsAdapter.OnLoad
                 }
             } else {
             	// Get results from app context
-            	serializableArray = (SerializableJSONArray) mApp.getServiceResult(getFilterResultName());
+            	serializableArray = ServiceResultBus.getInstance().get(intent, getFilterResultName(), SerializableJSONArray.class, this);
             }
             Logger.tag(TAG).debug("Response for: " + getFilterResultName() + ":" + serializableArray);
 
@@ -8,6 +8,7 @@ package org.inaturalist.android;
 
 import java.io.Serializable;
 import java.sql.Timestamp;
+import java.util.HashMap;
 
 import android.database.Cursor;
 
@@ -15,6 +16,8 @@ public class BetterCursor implements Serializable {
 	public final static String TAG = "BetterCursor";
 	private Cursor mCursor;
 	private Integer mPosition;
+	// Column name -> index, resolved once (only when reading rows in place - see forRows)
+	private HashMap<String, Integer> mColumnIndexes;
 	
 	public BetterCursor(Cursor c) {
 		mCursor = c;
@@ -22,13 +25,47 @@ public class BetterCursor implements Serializable {
 		mPosition = mCursor.getPosition();
 	}
 	
+	private BetterCursor(Cursor c, HashMap<String, Integer> columnIndexes) {
+		mCursor = c;
+		mPosition = null;
+		mColumnIndexes = columnIndexes;
+	}
+	
+	/**
+	 * Returns a BetterCursor that reads the *current* row of the cursor (i.e. the caller moves the cursor from row
+	 * to row), with the column indexes resolved once for all rows - instead of repositioning the cursor and looking
+	 * up the column index on every get.
+	 */
+	public static BetterCursor forRows(Cursor c) {
+		String[] columnNames = c.getColumnNames();
+		HashMap<String, Integer> columnIndexes = new HashMap<>(columnNames.length * 2);
+		for (int i = 0; i < columnNames.length; i++) {
+			columnIndexes.put(columnNames[i], i);
+		}
+
+		return new BetterCursor(c, columnIndexes);
+	}
+	
+	// Returns the column index of the given column name, and moves the cursor to the row (when bound to a row)
+	private int moveToColumn(String name) {
+		if (mColumnIndexes == null) {
+			mCursor.moveToPosition(mPosition);
+			return mCursor.getColumnIndexOrThrow(name);
+		}
+
+		Integer index = mColumnIndexes.get(name);
+		if (index == null) {
+			throw new IllegalArgumentException("column '" + name + "' does not exist");
+		}
+		return index;
+	}
 	
 	public Object get(String name) {
-	    mCursor.moveToPosition(mPosition);
-		if (mCursor.isNull(mCursor.getColumnIndexOrThrow(name))) {
+		int index = moveToColumn(name);
+		if (mCursor.isNull(index)) {
 			return null;
 		}
-		return mCursor.getString(mCursor.getColumnIndexOrThrow(name));
+		return mCursor.getString(index);
 	}
 	
 	public String getString(String name) {
@@ -37,52 +74,52 @@ public class BetterCursor implements Serializable {
 	}
 	
 	public Boolean getBoolean(String name) {
-	    mCursor.moveToPosition(mPosition);
-		return (1 == mCursor.getInt(mCursor.getColumnIndexOrThrow(name)));
+		return (1 == mCursor.getInt(moveToColumn(name)));
 	}
 	
 	public Integer getInt(String name) {
-	    mCursor.moveToPosition(mPosition);
-		if (mCursor.isNull(mCursor.getColumnIndexOrThrow(name))) {
+		int index = moveToColumn(name);
+		if (mCursor.isNull(index)) {
 			return null;
 		}
-		return mCursor.getInt(mCursor.getColumnIndexOrThrow(name));
+		return mCursor.getInt(index);
 	}
-
+	
 	public Long getLong(String name) {
-		mCursor.moveToPosition(mPosition);
-		if (mCursor.isNull(mCursor.getColumnIndexOrThrow(name))) {
+		int index = moveToColumn(name);
+		if (mCursor.isNull(index)) {
 			return null;
 		}
-		return mCursor.getLong(mCursor.getColumnIndexOrThrow(name));
+		return mCursor.getLong(index);
 	}
-
+	
 
 	public Integer getInteger(String name) {
 		return getInt(name);
 	}
 	
 	public Double getDouble(String name) {
-		if (mCursor.isNull(mCursor.getColumnIndexOrThrow(name))) {
+		int index = moveToColumn(name);
+		if (mCursor.isNull(index)) {
 			return null;
 		}
-		return mCursor.getDouble(mCursor.getColumnIndexOrThrow(name));
+		return mCursor.getDouble(index);
 	}
 	
 	public Float getFloat(String name) {
-	    mCursor.moveToPosition(mPosition);
-		if (mCursor.isNull(mCursor.getColumnIndexOrThrow(name))) {
+		int index = moveToColumn(name);
+		if (mCursor.isNull(index)) {
 			return null;
 		}
-		return mCursor.getFloat(mCursor.getColumnIndexOrThrow(name));
+		return mCursor.getFloat(index);
 	}
 	
 	public Timestamp getTimestamp(String name) {
-	    mCursor.moveToPosition(mPosition);
-		if (mCursor.isNull(mCursor.getColumnIndexOrThrow(name))) {
+		int index = moveToColumn(name);
+		if (mCursor.isNull(index)) {
 			return null;
 		}
-		return new Timestamp(mCursor.getLong(mCursor.getColumnIndexOrThrow(name)));
+		return new Timestamp(mCursor.getLong(index));
 	}
 	
 	public int getCount() {
@@ -0,0 +1,152 @@
+package org.inaturalist.android;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of mutable bitmaps (singleton class), used as decode targets (BitmapFactory.Options.inBitmap) and scaling
+ * targets when resizing photos - so resizing a batch of photos reuses the same few large buffers instead of
+ * allocating new ones for every photo.
+ */
+public class BitmapPool {
+    private static final String TAG = "BitmapPool";
+
+    // Singleton instance
+    private static BitmapPool sInstance = null;
+
+    private final long mMaxSizeBytes;
+    // Least recently returned bitmaps first
+    private final LinkedList<Bitmap> mBitmaps = new LinkedList<>();
+    private long mSizeBytes = 0;
+
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+    private final AtomicLong mEvictions = new AtomicLong();
+
+    private BitmapPool(long maxSizeBytes) {
+        mMaxSizeBytes = maxSizeBytes;
+    }
+
+    public static synchronized BitmapPool getInstance() {
+        if (sInstance == null) {
+            // 1/8 of the heap
+            sInstance = new BitmapPool(Runtime.getRuntime().maxMemory() / 8);
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * Returns a cleared bitmap of the requested size and config, reusing a pooled bitmap that is large enough
+     * (or null if there is no such bitmap - the caller should allocate a new one)
+     */
+    public Bitmap get(int width, int height, Bitmap.Config config) {
+        long requiredBytes = getSizeBytes(width, height, config);
+        Bitmap bitmap = null;
+
+        synchronized (this) {
+            Bitmap best = null;
+            for (Bitmap candidate : mBitmaps) {
+                int candidateBytes = candidate.getAllocationByteCount();
+                if ((candidateBytes >= requiredBytes) && ((best == null) || (candidateBytes < best.getAllocationByteCount()))) {
+                    best = candidate;
+                }
+            }
+
+            if (best != null) {
+                mBitmaps.remove(best);
+                mSizeBytes -= best.getAllocationByteCount();
+                bitmap = best;
+            }
+        }
+
+        if (bitmap == null) {
+            mMisses.incrementAndGet();
+            return null;
+        }
+
+        mHits.incrementAndGet();
+        bitmap.reconfigure(width, height, config);
+        bitmap.eraseColor(Color.TRANSPARENT);
+        return bitmap;
+    }
+
+    /** Returns a bitmap of the requested size and config - either a pooled one or a newly allocated one */
+    public Bitmap getOrCreate(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = get(width, height, config);
+        return bitmap != null ? bitmap : Bitmap.createBitmap(width, height, config);
+    }
+
+    /** Returns a bitmap to the pool (the caller must not use it afterwards) */
+    public void put(Bitmap bitmap) {
+        if (bitmap == null) return;
+
+        if (bitmap.isRecycled() || !bitmap.isMutable() || (bitmap.getAllocationByteCount() > mMaxSizeBytes)) {
+            bitmap.recycle();
+            return;
+        }
+
+        synchronized (this) {
+            if (mBitmaps.contains(bitmap)) return;
+
+            mBitmaps.addLast(bitmap);
+            mSizeBytes += bitmap.getAllocationByteCount();
+            trimToSize(mMaxSizeBytes);
+        }
+    }
+
+    /** Releases pooled bitmaps until the pool is no larger than the given size */
+    public synchronized void trimToSize(long maxSizeBytes) {
+        Iterator<Bitmap> iterator = mBitmaps.iterator();
+        while ((mSizeBytes > maxSizeBytes) && iterator.hasNext()) {
+            Bitmap bitmap = iterator.next();
+            iterator.remove();
+            mSizeBytes -= bitmap.getAllocationByteCount();
+            bitmap.recycle();
+            mEvictions.incrementAndGet();
+        }
+    }
+
+    public void clear() {
+        trimToSize(0);
+    }
+
+    public synchronized long getSizeBytes() {
+        return mSizeBytes;
+    }
+
+    public long getHitCount() {
+        return mHits.get();
+    }
+
+    public long getMissCount() {
+        return mMisses.get();
+    }
+
+    public static long getSizeBytes(int width, int height, Bitmap.Config config) {
+        int bytesPerPixel;
+        switch (config) {
+            case ALPHA_8:
+                bytesPerPixel = 1;
+                break;
+            case RGB_565:
+            case ARGB_4444:
+                bytesPerPixel = 2;
+                break;
+            default:
+                bytesPerPixel = 4;
+        }
+        return (long) width * height * bytesPerPixel;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.ENGLISH, "BitmapPool: %d hits / %d misses; %d evicted; %d pooled (%d KB / %d KB)",
+                getHitCount(), getMissCount(), mEvictions.get(), mBitmaps.size(), mSizeBytes / 1024, mMaxSizeBytes / 1024);
+    }
+}
@@ -0,0 +1,186 @@
+package org.inaturalist.android;
+
+import android.content.Context;
+
+import com.google.android.gms.maps.model.Tile;
+import com.google.android.gms.maps.model.TileProvider;
+
+import org.tinylog.Logger;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Tile provider for the observation map overlays (grid/points tiles), backed by the persistent tile cache - so
+ * panning back over an area doesn't download its tiles again, and the overlays are still shown while offline.
+ * Whenever a tile is downloaded, its neighbouring tiles (at the same zoom level) are prefetched in the background.
+ */
+public class CachingTileProvider implements TileProvider {
+    private static final String TAG = "CachingTileProvider";
+
+    // Cached tiles older than this are downloaded again (but still used in case that fails)
+    private static final long MAX_TILE_AGE_MILLIS = 24 * 60 * 60 * 1000;
+    private static final int MAX_QUEUED_PREFETCHES = 32;
+
+    // Shared by all providers - prefetching is a best-effort background task
+    private static final Set<String> sPrefetching = Collections.synchronizedSet(new HashSet<String>());
+    private static final ThreadPoolExecutor sPrefetchExecutor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(MAX_QUEUED_PREFETCHES), (runnable, executor) -> {
+                // Queue is full - skip this prefetch
+                sPrefetching.remove(((PrefetchTask) runnable).mKey);
+            });
+
+    static {
+        sPrefetchExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /** Returns the URL of a tile (or null if there's no tile for these coordinates) */
+    public interface TileUrlSource {
+        String getTileUrl(int x, int y, int zoom);
+    }
+
+    private final TileCache mCache;
+    private final int mTileSize;
+    private final TileUrlSource mSource;
+
+    public CachingTileProvider(Context context, int tileSize, TileUrlSource source) {
+        mCache = TileCache.getInstance(context);
+        mTileSize = tileSize;
+        mSource = source;
+    }
+
+    @Override
+    public Tile getTile(int x, int y, int zoom) {
+        String url = mSource.getTileUrl(x, y, zoom);
+        if (url == null) return NO_TILE;
+
+        String layer = getLayer(url);
+        TileCache.CachedTile cached = mCache.get(layer, x, y, zoom);
+
+        if ((cached != null) && (System.currentTimeMillis() - cached.fetchedAt < MAX_TILE_AGE_MILLIS)) {
+            mCache.onHit(cached.data.length, false);
+            return new Tile(mTileSize, mTileSize, cached.data);
+        }
+
+        byte[] data = download(url);
+        if (data == null) {
+            if (cached != null) {
+                // Couldn't download a fresh copy (e.g. offline) - use the older one
+                mCache.onHit(cached.data.length, true);
+                return new Tile(mTileSize, mTileSize, cached.data);
+            }
+
+            // Let the map try again later
+            return null;
+        }
+
+        mCache.onMiss();
+        mCache.put(layer, x, y, zoom, data);
+        prefetchNeighbours(x, y, zoom);
+
+        return new Tile(mTileSize, mTileSize, data);
+    }
+
+    private byte[] download(String url) {
+        OkHttpClient client = SharedHttpClient.getInstance().getClient();
+        Request request = new Request.Builder().url(url).build();
+
+        try {
+            Response response = client.newCall(request).execute();
+            try {
+                if (!response.isSuccessful() || (response.body() == null)) return null;
+                return response.body().bytes();
+            } finally {
+                response.close();
+            }
+        } catch (IOException e) {
+            Logger.tag(TAG).debug("Couldn't download tile " + url + ": " + e);
+            return null;
+        }
+    }
+
+    private void prefetchNeighbours(int x, int y, int zoom) {
+        int tileCount = 1 << zoom;
+
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                if ((dx == 0) && (dy == 0)) continue;
+
+                final int nx = (x + dx + tileCount) % tileCount; // Wraps around the antimeridian
+                final int ny = y + dy;
+                if ((ny < 0) || (ny >= tileCount)) continue;
+
+                final String url = mSource.getTileUrl(nx, ny, zoom);
+                if (url == null) continue;
+
+                final String layer = getLayer(url);
+                final String key = layer + "/" + zoom + "/" + nx + "/" + ny;
+                if (!sPrefetching.add(key)) continue;
+
+                sPrefetchExecutor.execute(new PrefetchTask(key, () -> {
+                    if (mCache.contains(layer, nx, ny, zoom)) return;
+
+                    byte[] data = download(url);
+                    if (data != null) {
+                        mCache.put(layer, nx, ny, zoom, data);
+                        mCache.onPrefetched();
+                    }
+                }));
+            }
+        }
+    }
+
+    private static class PrefetchTask implements Runnable {
+        private final String mKey;
+        private final Runnable mRunnable;
+
+        PrefetchTask(String key, Runnable runnable) {
+            mKey = key;
+            mRunnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            try {
+                mRunnable.run();
+            } finally {
+                sPrefetching.remove(mKey);
+            }
+        }
+    }
+
+    // A layer is the tile server path (without the tile coordinates) + its normalized query (e.g. the search filters)
+    static String getLayer(String url) {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        if (httpUrl == null) return url;
+
+        StringBuilder layer = new StringBuilder(httpUrl.host());
+        int segmentCount = httpUrl.pathSize();
+        // Remove the trailing "{zoom}/{x}/{y}.png" segments
+        for (int i = 0; i < Math.max(segmentCount - 3, 0); i++) {
+            layer.append('/').append(httpUrl.pathSegments().get(i));
+        }
+
+        char separator = '?';
+        for (String name : new TreeSet<>(httpUrl.queryParameterNames())) {
+            for (String value : httpUrl.queryParameterValues(name)) {
+                if ((value == null) || (value.length() == 0)) continue;
+                layer.append(separator).append(name).append('=').append(value);
+                separator = '&';
+            }
+        }
+
+        return layer.toString();
+    }
+}
@@ -522,7 +522,7 @@ public class CompareSuggestionActivity extends AppCompatActivity {
             BetterJSONObject taxon;
 
             if (isSharedOnApp) {
-                taxon = (BetterJSONObject) mApp.getServiceResult(intent.getAction());
+                taxon = ServiceResultBus.getInstance().get(intent, intent.getAction(), BetterJSONObject.class, this);
             } else {
                 taxon = (BetterJSONObject) intent.getSerializableExtra(INaturalistService.TAXON_RESULT);
             }
@@ -0,0 +1,93 @@
+package org.inaturalist.android;
+
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps the rows of a cursor into model objects (observations, photos, sounds). The cursor's column indexes are
+ * resolved once (instead of for every field of every row), and each row is read in place - without repositioning
+ * the cursor for every field.
+ *
+ * Usage: create a mapper once per cursor, then call map() (or map(reuse)) while moving the cursor from row to row.
+ */
+public class CursorRowMapper<T> {
+    public interface RowReader<T> {
+        /** Reads the current row into a new object - or into reuse, in case it's not null */
+        T read(BetterCursor row, T reuse);
+    }
+
+    private static final RowReader<Observation> OBSERVATION_READER = (row, reuse) -> {
+        if (reuse == null) return new Observation(row);
+        reuse.readFrom(row);
+        return reuse;
+    };
+
+    private static final RowReader<ObservationPhoto> PHOTO_READER = (row, reuse) -> {
+        if (reuse == null) return new ObservationPhoto(row);
+        reuse.readFrom(row);
+        return reuse;
+    };
+
+    private static final RowReader<ObservationSound> SOUND_READER = (row, reuse) -> {
+        if (reuse == null) return new ObservationSound(row);
+        reuse.readFrom(row);
+        return reuse;
+    };
+
+    private final Cursor mCursor;
+    private final BetterCursor mRow;
+    private final RowReader<T> mReader;
+
+    public CursorRowMapper(Cursor cursor, RowReader<T> reader) {
+        mCursor = cursor;
+        mRow = BetterCursor.forRows(cursor);
+        mReader = reader;
+    }
+
+    public static CursorRowMapper<Observation> forObservations(Cursor cursor) {
+        return new CursorRowMapper<>(cursor, OBSERVATION_READER);
+    }
+
+    public static CursorRowMapper<ObservationPhoto> forPhotos(Cursor cursor) {
+        return new CursorRowMapper<>(cursor, PHOTO_READER);
+    }
+
+    public static CursorRowMapper<ObservationSound> forSounds(Cursor cursor) {
+        return new CursorRowMapper<>(cursor, SOUND_READER);
+    }
+
+    public Cursor getCursor() {
+        return mCursor;
+    }
+
+    /** Maps the cursor's current row into a new object */
+    public T map() {
+        return mReader.read(mRow, null);
+    }
+
+    /**
+     * Maps the cursor's current row into an existing object (only when the caller doesn't hold on to the object
+     * mapped from the previous row)
+     */
+    public T map(T reuse) {
+        return mReader.read(mRow, reuse);
+    }
+
+    /** Maps the row at the given position (moving the cursor there) */
+    public T mapAt(int position) {
+        mCursor.moveToPosition(position);
+        return map();
+    }
+
+    /** Maps all rows of the cursor (from the first one) */
+    public List<T> mapAll() {
+        List<T> results = new ArrayList<>(mCursor.getCount());
+        mCursor.moveToPosition(-1);
+        while (mCursor.moveToNext()) {
+            results.add(map());
+        }
+        return results;
+    }
+}
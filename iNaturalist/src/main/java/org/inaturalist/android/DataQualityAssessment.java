@@ -222,7 +222,7 @@ public class DataQualityAssessment extends AppCompatActivity implements DataQual
             boolean isSharedOnApp = intent.getBooleanExtra(INaturalistService.IS_SHARED_ON_APP, false);
             BetterJSONObject resultsObj;
             if (isSharedOnApp) {
-                resultsObj = (BetterJSONObject) mApp.getServiceResult(INaturalistService.DATA_QUALITY_METRICS_RESULT);
+                resultsObj = ServiceResultBus.getInstance().get(intent, INaturalistService.DATA_QUALITY_METRICS_RESULT, BetterJSONObject.class, this);
             } else {
                 resultsObj = (BetterJSONObject) intent.getSerializableExtra(INaturalistService.DATA_QUALITY_METRICS_RESULT);
             }
@@ -423,7 +423,7 @@ public class DataQualityAssessment extends AppCompatActivity implements DataQual
             boolean isSharedOnApp = intent.getBooleanExtra(INaturalistService.IS_SHARED_ON_APP, false);
             BetterJSONObject resultsObj;
             if (isSharedOnApp) {
-                resultsObj = (BetterJSONObject) mApp.getServiceResult(intent.getAction());
+                resultsObj = ServiceResultBus.getInstance().get(intent, intent.getAction(), BetterJSONObject.class, this);
             } else {
                 resultsObj = (BetterJSONObject) intent.getSerializableExtra(intent.getAction());
             }
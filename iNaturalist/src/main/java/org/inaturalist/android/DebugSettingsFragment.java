@@ -19,6 +19,7 @@ import android.os.Parcelable;
 import android.os.StrictMode;
 import androidx.core.content.ContextCompat;
 import androidx.core.content.FileProvider;
+import androidx.preference.CheckBoxPreference;
 import androidx.preference.Preference;
 import androidx.preference.PreferenceFragmentCompat;
 import androidx.preference.SeekBarPreference;
@@ -39,6 +40,9 @@ public class DebugSettingsFragment extends PreferenceFragmentCompat implements D
     private static final String TAG = "DebugSettingsFragment";
     private Preference mClearLogs;
     private Preference mSendLogs;
+    private Preference mNetworkStats;
+    private CheckBoxPreference mExplainQueryPlans;
+    private CheckBoxPreference mRecordBundleSizes;
     private SeekBarPreference mDayCount;
 
     private SharedPreferences mPreferences;
@@ -63,6 +67,9 @@ public class DebugSettingsFragment extends PreferenceFragmentCompat implements D
 
         mClearLogs = getPreferenceManager().findPreference("clear_logs");
         mSendLogs = getPreferenceManager().findPreference("send_logs");
+        mNetworkStats = getPreferenceManager().findPreference("network_stats");
+        mExplainQueryPlans = (CheckBoxPreference) getPreferenceManager().findPreference(SQLiteCursorFactory.PREF_EXPLAIN_QUERY_PLANS);
+        mRecordBundleSizes = (CheckBoxPreference) getPreferenceManager().findPreference(SavedStateStore.PREF_RECORD_BUNDLE_SIZES);
         mDayCount = (SeekBarPreference) getPreferenceManager().findPreference("day_count");
 
         mHelper = new ActivityHelper(getActivity());
@@ -123,6 +130,83 @@ public class DebugSettingsFragment extends PreferenceFragmentCompat implements D
                 return false;
             }
         });
+
+        mExplainQueryPlans.setChecked(mPreferences.getBoolean(SQLiteCursorFactory.PREF_EXPLAIN_QUERY_PLANS, false));
+        mExplainQueryPlans.setOnPreferenceChangeListener(new Preference.OnPreferenceChangeListener() {
+            @Override
+            public boolean onPreferenceChange(Preference preference, Object newValue) {
+                mPrefEditor.putBoolean(SQLiteCursorFactory.PREF_EXPLAIN_QUERY_PLANS, (Boolean) newValue);
+                mPrefEditor.apply();
+                ObservationProvider.getCursorFactory().setExplainQueryPlans((Boolean) newValue);
+                return true;
+            }
+        });
+
+        mRecordBundleSizes.setChecked(mPreferences.getBoolean(SavedStateStore.PREF_RECORD_BUNDLE_SIZES, false));
+        mRecordBundleSizes.setOnPreferenceChangeListener(new Preference.OnPreferenceChangeListener() {
+            @Override
+            public boolean onPreferenceChange(Preference preference, Object newValue) {
+                mPrefEditor.putBoolean(SavedStateStore.PREF_RECORD_BUNDLE_SIZES, (Boolean) newValue);
+                mPrefEditor.apply();
+                SavedStateStore.getInstance(getContext()).setRecordBundleSizes((Boolean) newValue);
+                return true;
+            }
+        });
+
+        refreshNetworkStats();
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        refreshNetworkStats();
+    }
+
+    private void refreshNetworkStats() {
+        if (mNetworkStats == null) return;
+
+        SharedHttpClient httpClient = SharedHttpClient.getInstance();
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format(Locale.ENGLISH, "HTTP: %d requests; connections: %d opened / %d reused; %d KB sent / %d KB received",
+                httpClient.getRequestCount(), httpClient.getConnectionsOpened(), httpClient.getConnectionsReused(),
+                httpClient.getBytesSent() / 1024, httpClient.getBytesReceived() / 1024));
+
+        summary.append("\n");
+        summary.append(ApiResponseCache.getInstance(getContext()).toString());
+        summary.append("\n");
+        summary.append(RequestCoalescer.getInstance().toString());
+        summary.append("\n");
+        summary.append(TileCache.getInstance(getContext()).toString());
+        summary.append("\n");
+        summary.append(UTFGridCache.getInstance().toString());
+        summary.append("\n");
+        summary.append(TaxonSuggestionsCache.getInstance(getContext()).toString());
+        summary.append("\n");
+        summary.append(ServiceResultBus.getInstance().toString());
+        summary.append("\n");
+        summary.append(SavedStateStore.getInstance(getContext()).toString());
+
+        for (ServiceScheduler.LaneStats laneStats : ServiceScheduler.getInstance().getStats()) {
+            summary.append("\n");
+            summary.append(laneStats.toString());
+        }
+
+        summary.append("\n");
+        summary.append(PhotoInfoIndex.getInstance(getContext()).toString());
+        summary.append("\n");
+        summary.append(ImageCache.getInstance(getContext()).toString());
+        summary.append("\n");
+        summary.append(BitmapPool.getInstance().toString());
+
+        mNetworkStats.setSummary(summary.toString());
+
+        SQLiteCursorFactory cursorFactory = ObservationProvider.getCursorFactory();
+        if (cursorFactory.isExplainingQueryPlans()) {
+            mExplainQueryPlans.setSummary(String.format(Locale.ENGLISH, "%d queries explained; %d table scans (see debug logs)",
+                    cursorFactory.getExplainedQueryCount(), cursorFactory.getTableScanQueries().size()));
+        } else {
+            mExplainQueryPlans.setSummary(R.string.explain_query_plans_description);
+        }
     }
 
 
@@ -0,0 +1,71 @@
+package org.inaturalist.android;
+
+import org.tinylog.Logger;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Keeps a directory of cached files under a size budget - shared by the file-based caches (taxon suggestions,
+ * saved state). Files are evicted by age first, and then by least recent use (their modification time, which the
+ * caches update whenever a file is read).
+ */
+public class DiskCacheTrimmer {
+    private static final String TAG = "DiskCacheTrimmer";
+
+    /** Returns how long a cached file is kept for */
+    public interface MaxAge {
+        long getMaxAge(File file);
+    }
+
+    /**
+     * Removes expired files, and then the least recently used ones - until the total size is under the budget
+     * @param maxSizeBytes the size budget of the directory
+     * @param evictToBytes when over budget, files are evicted until the total size is down to this
+     * @return how many files were removed
+     */
+    public static int trim(File directory, MaxAge maxAge, long maxSizeBytes, long evictToBytes) {
+        File[] files = directory.listFiles();
+        if (files == null) return 0;
+
+        long now = System.currentTimeMillis();
+        long total = 0;
+        int evicted = 0;
+        List<File> remaining = new ArrayList<>();
+        for (File file : files) {
+            if (now - file.lastModified() >= maxAge.getMaxAge(file)) {
+                if (file.delete()) evicted++;
+                continue;
+            }
+
+            total += file.length();
+            remaining.add(file);
+        }
+
+        if (total <= maxSizeBytes) return evicted;
+
+        final long[] lastModified = new long[remaining.size()];
+        for (int i = 0; i < lastModified.length; i++) {
+            lastModified[i] = remaining.get(i).lastModified();
+        }
+        Integer[] order = new Integer[remaining.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(lastModified[a], lastModified[b]));
+
+        for (Integer i : order) {
+            if (total <= evictToBytes) break;
+            File file = remaining.get(i);
+            long size = file.length();
+            if (file.delete()) {
+                total -= size;
+                evicted++;
+            }
+        }
+
+        Logger.tag(TAG).debug(String.format(Locale.ENGLISH, "Evicted files from %s, %d KB used", directory.getName(), total / 1024));
+        return evicted;
+    }
+}
@@ -52,7 +52,6 @@ import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.TileOverlayOptions;
 import com.google.android.gms.maps.model.TileProvider;
-import com.google.android.gms.maps.model.UrlTileProvider;
 import com.google.android.gms.maps.model.VisibleRegion;
 import com.google.maps.android.data.geojson.GeoJsonFeature;
 import com.google.maps.android.data.geojson.GeoJsonLayer;
@@ -67,9 +66,6 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.tinylog.Logger;
 
-import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -81,10 +77,6 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.UUID;
 
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
-
 public class ExploreActivity extends BaseFragmentActivity {
     private static final int NOT_LOADED = -1;
 
@@ -92,6 +84,9 @@ public class ExploreActivity extends BaseFragmentActivity {
     private static final int SEARCH_REQUEST_CODE = 0x101;
     private static final int FILTERS_REQUEST_CODE = 0x102;
 
+    // Don't prefetch UTFGrids when more tiles than this are visible (zoomed out too much)
+    private static final int MAX_PREFETCHED_GRIDS = 16;
+
     public static final String SEARCH_FILTERS = "search_filters";
     public static final String ACTIVE_TAB = "active_tab";
 
@@ -621,7 +616,7 @@ public class ExploreActivity extends BaseFragmentActivity {
             SerializableJSONArray resultsJSON;
 
             if (isSharedOnApp) {
-                resultsObject = (BetterJSONObject) mApp.getServiceResult(intent.getAction());
+                resultsObject = ServiceResultBus.getInstance().get(intent, intent.getAction(), BetterJSONObject.class, this);
             } else {
                 resultsObject = (BetterJSONObject) intent.getSerializableExtra(INaturalistService.RESULTS);
             }
@@ -689,7 +684,7 @@ public class ExploreActivity extends BaseFragmentActivity {
             SerializableJSONArray resultsJSON;
 
             if (isSharedOnApp) {
-                resultsObject = (BetterJSONObject) mApp.getServiceResult(intent.getAction());
+                resultsObject = ServiceResultBus.getInstance().get(intent, intent.getAction(), BetterJSONObject.class, this);
             } else {
                 resultsObject = (BetterJSONObject) intent.getSerializableExtra(INaturalistService.RESULTS);
             }
@@ -1029,7 +1024,7 @@ public class ExploreActivity extends BaseFragmentActivity {
                 JSONObject item = (JSONObject) view.getTag();
 
                 Intent intent = new Intent(ExploreActivity.this, ObservationViewerSlider.class);
-                mApp.setServiceResult("observation_results", new JSONArray(mResults[VIEW_TYPE_OBSERVATIONS]).toString());
+                ServiceResultBus.getInstance().put("observation_results", new ArrayList<>(mResults[VIEW_TYPE_OBSERVATIONS]));
                 intent.putExtra("observation_index", mResults[VIEW_TYPE_OBSERVATIONS].indexOf(item));
                 intent.putExtra("total_results", mTotalResults[VIEW_TYPE_OBSERVATIONS]);
                 intent.putExtra("results_page", mCurrentResultsPage[VIEW_TYPE_OBSERVATIONS]);
@@ -1194,40 +1189,26 @@ public class ExploreActivity extends BaseFragmentActivity {
 
         if (mObservationsMap != null) {
             // Set the tile overlay (for the taxon's observations map)
-            TileProvider gridTileProvider = new UrlTileProvider(256, 256) {
-                @Override
-                public URL getTileUrl(int x, int y, int zoom) {
-                    if ( zoom > 10 ) {
-                        return null;
-                    }
-                    String s = String.format(Locale.ENGLISH, INaturalistService.API_HOST + "/grid/%d/%d/%d.png?%s",
-                        zoom, x, y, mSearchFilters.toUrlQueryString());
-
-                    try {
-                        return new URL(s);
-                    } catch (MalformedURLException e) {
-                        throw new AssertionError(e);
-                    }
+            // (tiles are cached on disk - keyed by the current search filters)
+            TileProvider gridTileProvider = new CachingTileProvider(ExploreActivity.this, 256, (x, y, zoom) -> {
+                if ( zoom > 10 ) {
+                    return null;
                 }
-            };
-            TileProvider pointTileProvider = new UrlTileProvider(256, 256) {
-                @Override
-                public URL getTileUrl(int x, int y, int zoom) {
-                    if ( zoom <= 10 ) {
-                        return null;
-                    }
-                    String s = String.format(Locale.ENGLISH, INaturalistService.API_HOST + "/points/%d/%d/%d.png?%s",
-                        zoom, x, y, mSearchFilters.toUrlQueryString());
-
-                    try {
-                        return new URL(s);
-                    } catch (MalformedURLException e) {
-                        throw new AssertionError(e);
-                    }
+                return String.format(Locale.ENGLISH, INaturalistService.API_HOST + "/grid/%d/%d/%d.png?%s",
+                    zoom, x, y, mSearchFilters.toUrlQueryString());
+            });
+            TileProvider pointTileProvider = new CachingTileProvider(ExploreActivity.this, 256, (x, y, zoom) -> {
+                if ( zoom <= 10 ) {
+                    return null;
                 }
-            };
+                return String.format(Locale.ENGLISH, INaturalistService.API_HOST + "/points/%d/%d/%d.png?%s",
+                    zoom, x, y, mSearchFilters.toUrlQueryString());
+            });
             mObservationsMap.addTileOverlay(new TileOverlayOptions().transparency((float)0.25).tileProvider(gridTileProvider));
             mObservationsMap.addTileOverlay(new TileOverlayOptions().tileProvider(pointTileProvider));
+
+            // Search filters might have changed - get the UTFGrids for the new filters
+            prefetchVisibleGrids();
         }
     }
 
@@ -1396,6 +1377,13 @@ public class ExploreActivity extends BaseFragmentActivity {
                         mObservationsMap.setTrafficEnabled(false);
                         mObservationsMap.getUiSettings().setRotateGesturesEnabled(false);
 
+                        mObservationsMap.setOnCameraIdleListener(new GoogleMap.OnCameraIdleListener() {
+                            @Override
+                            public void onCameraIdle() {
+                                prefetchVisibleGrids();
+                            }
+                        });
+
                         mObservationsMap.setOnCameraMoveListener(new GoogleMap.OnCameraMoveListener() {
                             @Override
                             public void onCameraMove() {
@@ -1561,56 +1549,85 @@ public class ExploreActivity extends BaseFragmentActivity {
         }
     }
 
+    private String getGridUrl(int zoom, int x, int y) {
+        return String.format(Locale.ENGLISH, INaturalistService.API_HOST + "/points/%d/%d/%d.grid.json?%s", zoom, x, y, mSearchFilters.toUrlQueryString());
+    }
+
+    // Downloads (in the background) the UTFGrids of the currently visible map tiles, so tapping the map is instant
+    private void prefetchVisibleGrids() {
+        if ((mObservationsMap == null) || (mSearchFilters == null)) return;
+
+        int zoom = (int)Math.floor(mObservationsMap.getCameraPosition().zoom);
+        LatLngBounds bounds = mObservationsMap.getProjection().getVisibleRegion().latLngBounds;
+        UTFPosition northEast = new UTFPosition(zoom, bounds.northeast.latitude, bounds.northeast.longitude);
+        UTFPosition southWest = new UTFPosition(zoom, bounds.southwest.latitude, bounds.southwest.longitude);
+
+        int tileCount = 1 << zoom;
+        int columns = (northEast.getTilePositionX() - southWest.getTilePositionX() + tileCount) % tileCount + 1; // Might cross the antimeridian
+        int minY = Math.max(northEast.getTilePositionY(), 0);
+        int maxY = Math.min(southWest.getTilePositionY(), tileCount - 1);
+        if (columns * (maxY - minY + 1) > MAX_PREFETCHED_GRIDS) return;
+
+        UTFGridCache gridCache = UTFGridCache.getInstance();
+        for (int i = 0; i < columns; i++) {
+            int x = (southWest.getTilePositionX() + i) % tileCount;
+            for (int y = minY; y <= maxY; y++) {
+                gridCache.prefetch(getGridUrl(zoom, x, y), x, y, zoom);
+            }
+        }
+    }
+
     private void onObservationsMapClick(LatLng latLng) {
         final int zoom = (int)Math.floor(mObservationsMap.getCameraPosition().zoom);
 
         final UTFPosition position = new UTFPosition(zoom, latLng.latitude, latLng.longitude);
-
-        final String gridUrl = String.format(Locale.ENGLISH, INaturalistService.API_HOST + "/points/%d/%d/%d.grid.json?%s", zoom, position.getTilePositionX(), position.getTilePositionY(), mSearchFilters.toUrlQueryString());
+        final int x = position.getTilePositionX();
+        final int y = position.getTilePositionY();
+        final String gridUrl = getGridUrl(zoom, x, y);
+
+        // Usually the grid was already prefetched (for the visible tiles)
+        UTFGrid utfGrid = UTFGridCache.getInstance().get(gridUrl, x, y, zoom);
+        if (utfGrid != null) {
+            showUTFGridObservation(utfGrid, position);
+            return;
+        }
 
         // Download the UTFGrid JSON for that tile
         new Thread(new Runnable() {
             @Override
             public void run() {
-                OkHttpClient client = new OkHttpClient();
-                Request request = new Request.Builder()
-                        .url(gridUrl)
-                        .build();
+                UTFGrid utfGrid = UTFGridCache.getInstance().load(gridUrl, x, y, zoom);
+                if (utfGrid != null) showUTFGridObservation(utfGrid, position);
+            }
+        }).start();
+    }
 
-                try {
-                    Response response = client.newCall(request).execute();
-                    String responseBody = response.body().string();
-                    JSONObject utfGridJson = new JSONObject(responseBody);
-                    UTFGrid utfGrid = new UTFGrid(utfGridJson);
+    private void showUTFGridObservation(UTFGrid utfGrid, UTFPosition position) {
+        JSONObject observation = utfGrid.getDataForPixel(position.getPixelPositionX(), position.getPixelPositionY());
 
-                    JSONObject observation = utfGrid.getDataForPixel(position.getPixelPositionX(), position.getPixelPositionY());
+        if (observation == null) return;
 
-                    if (observation != null) {
-                        // Found a matching observation
-                        Logger.tag(TAG).debug("UTFGrid Observation: " + observation.toString());
+        // Found a matching observation
+        Logger.tag(TAG).debug("UTFGrid Observation: " + observation.toString());
 
-                        Intent intent = new Intent(ExploreActivity.this, ObservationViewerSlider.class);
+        Intent intent = new Intent(ExploreActivity.this, ObservationViewerSlider.class);
 
-                        if (observation.has("captive")) observation.remove("captive"); // Since "captive" in the UTFGrid is a string instead of a boolean
-                        if (observation.has("private_location")) observation.remove("private_location"); // Since "private_location" in the UTFGrid is a weird format ("[object Object]") instead of an actual string
+        if (observation.has("captive")) observation.remove("captive"); // Since "captive" in the UTFGrid is a string instead of a boolean
+        if (observation.has("private_location")) observation.remove("private_location"); // Since "private_location" in the UTFGrid is a weird format ("[object Object]") instead of an actual string
 
-                        intent.putExtra("observation", observation.toString());
-                        intent.putExtra("read_only", true);
-                        intent.putExtra("reload", true);
-                        startActivityForResult(intent, VIEW_OBSERVATION_REQUEST_CODE);
+        intent.putExtra("observation", observation.toString());
+        intent.putExtra("read_only", true);
+        intent.putExtra("reload", true);
+        startActivityForResult(intent, VIEW_OBSERVATION_REQUEST_CODE);
 
-                        JSONObject eventParams = new JSONObject();
-                        eventParams.put(AnalyticsClient.EVENT_PARAM_VIA, AnalyticsClient.EVENT_VALUE_EXPLORE_MAP);
+        try {
+            JSONObject eventParams = new JSONObject();
+            eventParams.put(AnalyticsClient.EVENT_PARAM_VIA, AnalyticsClient.EVENT_VALUE_EXPLORE_MAP);
 
-                        AnalyticsClient.getInstance().logEvent(AnalyticsClient.EVENT_NAME_NAVIGATE_OBS_DETAILS, eventParams);
-                    }
-                } catch (IOException e) {
-                    Logger.tag(TAG).error(e);
-                } catch (JSONException e) {
-                    Logger.tag(TAG).error(e);
-                }
-            }
-        }).start();
+            AnalyticsClient.getInstance().logEvent(AnalyticsClient.EVENT_NAME_NAVIGATE_OBS_DETAILS, eventParams);
+        } catch (JSONException e) {
+            Logger.tag(TAG).error(e);
+        }
     }
 
     private void moveMapAccordingToSearchFilters() {
@@ -1641,7 +1658,7 @@ public class ExploreActivity extends BaseFragmentActivity {
 	protected void onActivityResult(int requestCode, int resultCode, Intent data) {
 		super.onActivityResult(requestCode, resultCode, data);
 		if (requestCode == VIEW_OBSERVATION_REQUEST_CODE) {
-            mApp.setServiceResult("observation_results", null);
+            ServiceResultBus.getInstance().release("observation_results");
             if (resultCode == ObservationViewerFragment.RESULT_FLAGGED_AS_CAPTIVE) {
 				return;
 			}
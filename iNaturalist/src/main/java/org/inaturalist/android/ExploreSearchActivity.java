@@ -630,7 +630,7 @@ public class ExploreSearchActivity extends AppCompatActivity {
             SerializableJSONArray resultsJSON;
 
             if (isSharedOnApp) {
-                resultsObject = (BetterJSONObject) mApp.getServiceResult(intent.getAction());
+                resultsObject = ServiceResultBus.getInstance().get(intent, intent.getAction(), BetterJSONObject.class, this);
             } else {
                 resultsObject = (BetterJSONObject) intent.getSerializableExtra(INaturalistService.RESULTS);
             }
@@ -344,7 +344,7 @@ public class FileUtils {
             OutputStream out = new FileOutputStream(dst);
             try {
                 // Transfer bytes from in to out
-                byte[] buf = new byte[1024];
+                byte[] buf = new byte[64 * 1024];
                 int len;
                 while ((len = in.read(buf)) > 0) {
                     out.write(buf, 0, len);
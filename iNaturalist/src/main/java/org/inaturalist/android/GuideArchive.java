@@ -0,0 +1,250 @@
+package org.inaturalist.android;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import org.tinylog.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Read-only access to a downloaded offline guide archive (NGZ file - a zip file) without extracting it - entries
+ * are located through the zip's central directory and read on demand.
+ */
+public class GuideArchive {
+    private static final String TAG = "GuideArchive";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Open archives, by path (so all GuideXML instances of the same guide share the same archive)
+    private static final Map<String, GuideArchive> sArchives = new HashMap<>();
+
+    private final File mFile;
+    private final long mLastModified;
+    private final ZipFile mZipFile;
+
+    private GuideArchive(File file) throws IOException {
+        mFile = file;
+        mLastModified = file.lastModified();
+        mZipFile = new ZipFile(file);
+    }
+
+    /**
+     * Opens an archive (or returns the already-opened instance of it)
+     * @param file the archive (NGZ) file
+     * @return the archive, or null if it doesn't exist / couldn't be opened
+     */
+    public static synchronized GuideArchive open(File file) {
+        GuideArchive archive = sArchives.get(file.getPath());
+        if ((archive != null) && (archive.mLastModified == file.lastModified())) {
+            return archive;
+        }
+
+        if (archive != null) {
+            // Archive was replaced since it was opened
+            archive.closeZipFile();
+            sArchives.remove(file.getPath());
+        }
+
+        if (!file.exists()) return null;
+
+        try {
+            archive = new GuideArchive(file);
+        } catch (IOException e) {
+            Logger.tag(TAG).error("Couldn't open guide archive: " + file);
+            Logger.tag(TAG).error(e);
+            return null;
+        }
+
+        sArchives.put(file.getPath(), archive);
+        return archive;
+    }
+
+    /**
+     * Closes an opened archive (e.g. before deleting it)
+     * @param file the archive (NGZ) file
+     */
+    public static synchronized void close(File file) {
+        GuideArchive archive = sArchives.remove(file.getPath());
+        if (archive != null) {
+            archive.closeZipFile();
+        }
+    }
+
+    private void closeZipFile() {
+        try {
+            mZipFile.close();
+        } catch (IOException e) {
+            Logger.tag(TAG).error(e);
+        }
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    /** Returns the number of entries in the archive */
+    public int size() {
+        return mZipFile.size();
+    }
+
+    public boolean hasEntry(String name) {
+        return getEntry(name) != null;
+    }
+
+    private ZipEntry getEntry(String name) {
+        if (name == null) return null;
+        while (name.startsWith("/")) name = name.substring(1);
+        return mZipFile.getEntry(name);
+    }
+
+    /**
+     * Returns the name of the guide XML entry
+     * @param preferredName the expected name of the guide XML (e.g. "1234.xml")
+     * @return the preferred name if found, otherwise the first top-level XML entry (null if there isn't any)
+     */
+    public String findXmlEntry(String preferredName) {
+        if (hasEntry(preferredName)) return preferredName;
+
+        Enumeration<? extends ZipEntry> entries = mZipFile.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            String name = entry.getName();
+            if (!entry.isDirectory() && !name.contains("/") && name.toLowerCase().endsWith(".xml")) {
+                return name;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Opens an entry for reading (the caller must close the returned stream)
+     * @return the entry stream, or null if there's no such entry
+     */
+    public InputStream openEntry(String name) throws IOException {
+        ZipEntry entry = getEntry(name);
+        if (entry == null) return null;
+        return new BufferedInputStream(mZipFile.getInputStream(entry), BUFFER_SIZE);
+    }
+
+    /**
+     * Decodes an image entry
+     * @return the decoded bitmap, or null if there's no such entry (or it couldn't be decoded)
+     */
+    public Bitmap decodeBitmap(String name) {
+        InputStream is = null;
+        try {
+            is = openEntry(name);
+            if (is == null) return null;
+            return BitmapFactory.decodeStream(is);
+        } catch (IOException e) {
+            Logger.tag(TAG).error(e);
+            return null;
+        } finally {
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Extracts a single entry into a file
+     * @return true/false status
+     */
+    public boolean extractEntry(String name, File destination) {
+        ZipEntry entry = getEntry(name);
+        if (entry == null) return false;
+
+        destination.getParentFile().mkdirs();
+        File tempFile = new File(destination.getPath() + ".tmp");
+        InputStream is = null;
+        OutputStream os = null;
+
+        try {
+            is = mZipFile.getInputStream(entry);
+            os = new FileOutputStream(tempFile);
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = is.read(buffer)) != -1) {
+                os.write(buffer, 0, count);
+            }
+
+            os.close();
+            os = null;
+
+            // Only visible once complete (so a half-extracted file is never used)
+            if (!tempFile.renameTo(destination)) {
+                tempFile.delete();
+                return false;
+            }
+
+            return true;
+
+        } catch (IOException e) {
+            Logger.tag(TAG).error(e);
+            tempFile.delete();
+            return false;
+        } finally {
+            try {
+                if (is != null) is.close();
+                if (os != null) os.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    /**
+     * Extracts all entries into a directory
+     * @return true/false status
+     */
+    public boolean extractAll(File directory) {
+        String basePath;
+        try {
+            basePath = directory.getCanonicalPath() + File.separator;
+        } catch (IOException e) {
+            Logger.tag(TAG).error(e);
+            return false;
+        }
+
+        Enumeration<? extends ZipEntry> entries = mZipFile.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            File destination = new File(directory, entry.getName());
+
+            try {
+                if (!destination.getCanonicalPath().startsWith(basePath)) {
+                    // Entry points outside of the guide directory - skip it
+                    Logger.tag(TAG).error("Skipping invalid guide archive entry: " + entry.getName());
+                    continue;
+                }
+            } catch (IOException e) {
+                Logger.tag(TAG).error(e);
+                return false;
+            }
+
+            if (entry.isDirectory()) {
+                destination.mkdirs();
+                continue;
+            }
+
+            if (!extractEntry(entry.getName(), destination)) return false;
+        }
+
+        return true;
+    }
+}
@@ -15,7 +15,6 @@ import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.content.res.Configuration;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Color;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
@@ -140,28 +139,6 @@ public class GuideDetails extends AppCompatActivity implements INaturalistApp.On
             return mItems.get(index);
         }
 
-        // Gets the photo place (local/remote) - tries a specific size, and if not found,
-        // tries the next best size until something is found
-        private String getPhotoLocation(GuideTaxonPhotoXML photo, GuideTaxonPhotoXML.PhotoType photoType) {
-            final GuideTaxonPhotoXML.PhotoSize[] DEFAULT_SIZES = {
-                    GuideTaxonPhotoXML.PhotoSize.THUMBNAIL,
-                    GuideTaxonPhotoXML.PhotoSize.SMALL,
-                    GuideTaxonPhotoXML.PhotoSize.MEDIUM,
-                    GuideTaxonPhotoXML.PhotoSize.LARGE
-            };
-
-            String photoLocation = null;
-            for (GuideTaxonPhotoXML.PhotoSize size : DEFAULT_SIZES) {
-                photoLocation = photo.getPhotoLocation(photoType, size);
-
-                // See if we found a photo for current size - if not, try the next best size
-                if ((photoLocation != null) && (photoLocation.length() > 0)) break;
-            }
-
-            return photoLocation;
-        }
-
-
 		@Override
         public View getView(int position, View convertView, ViewGroup parent) {
             View view;
@@ -187,21 +164,20 @@ public class GuideDetails extends AppCompatActivity implements INaturalistApp.On
                     mGuideTaxaGrid.getColumnWidth()
             ));
 
-            List<GuideTaxonPhotoXML> photos = item.getPhotos();
-            if (photos.size() == 0) {
+            if (!item.hasPhotos()) {
                 // No photos - use default image
                 taxonPic.setImageResource(R.drawable.iconic_taxon_unknown);
             } else {
 
                 if (mGuideXml.isGuideDownloaded()) {
                     // Use offline photo
-                    String photoPath = getPhotoLocation(photos.get(0), GuideTaxonPhotoXML.PhotoType.LOCAL);
-                    Bitmap bitmap = BitmapFactory.decodeFile(photoPath);
+                    String photoPath = item.getFirstPhotoLocation(GuideTaxonPhotoXML.PhotoType.LOCAL);
+                    Bitmap bitmap = mGuideXml.decodeOfflinePhoto(photoPath);
                     taxonPic.setImageBitmap(bitmap);
 
                 } else {
                     // Use online photo
-                    String url = getPhotoLocation(photos.get(0), GuideTaxonPhotoXML.PhotoType.REMOTE);
+                    String url = item.getFirstPhotoLocation(GuideTaxonPhotoXML.PhotoType.REMOTE);
                     UrlImageViewHelper.setUrlDrawable(
                             taxonPic,
                             url,
@@ -503,7 +479,7 @@ public class GuideDetails extends AppCompatActivity implements INaturalistApp.On
                     mDownloadingSubtitle.setText(R.string.extracting);
                 }
             });
-            boolean status = mGuideXml.extractOfflineGuide(downloadedFilename);
+            boolean status = mGuideXml.installOfflineGuide(downloadedFilename, false);
 
             if (!status) {
                 showDownloadGuideError();
@@ -654,9 +630,7 @@ public class GuideDetails extends AppCompatActivity implements INaturalistApp.On
                     predicateName = values[0];
                     value = values[1];
                 }
-                final List<GuideTaxonPhotoXML> photos =  mGuideXml.getTagRepresentativePhoto(predicateName, value);
-
-                if (photos == null) {
+                if (!mGuideXml.hasTagRepresentativePhoto(predicateName, value)) {
                     // No representative photo for the tag value
                     photoIcon.setVisibility(View.INVISIBLE);
                 } else {
@@ -0,0 +1,602 @@
+package org.inaturalist.android;
+
+import android.util.Pair;
+
+import org.tinylog.Logger;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Search index of a guide XML file: tag -> taxa bitsets and text -> taxa postings (taxa are identified by their
+ * position in the guide), plus the guide metadata and the fields needed for listing its taxa.
+ *
+ * The index is built once from the parsed guide XML and saved next to it, so later opens of the same guide don't
+ * need to parse the XML at all (unless a specific taxon's details are needed).
+ */
+public class GuideIndex {
+    private static final String TAG = "GuideIndex";
+
+    private static final int MAGIC = 0x47494458; // "GIDX"
+    private static final int VERSION = 1;
+
+    private static final String INDEX_FILE_SUFFIX = ".index";
+
+    // Photo locations saved for the first photo of each taxon (in order of preference)
+    static final GuideTaxonPhotoXML.PhotoSize[] PHOTO_SIZES = {
+            GuideTaxonPhotoXML.PhotoSize.THUMBNAIL,
+            GuideTaxonPhotoXML.PhotoSize.SMALL,
+            GuideTaxonPhotoXML.PhotoSize.MEDIUM,
+            GuideTaxonPhotoXML.PhotoSize.LARGE
+    };
+    private static final String[] PHOTO_SIZE_NAMES = { "thumb", "small", "medium", "large" };
+    private static final String[] PHOTO_TYPE_NAMES = { "local", "remote" };
+
+    // Guide metadata - XPath expression -> value
+    private final Map<String, String> mMetadata = new HashMap<>();
+
+    // Per taxon (by position)
+    private int mTaxonCount;
+    private String[] mTaxonIds;
+    private String[] mNames;
+    private String[] mDisplayNames;
+    // [taxon][type * PHOTO_SIZES.length + size] - relative/remote locations of the taxon's first photo (null if none)
+    private String[][] mFirstPhotoLocations;
+
+    // Predicate name -> tag names (as shown in the guide's side menu)
+    private final Map<String, Set<String>> mTags = new LinkedHashMap<>();
+    // Tag name -> number of taxa tags with that name
+    private final Map<String, Integer> mTagCounts = new HashMap<>();
+    // Tag name -> taxa having that tag (as a direct child - used for recommending predicates)
+    private final Map<String, BitSet> mTaxonTags = new HashMap<>();
+    // Tag name -> taxa having that tag anywhere (including in their photos - used for filtering)
+    private final Map<String, BitSet> mDescendantTags = new HashMap<>();
+    // Lower-cased text -> taxa having a field with that text
+    private final Map<String, BitSet> mTextPostings = new HashMap<>();
+    private String[] mTexts;
+
+    // (Predicate name, tag value) combos that have representative photos
+    private final Set<Pair<String, String>> mTagPhotoKeys = new HashSet<>();
+
+    // Last text search (typing more characters into the search box only needs to go over the previous matches)
+    private String mLastSearchText;
+    private int[] mLastTextMatches;
+
+    private GuideIndex() {
+    }
+
+    public static File getIndexFile(String xmlPath) {
+        return new File(xmlPath + INDEX_FILE_SUFFIX);
+    }
+
+    /**
+     * Builds the index from a parsed guide XML
+     * @param guide the guide (with its XML parsed)
+     * @param metadataXPaths the guide metadata values to save
+     */
+    static GuideIndex build(GuideXML guide, String[] metadataXPaths) {
+        GuideIndex index = new GuideIndex();
+
+        for (String xpath : metadataXPaths) {
+            index.mMetadata.put(xpath, guide.getValueByXPath(xpath));
+        }
+
+        List<Node> taxa = guide.getNodesByXPath("//GuideTaxon");
+        if (taxa == null) taxa = new ArrayList<>();
+
+        int count = taxa.size();
+        index.mTaxonCount = count;
+        index.mTaxonIds = new String[count];
+        index.mNames = new String[count];
+        index.mDisplayNames = new String[count];
+        index.mFirstPhotoLocations = new String[count][];
+
+        for (int i = 0; i < count; i++) {
+            Node taxon = taxa.get(i);
+
+            index.mTaxonIds[i] = getFirstDescendantText(taxon, "taxonID");
+            index.mNames[i] = getFirstDescendantText(taxon, "name");
+            index.mDisplayNames[i] = getFirstDescendantText(taxon, "displayName");
+
+            Node photo = getFirstDescendant(taxon, "GuidePhoto");
+            if (photo != null) {
+                index.mFirstPhotoLocations[i] = getPhotoLocations(photo);
+            }
+
+            NodeList children = taxon.getChildNodes();
+            for (int j = 0; j < children.getLength(); j++) {
+                Node child = children.item(j);
+                if (child.getNodeType() != Node.ELEMENT_NODE) continue;
+
+                // Index the text of all fields (same as searching "GuideTaxon/*/text()")
+                NodeList texts = child.getChildNodes();
+                for (int k = 0; k < texts.getLength(); k++) {
+                    Node text = texts.item(k);
+                    if ((text.getNodeType() != Node.TEXT_NODE) && (text.getNodeType() != Node.CDATA_SECTION_NODE)) continue;
+                    getOrCreate(index.mTextPostings, normalizeText(text.getNodeValue())).set(i);
+                }
+
+                if (child.getNodeName().equals("tag")) {
+                    index.addTaxonTag(i, child);
+                }
+            }
+
+            index.addDescendantTags(i, taxon);
+        }
+
+        index.mTexts = index.mTextPostings.keySet().toArray(new String[0]);
+
+        // Tag values that have representative photos
+        List<Node> photoTags = guide.getNodesByXPath("//GuideTaxon/GuidePhoto/tag");
+        if (photoTags != null) {
+            for (Node node : photoTags) {
+                String predicateName = getAttribute(node, "predicate");
+                if ((predicateName == null) || (predicateName.length() == 0)) {
+                    predicateName = GuideXML.PREDICATE_TAGS;
+                }
+                index.mTagPhotoKeys.add(new Pair<>(predicateName, getAttribute(node, "value")));
+            }
+        }
+
+        return index;
+    }
+
+    private void addTaxonTag(int taxon, Node node) {
+        String predicateName = getAttribute(node, "predicate");
+        String tagName = node.getTextContent();
+        if ((predicateName == null) || (predicateName.equalsIgnoreCase(GuideXML.PREDICATE_TAGS)) || (predicateName.length() == 0)) {
+            predicateName = GuideXML.PREDICATE_TAGS;
+        }
+
+        Set<String> tags = mTags.get(predicateName);
+        if (tags == null) {
+            tags = new LinkedHashSet<>();
+            mTags.put(predicateName, tags);
+        }
+        tags.add(tagName);
+
+        Integer tagCount = mTagCounts.get(tagName);
+        mTagCounts.put(tagName, tagCount == null ? 1 : tagCount + 1);
+
+        getOrCreate(mTaxonTags, tagName).set(taxon);
+    }
+
+    private void addDescendantTags(int taxon, Node node) {
+        NodeList children = node.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node child = children.item(i);
+            if (child.getNodeType() != Node.ELEMENT_NODE) continue;
+
+            if (child.getNodeName().equals("tag")) {
+                // Same as "tag[text() = ...]" - any of the tag's text nodes
+                NodeList texts = child.getChildNodes();
+                for (int j = 0; j < texts.getLength(); j++) {
+                    Node text = texts.item(j);
+                    if ((text.getNodeType() == Node.TEXT_NODE) || (text.getNodeType() == Node.CDATA_SECTION_NODE)) {
+                        getOrCreate(mDescendantTags, text.getNodeValue()).set(taxon);
+                    }
+                }
+            }
+
+            addDescendantTags(taxon, child);
+        }
+    }
+
+    // Returns the locations of a photo, by type (local/remote) and size
+    private static String[] getPhotoLocations(Node photo) {
+        String[] locations = new String[PHOTO_TYPE_NAMES.length * PHOTO_SIZE_NAMES.length];
+        List<Node> hrefs = new ArrayList<>();
+        collectDescendants(photo, "href", hrefs);
+
+        for (int type = 0; type < PHOTO_TYPE_NAMES.length; type++) {
+            for (int size = 0; size < PHOTO_SIZE_NAMES.length; size++) {
+                for (Node href : hrefs) {
+                    if (PHOTO_TYPE_NAMES[type].equals(getAttribute(href, "type")) && PHOTO_SIZE_NAMES[size].equals(getAttribute(href, "size"))) {
+                        locations[type * PHOTO_SIZE_NAMES.length + size] = href.getTextContent();
+                        break;
+                    }
+                }
+            }
+        }
+
+        return locations;
+    }
+
+    // Same as what "translate(., 'ABC...', 'abc...')" does
+    private static String normalizeText(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if ((chars[i] >= 'A') && (chars[i] <= 'Z')) chars[i] = (char) (chars[i] + ('a' - 'A'));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Returns the taxa that match the filter (text + all tags)
+     */
+    public synchronized BitSet filter(GuideTaxonFilter filter) {
+        BitSet results = new BitSet(mTaxonCount);
+        results.set(0, mTaxonCount);
+
+        String searchText = filter.getSearchText();
+        if ((searchText != null) && (searchText.length() > 0)) {
+            results.and(searchText(searchText.toLowerCase()));
+        }
+
+        for (String tag : filter.getAllTags()) {
+            BitSet taxa = mDescendantTags.get(tag);
+            if (taxa == null) {
+                results.clear();
+                break;
+            }
+            results.and(taxa);
+        }
+
+        return results;
+    }
+
+    private BitSet searchText(String searchText) {
+        // When the search text is the previous one + more characters, only its previous matches can match now
+        boolean refine = (mLastSearchText != null) && searchText.contains(mLastSearchText);
+        int candidateCount = refine ? mLastTextMatches.length : mTexts.length;
+
+        int[] matches = new int[candidateCount];
+        int matchCount = 0;
+        BitSet results = new BitSet(mTaxonCount);
+
+        for (int i = 0; i < candidateCount; i++) {
+            int textIndex = refine ? mLastTextMatches[i] : i;
+            if (mTexts[textIndex].contains(searchText)) {
+                matches[matchCount++] = textIndex;
+                results.or(mTextPostings.get(mTexts[textIndex]));
+            }
+        }
+
+        mLastSearchText = searchText;
+        mLastTextMatches = Arrays.copyOf(matches, matchCount);
+
+        return results;
+    }
+
+    /**
+     * Returns the number of taxa having each tag (only for tags that at least one of the given taxa has)
+     */
+    public Map<String, Integer> getTagCardinalities(BitSet taxa) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Map.Entry<String, BitSet> entry : mTaxonTags.entrySet()) {
+            BitSet intersection = (BitSet) entry.getValue().clone();
+            intersection.and(taxa);
+            int count = intersection.cardinality();
+            if (count > 0) counts.put(entry.getKey(), count);
+        }
+        return counts;
+    }
+
+    public int getTaxonCount() {
+        return mTaxonCount;
+    }
+
+    /** Returns the position of the first taxon whose ID contains the given ID (or -1 if not found) */
+    public int findTaxon(String taxonId) {
+        for (int i = 0; i < mTaxonCount; i++) {
+            if (mTaxonIds[i].contains(taxonId)) return i;
+        }
+        return -1;
+    }
+
+    public String getTaxonId(int taxon) {
+        return mTaxonIds[taxon];
+    }
+
+    public String getName(int taxon) {
+        return mNames[taxon];
+    }
+
+    public String getDisplayName(int taxon) {
+        return mDisplayNames[taxon];
+    }
+
+    public boolean hasPhotos(int taxon) {
+        return mFirstPhotoLocations[taxon] != null;
+    }
+
+    /** Returns the location of the first photo of the taxon (relative path for local photos), null if not available */
+    public String getFirstPhotoLocation(int taxon, GuideTaxonPhotoXML.PhotoType photoType, GuideTaxonPhotoXML.PhotoSize photoSize) {
+        String[] locations = mFirstPhotoLocations[taxon];
+        if (locations == null) return null;
+
+        int type = photoType == GuideTaxonPhotoXML.PhotoType.LOCAL ? 0 : 1;
+        return locations[type * PHOTO_SIZE_NAMES.length + photoSize.ordinal()];
+    }
+
+    public String getMetadata(String xpath) {
+        return mMetadata.get(xpath);
+    }
+
+    public Map<String, Set<String>> getTags() {
+        return mTags;
+    }
+
+    public Map<String, Integer> getTagCounts() {
+        return mTagCounts;
+    }
+
+    public boolean hasTagPhotos(String predicateName, String value) {
+        return mTagPhotoKeys.contains(new Pair<>(predicateName, value));
+    }
+
+    /**
+     * Loads a previously-saved index of a guide XML file
+     * @return the index, or null if there is no saved index (or if it's older than the XML file)
+     */
+    public static GuideIndex load(String xmlPath) {
+        File xmlFile = new File(xmlPath);
+        File indexFile = getIndexFile(xmlPath);
+        if (!xmlFile.exists() || !indexFile.exists()) return null;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), 64 * 1024));
+
+            if ((in.readInt() != MAGIC) || (in.readInt() != VERSION)) return null;
+            if ((in.readLong() != xmlFile.length()) || (in.readLong() != xmlFile.lastModified())) {
+                // Guide XML has changed since the index was built
+                return null;
+            }
+
+            GuideIndex index = new GuideIndex();
+
+            int metadataCount = in.readInt();
+            for (int i = 0; i < metadataCount; i++) {
+                index.mMetadata.put(readString(in), readString(in));
+            }
+
+            int count = in.readInt();
+            index.mTaxonCount = count;
+            index.mTaxonIds = new String[count];
+            index.mNames = new String[count];
+            index.mDisplayNames = new String[count];
+            index.mFirstPhotoLocations = new String[count][];
+            for (int i = 0; i < count; i++) {
+                index.mTaxonIds[i] = readString(in);
+                index.mNames[i] = readString(in);
+                index.mDisplayNames[i] = readString(in);
+                if (in.readBoolean()) {
+                    String[] locations = new String[PHOTO_TYPE_NAMES.length * PHOTO_SIZE_NAMES.length];
+                    for (int j = 0; j < locations.length; j++) {
+                        locations[j] = readString(in);
+                    }
+                    index.mFirstPhotoLocations[i] = locations;
+                }
+            }
+
+            int predicateCount = in.readInt();
+            for (int i = 0; i < predicateCount; i++) {
+                String predicateName = readString(in);
+                int tagCount = in.readInt();
+                Set<String> tags = new LinkedHashSet<>();
+                for (int j = 0; j < tagCount; j++) {
+                    tags.add(readString(in));
+                }
+                index.mTags.put(predicateName, tags);
+            }
+
+            int tagCountsCount = in.readInt();
+            for (int i = 0; i < tagCountsCount; i++) {
+                index.mTagCounts.put(readString(in), in.readInt());
+            }
+
+            readBitSets(in, index.mTaxonTags);
+            readBitSets(in, index.mDescendantTags);
+            readBitSets(in, index.mTextPostings);
+            index.mTexts = index.mTextPostings.keySet().toArray(new String[0]);
+
+            int tagPhotoCount = in.readInt();
+            for (int i = 0; i < tagPhotoCount; i++) {
+                index.mTagPhotoKeys.add(new Pair<>(readString(in), readString(in)));
+            }
+
+            return index;
+
+        } catch (IOException e) {
+            Logger.tag(TAG).error("Couldn't load guide index: " + indexFile);
+            Logger.tag(TAG).error(e);
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    /** Saves the index next to the guide XML file */
+    public synchronized void save(String xmlPath) {
+        File xmlFile = new File(xmlPath);
+        File indexFile = getIndexFile(xmlPath);
+        File tempFile = new File(indexFile.getPath() + ".tmp");
+
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024));
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(xmlFile.length());
+            out.writeLong(xmlFile.lastModified());
+
+            out.writeInt(mMetadata.size());
+            for (Map.Entry<String, String> entry : mMetadata.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+
+            out.writeInt(mTaxonCount);
+            for (int i = 0; i < mTaxonCount; i++) {
+                writeString(out, mTaxonIds[i]);
+                writeString(out, mNames[i]);
+                writeString(out, mDisplayNames[i]);
+                out.writeBoolean(mFirstPhotoLocations[i] != null);
+                if (mFirstPhotoLocations[i] != null) {
+                    for (String location : mFirstPhotoLocations[i]) {
+                        writeString(out, location);
+                    }
+                }
+            }
+
+            out.writeInt(mTags.size());
+            for (Map.Entry<String, Set<String>> entry : mTags.entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (String tag : entry.getValue()) {
+                    writeString(out, tag);
+                }
+            }
+
+            out.writeInt(mTagCounts.size());
+            for (Map.Entry<String, Integer> entry : mTagCounts.entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+
+            writeBitSets(out, mTaxonTags);
+            writeBitSets(out, mDescendantTags);
+            writeBitSets(out, mTextPostings);
+
+            out.writeInt(mTagPhotoKeys.size());
+            for (Pair<String, String> key : mTagPhotoKeys) {
+                writeString(out, key.first);
+                writeString(out, key.second);
+            }
+
+            out.close();
+            out = null;
+
+            if (!tempFile.renameTo(indexFile)) {
+                Logger.tag(TAG).error("Couldn't save guide index: " + indexFile);
+                tempFile.delete();
+            }
+
+        } catch (IOException e) {
+            Logger.tag(TAG).error(e);
+            tempFile.delete();
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    private static void writeBitSets(DataOutputStream out, Map<String, BitSet> bitSets) throws IOException {
+        out.writeInt(bitSets.size());
+        for (Map.Entry<String, BitSet> entry : bitSets.entrySet()) {
+            writeString(out, entry.getKey());
+            long[] words = entry.getValue().toLongArray();
+            out.writeInt(words.length);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        }
+    }
+
+    private static void readBitSets(DataInputStream in, Map<String, BitSet> bitSets) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String key = readString(in);
+            long[] words = new long[in.readInt()];
+            for (int j = 0; j < words.length; j++) {
+                words[j] = in.readLong();
+            }
+            bitSets.put(key, BitSet.valueOf(words));
+        }
+    }
+
+    // Strings are saved as length-prefixed UTF-8 (writeUTF is limited to 64KB, which a guide description might exceed)
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static BitSet getOrCreate(Map<String, BitSet> map, String key) {
+        BitSet bitSet = map.get(key);
+        if (bitSet == null) {
+            bitSet = new BitSet();
+            map.put(key, bitSet);
+        }
+        return bitSet;
+    }
+
+    // Same as the string value of "descendant::name" (empty string if not found)
+    private static String getFirstDescendantText(Node node, String name) {
+        Node descendant = getFirstDescendant(node, name);
+        return descendant != null ? descendant.getTextContent() : "";
+    }
+
+    private static Node getFirstDescendant(Node node, String name) {
+        NodeList children = node.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node child = children.item(i);
+            if (child.getNodeType() != Node.ELEMENT_NODE) continue;
+            if (child.getNodeName().equals(name)) return child;
+
+            Node descendant = getFirstDescendant(child, name);
+            if (descendant != null) return descendant;
+        }
+        return null;
+    }
+
+    private static void collectDescendants(Node node, String name, List<Node> results) {
+        NodeList children = node.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node child = children.item(i);
+            if (child.getNodeType() != Node.ELEMENT_NODE) continue;
+            if (child.getNodeName().equals(name)) results.add(child);
+            collectDescendants(child, name, results);
+        }
+    }
+
+    private static String getAttribute(Node node, String name) {
+        NamedNodeMap attributes = node.getAttributes();
+        if (attributes == null) return null;
+        Node attribute = attributes.getNamedItem(name);
+        return attribute != null ? attribute.getNodeValue() : null;
+    }
+}
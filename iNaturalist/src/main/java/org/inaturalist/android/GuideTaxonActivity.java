@@ -23,7 +23,6 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Bundle;
 import androidx.core.content.ContextCompat;
@@ -200,6 +199,7 @@ public class GuideTaxonActivity extends AppCompatActivity {
                 public void onItemClick(AdapterView parent, View view, int position, long id) {
                     Gallery g = (Gallery) parent;
                     Uri uri = ((GalleryPhotoAdapter) g.getAdapter()).getItemUri(position);
+                    if (uri == null) return;
                     Intent intent;
 
                     if (mGuideXml.isGuideDownloaded()) {
@@ -437,7 +437,9 @@ public class GuideTaxonActivity extends AppCompatActivity {
              String photoPath = this.getPhotoLocation(photo, photoType);
 
              if (isOffline) {
-                 return Uri.fromFile(new File(photoPath));
+                 // Extract the photo from the guide archive, if needed
+                 File photoFile = photo.getGuide().getOfflinePhotoFile(photoPath);
+                 return photoFile != null ? Uri.fromFile(photoFile) : null;
              } else {
                  return Uri.parse(photoPath);
              }
@@ -492,7 +494,7 @@ public class GuideTaxonActivity extends AppCompatActivity {
              String photoPath = this.getPhotoLocation(photo, photoType);
 
              if (isOffline) {
-                 Bitmap bitmap = BitmapFactory.decodeFile(photoPath);
+                 Bitmap bitmap = photo.getGuide().decodeOfflinePhoto(photoPath);
                  imageView.setImageBitmap(bitmap);
              } else {
                  UrlImageViewHelper.setUrlDrawable(imageView, photoPath);
@@ -2,7 +2,6 @@ package org.inaturalist.android;
 
 import org.w3c.dom.Node;
 
-import java.io.File;
 import java.io.Serializable;
 
 /**
@@ -99,14 +98,13 @@ public class GuideTaxonPhotoXML extends BaseGuideXMLParser implements Serializab
                 typeString, sizeString));
 
         if ((photoType == PhotoType.LOCAL) && (path != null)) {
-            // Path is local - Need to convert it from a relative path (e.g. "files/guide_photo-1234.jpg") to a full fledged path
-            path = mGuide.getOfflineGuidePath() + "/" + path;
-
-            // Make sure file exists
-            File photoFile = new File(path);
-            if (!photoFile.exists()) {
+            // Make sure file exists (either extracted or inside the guide archive)
+            if (!mGuide.hasOfflineFile(path)) {
                 return null;
             }
+
+            // Path is local - Need to convert it from a relative path (e.g. "files/guide_photo-1234.jpg") to a full fledged path
+            path = mGuide.getOfflineGuidePath() + "/" + path;
         }
 
         return path;
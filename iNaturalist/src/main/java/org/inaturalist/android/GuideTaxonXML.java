@@ -11,15 +11,39 @@ import java.util.List;
 public class GuideTaxonXML extends BaseGuideXMLParser {
 
     private GuideXML mGuide;
+    private int mPosition;
 
     /**
-     * Initialize the GuideTaxonXML class with the parent guide and root XML node for it
+     * Initialize the GuideTaxonXML class with the parent guide and the position of the taxon in it
+     * (the taxon's XML node is only read when needed - e.g. for its sections)
      * @param guide
-     * @param root
+     * @param position
      */
-    public GuideTaxonXML(GuideXML guide, Node root) {
+    public GuideTaxonXML(GuideXML guide, int position) {
         mGuide = guide;
-        setRootNode(root);
+        mPosition = position;
+    }
+
+    /**
+     * Returns the root node (the GuideTaxon node)
+     * @return
+     */
+    @Override
+    protected Node getRootNode() {
+        Node root = super.getRootNode();
+        if (root == null) {
+            root = mGuide.getTaxonNode(mPosition);
+            setRootNode(root);
+        }
+        return root;
+    }
+
+    /**
+     * Returns the position of the taxon in the guide
+     * @return the taxon's position
+     */
+    public int getPosition() {
+        return mPosition;
     }
 
 
@@ -28,7 +52,7 @@ public class GuideTaxonXML extends BaseGuideXMLParser {
      * @return the taxon's name
      */
     public String getName() {
-        return getValueByXPath("descendant::name");
+        return mGuide.getIndex().getName(mPosition);
     }
 
     /**
@@ -36,7 +60,7 @@ public class GuideTaxonXML extends BaseGuideXMLParser {
      * @return the taxon's display name
      */
     public String getDisplayName() {
-        return getValueByXPath("descendant::displayName");
+        return mGuide.getIndex().getDisplayName(mPosition);
     }
 
     /**
@@ -44,7 +68,42 @@ public class GuideTaxonXML extends BaseGuideXMLParser {
      * @return the taxon's id
      */
     public String getTaxonId() {
-        return getValueByXPath("descendant::taxonID");
+        return mGuide.getIndex().getTaxonId(mPosition);
+    }
+
+    /**
+     * Returns whether or not the taxon has any photos
+     * @return true if the taxon has photos
+     */
+    public boolean hasPhotos() {
+        return mGuide.getIndex().hasPhotos(mPosition);
+    }
+
+    /**
+     * Returns the path (URL/local file path) of the first taxon photo - tries the smallest size, and if not found,
+     * tries the next best size until something is found
+     * @param photoType
+     * @return URL of the photo (if photoType==REMOTE) or file place (if photoType==LOCAL); null if not found
+     */
+    public String getFirstPhotoLocation(GuideTaxonPhotoXML.PhotoType photoType) {
+        GuideIndex index = mGuide.getIndex();
+
+        for (GuideTaxonPhotoXML.PhotoSize size : GuideIndex.PHOTO_SIZES) {
+            String path = index.getFirstPhotoLocation(mPosition, photoType, size);
+
+            // See if we found a photo for current size - if not, try the next best size
+            if ((path == null) || (path.length() == 0)) continue;
+
+            if (photoType == GuideTaxonPhotoXML.PhotoType.LOCAL) {
+                // Path is local - Need to convert it from a relative path to a full fledged path
+                if (!mGuide.hasOfflineFile(path)) continue;
+                path = mGuide.getOfflineGuidePath() + "/" + path;
+            }
+
+            return path;
+        }
+
+        return null;
     }
 
 
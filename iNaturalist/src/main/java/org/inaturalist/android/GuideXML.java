@@ -1,6 +1,8 @@
 package org.inaturalist.android;
 
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.util.Log;
 import android.util.Pair;
 
@@ -10,27 +12,27 @@ import org.w3c.dom.Node;
 import org.xml.sax.InputSource;
 
 import java.io.BufferedInputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
@@ -49,11 +51,32 @@ public class GuideXML extends BaseGuideXMLParser {
     private final static String OFFLINE_GUIDE_PATH = "/offline_guides/";
     private static final String TAG = "GuideXML";
 
+    // Guide XML files larger than this are memory-mapped when parsed (instead of being read through a stream)
+    private static final long MAPPED_XML_MIN_SIZE = 256 * 1024;
+
+    // Guide metadata values saved in the guide index
+    private static final String XPATH_TITLE = "//INatGuide/dc:title";
+    private static final String XPATH_DESCRIPTION = "//INatGuide/dc:description";
+    private static final String XPATH_COMPILER = "//INatGuide/eol:agent[@role='compiler']";
+    private static final String XPATH_LICENSE = "//INatGuide/dc:license";
+    private static final String XPATH_NGZ_URL = "//ngz/href";
+    private static final String XPATH_NGZ_SIZE = "//ngz/size";
+    private static final String[] METADATA_XPATHS = {
+            XPATH_TITLE, XPATH_DESCRIPTION, XPATH_COMPILER, XPATH_LICENSE, XPATH_NGZ_URL, XPATH_NGZ_SIZE
+    };
+
     private String mGuideId;
     private Context mContext;
+    private String mXmlPath;
+    private boolean mXmlParsed = false;
     private Map<String, Integer> mTagCounts;
     private Map<String, Set<String>> mTags;
 
+    // Search index of the guide (null if the guide XML file couldn't be read)
+    private GuideIndex mIndex;
+    // Guide taxa instances (by position in the guide), created on demand
+    private GuideTaxonXML[] mTaxa;
+
     // Representative photos of the tag values (e.g. what photo should we display for "number of legs=4")
     private Map<Pair<String, String>, List<GuideTaxonPhotoXML>> mReprTagPhotos;
 
@@ -77,32 +100,104 @@ public class GuideXML extends BaseGuideXMLParser {
     public GuideXML(Context context, String guideId, String path) {
         mContext = context;
         mGuideId = guideId;
+        mXmlPath = path;
 
-        FileReader fr = null;
+        // Use the saved index of the guide, if it's up to date - this way we don't need to parse the XML file
+        // (which is only done later on, if needed - e.g. when showing the details of a specific taxon)
+        mIndex = GuideIndex.load(path);
+
+        if (mIndex == null) {
+            if (!parseXml()) return;
+
+            // Index the guide and save it for next time
+            mIndex = GuideIndex.build(this, METADATA_XPATHS);
+            mIndex.save(path);
+        }
+
+        mTagCounts = mIndex.getTagCounts();
+        mTags = mIndex.getTags();
+        mTaxa = new GuideTaxonXML[mIndex.getTaxonCount()];
+    }
+
+    /**
+     * Parses the guide XML file
+     * @return true/false status
+     */
+    private synchronized boolean parseXml() {
+        mXmlParsed = true;
+
+        FileInputStream fis = null;
+        InputStream is;
         try {
-            fr = new FileReader(path);
-        } catch (FileNotFoundException e) {
+            fis = new FileInputStream(mXmlPath);
+            FileChannel channel = fis.getChannel();
+
+            if (channel.size() >= MAPPED_XML_MIN_SIZE) {
+                // Large guide - parse it straight from the page cache
+                is = new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            } else {
+                is = new BufferedInputStream(fis);
+            }
+        } catch (IOException e) {
             Logger.tag(TAG).error(e);
-            return;
+            closeStream(fis);
+            return false;
         }
-        InputSource inputSource = new InputSource(fr);
-
-        mTagCounts = new HashMap<String, Integer>();
-        mTags = new HashMap<String, Set<String>>();
+        InputSource inputSource = new InputSource(is);
 
         try {
             // Read root node so we won't re-parse the XML file every time we evaluate an XPath
             XPath xpath = XPathFactory.newInstance().newXPath();
             setRootNode((Node) xpath.evaluate("/", inputSource, XPathConstants.NODE));
-
-            // Parse all taxon tags
-            parseTags();
-            // Parse the TaxonImage tags (so we'll know what are the representative image for each tag value)
-            parseImageTags();
         } catch (XPathExpressionException e) {
             Logger.tag(TAG).error(e);
+            return false;
+        } finally {
+            closeStream(fis);
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the root node (parsing the guide XML file on first use)
+     * @return
+     */
+    @Override
+    protected synchronized Node getRootNode() {
+        if (!mXmlParsed) {
+            parseXml();
         }
+        return super.getRootNode();
+    }
 
+    /**
+     * Returns the search index of the guide
+     * @return the guide index (or null if the guide XML file couldn't be read)
+     */
+    public GuideIndex getIndex() {
+        return mIndex;
+    }
+
+    /**
+     * Returns the XML node of a guide taxon
+     * @param position the position of the taxon in the guide
+     * @return the GuideTaxon node
+     */
+    Node getTaxonNode(int position) {
+        return getNodesByXPath("//GuideTaxon").get(position);
+    }
+
+    /**
+     * Returns a guide taxon by its position in the guide
+     * @param position the position of the taxon in the guide
+     * @return
+     */
+    private synchronized GuideTaxonXML getTaxon(int position) {
+        if (mTaxa[position] == null) {
+            mTaxa[position] = new GuideTaxonXML(this, position);
+        }
+        return mTaxa[position];
     }
 
     /**
@@ -171,6 +266,76 @@ public class GuideXML extends BaseGuideXMLParser {
         return getOfflineGuidePath() + "/" + mGuideId + ".xml";
     }
 
+    /**
+     * Returns the path for the downloaded offline guide archive (NGZ file)
+     * @return
+     */
+    public String getOfflineGuideArchivePath() {
+        return getOfflineGuidePath() + "/" + mGuideId + ".ngz";
+    }
+
+    /**
+     * Returns the downloaded offline guide archive
+     * @return the archive, or null if the guide wasn't downloaded (or was fully extracted)
+     */
+    private GuideArchive getArchive() {
+        return GuideArchive.open(new File(getOfflineGuideArchivePath()));
+    }
+
+    /**
+     * Returns the name of an archive entry from a local offline guide path
+     * @param path the local path (e.g. "/.../offline_guides/1234/files/guide_photo-1234.jpg")
+     * @return the entry name (e.g. "files/guide_photo-1234.jpg")
+     */
+    private String getArchiveEntryName(String path) {
+        String basePath = getOfflineGuidePath() + "/";
+        return path.startsWith(basePath) ? path.substring(basePath.length()) : path;
+    }
+
+    /**
+     * Checks whether a file of the downloaded offline guide is available (either extracted or in the guide archive)
+     * @param relativePath the path relative to the offline guide (e.g. "files/guide_photo-1234.jpg")
+     * @return
+     */
+    public boolean hasOfflineFile(String relativePath) {
+        if (new File(getOfflineGuidePath() + "/" + relativePath).exists()) return true;
+
+        GuideArchive archive = getArchive();
+        return (archive != null) && archive.hasEntry(relativePath);
+    }
+
+    /**
+     * Decodes a photo of the downloaded offline guide - read directly from the guide archive, unless it was extracted
+     * @param path the local photo path (as returned by GuideTaxonPhotoXML.getPhotoLocation)
+     * @return the decoded photo (or null if not available)
+     */
+    public Bitmap decodeOfflinePhoto(String path) {
+        if (path == null) return null;
+        if (new File(path).exists()) return BitmapFactory.decodeFile(path);
+
+        GuideArchive archive = getArchive();
+        if (archive == null) return null;
+
+        return archive.decodeBitmap(getArchiveEntryName(path));
+    }
+
+    /**
+     * Returns a photo of the downloaded offline guide as a file (e.g. for viewing it in another app) - extracting
+     * just that photo from the guide archive if needed
+     * @param path the local photo path (as returned by GuideTaxonPhotoXML.getPhotoLocation)
+     * @return the photo file (or null if not available)
+     */
+    public File getOfflinePhotoFile(String path) {
+        if (path == null) return null;
+        File file = new File(path);
+        if (file.exists()) return file;
+
+        GuideArchive archive = getArchive();
+        if ((archive == null) || (!archive.extractEntry(getArchiveEntryName(path), file))) return null;
+
+        return file;
+    }
+
     /**
      * Returns the date/time the guide was downloaded at.
      * @return
@@ -188,6 +353,8 @@ public class GuideXML extends BaseGuideXMLParser {
      * @return true/false status
      */
     public boolean deleteOfflineGuide() {
+        GuideArchive.close(new File(getOfflineGuideArchivePath()));
+
         // Delete all files inside directory
         deleteFiles(mContext.getExternalCacheDir() + OFFLINE_GUIDE_PATH + mGuideId);
 
@@ -213,6 +380,41 @@ public class GuideXML extends BaseGuideXMLParser {
         currentFile.delete();
     }
 
+    /**
+     * Installs a downloaded NGZ file as the offline guide - the NGZ file is moved into the offline guide directory,
+     * and only the guide XML is extracted from it (photos are read directly from the NGZ file when needed).
+     * @param ngzFilename the NGZ file path
+     * @param extractAll whether to extract all files of the guide (instead of only the guide XML)
+     * @return true/false status
+     */
+    public boolean installOfflineGuide(String ngzFilename, boolean extractAll) {
+        if (extractAll) {
+            boolean status = extractOfflineGuide(ngzFilename);
+            new File(ngzFilename).delete();
+            return status;
+        }
+
+        File offlineGuideDir = new File(getOfflineGuidePath());
+        offlineGuideDir.mkdirs();
+
+        File archiveFile = new File(getOfflineGuideArchivePath());
+        GuideArchive.close(archiveFile);
+        if (!moveFile(new File(ngzFilename), archiveFile)) {
+            return false;
+        }
+
+        GuideArchive archive = getArchive();
+        if (archive == null) return false;
+
+        String xmlEntry = archive.findXmlEntry(mGuideId + ".xml");
+        if (xmlEntry == null) {
+            Logger.tag(TAG).error("No guide XML in " + ngzFilename);
+            return false;
+        }
+
+        return archive.extractEntry(xmlEntry, new File(getOfflineGuideXmlFilePath()));
+    }
+
     /**
      * Extracts a downloaded NGZ file into the offline guide directory
      * @param ngzFilename the NGZ file path
@@ -224,50 +426,56 @@ public class GuideXML extends BaseGuideXMLParser {
         offlineGuidesDir.mkdirs();
 
         // Next, extract the NGZ file into that directory
-        String basePath = offlineGuidesDir.getPath();
-        InputStream is;
-        ZipInputStream zis;
-        try {
-            String filename;
-            is = new FileInputStream(ngzFilename);
-            zis = new ZipInputStream(new BufferedInputStream(is));
-            ZipEntry ze;
-            byte[] buffer = new byte[1024];
-            int count;
+        File ngzFile = new File(ngzFilename);
+        GuideArchive archive = GuideArchive.open(ngzFile);
+        if (archive == null) return false;
 
-            // Extract all files in the zip file - one by one
-            while ((ze = zis.getNextEntry()) != null) {
-                // Get current filename
-                filename = ze.getName();
+        boolean status = archive.extractAll(offlineGuidesDir);
+        GuideArchive.close(ngzFile);
 
-                // Need to create directories if doesn't exist, or it will generate an Exception...
-                if (ze.isDirectory()) {
-                    File fmd = new File(basePath + "/" + filename);
-                    fmd.mkdirs();
-                    continue;
-                }
+        return status;
+    }
 
-                FileOutputStream fout = new FileOutputStream(basePath + "/" + filename);
+    /**
+     * Moves a file (copying it, if it's on a different file system)
+     * @return true/false status
+     */
+    private static boolean moveFile(File source, File destination) {
+        if (source.renameTo(destination)) return true;
 
-                // Extract current file
-                while ((count = zis.read(buffer)) != -1) {
-                    fout.write(buffer, 0, count);
-                }
+        InputStream is = null;
+        OutputStream os = null;
+        try {
+            is = new FileInputStream(source);
+            os = new FileOutputStream(destination);
 
-                fout.close();
-                zis.closeEntry();
+            byte[] buffer = new byte[64 * 1024];
+            int count;
+            while ((count = is.read(buffer)) != -1) {
+                os.write(buffer, 0, count);
             }
-
-            zis.close();
-        }
-        catch(IOException e) {
+        } catch (IOException e) {
             Logger.tag(TAG).error(e);
+            closeStream(os);
+            destination.delete();
             return false;
+        } finally {
+            closeStream(is);
+            closeStream(os);
         }
 
+        source.delete();
         return true;
     }
 
+    private static void closeStream(Closeable stream) {
+        if (stream == null) return;
+        try {
+            stream.close();
+        } catch (IOException e) {
+        }
+    }
+
     /**
      * Returns the guide's ID
      * @return the guide's ID
@@ -282,7 +490,7 @@ public class GuideXML extends BaseGuideXMLParser {
      * @return the guide's title
      */
     public String getTitle() {
-        return getValueByXPath("//INatGuide/dc:title");
+        return getMetadata(XPATH_TITLE);
     }
 
     /**
@@ -290,7 +498,7 @@ public class GuideXML extends BaseGuideXMLParser {
      * @return the guide's description
      */
     public String getDescription() {
-        return getValueByXPath("//INatGuide/dc:description");
+        return getMetadata(XPATH_DESCRIPTION);
     }
 
 
@@ -299,7 +507,7 @@ public class GuideXML extends BaseGuideXMLParser {
      * @return the guide's compiler
      */
     public String getCompiler() {
-        return getValueByXPath("//INatGuide/eol:agent[@role='compiler']");
+        return getMetadata(XPATH_COMPILER);
     }
 
     /**
@@ -307,7 +515,7 @@ public class GuideXML extends BaseGuideXMLParser {
      * @return the guide's license
      */
     public String getLicense() {
-        return getValueByXPath("//INatGuide/dc:license");
+        return getMetadata(XPATH_LICENSE);
     }
 
     /**
@@ -344,7 +552,7 @@ public class GuideXML extends BaseGuideXMLParser {
      * @return the guide's NGZ URL
      */
     public String getNgzURL() {
-        return getValueByXPath("//ngz/href");
+        return getMetadata(XPATH_NGZ_URL);
     }
 
     /**
@@ -352,21 +560,31 @@ public class GuideXML extends BaseGuideXMLParser {
      * @return the guide's NGZ file size
      */
     public String getNgzFileSize() {
-        return getValueByXPath("//ngz/size");
+        return getMetadata(XPATH_NGZ_SIZE);
+    }
+
+    /**
+     * Returns a guide metadata value (from the guide index, without parsing the guide XML)
+     * @param xpath the XPath expression of the value
+     * @return
+     */
+    private String getMetadata(String xpath) {
+        if (mIndex == null) return getValueByXPath(xpath);
+        return mIndex.getMetadata(xpath);
     }
 
     /**
      * Utility method that parses out all of the guide photos's taxon tags
      */
     private void parseImageTags() {
+        mReprTagPhotos = new HashMap<Pair<String, String>, List<GuideTaxonPhotoXML>>();
+
         ArrayList<Node> nodes = getNodesByXPath("//GuideTaxon/GuidePhoto/tag");
 
         if (nodes == null) {
             return;
         }
 
-        mReprTagPhotos = new HashMap<Pair<String, String>, List<GuideTaxonPhotoXML>>();
-
         for (Node node: nodes) {
             String predicateName = getAttribute(node, "predicate");
             if ((predicateName == null) || (predicateName.length() == 0)) {
@@ -392,7 +610,12 @@ public class GuideXML extends BaseGuideXMLParser {
      * @param tagValue the tag value (e.g. 3)
      * @return the representative photos for that combo (or null if non existent)
      */
-    public List<GuideTaxonPhotoXML> getTagRepresentativePhoto(String tagName, String tagValue) {
+    public synchronized List<GuideTaxonPhotoXML> getTagRepresentativePhoto(String tagName, String tagValue) {
+        if (mReprTagPhotos == null) {
+            // Parse the TaxonImage tags (so we'll know what are the representative image for each tag value)
+            parseImageTags();
+        }
+
         Pair<String, String> key = new Pair<String, String>(tagName, tagValue);
 
         if (!mReprTagPhotos.containsKey(key)) {
@@ -403,38 +626,16 @@ public class GuideXML extends BaseGuideXMLParser {
     }
 
     /**
-     * Utility method that parses out all of the guide's taxon tags
+     * Returns whether or not a specific tag name + value combo has representative photos
+     * (using the guide index, without parsing the guide XML)
+     *
+     * @param tagName the tag name (e.g. number of legs)
+     * @param tagValue the tag value (e.g. 3)
+     * @return true if the combo has representative photos
      */
-    private void parseTags() {
-        ArrayList<Node> nodes = getNodesByXPath("//GuideTaxon/tag");
-        Map<String, Set<String>> predicates = new HashMap<String, Set<String>>();
-        Map<String, Integer> tagCounts = new HashMap<String, Integer>();
-
-        if (nodes == null) {
-            return;
-        }
-
-        for (Node node: nodes) {
-            String predicateName = getAttribute(node, "predicate");
-            String tagName = node.getTextContent();
-            if ((predicateName == null) || (predicateName.equalsIgnoreCase(PREDICATE_TAGS)) || (predicateName.length() == 0)) {
-                predicateName = PREDICATE_TAGS;
-            }
-            if (!predicates.containsKey(predicateName)) {
-                predicates.put(predicateName, new HashSet<String>());
-            }
-            if (!tagCounts.containsKey(tagName)) {
-                tagCounts.put(tagName, Integer.valueOf(0));
-            }
-            HashSet<String> tags = (HashSet<String>)predicates.get(predicateName);
-            Integer tagCount = tagCounts.get(tagName);
-            tagCounts.put(tagName, tagCount + 1);
-
-            tags.add(tagName);
-        }
-        
-        mTagCounts = tagCounts;
-        mTags = predicates;
+    public boolean hasTagRepresentativePhoto(String tagName, String tagValue) {
+        if (mIndex == null) return false;
+        return mIndex.hasTagPhotos(tagName, tagValue);
     }
 
     /**
@@ -459,11 +660,12 @@ public class GuideXML extends BaseGuideXMLParser {
      * @return
      */
     public GuideTaxonXML getTaxonById(String taxonId) {
-        ArrayList<Node> nodes = getNodesByXPath(String.format("//GuideTaxon/taxonID/text()[contains(.,'%s')]/ancestor::*[self::GuideTaxon]", taxonId));
+        if (mIndex == null) return null;
 
-        if (nodes.size() == 0) return null;
+        int position = mIndex.findTaxon(taxonId);
+        if (position == -1) return null;
 
-        return new GuideTaxonXML(this, nodes.get(0));
+        return getTaxon(position);
     }
 
     /**
@@ -506,7 +708,6 @@ public class GuideXML extends BaseGuideXMLParser {
      * @return the next recommended tag name.
      */
     public String getRecommendedPredicate(GuideTaxonFilter filter, List<GuideTaxonXML> currentResults) {
-        Map<String, Integer> currentTagCounts = new HashMap<String, Integer>();
         List<String> selectedPredicates = new ArrayList<String>();
 
         // Build the list of already-selected predicate names
@@ -515,20 +716,14 @@ public class GuideXML extends BaseGuideXMLParser {
             selectedPredicates.add(predicateName);
         }
 
-        // Calculate the tag counts from the remaining taxa results
-        for (GuideTaxonXML taxon : currentResults) {
-            ArrayList<Node> nodes = taxon.getNodesByXPath("tag");
-
-            for (Node node : nodes) {
-                String tagName = node.getTextContent();
+        if (mIndex == null) return null;
 
-                if (!currentTagCounts.containsKey(tagName)) {
-                    currentTagCounts.put(tagName, 0);
-                }
-                int currentCount = currentTagCounts.get(tagName);
-                currentTagCounts.put(tagName, currentCount + 1);
-            }
+        // Calculate the tag counts from the remaining taxa results (the number of results having each tag)
+        BitSet results = new BitSet(mIndex.getTaxonCount());
+        for (GuideTaxonXML taxon : currentResults) {
+            results.set(taxon.getPosition());
         }
+        Map<String, Integer> currentTagCounts = mIndex.getTagCardinalities(results);
 
         // Next, create a list of tag counts for each predicate
         Map<String, List<Integer>> predicateTagCounts = new HashMap<String, List<Integer>>();
@@ -617,59 +812,56 @@ public class GuideXML extends BaseGuideXMLParser {
 
 
     /**
-     * Utility method for building an xpath string by a taxon search filter
-     * @param filter
+     * Returns the list of guide taxa according to the filter
      * @return
      */
-    private String buildFilterXpath(GuideTaxonFilter filter) {
-        String searchText = filter.getSearchText();
-        String xPathExpression;
+    public List<GuideTaxonXML> getTaxa(GuideTaxonFilter filter) {
+        ArrayList<GuideTaxonXML> taxa = new ArrayList<GuideTaxonXML>();
 
-        if ((searchText == null) || (searchText.length() == 0)) {
-            // No search text
-            xPathExpression = "//GuideTaxon";
-        } else {
-            // Filter only guide taxa that fit the search text
-            xPathExpression = String.format("//GuideTaxon/*/text()[contains(translate(., 'ABCDEFGHIJKLMNOPQRSTUVWXYZ', 'abcdefghijklmnopqrstuvwxyz'),'%s')]/ancestor::*[self::GuideTaxon]",
-                    searchText.toLowerCase());
+        if (mIndex == null) {
+            return taxa;
         }
 
-        List<String> tags = filter.getAllTags();
-        if (tags.size() > 0) {
-            // Filter by specific tags as well
-            ArrayList<String> tagExpressions = new ArrayList<String>();
-            for (String tag: tags) {
-                tagExpressions.add(String.format("descendant::tag[text() = '%s']", tag));
-            }
-            xPathExpression = String.format("%s[%s]", xPathExpression, StringUtils.join(tagExpressions, " and "));
+        // Get the positions of all taxa that fit the filter
+        BitSet results = mIndex.filter(filter);
+
+        for (int i = results.nextSetBit(0); i >= 0; i = results.nextSetBit(i + 1)) {
+            taxa.add(getTaxon(i));
         }
 
-        return xPathExpression;
+        return taxa;
     }
 
 
     /**
-     * Returns the list of guide taxa according to the filter
-     * @return
+     * Input stream over a (memory-mapped) byte buffer
      */
-    public List<GuideTaxonXML> getTaxa(GuideTaxonFilter filter) {
-        String xPathExpression = buildFilterXpath(filter);
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer mBuffer;
 
-        // Get the list of all GuideTaxon nodes that fit the filter
-        ArrayList<Node> nodes = getNodesByXPath(xPathExpression);
-        ArrayList<GuideTaxonXML> taxa = new ArrayList<GuideTaxonXML>();
+        public ByteBufferInputStream(ByteBuffer buffer) {
+            mBuffer = buffer;
+        }
 
-        if (nodes == null) {
-            return taxa;
+        @Override
+        public int read() {
+            return mBuffer.hasRemaining() ? (mBuffer.get() & 0xFF) : -1;
         }
 
-        // Initialize each node into a GuideTaxonXML instance
-        for (Node node: nodes) {
-            taxa.add(new GuideTaxonXML(this, node));
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) return 0;
+            if (!mBuffer.hasRemaining()) return -1;
+
+            int count = Math.min(length, mBuffer.remaining());
+            mBuffer.get(bytes, offset, count);
+            return count;
         }
 
-        return taxa;
+        @Override
+        public int available() {
+            return mBuffer.remaining();
+        }
     }
 
 }
-
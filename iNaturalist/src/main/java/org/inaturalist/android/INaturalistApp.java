@@ -14,7 +14,6 @@ import com.google.android.gms.location.LocationSettingsStatusCodes;
 import com.google.android.libraries.places.api.Places;
 import com.livefront.bridge.Bridge;
 import com.livefront.bridge.SavedStateHandler;
-import com.squareup.picasso.LruCache;
 import com.squareup.picasso.Picasso;
 import android.Manifest;
 import java.io.BufferedInputStream;
@@ -23,7 +22,6 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.net.URL;
 import java.net.URLConnection;
@@ -173,6 +171,16 @@ public class INaturalistApp extends MultiDexApplication {
         MultiDex.install(this);
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        ImageCache.getInstance(this).trimMemory(level);
+        if (level >= TRIM_MEMORY_MODERATE) {
+            // Already delivered service results are only kept for screens that might read them again
+            ServiceResultBus.getInstance().trimMemory();
+        }
+    }
+
 
     private void setDefaultFont(String staticTypefaceFieldName, int fontAsset) {
         Typeface regular = ResourcesCompat.getFont(this, fontAsset);
@@ -225,10 +233,13 @@ public class INaturalistApp extends MultiDexApplication {
 
         AnalyticsClient.getInstance().logEvent(AnalyticsClient.EVENT_NAME_APP_LAUNCH);
 
+        SavedStateStore.getInstance(getApplicationContext()).setRecordBundleSizes(
+                getSharedPreferences("iNaturalistPreferences", MODE_PRIVATE).getBoolean(SavedStateStore.PREF_RECORD_BUNDLE_SIZES, false));
         Bridge.initialize(getApplicationContext(), new SavedStateHandler() {
             @Override
             public void saveInstanceState(@NonNull Object target, @NonNull Bundle state) {
                 StateSaver.saveInstanceState(target, state);
+                SavedStateStore.getInstance(getApplicationContext()).recordBundleSize(target, state);
             }
 
             @Override
@@ -290,12 +301,15 @@ public class INaturalistApp extends MultiDexApplication {
 
         SHORT_TIME_FORMAT = new SimpleDateFormat(DateFormat.is24HourFormat(getApplicationContext()) ? "HH:mm z" : "hh:mm a z");
 
-        // Build a custom Picasso instance that uses more memory for image cache (50% of free memory
-        // instead of the default 15%)
+        // Picasso, Glide (see iNaturalistGlideModule) and UrlImageViewHelper all share the same image cache
+        // (a single memory budget and disk cache)
+        ImageCache imageCache = ImageCache.getInstance(getApplicationContext());
         Picasso picasso = new Picasso.Builder(getApplicationContext())
-                .memoryCache(new LruCache((int)(Runtime.getRuntime().maxMemory() * 0.5)))
+                .memoryCache(imageCache.getPicassoCache())
+                .downloader(new SharedHttpClient.PicassoDownloader(getApplicationContext(), imageCache.getHttpClient()))
                 .build();
         Picasso.setSingletonInstance(picasso);
+        imageCache.installIntoUrlImageViewHelper();
         //Picasso.with(getApplicationContext())
         //        .setIndicatorsEnabled(true);
 
@@ -361,19 +375,7 @@ public class INaturalistApp extends MultiDexApplication {
     }
 
 
-    /* Used for accessing iNat service results - since passing large amounts of intent data
-     * is impossible (for example, returning a huge list of projects/guides won't work via intents)
-     */
-    private Map<String, Serializable> mServiceResults = new HashMap<String, Serializable>();
 	private INotificationCallback mNotificationCallback;
-
-    public void setServiceResult(String key, Serializable value) {
-    	mServiceResults.put(key,  value);
-    }
-    
-    public Serializable getServiceResult(String key) {
-    	return mServiceResults.get(key);
-    }
    
 
  	/**
@@ -1184,14 +1186,14 @@ public class INaturalistApp extends MultiDexApplication {
                     final int fileSize = connection.getContentLength();
 
                     // Download the file
-                    InputStream input = new BufferedInputStream(url.openStream(), 8192);
+                    InputStream input = new BufferedInputStream(url.openStream(), 64 * 1024);
 
                     // Output stream (temp file)
                     File outputFile = File.createTempFile(UUID.randomUUID().toString(), null, getCacheDir());
                     String outputFilename = outputFile.getAbsolutePath();
                     OutputStream output = new FileOutputStream(outputFile);
 
-                    byte data[] = new byte[1024];
+                    byte data[] = new byte[64 * 1024];
 
                     long total = 0;
                     int count = 0;
@@ -10,9 +10,7 @@ import java.io.OutputStream;
 import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
 import java.net.SocketTimeoutException;
-import java.net.URL;
 import java.net.URLEncoder;
 import java.sql.Timestamp;
 import java.text.ParseException;
@@ -21,7 +19,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -31,7 +28,8 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
-import java.util.concurrent.TimeUnit;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.Predicate;
@@ -43,6 +41,7 @@ import org.apache.http.message.BasicNameValuePair;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 import org.tinylog.Logger;
 
 import com.google.android.gms.common.ConnectionResult;
@@ -62,10 +61,13 @@ import android.app.IntentService;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
+import android.content.OperationApplicationException;
 import android.content.SharedPreferences;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
@@ -82,8 +84,10 @@ import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.RemoteException;
 import android.os.Looper;
 import android.provider.MediaStore;
+import android.text.format.Formatter;
 import androidx.core.app.NotificationCompat;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
@@ -93,7 +97,6 @@ import android.widget.Toast;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import okhttp3.FormBody;
-import okhttp3.Headers;
 import okhttp3.HttpUrl;
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
@@ -102,6 +105,7 @@ import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okio.BufferedSink;
 
 import static java.net.HttpURLConnection.HTTP_GONE;
 import static java.net.HttpURLConnection.HTTP_UNAUTHORIZED;
@@ -114,14 +118,15 @@ public class INaturalistService extends IntentService {
     private static final int JWT_TOKEN_EXPIRATION_MINS = 25; // JWT Tokens expire after 30 mins - consider 25 mins as the max time (safe margin)
     private static final int OLD_PHOTOS_MAX_COUNT = 100; // Number of cached photos to save before removing them and turning them into online photos
     private static final int MAX_PHOTO_REPLACEMENTS_PER_RUN = 50; // Max number of photo replacements we'll do per run
+    private static final int MAX_LOGGED_RESPONSE_LENGTH = 2048; // Responses longer than this are logged only partially
+    private static final int SYNCED_PAGES_CACHE_SIZE = 6; // How many recently-synced pages of observations to remember (so they won't be synced twice)
+    private static final int MAX_CONCURRENT_UPLOADS = 3; // How many photos/sounds to upload in parallel while syncing
 
     public static final String IS_SHARED_ON_APP = "is_shared_on_app";
 
     private static final Map<String, String> TIMEZONE_ID_TO_INAT_TIMEZONE;
 
     private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
-    private static final long HTTP_CONNECTION_TIMEOUT_SECONDS = 10;
-    private static final long HTTP_READ_WRITE_TIMEOUT_SECONDS = 40;
 
     static {
         TIMEZONE_ID_TO_INAT_TIMEZONE = new HashMap();
@@ -356,7 +361,6 @@ public class INaturalistService extends IntentService {
     public static final String ACTION_GET_TAXON_NEW_RESULT = "action_get_taxon_new_result";
     public static final String ACTION_GET_TAXON_SUGGESTIONS_RESULT = "action_get_taxon_suggestions_result";
     public static final String TAXON_RESULT = "taxon_result";
-    public static final String TAXON_SUGGESTIONS = "taxon_suggestions";
     public static final String GUIDE_XML_RESULT = "guide_xml_result";
     public static final String EMAIL = "email";
     public static final String OBS_PHOTO_FILENAME = "obs_photo_filename";
@@ -561,7 +565,13 @@ public class INaturalistService extends IntentService {
     private String mLogin;
     private String mCredentials;
     private SharedPreferences mPreferences;
-    private boolean mPassive;
+    // Whether the work item running on the current thread is a passive sync (no login prompts)
+    private final ThreadLocal<Boolean> mPassive = new ThreadLocal<Boolean>() {
+        @Override
+        protected Boolean initialValue() {
+            return false;
+        }
+    };
     private INaturalistApp mApp;
     private LoginType mLoginType;
 
@@ -580,18 +590,20 @@ public class INaturalistService extends IntentService {
 
     private Hashtable<Integer, Hashtable<Integer, ProjectFieldValue>> mProjectFieldValues;
 
-    private Headers mResponseHeaders = null;
-    private Date mRetryAfterDate = null;
-    private long mLastServiceUnavailableNotification = 0;
-    private boolean mServiceUnavailable = false;
+    // The last API response received by the current thread - for callers that still use request()'s JSONArray result
+    // (newer code should use the ApiResponse returned by execute() instead)
+    private final ThreadLocal<ApiResponse> mLastResponse = new ThreadLocal<>();
 
-    private JSONArray mResponseErrors;
+    private long mLastServiceUnavailableNotification = 0;
 
     private String mNearByObservationsUrl;
-    private int mLastStatusCode = 0;
+    private MediaUploadPipeline mUploadPipeline = null;
+    private UploadJournal mUploadJournal = null;
+    // Journal entry of the media file currently being uploaded by this thread (if any)
+    private final ThreadLocal<MediaUpload> mCurrentUpload = new ThreadLocal<>();
     private Object mObservationLock = new Object();
     private Object mSyncJsonLock = new Object();
-    private List<String> mSyncedJSONs = new ArrayList<>();
+    private SyncedPagesCache mSyncedPages = new SyncedPagesCache(SYNCED_PAGES_CACHE_SIZE);
 
     private Location mLastLocation = null;
 
@@ -673,14 +685,50 @@ public class INaturalistService extends IntentService {
         }
     }
 
+    // Actions that sync observations, or otherwise merge downloaded observations into the local DB (run one at a time)
+    private static final List<String> SYNC_LANE_ACTIONS = Arrays.asList(
+            ACTION_SYNC, ACTION_FIRST_SYNC, ACTION_PASSIVE_SYNC, ACTION_PULL_OBSERVATIONS, ACTION_DELETE_OBSERVATIONS,
+            ACTION_REDOWNLOAD_OBSERVATIONS_FOR_TAXON, ACTION_GET_AND_SAVE_OBSERVATION, ACTION_GET_ADDITIONAL_OBS,
+            ACTION_SYNC_JOINED_PROJECTS, ACTION_ADD_MISSING_OBS_UUID, ACTION_CLEAR_OLD_PHOTOS_CACHE
+    );
+
+    // Actions that change things on the server (run one at a time, in the order the user made them)
+    private static final List<String> WRITE_LANE_ACTIONS = Arrays.asList(
+            ACTION_ADD_COMMENT, ACTION_UPDATE_COMMENT, ACTION_DELETE_COMMENT,
+            ACTION_ADD_IDENTIFICATION, ACTION_UPDATE_ID, ACTION_REMOVE_ID, ACTION_RESTORE_ID, ACTION_AGREE_ID,
+            ACTION_ADD_FAVORITE, ACTION_REMOVE_FAVORITE, ACTION_FOLLOW_OBSERVATION, ACTION_VIEWED_UPDATE,
+            ACTION_SET_ANNOTATION_VALUE, ACTION_DELETE_ANNOTATION, ACTION_AGREE_ANNOTATION, ACTION_DISAGREE_ANNOTATION,
+            ACTION_DELETE_ANNOTATION_VOTE, ACTION_AGREE_DATA_QUALITY, ACTION_DISAGREE_DATA_QUALITY, ACTION_DELETE_DATA_QUALITY_VOTE,
+            ACTION_ID_CAN_BE_IMPROVED_VOTE, ACTION_ID_CANNOT_BE_IMPROVED_VOTE, ACTION_DELETE_ID_CAN_BE_IMPROVED_VOTE,
+            ACTION_FLAG_OBSERVATION_AS_CAPTIVE, ACTION_POST_FLAG, ACTION_POST_MESSAGE, ACTION_MUTE_USER, ACTION_UNMUTE_USER,
+            ACTION_JOIN_PROJECT, ACTION_LEAVE_PROJECT, ACTION_ADD_PROJECT_FIELD, ACTION_PIN_LOCATION, ACTION_DELETE_PINNED_LOCATION,
+            ACTION_REGISTER_USER, ACTION_UPDATE_USER_DETAILS, ACTION_UPDATE_CURRENT_USER_DETAILS, ACTION_UPDATE_USER_NETWORK,
+            ACTION_DELETE_ACCOUNT
+    );
+
+    // Actions no screen is actively waiting on (they're picked only when there's no foreground work queued in their lane)
+    private static final List<String> BACKGROUND_ACTIONS = Arrays.asList(
+            ACTION_PASSIVE_SYNC, ACTION_REDOWNLOAD_OBSERVATIONS_FOR_TAXON, ACTION_SYNC_JOINED_PROJECTS,
+            ACTION_ADD_MISSING_OBS_UUID, ACTION_CLEAR_OLD_PHOTOS_CACHE, ACTION_GET_NOTIFICATION_COUNTS,
+            ACTION_REFRESH_CURRENT_USER_SETTINGS, ACTION_GET_ADDITIONAL_OBS, ACTION_VIEWED_UPDATE
+    );
+
     @Override
     protected void onHandleIntent(final Intent intent) {
-        new Thread(new Runnable() {
+        if ((intent == null) || (intent.getAction() == null)) return;
+
+        String action = intent.getAction();
+        ServiceScheduler.Lane lane = SYNC_LANE_ACTIONS.contains(action) ? ServiceScheduler.Lane.SYNC :
+                WRITE_LANE_ACTIONS.contains(action) ? ServiceScheduler.Lane.WRITE : ServiceScheduler.Lane.INTERACTIVE;
+        ServiceScheduler.Priority priority = BACKGROUND_ACTIONS.contains(action) ?
+                ServiceScheduler.Priority.BACKGROUND : ServiceScheduler.Priority.FOREGROUND;
+
+        ServiceScheduler.getInstance().submit(action, lane, priority, new Runnable() {
             @Override
             public void run() {
                 onHandleIntentWorker(intent);
             }
-        }).start();
+        });
     }
 
     protected void onHandleIntentWorker(final Intent intent) {
@@ -699,7 +747,7 @@ public class INaturalistService extends IntentService {
 
         if (action == null) return;
 
-        mPassive = action.equals(ACTION_PASSIVE_SYNC);
+        mPassive.set(action.equals(ACTION_PASSIVE_SYNC));
 
         Logger.tag(TAG).debug("Service: " + action);
 
@@ -982,9 +1030,8 @@ public class INaturalistService extends IntentService {
                 BetterJSONObject results = getProjectObservations(projectId);
                 results = ObservationUtils.getMinimalObservationResults(results);
 
-                mApp.setServiceResult(ACTION_PROJECT_OBSERVATIONS_RESULT, results);
                 Intent reply = new Intent(ACTION_PROJECT_OBSERVATIONS_RESULT);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, ACTION_PROJECT_OBSERVATIONS_RESULT, results);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
             } else if (action.equals(ACTION_GET_PROJECT_IDENTIFIERS)) {
@@ -993,8 +1040,7 @@ public class INaturalistService extends IntentService {
                 results = ObservationUtils.getMinimalObserverResults(results);
 
                 Intent reply = new Intent(ACTION_PROJECT_IDENTIFIERS_RESULT);
-                mApp.setServiceResult(ACTION_PROJECT_IDENTIFIERS_RESULT, results);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, ACTION_PROJECT_IDENTIFIERS_RESULT, results);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
             } else if (action.equals(ACTION_GET_PROJECT_OBSERVERS)) {
@@ -1003,8 +1049,7 @@ public class INaturalistService extends IntentService {
                 results = ObservationUtils.getMinimalObserverResults(results);
 
                 Intent reply = new Intent(ACTION_PROJECT_OBSERVERS_RESULT);
-                mApp.setServiceResult(ACTION_PROJECT_OBSERVERS_RESULT, results);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, ACTION_PROJECT_OBSERVERS_RESULT, results);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
             } else if (action.equals(ACTION_GET_PROJECT_SPECIES)) {
@@ -1013,8 +1058,7 @@ public class INaturalistService extends IntentService {
                 results = ObservationUtils.getMinimalSpeciesResults(results);
 
                 Intent reply = new Intent(ACTION_PROJECT_SPECIES_RESULT);
-                mApp.setServiceResult(ACTION_PROJECT_SPECIES_RESULT, results);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, ACTION_PROJECT_SPECIES_RESULT, results);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
             } else if (action.equals(ACTION_DELETE_ANNOTATION)) {
@@ -1125,8 +1169,7 @@ public class INaturalistService extends IntentService {
                 BetterJSONObject results = getAllAttributes();
 
                 Intent reply = new Intent(GET_ALL_ATTRIBUTES_RESULT);
-                mApp.setServiceResult(GET_ALL_ATTRIBUTES_RESULT, results);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, GET_ALL_ATTRIBUTES_RESULT, results);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
             } else if (action.equals(ACTION_GET_ATTRIBUTES_FOR_TAXON)) {
@@ -1135,8 +1178,7 @@ public class INaturalistService extends IntentService {
                 BetterJSONObject results = getAttributesForTaxon(ancestors != null ? ancestors.getJSONArray() : null, taxonId);
 
                 Intent reply = new Intent(GET_ATTRIBUTES_FOR_TAXON_RESULT);
-                mApp.setServiceResult(GET_ATTRIBUTES_FOR_TAXON_RESULT, results);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, GET_ATTRIBUTES_FOR_TAXON_RESULT, results);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
             } else if (action.equals(ACTION_GET_TAXON_SUGGESTIONS)) {
@@ -1159,24 +1201,41 @@ public class INaturalistService extends IntentService {
                 if (placeLng == -1) placeLng = null;
 
                 BetterJSONObject taxonSuggestions = null;
+                TaxonSuggestionsCache suggestionsCache = TaxonSuggestionsCache.getInstance(this);
+                String deviceLanguage = getResources().getConfiguration().locale.getLanguage();
+                boolean isVisual = suggestionSource.equals(SUGGESTION_SOURCE_VISUAL);
+
                 if (obsFilename == null) {
                     // It's an online observation
-                    taxonSuggestions = getTaxonSuggestions(obsUrl, latitude, longitude, observedOn, suggestionSource, placeId, taxonId, placeLat, placeLng, limit, page);
-                } else {
-                    // Local photo  - Resize photo to 640x640 max, not using Lanczos
-                    String resizedPhotoFilename = ImageUtils.resizeImage(this, obsFilename, null, 640, true);
-
-                    if (resizedPhotoFilename != null) {
-                        taxonSuggestions = getTaxonSuggestions(resizedPhotoFilename, latitude, longitude, observedOn, suggestionSource, placeId, taxonId, placeLat, placeLng, limit, page);
+                    String cacheKey = TaxonSuggestionsCache.getKey(isVisual ? obsUrl : null, latitude, longitude, observedOn, suggestionSource,
+                            placeId, taxonId, placeLat, placeLng, limit, page, deviceLanguage);
+                    taxonSuggestions = suggestionsCache.getResults(cacheKey, false);
 
-                        File resizedFile = new File(resizedPhotoFilename);
-                        resizedFile.delete();
+                    if (taxonSuggestions == null) {
+                        taxonSuggestions = getTaxonSuggestions(obsUrl, latitude, longitude, observedOn, suggestionSource, placeId, taxonId, placeLat, placeLng, limit, page);
+                        suggestionsCache.putResults(cacheKey, taxonSuggestions);
+                    }
+                } else {
+                    // Local photo - identified by its content (so results and the resized photo are reused across pages and screens)
+                    String photoHash = isVisual ? suggestionsCache.getPhotoHash(obsFilename) : null;
+                    String cacheKey = TaxonSuggestionsCache.getKey(photoHash, latitude, longitude, observedOn, suggestionSource,
+                            placeId, taxonId, placeLat, placeLng, limit, page, deviceLanguage);
+                    if (!isVisual || (photoHash != null)) taxonSuggestions = suggestionsCache.getResults(cacheKey, isVisual);
+
+                    if ((taxonSuggestions == null) && (!isVisual || (photoHash != null))) {
+                        // Resize photo to 640x640 max (kept in the cache) - the photo itself isn't sent for non-visual suggestions
+                        String resizedPhotoFilename = isVisual ? suggestionsCache.getQueryImage(obsFilename, photoHash) : obsFilename;
+
+                        if (resizedPhotoFilename != null) {
+                            taxonSuggestions = getTaxonSuggestions(resizedPhotoFilename, latitude, longitude, observedOn, suggestionSource, placeId, taxonId, placeLat, placeLng, limit, page);
+                            suggestionsCache.putResults(cacheKey, taxonSuggestions);
+                        }
                     }
                 }
 
 
                 Intent reply = new Intent(ACTION_GET_TAXON_SUGGESTIONS_RESULT);
-                reply.putExtra(TAXON_SUGGESTIONS, taxonSuggestions);
+                ServiceResultBus.getInstance().publish(reply, ACTION_GET_TAXON_SUGGESTIONS_RESULT, taxonSuggestions);
                 reply.putExtra(OBS_PHOTO_URL, obsUrl);
                 reply.putExtra(OBS_PHOTO_FILENAME, obsFilename);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
@@ -1186,8 +1245,7 @@ public class INaturalistService extends IntentService {
                 BetterJSONObject taxon = getTaxonNew(taxonId);
 
                 Intent reply = new Intent(ACTION_GET_TAXON_NEW_RESULT);
-                mApp.setServiceResult(ACTION_GET_TAXON_NEW_RESULT, taxon);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, ACTION_GET_TAXON_NEW_RESULT, taxon);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
             } else if (action.equals(ACTION_GET_TAXON)) {
@@ -1204,8 +1262,7 @@ public class INaturalistService extends IntentService {
                 BetterJSONObject results = searchAutoComplete("places", query, page);
 
                 Intent reply = new Intent(SEARCH_PLACES_RESULT);
-                mApp.setServiceResult(SEARCH_PLACES_RESULT, results);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, SEARCH_PLACES_RESULT, results);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
             } else if (action.equals(ACTION_SEARCH_USERS)) {
@@ -1214,8 +1271,7 @@ public class INaturalistService extends IntentService {
                 BetterJSONObject results = searchAutoComplete("users", query, page);
 
                 Intent reply = new Intent(SEARCH_USERS_RESULT);
-                mApp.setServiceResult(SEARCH_USERS_RESULT, results);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, SEARCH_USERS_RESULT, results);
                 reply.putExtra(QUERY, query);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
@@ -1226,8 +1282,7 @@ public class INaturalistService extends IntentService {
                 BetterJSONObject results = searchAutoComplete("taxa", query, page);
 
                 Intent reply = new Intent(SEARCH_TAXA_RESULT);
-                mApp.setServiceResult(SEARCH_TAXA_RESULT, results);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, SEARCH_TAXA_RESULT, results);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
              } else if (action.equals(ACTION_UPDATE_CURRENT_USER_DETAILS)) {
@@ -1328,8 +1383,7 @@ public class INaturalistService extends IntentService {
                         if (location == null) {
                             // No place
                             Intent reply = new Intent(MISSIONS_BY_TAXON_RESULT);
-                            mApp.setServiceResult(MISSIONS_BY_TAXON_RESULT, null);
-                            reply.putExtra(IS_SHARED_ON_APP, true);
+                            ServiceResultBus.getInstance().publish(reply, MISSIONS_BY_TAXON_RESULT, null);
                             reply.putExtra(TAXON_ID, taxonId);
                             LocalBroadcastManager.getInstance(INaturalistService.this).sendBroadcast(reply);
                             return;
@@ -1339,8 +1393,7 @@ public class INaturalistService extends IntentService {
                         missions = ObservationUtils.getMinimalSpeciesResults(missions);
 
                         Intent reply = new Intent(MISSIONS_BY_TAXON_RESULT);
-                        mApp.setServiceResult(MISSIONS_BY_TAXON_RESULT, missions);
-                        reply.putExtra(IS_SHARED_ON_APP, true);
+                        ServiceResultBus.getInstance().publish(reply, MISSIONS_BY_TAXON_RESULT, missions);
                         reply.putExtra(TAXON_ID, taxonId);
                         LocalBroadcastManager.getInstance(INaturalistService.this).sendBroadcast(reply);
                     }
@@ -1364,8 +1417,7 @@ public class INaturalistService extends IntentService {
                         if (location == null) {
                             // No place
                             Intent reply = new Intent(RECOMMENDED_MISSIONS_RESULT);
-                            mApp.setServiceResult(RECOMMENDED_MISSIONS_RESULT, null);
-                            reply.putExtra(IS_SHARED_ON_APP, true);
+                            ServiceResultBus.getInstance().publish(reply, RECOMMENDED_MISSIONS_RESULT, null);
                             LocalBroadcastManager.getInstance(INaturalistService.this).sendBroadcast(reply);
                             return;
                         }
@@ -1374,8 +1426,7 @@ public class INaturalistService extends IntentService {
                         missions = ObservationUtils.getMinimalSpeciesResults(missions);
 
                         Intent reply = new Intent(RECOMMENDED_MISSIONS_RESULT);
-                        mApp.setServiceResult(RECOMMENDED_MISSIONS_RESULT, missions);
-                        reply.putExtra(IS_SHARED_ON_APP, true);
+                        ServiceResultBus.getInstance().publish(reply, RECOMMENDED_MISSIONS_RESULT, missions);
                         LocalBroadcastManager.getInstance(INaturalistService.this).sendBroadcast(reply);
                     }
                 });
@@ -1386,8 +1437,7 @@ public class INaturalistService extends IntentService {
                 speciesCount = ObservationUtils.getMinimalSpeciesResults(speciesCount);
 
                 Intent reply = new Intent(SPECIES_COUNT_RESULT);
-                mApp.setServiceResult(SPECIES_COUNT_RESULT, speciesCount);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, SPECIES_COUNT_RESULT, speciesCount);
                 reply.putExtra(USERNAME, username);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
@@ -1400,8 +1450,7 @@ public class INaturalistService extends IntentService {
                 }
 
                 Intent reply = new Intent(USER_OBSERVATIONS_RESULT);
-                mApp.setServiceResult(USER_OBSERVATIONS_RESULT, observations != null ? new BetterJSONObject(observations) : null);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, USER_OBSERVATIONS_RESULT, observations != null ? new BetterJSONObject(observations) : null);
                 reply.putExtra(USERNAME, username);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
@@ -1410,8 +1459,7 @@ public class INaturalistService extends IntentService {
                 SerializableJSONArray observations = searchUserObservation(query);
 
                 Intent reply = new Intent(USER_SEARCH_OBSERVATIONS_RESULT);
-                mApp.setServiceResult(USER_SEARCH_OBSERVATIONS_RESULT, observations);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, USER_SEARCH_OBSERVATIONS_RESULT, observations);
                 reply.putExtra(QUERY, query);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
@@ -1426,12 +1474,11 @@ public class INaturalistService extends IntentService {
                 Intent reply;
                 if (following) {
                     reply = new Intent(UPDATES_FOLLOWING_RESULT);
-                    mApp.setServiceResult(UPDATES_FOLLOWING_RESULT, updates);
+                    ServiceResultBus.getInstance().publish(reply, UPDATES_FOLLOWING_RESULT, updates);
                 } else {
                     reply = new Intent(UPDATES_RESULT);
-                    mApp.setServiceResult(UPDATES_RESULT, updates);
+                    ServiceResultBus.getInstance().publish(reply, UPDATES_RESULT, updates);
                 }
-                reply.putExtra(IS_SHARED_ON_APP, true);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
             } else if (action.equals(ACTION_GET_USER_IDENTIFICATIONS)) {
@@ -1440,8 +1487,7 @@ public class INaturalistService extends IntentService {
                 BetterJSONObject minimalIdentifications = ObservationUtils.getMinimalIdentificationResults(identifications, username);
 
                 Intent reply = new Intent(IDENTIFICATIONS_RESULT);
-                mApp.setServiceResult(IDENTIFICATIONS_RESULT, minimalIdentifications);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, IDENTIFICATIONS_RESULT, minimalIdentifications);
                 reply.putExtra(USERNAME, username);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
@@ -1453,8 +1499,7 @@ public class INaturalistService extends IntentService {
                 results = ObservationUtils.getMinimalObserverResults(results);
 
                 Intent reply = new Intent(GET_TOP_IDENTIFIERS_RESULT);
-                mApp.setServiceResult(GET_TOP_IDENTIFIERS_RESULT, results);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, GET_TOP_IDENTIFIERS_RESULT, results);
                 reply.putExtra(UUID, uuid);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
@@ -1466,8 +1511,7 @@ public class INaturalistService extends IntentService {
                 results = ObservationUtils.getMinimalObserverResults(results);
 
                 Intent reply = new Intent(GET_TOP_OBSERVERS_RESULT);
-                mApp.setServiceResult(GET_TOP_OBSERVERS_RESULT, results);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, GET_TOP_OBSERVERS_RESULT, results);
                 reply.putExtra(UUID, uuid);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
@@ -1480,8 +1524,7 @@ public class INaturalistService extends IntentService {
                 results = ObservationUtils.getMinimalObserverResults(results);
 
                 Intent reply = new Intent(EXPLORE_GET_OBSERVERS_RESULT);
-                mApp.setServiceResult(EXPLORE_GET_OBSERVERS_RESULT, results);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, EXPLORE_GET_OBSERVERS_RESULT, results);
                 reply.putExtra(UUID, uuid);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
@@ -1494,8 +1537,7 @@ public class INaturalistService extends IntentService {
                 results = ObservationUtils.getMinimalObserverResults(results);
 
                 Intent reply = new Intent(EXPLORE_GET_IDENTIFIERS_RESULT);
-                mApp.setServiceResult(EXPLORE_GET_IDENTIFIERS_RESULT, results);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, EXPLORE_GET_IDENTIFIERS_RESULT, results);
                 reply.putExtra(UUID, uuid);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
@@ -1508,8 +1550,7 @@ public class INaturalistService extends IntentService {
                 results = ObservationUtils.getMinimalSpeciesResults(results);
 
                 Intent reply = new Intent(EXPLORE_GET_SPECIES_RESULT);
-                mApp.setServiceResult(EXPLORE_GET_SPECIES_RESULT, results);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, EXPLORE_GET_SPECIES_RESULT, results);
                 reply.putExtra(UUID, uuid);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
@@ -1522,8 +1563,7 @@ public class INaturalistService extends IntentService {
                 observations = ObservationUtils.getMinimalObservationResults(observations);
 
                 Intent reply = new Intent(EXPLORE_GET_OBSERVATIONS_RESULT);
-                mApp.setServiceResult(EXPLORE_GET_OBSERVATIONS_RESULT, observations);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, EXPLORE_GET_OBSERVATIONS_RESULT, observations);
                 reply.putExtra(UUID, uuid);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
@@ -1712,17 +1752,15 @@ public class INaturalistService extends IntentService {
                 int guideId = intent.getIntExtra(ACTION_GUIDE_ID, 0);
                 SerializableJSONArray taxa = getTaxaForGuide(guideId);
 
-                mApp.setServiceResult(ACTION_TAXA_FOR_GUIDES_RESULT, taxa);
                 Intent reply = new Intent(ACTION_TAXA_FOR_GUIDES_RESULT);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, ACTION_TAXA_FOR_GUIDES_RESULT, taxa);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
             } else if (action.equals(ACTION_GET_ALL_GUIDES)) {
                 SerializableJSONArray guides = getAllGuides();
 
-                mApp.setServiceResult(ACTION_ALL_GUIDES_RESULT, guides);
                 Intent reply = new Intent(ACTION_ALL_GUIDES_RESULT);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, ACTION_ALL_GUIDES_RESULT, guides);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
             } else if (action.equals(ACTION_GET_MY_GUIDES)) {
@@ -1765,8 +1803,7 @@ public class INaturalistService extends IntentService {
                         if (location == null) {
                             // No place enabled
                             Intent reply = new Intent(ACTION_NEARBY_PROJECTS_RESULT);
-                            mApp.setServiceResult(ACTION_NEARBY_PROJECTS_RESULT, new SerializableJSONArray());
-                            reply.putExtra(IS_SHARED_ON_APP, true);
+                            ServiceResultBus.getInstance().publish(reply, ACTION_NEARBY_PROJECTS_RESULT, new SerializableJSONArray());
                             LocalBroadcastManager.getInstance(INaturalistService.this).sendBroadcast(reply);
 
                         } else {
@@ -1778,8 +1815,7 @@ public class INaturalistService extends IntentService {
                             }
 
                             Intent reply = new Intent(ACTION_NEARBY_PROJECTS_RESULT);
-                            mApp.setServiceResult(ACTION_NEARBY_PROJECTS_RESULT, projects);
-                            reply.putExtra(IS_SHARED_ON_APP, true);
+                            ServiceResultBus.getInstance().publish(reply, ACTION_NEARBY_PROJECTS_RESULT, projects);
                             LocalBroadcastManager.getInstance(INaturalistService.this).sendBroadcast(reply);
                         }
                     }
@@ -1819,8 +1855,7 @@ public class INaturalistService extends IntentService {
                 if (projects != null) {
                     Logger.tag(TAG).debug("Joined projects 2: " + projects.getJSONArray().toString());
                 }
-                mApp.setServiceResult(ACTION_JOINED_PROJECTS_RESULT, projects);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, ACTION_JOINED_PROJECTS_RESULT, projects);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
             } else if (action.equals(ACTION_GET_JOINED_PROJECTS)) {
@@ -1890,8 +1925,7 @@ public class INaturalistService extends IntentService {
                 BetterJSONObject response = postMessage(toUser, threadId, subject, body);
 
                 Intent reply = new Intent(ACTION_POST_MESSAGE_RESULT);
-                mApp.setServiceResult(ACTION_POST_MESSAGE_RESULT, response);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, ACTION_POST_MESSAGE_RESULT, response);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
             } else if (action.equals(ACTION_GET_MESSAGES)) {
@@ -1902,8 +1936,7 @@ public class INaturalistService extends IntentService {
                 BetterJSONObject messages = getMessages(query, box, groupByThreads, messageId);
 
                 Intent reply = new Intent(ACTION_MESSAGES_RESULT);
-                mApp.setServiceResult(ACTION_MESSAGES_RESULT, messages);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, ACTION_MESSAGES_RESULT, messages);
                 reply.putExtra(QUERY, query);
                 reply.putExtra(MESSAGE_ID, messageId);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
@@ -1971,9 +2004,8 @@ public class INaturalistService extends IntentService {
                 String jsonString = observationJson != null ? observationJson.toString() : null;
                 Observation observation = observationJson == null ? null : new Observation(new BetterJSONObject(jsonString));
 
-                mApp.setServiceResult(ACTION_OBSERVATION_RESULT + id, observation);
-                mApp.setServiceResult(OBSERVATION_JSON_RESULT + id, observationJson != null ? jsonString : null);
-                reply.putExtra(IS_SHARED_ON_APP, true);
+                ServiceResultBus.getInstance().publish(reply, ACTION_OBSERVATION_RESULT + id, observation);
+                ServiceResultBus.getInstance().publish(reply, OBSERVATION_JSON_RESULT + id, observationJson != null ? jsonString : null);
                 LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
 
 
@@ -2034,7 +2066,11 @@ public class INaturalistService extends IntentService {
 
                     mIsSyncing = true;
                     mApp.setIsSyncing(mIsSyncing);
-                    syncObservations(idsToSync);
+                    try {
+                        syncObservations(idsToSync);
+                    } finally {
+                        shutdownUploadPipeline();
+                    }
 
                     // Update last sync time
                     long lastSync = System.currentTimeMillis();
@@ -2060,7 +2096,7 @@ public class INaturalistService extends IntentService {
             mApp.setObservationIdBeingSynced(INaturalistApp.NO_OBSERVATION);
 
         } catch (AuthenticationException e) {
-            if (!mPassive) {
+            if (!mPassive.get()) {
                 requestCredentials();
             }
             mApp.setObservationIdBeingSynced(INaturalistApp.NO_OBSERVATION);
@@ -2311,6 +2347,7 @@ public class INaturalistService extends IntentService {
 
         c.moveToFirst();
 
+        CursorRowMapper<Observation> observationMapper = CursorRowMapper.forObservations(c);
         while (!c.isAfterLast()) {
             int totalObs = c.getCount();
             mApp.notify(getString(R.string.syncing_observations),
@@ -2322,7 +2359,7 @@ public class INaturalistService extends IntentService {
                     )
             );
 
-            Observation observation = new Observation(c);
+            Observation observation = observationMapper.map();
 
             // Make sure observation is not currently being edited by user (split-observation bug)
             if (mApp.isObservationCurrentlyBeingEdited(observation._id)) {
@@ -2450,9 +2487,10 @@ public class INaturalistService extends IntentService {
 
         Logger.tag(TAG).debug(String.format(Locale.ENGLISH, "addObservationUUIDsToPhotosAndSounds: Adding UUIDs to %d sounds", count));
 
+        CursorRowMapper<ObservationSound> soundMapper = CursorRowMapper.forSounds(c);
         c.moveToFirst();
         while (!c.isAfterLast()) {
-            ObservationSound sound = new ObservationSound(c);
+            ObservationSound sound = soundMapper.map();
 
             Cursor obsc = getContentResolver().query(Observation.CONTENT_URI,
                     new String[] { Observation.UUID },
@@ -3053,7 +3091,7 @@ public class INaturalistService extends IntentService {
             try {
                 // Remove obs from project
                 BetterJSONObject result = removeObservationFromProject(projectObservation.id, projectObservation.observation_id, projectObservation.project_id);
-                if ((result == null) && (mLastStatusCode != HttpStatus.SC_OK)) {
+                if ((result == null) && (getLastResponse().statusCode != HttpStatus.SC_OK)) {
                     c.close();
                     throw new SyncFailedException();
                 }
@@ -3085,14 +3123,14 @@ public class INaturalistService extends IntentService {
             ProjectObservation projectObservation = new ProjectObservation(c);
             BetterJSONObject result = addObservationToProject(projectObservation.observation_id, projectObservation.project_id);
 
-            if ((result == null) && (mResponseErrors == null)) {
+            if ((result == null) && (getLastResponse().errors == null)) {
                 c.close();
                 throw new SyncFailedException();
             }
 
             increaseProgressForObservation(observation);
 
-            if (mResponseErrors != null) {
+            if (getLastResponse().errors != null) {
                 handleProjectFieldErrors(projectObservation.observation_id, projectObservation.project_id);
             } else {
                 // Unmark as new
@@ -3140,7 +3178,7 @@ public class INaturalistService extends IntentService {
             try {
                 // Remove obs from project
                 BetterJSONObject result = removeObservationFromProject(projectObservation.id, projectObservation.observation_id, projectObservation.project_id);
-                if ((result == null) && (mLastStatusCode != HttpStatus.SC_OK)) {
+                if ((result == null) && (getLastResponse().statusCode != HttpStatus.SC_OK)) {
                     c.close();
                     throw new SyncFailedException();
                 }
@@ -3180,14 +3218,14 @@ public class INaturalistService extends IntentService {
             ProjectObservation projectObservation = new ProjectObservation(c);
             BetterJSONObject result = addObservationToProject(projectObservation.observation_id, projectObservation.project_id);
 
-            if ((result == null) && (mResponseErrors == null)) {
+            if ((result == null) && (getLastResponse().errors == null)) {
                 c.close();
                 throw new SyncFailedException();
             }
 
             mApp.setObservationIdBeingSynced(projectObservation.observation_id);
 
-            if (mResponseErrors != null) {
+            if (getLastResponse().errors != null) {
                 handleProjectFieldErrors(projectObservation.observation_id, projectObservation.project_id);
             } else {
                 // Unmark as new
@@ -3215,7 +3253,7 @@ public class INaturalistService extends IntentService {
     }
 
     private boolean handleProjectFieldErrors(int observationId, int projectId) {
-        SerializableJSONArray errors = new SerializableJSONArray(mResponseErrors);
+        SerializableJSONArray errors = new SerializableJSONArray(getLastResponse().errors);
 
         // Couldn't add the observation to the project (probably didn't pass validation)
         String error;
@@ -3316,7 +3354,7 @@ public class INaturalistService extends IntentService {
                 String.format(Locale.ENGLISH, "%s/users/%s.json?confirmation_code=%s&confirmation=%s", HOST, username, username, username), null);
 
         if (result == null) {
-            Logger.tag(TAG).debug("deleteAccount error: " + mLastStatusCode);
+            Logger.tag(TAG).debug("deleteAccount error: " + getLastResponse().statusCode);
             return false;
         }
 
@@ -3364,31 +3402,40 @@ public class INaturalistService extends IntentService {
 
         String inatNetwork = mApp.getInaturalistNetworkMember();
 
+        // Local deletions are applied together at the end (including when failing midway, for the ones already deleted remotely)
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+
         // for each observation DELETE to /sounds/:id
-        c.moveToFirst();
-        while (c.isAfterLast() == false) {
-            ObservationSound os = new ObservationSound(c);
-
-            Logger.tag(TAG).debug("deleteObservationSounds: " + os);
-            if (os.id != null) {
-                Logger.tag(TAG).debug("deleteObservationSounds: Deleting " + os);
-                JSONArray result = delete(API_HOST + "/observation_sounds/" + os.id, null);
-                if ((result == null) && (mLastStatusCode != HttpStatus.SC_OK)) {
-                    Logger.tag(TAG).debug("deleteObservationSounds: Deletion error: " + mLastStatusCode);
-                    if (mLastStatusCode != HttpStatus.SC_NOT_FOUND) {
-                        // Ignore the case where the sound was remotely deleted
-                        Logger.tag(TAG).debug("deleteObservationSounds: Not a 404 error");
-                        c.close();
-                        throw new SyncFailedException();
+        try {
+            CursorRowMapper<ObservationSound> soundMapper = CursorRowMapper.forSounds(c);
+            c.moveToFirst();
+            while (c.isAfterLast() == false) {
+                ObservationSound os = soundMapper.map();
+
+                Logger.tag(TAG).debug("deleteObservationSounds: " + os);
+                if (os.id != null) {
+                    Logger.tag(TAG).debug("deleteObservationSounds: Deleting " + os);
+                    JSONArray result = delete(API_HOST + "/observation_sounds/" + os.id, null);
+                    if ((result == null) && (getLastResponse().statusCode != HttpStatus.SC_OK)) {
+                        Logger.tag(TAG).debug("deleteObservationSounds: Deletion error: " + getLastResponse().statusCode);
+                        if (getLastResponse().statusCode != HttpStatus.SC_NOT_FOUND) {
+                            // Ignore the case where the sound was remotely deleted
+                            Logger.tag(TAG).debug("deleteObservationSounds: Not a 404 error");
+                            c.close();
+                            throw new SyncFailedException();
+                        }
                     }
                 }
-            }
-            increaseProgressForObservation(observation);
+                increaseProgressForObservation(observation);
 
-            int count = getContentResolver().delete(ObservationSound.CONTENT_URI,
-                    "id = ? or _id = ?", new String[]{String.valueOf(os.id), String.valueOf(os._id)});
-            Logger.tag(TAG).debug("deleteObservationSounds: Deleted from DB: " + count);
-            c.moveToNext();
+                operations.add(ContentProviderOperation.newDelete(ObservationSound.CONTENT_URI)
+                        .withSelection("id = ? or _id = ?", new String[]{String.valueOf(os.id), String.valueOf(os._id)})
+                        .build());
+                c.moveToNext();
+            }
+        } finally {
+            ContentProviderResult[] results = applyOperations(operations);
+            Logger.tag(TAG).debug("deleteObservationSounds: Deleted from DB: " + (results != null ? results.length : 0));
         }
 
         c.close();
@@ -3407,33 +3454,42 @@ public class INaturalistService extends IntentService {
                 new String[]{String.valueOf(observation._id)},
                 ObservationPhoto.DEFAULT_SORT_ORDER);
 
+        // Local deletions are applied together at the end (including when failing midway, for the ones already deleted remotely)
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+
         // for each observation DELETE to /observation_photos/:id
-        c.moveToFirst();
-        while (c.isAfterLast() == false) {
-            ObservationPhoto op = new ObservationPhoto(c);
-
-            Logger.tag(TAG).debug("deleteObservationPhotos: " + op + "::::" + op._synced_at);
-            if (op._synced_at != null) {
-                if (op.id != null) {
-                    Logger.tag(TAG).debug("deleteObservationPhotos: Deleting " + op);
-                    JSONArray result = delete(API_HOST + "/observation_photos/" + op.id, null);
-                    if ((result == null) && (mLastStatusCode != HttpStatus.SC_OK)) {
-                        Logger.tag(TAG).debug("deleteObservationPhotos: Deletion error: " + mLastStatusCode);
-                        if (mLastStatusCode != HttpStatus.SC_NOT_FOUND) {
-                            // Ignore the case where the photo was remotely deleted
-                            Logger.tag(TAG).debug("deleteObservationPhotos: Not a 404 error");
-                            c.close();
-                            throw new SyncFailedException();
+        try {
+            CursorRowMapper<ObservationPhoto> photoMapper = CursorRowMapper.forPhotos(c);
+            c.moveToFirst();
+            while (c.isAfterLast() == false) {
+                ObservationPhoto op = photoMapper.map();
+
+                Logger.tag(TAG).debug("deleteObservationPhotos: " + op + "::::" + op._synced_at);
+                if (op._synced_at != null) {
+                    if (op.id != null) {
+                        Logger.tag(TAG).debug("deleteObservationPhotos: Deleting " + op);
+                        JSONArray result = delete(API_HOST + "/observation_photos/" + op.id, null);
+                        if ((result == null) && (getLastResponse().statusCode != HttpStatus.SC_OK)) {
+                            Logger.tag(TAG).debug("deleteObservationPhotos: Deletion error: " + getLastResponse().statusCode);
+                            if (getLastResponse().statusCode != HttpStatus.SC_NOT_FOUND) {
+                                // Ignore the case where the photo was remotely deleted
+                                Logger.tag(TAG).debug("deleteObservationPhotos: Not a 404 error");
+                                c.close();
+                                throw new SyncFailedException();
+                            }
                         }
                     }
                 }
-            }
-            increaseProgressForObservation(observation);
+                increaseProgressForObservation(observation);
 
-            int count = getContentResolver().delete(ObservationPhoto.CONTENT_URI,
-                    "id = ? or _id = ?", new String[]{String.valueOf(op.id), String.valueOf(op._id)});
-            Logger.tag(TAG).debug("deleteObservationPhotos: Deleted from DB: " + count);
-            c.moveToNext();
+                operations.add(ContentProviderOperation.newDelete(ObservationPhoto.CONTENT_URI)
+                        .withSelection("id = ? or _id = ?", new String[]{String.valueOf(op.id), String.valueOf(op._id)})
+                        .build());
+                c.moveToNext();
+            }
+        } finally {
+            ContentProviderResult[] results = applyOperations(operations);
+            Logger.tag(TAG).debug("deleteObservationPhotos: Deleted from DB: " + (results != null ? results.length : 0));
         }
 
         c.close();
@@ -3473,12 +3529,13 @@ public class INaturalistService extends IntentService {
         ArrayList<Integer> obsIds = new ArrayList<Integer>();
         ArrayList<String> obsUUIDs = new ArrayList<String>();
         ArrayList<Integer> internalObsIds = new ArrayList<Integer>();
+        CursorRowMapper<Observation> observationMapper = CursorRowMapper.forObservations(c);
         c.moveToFirst();
         while (c.isAfterLast() == false) {
-            Observation observation = new Observation(c);
+            Observation observation = observationMapper.map();
             Logger.tag(TAG).debug("deleteObservations: Deleting " + observation);
             JSONArray results = delete(API_HOST + "/observations/" + observation.id, null);
-            if ((results == null) && (mLastStatusCode != HttpStatus.SC_OK)) {
+            if ((results == null) && (getLastResponse().statusCode != HttpStatus.SC_OK)) {
                 c.close();
                 throw new SyncFailedException();
             }
@@ -3493,18 +3550,23 @@ public class INaturalistService extends IntentService {
         c.close();
 
         // Now it's safe to delete all of the observations locally
-        getContentResolver().delete(Observation.CONTENT_URI, "is_deleted = 1", null);
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newDelete(Observation.CONTENT_URI).withSelection("is_deleted = 1", null).build());
         // Delete associated project-fields and photos
-        int count1 = getContentResolver().delete(ObservationPhoto.CONTENT_URI, "observation_id in (" + StringUtils.join(obsIds, ",") + ")", null);
-        int count2 = getContentResolver().delete(ObservationPhoto.CONTENT_URI, "observation_uuid in (" + StringUtils.join(obsUUIDs, ",") + ")", null);
-        int count3 = getContentResolver().delete(ObservationSound.CONTENT_URI, "observation_id in (" + StringUtils.join(obsIds, ",") + ")", null);
-        int count4 = getContentResolver().delete(ObservationSound.CONTENT_URI, "observation_uuid in (" + StringUtils.join(obsUUIDs, ",") + ")", null);
-        int count5 = getContentResolver().delete(ProjectObservation.CONTENT_URI, "observation_id in (" + StringUtils.join(obsIds, ",") + ")", null);
-        int count6 = getContentResolver().delete(ProjectFieldValue.CONTENT_URI, "observation_id in (" + StringUtils.join(obsIds, ",") + ")", null);
-        int count7 = getContentResolver().delete(ObservationPhoto.CONTENT_URI, "_observation_id in (" + StringUtils.join(internalObsIds, ",") + ")", null);
-        int count8 = getContentResolver().delete(ObservationSound.CONTENT_URI, "_observation_id in (" + StringUtils.join(internalObsIds, ",") + ")", null);
-
-        Logger.tag(TAG).debug("deleteObservations: " + count1 + ":" + count2 + ":" + count3 + ":" + count4 + ":" + count5 + ":" + count6 + ":" + count7 + ":" + count8);
+        String joinedObsIds = StringUtils.join(obsIds, ",");
+        String joinedObsUUIDs = StringUtils.join(obsUUIDs, ",");
+        String joinedInternalObsIds = StringUtils.join(internalObsIds, ",");
+        operations.add(ContentProviderOperation.newDelete(ObservationPhoto.CONTENT_URI).withSelection("observation_id in (" + joinedObsIds + ")", null).build());
+        operations.add(ContentProviderOperation.newDelete(ObservationPhoto.CONTENT_URI).withSelection("observation_uuid in (" + joinedObsUUIDs + ")", null).build());
+        operations.add(ContentProviderOperation.newDelete(ObservationSound.CONTENT_URI).withSelection("observation_id in (" + joinedObsIds + ")", null).build());
+        operations.add(ContentProviderOperation.newDelete(ObservationSound.CONTENT_URI).withSelection("observation_uuid in (" + joinedObsUUIDs + ")", null).build());
+        operations.add(ContentProviderOperation.newDelete(ProjectObservation.CONTENT_URI).withSelection("observation_id in (" + joinedObsIds + ")", null).build());
+        operations.add(ContentProviderOperation.newDelete(ProjectFieldValue.CONTENT_URI).withSelection("observation_id in (" + joinedObsIds + ")", null).build());
+        operations.add(ContentProviderOperation.newDelete(ObservationPhoto.CONTENT_URI).withSelection("_observation_id in (" + joinedInternalObsIds + ")", null).build());
+        operations.add(ContentProviderOperation.newDelete(ObservationSound.CONTENT_URI).withSelection("_observation_id in (" + joinedInternalObsIds + ")", null).build());
+
+        ContentProviderResult[] results = applyOperations(operations);
+        Logger.tag(TAG).debug("deleteObservations: " + (results != null ? Arrays.toString(results) : "failed"));
 
 
         checkForCancelSync();
@@ -3516,6 +3578,116 @@ public class INaturalistService extends IntentService {
         if (mApp.getCancelSync()) throw new CancelSyncException();
     }
 
+    // Media upload pipeline for the current sync (created on first use)
+    private MediaUploadPipeline getUploadPipeline() {
+        if (mUploadPipeline == null) {
+            mUploadPipeline = new MediaUploadPipeline(MAX_CONCURRENT_UPLOADS, new MediaUploadPipeline.Callbacks() {
+                @Override
+                public boolean isCancelled() {
+                    return mApp.getCancelSync();
+                }
+
+                @Override
+                public void onProgress(int completedCount, int queuedCount, long bytesPerSecond) {
+                    Logger.tag(TAG).debug(String.format(Locale.ENGLISH, "Media uploads: %d completed, %d queued, %d bytes/sec", completedCount, queuedCount, bytesPerSecond));
+                    mApp.notify(getString(R.string.uploading),
+                            String.format(getString(R.string.uploading_media_progress), completedCount, queuedCount, Formatter.formatShortFileSize(INaturalistService.this, bytesPerSecond)));
+                }
+            });
+        }
+
+        return mUploadPipeline;
+    }
+
+    private void shutdownUploadPipeline() {
+        if (mUploadPipeline != null) {
+            mUploadPipeline.shutdown();
+            mUploadPipeline = null;
+        }
+    }
+
+    private synchronized UploadJournal getUploadJournal() {
+        if (mUploadJournal == null) {
+            mUploadJournal = new UploadJournal(getContentResolver());
+        }
+
+        return mUploadJournal;
+    }
+
+    // Uploads a media file, while keeping track of the upload in the upload journal
+    private ApiResponse uploadWithJournal(String mediaType, int mediaId, String mediaUuid, Integer observationId, String filename,
+                                          MediaUploadPipeline.Upload upload) throws Exception {
+        UploadJournal journal = getUploadJournal();
+        MediaUpload entry = journal.begin(mediaType, mediaId, mediaUuid, observationId, new File(filename));
+        ApiResponse response;
+
+        mCurrentUpload.set(entry);
+        try {
+            response = upload.upload();
+        } finally {
+            mCurrentUpload.remove();
+        }
+
+        if (response.isSuccessful()) {
+            journal.complete(entry);
+        } else {
+            journal.fail(entry);
+        }
+
+        return response;
+    }
+
+    // Photos that were fully uploaded during a previous (interrupted) sync, but whose response was never received -
+    // if the server already has them, there's no need to upload them again.
+    // Returns false if there were such photos, but the server couldn't be checked (so they shouldn't be uploaded again yet)
+    private boolean reconcileDeliveredPhotos(Observation observation) throws AuthenticationException {
+        if (observation.id == null) return true;
+
+        UploadJournal journal = getUploadJournal();
+        List<MediaUpload> delivered = journal.getUnacknowledged(MediaUpload.MEDIA_TYPE_PHOTO, observation.id);
+        if (delivered.isEmpty()) return true;
+
+        Logger.tag(TAG).info("reconcileDeliveredPhotos: " + observation.id + ": " + delivered.size() + " unacknowledged uploads");
+
+        JSONObject json = getObservationJson(observation.id, true, false);
+        if (json == null) return false;
+
+        // Delivered photos the server doesn't have will be uploaded again
+        Map<MediaUpload, JSONObject> onServer = journal.findOnServer(delivered, json.optJSONArray("observation_photos"));
+        for (Map.Entry<MediaUpload, JSONObject> entry : onServer.entrySet()) {
+            MediaUpload upload = entry.getKey();
+            JSONObject remotePhoto = entry.getValue();
+
+            Cursor c = getContentResolver().query(ObservationPhoto.CONTENT_URI, ObservationPhoto.PROJECTION,
+                    "_id = ?", new String[]{String.valueOf(upload.media_id)}, null);
+            if (c.getCount() > 0) {
+                ObservationPhoto op = new ObservationPhoto(c);
+                op.merge(new ObservationPhoto(new BetterJSONObject(remotePhoto)));
+                ContentValues cv = op.getContentValues();
+                cv.put(ObservationPhoto._SYNCED_AT, System.currentTimeMillis());
+                getContentResolver().update(op.getUri(), cv, null, null);
+                Logger.tag(TAG).info("reconcileDeliveredPhotos: Photo already on server, not uploading again: " + op);
+            }
+            c.close();
+
+            journal.complete(upload);
+        }
+
+        return true;
+    }
+
+    // Re-throws the first error encountered while uploading an observation's media files
+    private void throwUploadError(Exception error) throws AuthenticationException, CancelSyncException, SyncFailedException {
+        if (error == null) return;
+
+        if (error instanceof AuthenticationException) throw (AuthenticationException) error;
+        if (error instanceof CancelSyncException) throw (CancelSyncException) error;
+        if (error instanceof SyncFailedException) throw (SyncFailedException) error;
+
+        Logger.tag(TAG).error(error);
+        throw new SyncFailedException();
+    }
+
 
     private JSONObject removeFavorite(int observationId) throws AuthenticationException {
         ArrayList<NameValuePair> params = new ArrayList<NameValuePair>();
@@ -3627,7 +3799,7 @@ public class INaturalistService extends IntentService {
             userJson.put("time_zone", timezone);
             paramsJson.put("user", userJson);
             JSONArray array = put(API_HOST + "/users/" + mLogin, paramsJson);
-            if ((mResponseErrors != null) || (array == null)) {
+            if ((getLastResponse().errors != null) || (array == null)) {
                 // Couldn't update user
                 return null;
             } else {
@@ -3646,7 +3818,7 @@ public class INaturalistService extends IntentService {
 
         JSONArray array = put(API_HOST + "/users/" + mLogin, params);
 
-        if ((mResponseErrors != null) || (array == null)) {
+        if ((getLastResponse().errors != null) || (array == null)) {
             // Couldn't update user
             return null;
         } else {
@@ -3689,7 +3861,7 @@ public class INaturalistService extends IntentService {
 
         JSONArray array = put(API_HOST + "/users/" + mLogin, params);
 
-        if ((mResponseErrors != null) || (array == null)) {
+        if ((getLastResponse().errors != null) || (array == null)) {
             // Couldn't update user
             return null;
         } else {
@@ -3768,10 +3940,10 @@ public class INaturalistService extends IntentService {
         }
 
         JSONArray response = request(HOST + "/users.json", "post", params, null, true, true, true);
-        if (mResponseErrors != null) {
+        if (getLastResponse().errors != null) {
             // Couldn't create user
             try {
-                return mResponseErrors.getString(0);
+                return getLastResponse().errors.getString(0);
             } catch (JSONException e) {
                 Logger.tag(TAG).error(e);
                 return null;
@@ -3822,27 +3994,29 @@ public class INaturalistService extends IntentService {
             // Update observation
             Logger.tag(TAG).debug("postObservation: Updating existing " + observation.id + ":" + observation._id);
 
-            JSONArray response = request(API_HOST + "/observations/" + observation.id + "?locale=" + mApp.getLanguageCodeForAPI(), "put", null, observationToJsonObject(observation, false), true, true, false);
+            ApiResponse response = execute(API_HOST + "/observations/" + observation.id + "?locale=" + mApp.getLanguageCodeForAPI(), "put", null, observationToJsonObject(observation, false), true, true, false);
 
-            if (response == null) {
-                Logger.tag(TAG).debug("postObservation: Error for " + observation.id + ":" + observation._id + ":" + mLastStatusCode);
+            if (!response.isSuccessful()) {
+                Logger.tag(TAG).debug("postObservation: Error for " + observation.id + ":" + observation._id + ":" + response.statusCode);
                 // Some sort of error
-                if ((mLastStatusCode >= 400) && (mLastStatusCode < 500)) {
+                if (response.isClientError()) {
                     // Observation doesn't exist anymore (deleted remotely, and due to network
                     // issues we didn't get any notification of this) - so delete the observation
                     // locally.
                     Logger.tag(TAG).debug("postObservation: Deleting obs " + observation.id + ":" + observation._id);
 
-                    getContentResolver().delete(Observation.CONTENT_URI, "id = " + observation.id, null);
+                    ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+                    operations.add(ContentProviderOperation.newDelete(Observation.CONTENT_URI).withSelection("id = " + observation.id, null).build());
                     // Delete associated project-fields and photos
-                    int count1 = getContentResolver().delete(ObservationPhoto.CONTENT_URI, "observation_id = " + observation.id, null);
-                    int count2 = getContentResolver().delete(ObservationPhoto.CONTENT_URI, "observation_uuid = \"" + observation.uuid + "\"", null);
-                    int count3 = getContentResolver().delete(ObservationSound.CONTENT_URI, "observation_id = " + observation.id, null);
-                    int count4 = getContentResolver().delete(ObservationSound.CONTENT_URI, "observation_uuid = \"" + observation.uuid + "\"", null);
-                    int count5 = getContentResolver().delete(ProjectObservation.CONTENT_URI, "observation_id = " + observation.id, null);
-                    int count6 = getContentResolver().delete(ProjectFieldValue.CONTENT_URI, "observation_id = " + observation.id, null);
+                    operations.add(ContentProviderOperation.newDelete(ObservationPhoto.CONTENT_URI).withSelection("observation_id = " + observation.id, null).build());
+                    operations.add(ContentProviderOperation.newDelete(ObservationPhoto.CONTENT_URI).withSelection("observation_uuid = ?", new String[]{observation.uuid}).build());
+                    operations.add(ContentProviderOperation.newDelete(ObservationSound.CONTENT_URI).withSelection("observation_id = " + observation.id, null).build());
+                    operations.add(ContentProviderOperation.newDelete(ObservationSound.CONTENT_URI).withSelection("observation_uuid = ?", new String[]{observation.uuid}).build());
+                    operations.add(ContentProviderOperation.newDelete(ProjectObservation.CONTENT_URI).withSelection("observation_id = " + observation.id, null).build());
+                    operations.add(ContentProviderOperation.newDelete(ProjectFieldValue.CONTENT_URI).withSelection("observation_id = " + observation.id, null).build());
 
-                    Logger.tag(TAG).debug("postObservation: After delete: " + count1 + ":" + count2 + ":" + count3 + ":" + count4 + ":" + count5 + ":" + count6);
+                    ContentProviderResult[] results = applyOperations(operations);
+                    Logger.tag(TAG).debug("postObservation: After delete: " + (results != null ? Arrays.toString(results) : "failed"));
 
                     return true;
                 }
@@ -3865,7 +4039,7 @@ public class INaturalistService extends IntentService {
 
         boolean success = handleObservationResponse(
                 observation,
-                request(API_HOST + "/observations?locale=" + mApp.getLanguageCodeForAPI(), "post", null, observationParams, true, true, false)
+                execute(API_HOST + "/observations?locale=" + mApp.getLanguageCodeForAPI(), "post", null, observationParams, true, true, false)
         );
 
         if (!success) {
@@ -3933,10 +4107,15 @@ public class INaturalistService extends IntentService {
 
         checkForCancelSync();
 
-        // for each observation POST to /sounds
+        // for each observation POST to /sounds (uploaded concurrently, results are saved in order)
+        MediaUploadPipeline pipeline = getUploadPipeline();
+        List<ObservationSound> pendingSounds = new ArrayList<>();
+        List<MediaUploadPipeline.Ticket> tickets = new ArrayList<>();
+
+        CursorRowMapper<ObservationSound> soundMapper = CursorRowMapper.forSounds(c);
         c.moveToFirst();
         while (c.isAfterLast() == false) {
-            os = new ObservationSound(c);
+            os = soundMapper.map();
 
             Logger.tag(TAG).debug("postSounds: Posting sound - " + os);
 
@@ -3959,27 +4138,43 @@ public class INaturalistService extends IntentService {
                 errors.put(getString(R.string.deleted_sounds_from_cache_error));
                 mApp.setErrorsForObservation(os.observation_id, 0, errors);
 
-                // Move to next observation sound
+                // Move to next observation sound (cancellation is checked while waiting for the queued uploads)
                 c.moveToNext();
-                checkForCancelSync();
 
                 continue;
             }
 
-            ArrayList<NameValuePair> params = os.getParams();
+            final ArrayList<NameValuePair> params = os.getParams();
             params.add(new BasicNameValuePair("audio", os.filename));
 
-            JSONArray response;
-            String inatNetwork = mApp.getInaturalistNetworkMember();
-            response = request( API_HOST + "/observation_sounds", "post", params, null, true, true, false);
+            pendingSounds.add(os);
+            final ObservationSound sound = os;
+            tickets.add(pipeline.submit(() -> uploadWithJournal(MediaUpload.MEDIA_TYPE_SOUND, sound._id, null, sound.observation_id, sound.filename,
+                    () -> execute(API_HOST + "/observation_sounds", "post", params, null, true, true, false)), new File(os.filename).length()));
 
+            c.moveToNext();
+        }
+        c.close();
+
+        // Save the results in the original order (stop only after all in-progress uploads are saved, so none are uploaded twice)
+        Exception uploadError = null;
+        for (int i = 0; i < tickets.size(); i++) {
+            os = pendingSounds.get(i);
+
+            MediaUploadPipeline.Result result;
             try {
-                if (response == null || response.length() != 1) {
-                    c.close();
-                    throw new SyncFailedException();
-                }
+                result = pipeline.await(tickets.get(i));
+            } catch (CancelSyncException e) {
+                uploadError = e;
+                continue;
+            }
+            if (!result.isSuccessful() || (result.response.body.length() != 1)) {
+                if (uploadError == null) uploadError = result.error != null ? result.error : new SyncFailedException();
+                continue;
+            }
 
-                JSONObject json = response.getJSONObject(0);
+            try {
+                JSONObject json = result.response.body.getJSONObject(0);
                 BetterJSONObject j = new BetterJSONObject(json);
                 ObservationSound jsonObservationSound = new ObservationSound(j);
                 Logger.tag(TAG).debug("postSounds: Response for POST: ");
@@ -3998,11 +4193,10 @@ public class INaturalistService extends IntentService {
             } catch (JSONException e) {
                 Logger.tag(TAG).error("JSONException: " + e.toString());
             }
-
-            c.moveToNext();
-            checkForCancelSync();
         }
-        c.close();
+
+        throwUploadError(uploadError);
+        checkForCancelSync();
 
 
         c = getContentResolver().query(ObservationSound.CONTENT_URI,
@@ -4037,13 +4231,17 @@ public class INaturalistService extends IntentService {
                     new String[]{String.valueOf(observationId)},
                     ObservationPhoto.DEFAULT_SORT_ORDER);
 
+            // Fix-ups of photos in an invalid state are applied in a single batch
+            ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+
+            CursorRowMapper<ObservationPhoto> photoMapper = CursorRowMapper.forPhotos(c);
             c.moveToFirst();
             while (c.isAfterLast() == false) {
-                op = new ObservationPhoto(c);
+                op = photoMapper.map();
                 // Shouldn't happen - a photo with null external ID is marked as sync - unmark it
                 op._synced_at = null;
                 Logger.tag(TAG).debug("postPhotos: Updating with _synced_at = null: " + op);
-                getContentResolver().update(op.getUri(), op.getContentValues(), null, null);
+                operations.add(ContentProviderOperation.newUpdate(op.getUri()).withValues(op.getContentValues()).build());
                 c.moveToNext();
             }
             c.close();
@@ -4054,17 +4252,20 @@ public class INaturalistService extends IntentService {
                     new String[]{String.valueOf(observationId)},
                     ObservationPhoto.DEFAULT_SORT_ORDER);
 
+            photoMapper = CursorRowMapper.forPhotos(c);
             c.moveToFirst();
             while (c.isAfterLast() == false) {
-                op = new ObservationPhoto(c);
+                op = photoMapper.map();
                 // Shouldn't happen - a photo with an external ID is marked as never been synced
                 cv = op.getContentValues();
                 cv.put(ObservationPhoto._SYNCED_AT, System.currentTimeMillis());
-                getContentResolver().update(op.getUri(), cv, null, null);
+                operations.add(ContentProviderOperation.newUpdate(op.getUri()).withValues(cv).build());
                 c.moveToNext();
             }
             c.close();
 
+            applyOperations(operations);
+
 
             // update photos - for each observation PUT to /observation_photos/:id
             c = getContentResolver().query(ObservationPhoto.CONTENT_URI,
@@ -4077,11 +4278,12 @@ public class INaturalistService extends IntentService {
 
             Logger.tag(TAG).debug("postPhotos: Updating photos: " + updatedCount);
 
+            photoMapper = CursorRowMapper.forPhotos(c);
             c.moveToFirst();
             while (c.isAfterLast() == false) {
                 checkForCancelSync();
 
-                op = new ObservationPhoto(c);
+                op = photoMapper.map();
                 String inatNetwork = mApp.getInaturalistNetworkMember();
 
                 // Updating the photo requires calling two APIs - one for updating the license (the Photo object itself),
@@ -4096,12 +4298,12 @@ public class INaturalistService extends IntentService {
                     e.printStackTrace();
                 }
                 Logger.tag(TAG).debug("postPhotos: Photo: Updating " + op + ":" + params);
-                JSONArray response = put(API_HOST + "/photos/" + op.photo_id, params);
+                ApiResponse response = execute(API_HOST + "/photos/" + op.photo_id, "put", null, params, true, false, false);
                 try {
-                    if (response == null || response.length() != 1) {
-                        Logger.tag(TAG).debug("postPhotos: Failed updating " + op.id);
+                    if (!response.isSuccessful() || (response.body.length() != 1)) {
+                        Logger.tag(TAG).debug("postPhotos: Failed updating " + op.id + ": " + response);
 
-                        if ((mLastStatusCode != HttpStatus.SC_FORBIDDEN) && (mLastStatusCode != HttpStatus.SC_NOT_FOUND)) {
+                        if ((response.statusCode != HttpStatus.SC_FORBIDDEN) && (response.statusCode != HttpStatus.SC_NOT_FOUND)) {
                             c.close();
                             throw new SyncFailedException();
                         } else {
@@ -4123,17 +4325,17 @@ public class INaturalistService extends IntentService {
                     innerPhoto.put("position", op.position);
                     params2.put("observation_photo", innerPhoto);
                     Logger.tag(TAG).debug("postPhotos: ObservationPhoto: Updating " + op + ":" + params2);
-                    response = put(API_HOST + "/observation_photos/" + op.id, params2);
+                    response = execute(API_HOST + "/observation_photos/" + op.id, "put", null, params2, true, false, false);
 
-                    if (response == null || response.length() != 1) {
-                        Logger.tag(TAG).debug("postPhotos: Failed updating " + op.id);
+                    if (!response.isSuccessful() || (response.body.length() != 1)) {
+                        Logger.tag(TAG).debug("postPhotos: Failed updating " + op.id + ": " + response);
                         c.close();
                         throw new SyncFailedException();
                     }
 
                     increaseProgressForObservation(observation);
 
-                    JSONObject json = response.getJSONObject(0);
+                    JSONObject json = response.body.getJSONObject(0);
                     BetterJSONObject j = new BetterJSONObject(json);
                     ObservationPhoto jsonObservationPhoto = new ObservationPhoto(j, op);
                     Logger.tag(TAG).debug("postPhotos after put: " + j.getJSONObject());
@@ -4155,6 +4357,9 @@ public class INaturalistService extends IntentService {
 
         }
 
+        // Don't re-send photos that the server already received during an interrupted sync
+        boolean deliveredPhotosChecked = reconcileDeliveredPhotos(observation);
+
         // query observation photos where _synced_at is null (i.e. new photos)
         Cursor c = getContentResolver().query(ObservationPhoto.CONTENT_URI,
                 ObservationPhoto.PROJECTION,
@@ -4167,10 +4372,15 @@ public class INaturalistService extends IntentService {
 
         checkForCancelSync();
 
-        // for each observation POST to /observation_photos
+        // for each observation POST to /observation_photos (uploaded concurrently, results are saved in order)
+        MediaUploadPipeline pipeline = getUploadPipeline();
+        List<ObservationPhoto> pendingPhotos = new ArrayList<>();
+        List<MediaUploadPipeline.Ticket> tickets = new ArrayList<>();
+
+        CursorRowMapper<ObservationPhoto> photoMapper = CursorRowMapper.forPhotos(c);
         c.moveToFirst();
         while (c.isAfterLast() == false) {
-            op = new ObservationPhoto(c);
+            op = photoMapper.map();
 
             Logger.tag(TAG).debug("postPhotos: Posting photo - " + op);
 
@@ -4181,7 +4391,17 @@ public class INaturalistService extends IntentService {
                 continue;
             }
 
-            ArrayList<NameValuePair> params = op.getParams();
+            if (!deliveredPhotosChecked) {
+                MediaUpload upload = getUploadJournal().get(MediaUpload.MEDIA_TYPE_PHOTO, op._id);
+                if ((upload != null) && upload.wasDelivered()) {
+                    // Might already be on the server - don't create a duplicate (it'll be checked again on the next sync)
+                    Logger.tag(TAG).debug("postPhotos: Skipping delivered photo that couldn't be checked against the server - " + op);
+                    c.moveToNext();
+                    continue;
+                }
+            }
+
+            final ArrayList<NameValuePair> params = op.getParams();
 
             String imgFilePath = op.photo_filename;
             if (imgFilePath == null) {
@@ -4215,9 +4435,8 @@ public class INaturalistService extends IntentService {
                 errors.put(getString(R.string.deleted_photos_from_cache_error));
                 mApp.setErrorsForObservation(op.observation_id, 0, errors);
 
-                // Move to next observation photo
+                // Move to next observation photo (cancellation is checked while waiting for the queued uploads)
                 c.moveToNext();
-                checkForCancelSync();
 
                 continue;
             }
@@ -4226,18 +4445,38 @@ public class INaturalistService extends IntentService {
             String inatNetwork = mApp.getInaturalistNetworkMember();
             params.add(new BasicNameValuePair("site_id", mApp.getStringResourceByName("inat_site_id_" + inatNetwork)));
 
-            JSONArray response;
             Logger.tag(TAG).debug("postPhotos: POSTing new photo: " + params);
-            response = post(API_HOST + "/observation_photos", params, true);
+            pendingPhotos.add(op);
+            final ObservationPhoto photo = op;
+            final String photoFilename = imgFilePath;
+            tickets.add(pipeline.submit(() -> uploadWithJournal(MediaUpload.MEDIA_TYPE_PHOTO, photo._id, photo.uuid, photo.observation_id, photoFilename,
+                    () -> execute(API_HOST + "/observation_photos", "post", params, null, true, false, false)), new File(imgFilePath).length()));
+
+            c.moveToNext();
+        }
+        c.close();
+
+        // Save the results in the original order (stop only after all in-progress uploads are saved, so none are uploaded twice)
+        Exception uploadError = null;
+        for (int i = 0; i < tickets.size(); i++) {
+            op = pendingPhotos.get(i);
+
+            MediaUploadPipeline.Result result;
             try {
-                if (response == null || response.length() != 1) {
-                    c.close();
-                    throw new SyncFailedException();
-                }
+                result = pipeline.await(tickets.get(i));
+            } catch (CancelSyncException e) {
+                uploadError = e;
+                continue;
+            }
+            if (!result.isSuccessful() || (result.response.body.length() != 1)) {
+                if (uploadError == null) uploadError = result.error != null ? result.error : new SyncFailedException();
+                continue;
+            }
 
+            try {
                 increaseProgressForObservation(observation);
 
-                JSONObject json = response.getJSONObject(0);
+                JSONObject json = result.response.body.getJSONObject(0);
                 BetterJSONObject j = new BetterJSONObject(json);
                 ObservationPhoto jsonObservationPhoto = new ObservationPhoto(j);
                 Logger.tag(TAG).debug("postPhotos: Response for POST: ");
@@ -4254,11 +4493,10 @@ public class INaturalistService extends IntentService {
             } catch (JSONException e) {
                 Logger.tag(TAG).error("JSONException: " + e.toString());
             }
-
-            c.moveToNext();
-            checkForCancelSync();
         }
-        c.close();
+
+        throwUploadError(uploadError);
+        checkForCancelSync();
 
         c = getContentResolver().query(ObservationPhoto.CONTENT_URI,
                 ObservationPhoto.PROJECTION,
@@ -4326,8 +4564,9 @@ public class INaturalistService extends IntentService {
 
         Logger.tag(TAG).info(String.format(Locale.ENGLISH, "clearOldCachedPhotos - %d available cached photos", totalCount));
 
+        CursorRowMapper<ObservationPhoto> photoMapper = CursorRowMapper.forPhotos(c);
         while ((totalCount > OLD_PHOTOS_MAX_COUNT) && (!c.isAfterLast()) && (photosReplacedCount < MAX_PHOTO_REPLACEMENTS_PER_RUN)) {
-            ObservationPhoto op = new ObservationPhoto(c);
+            ObservationPhoto op = photoMapper.map();
 
             Logger.tag(TAG).info(String.format(Locale.ENGLISH, "clearOldCachedPhotos - clearing photo %d: %s", photosReplacedCount, op.toString()));
 
@@ -4454,19 +4693,16 @@ public class INaturalistService extends IntentService {
     private String getGuideXML(Integer guideId) throws AuthenticationException {
         String url = HOST + "/guides/" + guideId.toString() + ".xml?locale=" + mApp.getLanguageCodeForAPI();
 
+        // The response is closed on every path (an open response holds one of the host's connection permits)
+        Response response = null;
+        OutputStream output = null;
         try {
-            OkHttpClient client = new OkHttpClient().newBuilder()
-                    .followRedirects(true)
-                    .followSslRedirects(true)
-                    .connectTimeout(HTTP_CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS)
-                    .writeTimeout(HTTP_READ_WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
-                    .readTimeout(HTTP_READ_WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
-                    .build();
+            OkHttpClient client = SharedHttpClient.getInstance().getClient();
             Request request = new Request.Builder()
                     .url(url)
                     .build();
 
-            Response response = client.newCall(request).execute();
+            response = client.newCall(request).execute();
 
             if (!response.isSuccessful()) {
                 return null;
@@ -4474,7 +4710,7 @@ public class INaturalistService extends IntentService {
 
             InputStream buffer = new BufferedInputStream(response.body().byteStream());
             File outputFile = File.createTempFile(guideId.toString() + ".xml", null, getBaseContext().getCacheDir());
-            OutputStream output = new FileOutputStream(outputFile);
+            output = new FileOutputStream(outputFile);
 
             int count = 0;
             byte data[] = new byte[1024];
@@ -4487,16 +4723,23 @@ public class INaturalistService extends IntentService {
 
             // closing streams
             output.close();
+            output = null;
             buffer.close();
 
-            response.close();
-
             // Return the downloaded full file name
             return outputFile.getAbsolutePath();
 
         } catch (IOException e) {
             Logger.tag(TAG).error(e);
             return null;
+        } finally {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException e) {
+                }
+            }
+            if (response != null) response.close();
         }
 
     }
@@ -4734,7 +4977,7 @@ public class INaturalistService extends IntentService {
             e.printStackTrace();
         }
 
-        return mLastStatusCode == HttpStatus.SC_NOT_FOUND;
+        return getLastResponse().statusCode == HttpStatus.SC_NOT_FOUND;
     }
 
     private BetterJSONObject getUserDetails() throws AuthenticationException {
@@ -5116,7 +5359,7 @@ public class INaturalistService extends IntentService {
             return false;
         }
 
-        return ((mResponseErrors == null) && (mLastStatusCode == HttpStatus.SC_OK));
+        return ((getLastResponse().errors == null) && (getLastResponse().statusCode == HttpStatus.SC_OK));
     }
 
 
@@ -5235,7 +5478,7 @@ public class INaturalistService extends IntentService {
         }
         JSONArray json = post(url, content);
 
-        return mLastStatusCode == HttpStatus.SC_OK;
+        return getLastResponse().statusCode == HttpStatus.SC_OK;
     }
 
     private boolean muteUser(Integer userId) throws AuthenticationException {
@@ -5244,7 +5487,7 @@ public class INaturalistService extends IntentService {
         JSONObject content = new JSONObject();
         JSONArray json = post(url, content);
 
-        return mLastStatusCode == HttpStatus.SC_OK;
+        return getLastResponse().statusCode == HttpStatus.SC_OK;
     }
 
     private boolean unmuteUser(Integer userId) throws AuthenticationException {
@@ -5253,7 +5496,7 @@ public class INaturalistService extends IntentService {
         JSONObject content = new JSONObject();
         JSONArray json = delete(url, null);
 
-        return mLastStatusCode == HttpStatus.SC_OK;
+        return getLastResponse().statusCode == HttpStatus.SC_OK;
     }
 
 
@@ -5442,25 +5685,36 @@ public class INaturalistService extends IntentService {
                 JSONArray newResults = new JSONArray();
                 int minId = Integer.MAX_VALUE;
 
-                // Remove any observations that were previously downloaded
+                // Remove any observations that were previously downloaded (looked up with a single query)
+                List<Integer> resultIds = new ArrayList<>();
                 for (int i = 0; i < results.length(); i++) {
                     int currentId = results.getJSONObject(i).getInt("id");
-                    Cursor c = getContentResolver().query(Observation.CONTENT_URI,
-                            Observation.PROJECTION,
-                            "_id = ?",
-                            new String[]{String.valueOf(currentId)},
-                            Observation.DEFAULT_SORT_ORDER);
-
+                    resultIds.add(currentId);
                     if (currentId < minId) {
                         minId = currentId;
                     }
+                }
 
-                    if (c.getCount() == 0) {
-                        newResults.put(results.getJSONObject(i));
+                Set<Integer> existingIds = new HashSet<>();
+                if (!resultIds.isEmpty()) {
+                    Cursor c = getContentResolver().query(Observation.CONTENT_URI,
+                            new String[]{Observation._ID},
+                            "_id IN (" + StringUtils.join(resultIds, ",") + ")",
+                            null,
+                            null);
+                    c.moveToFirst();
+                    while (!c.isAfterLast()) {
+                        existingIds.add(c.getInt(0));
+                        c.moveToNext();
                     }
-
                     c.close();
                 }
+
+                for (int i = 0; i < results.length(); i++) {
+                    if (!existingIds.contains(resultIds.get(i))) {
+                        newResults.put(results.getJSONObject(i));
+                    }
+                }
                 syncJson(newResults, true);
 
                 if (results.length() == 0) {
@@ -5513,35 +5767,38 @@ public class INaturalistService extends IntentService {
             ArrayList<String> ids = new ArrayList<>();
             ArrayList<String> uuids = new ArrayList<>();
             for (int i = 0; i < results.length(); i++) {
-                String id = String.valueOf(results.optInt(i));
-                ids.add(id);
-
-                Cursor obsc = getContentResolver().query(Observation.CONTENT_URI,
-                        Observation.PROJECTION,
-                        "id = " + id, null, Observation.DEFAULT_SORT_ORDER);
-                if (obsc.getCount() > 0) {
-                    obsc.moveToFirst();
-                    Observation obs = new Observation(obsc);
-                    uuids.add('"' + obs.uuid + '"');
-                }
-                obsc.close();
+                ids.add(String.valueOf(results.optInt(i)));
             }
             String deletedIds = StringUtils.join(ids, ",");
+
+            // Find the UUIDs of the deleted observations (in a single query)
+            Cursor obsc = getContentResolver().query(Observation.CONTENT_URI,
+                    new String[]{Observation.UUID},
+                    "id IN (" + deletedIds + ")", null, Observation.DEFAULT_SORT_ORDER);
+            obsc.moveToFirst();
+            while (!obsc.isAfterLast()) {
+                uuids.add('"' + obsc.getString(0) + '"');
+                obsc.moveToNext();
+            }
+            obsc.close();
             String deletedUUIDs = uuids.size() > 0 ? StringUtils.join(uuids, ",") : null;
 
             Logger.tag(TAG).debug("syncRemotelyDeletedObs: " + deletedIds);
 
-            getContentResolver().delete(Observation.CONTENT_URI, "(id IN (" + deletedIds + "))", null);
+            ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+            operations.add(ContentProviderOperation.newDelete(Observation.CONTENT_URI).withSelection("(id IN (" + deletedIds + "))", null).build());
             // Delete associated project-fields and photos
-            int count1 = getContentResolver().delete(ObservationPhoto.CONTENT_URI, "observation_id in (" + deletedIds + ")", null);
-            int count2 = getContentResolver().delete(ObservationSound.CONTENT_URI, "observation_id in (" + deletedIds + ")", null);
-            int count3 = getContentResolver().delete(ProjectObservation.CONTENT_URI, "observation_id in (" + deletedIds + ")", null);
-            int count4 = getContentResolver().delete(ProjectFieldValue.CONTENT_URI, "observation_id in (" + deletedIds + ")", null);
+            operations.add(ContentProviderOperation.newDelete(ObservationPhoto.CONTENT_URI).withSelection("observation_id in (" + deletedIds + ")", null).build());
+            operations.add(ContentProviderOperation.newDelete(ObservationSound.CONTENT_URI).withSelection("observation_id in (" + deletedIds + ")", null).build());
+            operations.add(ContentProviderOperation.newDelete(ProjectObservation.CONTENT_URI).withSelection("observation_id in (" + deletedIds + ")", null).build());
+            operations.add(ContentProviderOperation.newDelete(ProjectFieldValue.CONTENT_URI).withSelection("observation_id in (" + deletedIds + ")", null).build());
 
             if (deletedUUIDs != null) {
-                int count5 = getContentResolver().delete(ObservationPhoto.CONTENT_URI, "observation_uuid in (" + deletedUUIDs + ")", null);
-                int count6 = getContentResolver().delete(ObservationSound.CONTENT_URI, "observation_uuid in (" + deletedUUIDs + ")", null);
+                operations.add(ContentProviderOperation.newDelete(ObservationPhoto.CONTENT_URI).withSelection("observation_uuid in (" + deletedUUIDs + ")", null).build());
+                operations.add(ContentProviderOperation.newDelete(ObservationSound.CONTENT_URI).withSelection("observation_uuid in (" + deletedUUIDs + ")", null).build());
             }
+
+            applyOperations(operations);
         }
 
         checkForCancelSync();
@@ -5574,17 +5831,10 @@ public class INaturalistService extends IntentService {
         mProjectObservations = new ArrayList<SerializableJSONArray>();
         mProjectFieldValues = new Hashtable<Integer, Hashtable<Integer, ProjectFieldValue>>();
 
-        JSONArray json = get(url, true);
+        // The results are decoded and synced while streaming, without holding the entire response in memory
+        JSONArray json = downloadAndSyncObservations(url, true);
         if (json != null && json.length() > 0) {
             Logger.tag(TAG).debug("getUserObservations");
-            JSONArray results = null;
-            try {
-                results = json.getJSONObject(0).getJSONArray("results");
-            } catch (JSONException e) {
-                Logger.tag(TAG).error(e);
-                return false;
-            }
-            syncJson(results, true);
             return true;
         }
 
@@ -5686,7 +5936,7 @@ public class INaturalistService extends IntentService {
                 JSONArray result = post(API_HOST + "/observation_field_values", params);
 
                 if (result == null) {
-                    if (mResponseErrors == null) {
+                    if (getLastResponse().errors == null) {
                         c.close();
                         throw new SyncFailedException();
                     } else {
@@ -5865,7 +6115,7 @@ public class INaturalistService extends IntentService {
                 JSONArray result = post(API_HOST + "/observation_field_values", params);
 
                 if (result == null) {
-                    if (mResponseErrors == null) {
+                    if (getLastResponse().errors == null) {
                         c.close();
                         throw new SyncFailedException();
                     } else {
@@ -6012,7 +6262,7 @@ public class INaturalistService extends IntentService {
             // Only send the reply if a new near by observations request hasn't been made yet
             if (json != null) {
                 JSONArray results = json.optJSONObject(0).optJSONArray("results");
-                mApp.setServiceResult(ACTION_NEARBY, new SerializableJSONArray(results));
+                ServiceResultBus.getInstance().publish(reply, ACTION_NEARBY, new SerializableJSONArray(results));
             }
             LocalBroadcastManager.getInstance(this).sendBroadcast(reply);
         }
@@ -6056,6 +6306,12 @@ public class INaturalistService extends IntentService {
         return request(url, method, params, jsonContent, authenticated, false, false);
     }
 
+    // Returns the last API response received by the current thread
+    private ApiResponse getLastResponse() {
+        ApiResponse response = mLastResponse.get();
+        return response != null ? response : new ApiResponse("", "");
+    }
+
     private String getAnonymousJWTToken() {
         String anonymousApiSecret = getString(R.string.jwt_anonymous_api_secret);
 
@@ -6107,23 +6363,91 @@ public class INaturalistService extends IntentService {
     }
 
     private JSONArray request(String url, String method, ArrayList<NameValuePair> params, JSONObject jsonContent, boolean authenticated, boolean useJWTToken, boolean allowAnonymousJWTToken) throws AuthenticationException {
-        OkHttpClient client = new OkHttpClient().newBuilder()
-                .followRedirects(true)
-                .followSslRedirects(true)
-                .connectTimeout(HTTP_CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS)
-                .writeTimeout(HTTP_READ_WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
-                .readTimeout(HTTP_READ_WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
-                .build();
+        return request(url, method, params, jsonContent, authenticated, useJWTToken, allowAnonymousJWTToken, null);
+    }
+
+    // In case resultHandler is non-null, a successful response is streamed - the elements of its results array are
+    // handed to resultHandler one by one, and the returned JSON array contains only the rest of the response object
+    private JSONArray request(String url, String method, ArrayList<NameValuePair> params, JSONObject jsonContent, boolean authenticated, boolean useJWTToken, boolean allowAnonymousJWTToken,
+                              StreamingJsonResponse.ResultHandler resultHandler) throws AuthenticationException {
+        return execute(url, method, params, jsonContent, authenticated, useJWTToken, allowAnonymousJWTToken, resultHandler).body;
+    }
+
+    private ApiResponse execute(String url, String method, ArrayList<NameValuePair> params, JSONObject jsonContent, boolean authenticated, boolean useJWTToken, boolean allowAnonymousJWTToken) throws AuthenticationException {
+        return execute(url, method, params, jsonContent, authenticated, useJWTToken, allowAnonymousJWTToken, null);
+    }
+
+    /** Performs an API call - the returned response holds its status, headers, parsed body, errors and timing */
+    private ApiResponse execute(final String url, final String method, final ArrayList<NameValuePair> params, final JSONObject jsonContent, final boolean authenticated, final boolean useJWTToken, final boolean allowAnonymousJWTToken,
+                                final StreamingJsonResponse.ResultHandler resultHandler) throws AuthenticationException {
+        if (!method.equalsIgnoreCase("get") || (params != null) || (jsonContent != null) || (resultHandler != null)) {
+            return executeRequest(url, method, params, jsonContent, authenticated, useJWTToken, allowAnonymousJWTToken, resultHandler);
+        }
+
+        // Identical GET calls made at the same time (e.g. several screens asking for the same taxon) share a single call
+        ApiResponse response;
+        try {
+            response = RequestCoalescer.getInstance().execute(getCoalescingKey(url, authenticated),
+                    () -> executeRequest(url, method, null, null, authenticated, useJWTToken, allowAnonymousJWTToken, null));
+        } catch (AuthenticationException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            // Shouldn't happen (the call only throws AuthenticationException)
+            Logger.tag(TAG).error(e);
+            response = new ApiResponse(method.toUpperCase(), url);
+        }
+
+        mLastResponse.set(response);
+        return response;
+    }
+
+    // Identifies identical GET calls - the normalized URL, plus who the call is made on behalf of
+    private String getCoalescingKey(String url, boolean authenticated) {
+        String normalizedUrl = url;
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        if (httpUrl != null) {
+            HttpUrl.Builder builder = httpUrl.newBuilder().query(null);
+            for (String name : new TreeSet<>(httpUrl.queryParameterNames())) {
+                for (String value : httpUrl.queryParameterValues(name)) {
+                    builder.addQueryParameter(name, value);
+                }
+            }
+            normalizedUrl = builder.build().toString();
+        }
+
+        // Node API calls are always authenticated when logged in
+        boolean isAuthenticated = (authenticated || url.startsWith(API_HOST)) && (mCredentials != null);
+        return normalizedUrl + " " + (isAuthenticated ? mLogin : "");
+    }
+
+    private ApiResponse executeRequest(String url, String method, ArrayList<NameValuePair> params, JSONObject jsonContent, boolean authenticated, boolean useJWTToken, boolean allowAnonymousJWTToken,
+                                       StreamingJsonResponse.ResultHandler resultHandler) throws AuthenticationException {
+        ApiResponse apiResponse = new ApiResponse(method.toUpperCase(), url);
+        mLastResponse.set(apiResponse);
+
+        try {
+            apiResponse.body = performRequest(apiResponse, params, jsonContent, authenticated, useJWTToken, allowAnonymousJWTToken, resultHandler);
+        } finally {
+            apiResponse.durationMillis = System.currentTimeMillis() - apiResponse.startedAt;
+            Logger.tag(TAG).debug("API call: " + apiResponse);
+        }
+
+        return apiResponse;
+    }
+
+    // Returns the parsed response body (or null in case of failure)
+    private JSONArray performRequest(ApiResponse apiResponse, ArrayList<NameValuePair> params, JSONObject jsonContent, boolean authenticated, boolean useJWTToken, boolean allowAnonymousJWTToken,
+                                     StreamingJsonResponse.ResultHandler resultHandler) throws AuthenticationException {
+        String url = apiResponse.url;
+        String method = apiResponse.method;
+        // Read-mostly endpoints are served from (and revalidated against) the on-disk response cache
+        OkHttpClient client = ApiResponseCache.getInstance(this).getClient();
         Request.Builder requestBuilder = new Request.Builder()
                 .addHeader("User-Agent", getUserAgent(mApp))
                 .url(url);
 
-        mRetryAfterDate = null;
-        mServiceUnavailable = false;
-
         Logger.tag(TAG).debug(String.format(Locale.ENGLISH, "URL: %s - %s (params: %s / %s)", method, url, (params != null ? params.toString() : "null"), (jsonContent != null ? jsonContent.toString() : "null")));
 
-        method = method.toUpperCase();
         RequestBody requestBody = null;
 
         if (method.equals("GET") && (params != null)) {
@@ -6167,8 +6491,13 @@ public class INaturalistService extends IntentService {
                             mediaType = MediaType.parse("image/" + value.substring(value.lastIndexOf(".") + 1));
                         }
                         File file = new File(value);
-                        requestBodyBuilder.addFormDataPart(name, file.getName(),
-                                RequestBody.create(mediaType, file));
+                        RequestBody fileBody = RequestBody.create(mediaType, file);
+                        MediaUpload upload = mCurrentUpload.get();
+                        if (upload != null) {
+                            // Record how much of the file was sent (in case the upload gets interrupted)
+                            fileBody = getUploadJournal().track(upload, fileBody);
+                        }
+                        requestBodyBuilder.addFormDataPart(name, file.getName(), fileBody);
                     }
                 } else {
                     // Normal string data
@@ -6211,43 +6540,63 @@ public class INaturalistService extends IntentService {
             }
         }
 
-        try {
-            mResponseErrors = null;
+        if (requestBody != null) {
+            // Keep track of whether the whole body was sent (in case no response is received)
+            requestBody = new SentTrackingRequestBody(requestBody, apiResponse);
+        }
 
+        try {
             Request request = requestBuilder.method(method, requestBody).build();
             Response response = client.newCall(request).execute();
+            apiResponse.requestSent = true;
 
             Logger.tag(TAG).debug("Response: " + response.code() + ": " + response.message());
 
-            mLastStatusCode = response.code();
+            apiResponse.statusCode = response.code();
 
             Logger.tag(TAG).debug(String.format(Locale.ENGLISH, "(for URL: %s - %s (params: %s / %s))", method, url, (params != null ? params.toString() : "null"), (jsonContent != null ? jsonContent.toString() : "null")));
 
             String content = null;
-            try {
-                content = response.body().string();
-            } catch (Exception exc) {
-                Logger.tag(TAG).error(exc);
-            }
-
             JSONArray json = null;
 
+            if ((resultHandler != null) && response.isSuccessful()) {
+                // Decode the results one by one, straight from the response stream
+                try {
+                    JSONObject result = StreamingJsonResponse.read(response.body().charStream(), "results", resultHandler);
+                    Logger.tag(TAG).debug("Streamed response: " + result);
+                    json = new JSONArray();
+                    json.put(result);
+                } catch (JSONException e) {
+                    Logger.tag(TAG).error(e);
+                } catch (IOException | RuntimeException e) {
+                    response.close();
+                    throw e;
+                }
+            } else {
+                try {
+                    content = response.body().string();
+                } catch (Exception exc) {
+                    Logger.tag(TAG).error(exc);
+                }
+            }
+
             if (content != null) {
-                Logger.tag(TAG).debug(content);
+                Logger.tag(TAG).debug(truncateForLog(content));
 
+                // Parse once - the response is either an array or a single object
                 try {
-                    json = new JSONArray(content);
-                } catch (JSONException e) {
-                    try {
-                        JSONObject jo = new JSONObject(content);
+                    Object value = new JSONTokener(content).nextValue();
+                    if (value instanceof JSONArray) {
+                        json = (JSONArray) value;
+                    } else if (value instanceof JSONObject) {
                         json = new JSONArray();
-                        json.put(jo);
-                    } catch (JSONException e2) {
+                        json.put(value);
                     }
+                } catch (JSONException e) {
                 }
             }
 
-            mResponseHeaders = response.headers();
+            apiResponse.headers = response.headers();
             response.close();
 
             try {
@@ -6256,7 +6605,7 @@ public class INaturalistService extends IntentService {
                     if (result.has("errors")) {
                         // Error response
                         Logger.tag(TAG).error("Got an error response: " + result.get("errors").toString());
-                        mResponseErrors = result.getJSONArray("errors");
+                        apiResponse.errors = result.getJSONArray("errors");
                         return null;
                     }
                 }
@@ -6273,14 +6622,14 @@ public class INaturalistService extends IntentService {
                 return json;
             } else {
                 // HTTP error of some kind - Check for response code
-                switch (mLastStatusCode) {
+                switch (apiResponse.statusCode) {
                     case HTTP_UNAUTHORIZED:
                         // Authentication error
                         throw new AuthenticationException();
 
                     case HTTP_UNAVAILABLE:
                         Logger.tag(TAG).error("503 server unavailable");
-                        mServiceUnavailable = true;
+                        apiResponse.serviceUnavailable = true;
 
                         // Find out if there's a "Retry-After" header
                         List<String> headers = response.headers("Retry-After");
@@ -6289,8 +6638,8 @@ public class INaturalistService extends IntentService {
                                 Logger.tag(TAG).error("Retry after raw string: " + timestampString);
                                 SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz");
                                 try {
-                                    mRetryAfterDate = format.parse(timestampString);
-                                    Logger.tag(TAG).error("Retry after: " + mRetryAfterDate);
+                                    apiResponse.retryAfter = format.parse(timestampString);
+                                    Logger.tag(TAG).error("Retry after: " + apiResponse.retryAfter);
                                     break;
                                 } catch (ParseException e) {
                                     Logger.tag(TAG).error(e);
@@ -6300,7 +6649,7 @@ public class INaturalistService extends IntentService {
                                         Logger.tag(TAG).error("Retry after: " + secondsDelay);
                                         Calendar calendar = Calendar.getInstance();
                                         calendar.add(Calendar.SECOND, secondsDelay);
-                                        mRetryAfterDate = calendar.getTime();
+                                        apiResponse.retryAfter = calendar.getTime();
 
                                         break;
                                     } catch (NumberFormatException exc) {
@@ -6313,13 +6662,13 @@ public class INaturalistService extends IntentService {
                         // Show service not available message to user
                         mHandler.post(() -> {
                             String errorMessage;
-                            if (mRetryAfterDate == null) {
+                            if (apiResponse.retryAfter == null) {
                                 // No specific retry time
                                 errorMessage = getString(R.string.please_try_again_in_a_few_hours);
                             } else {
                                 // Specific retry time
                                 Date currentTime = Calendar.getInstance().getTime();
-                                long differenceSeconds = (mRetryAfterDate.getTime() - currentTime.getTime()) / 1000;
+                                long differenceSeconds = (apiResponse.retryAfter.getTime() - currentTime.getTime()) / 1000;
 
                                 long delay;
                                 String delayType;
@@ -6367,6 +6716,40 @@ public class INaturalistService extends IntentService {
         return null;
     }
 
+    // Request body that marks its API response once the whole body was written to the connection
+    private static class SentTrackingRequestBody extends RequestBody {
+        private final RequestBody mBody;
+        private final ApiResponse mApiResponse;
+
+        SentTrackingRequestBody(RequestBody body, ApiResponse apiResponse) {
+            mBody = body;
+            mApiResponse = apiResponse;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return mBody.contentType();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return mBody.contentLength();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            mBody.writeTo(sink);
+            sink.flush();
+            mApiResponse.requestSent = true;
+        }
+    }
+
+    // Long responses (e.g. a full page of observations) are logged only up to a certain length
+    private static String truncateForLog(String content) {
+        if (content.length() <= MAX_LOGGED_RESPONSE_LENGTH) return content;
+        return content.substring(0, MAX_LOGGED_RESPONSE_LENGTH) + String.format(Locale.ENGLISH, "... (%d characters total)", content.length());
+    }
+
     private void performConnectivityTest() {
         long currentTime = System.currentTimeMillis();
 
@@ -6390,7 +6773,7 @@ public class INaturalistService extends IntentService {
     }
 
     private void contactUrl(String url) {
-        OkHttpClient client = new OkHttpClient();
+        OkHttpClient client = SharedHttpClient.getInstance().getClient();
         Request request = new Request.Builder()
                 .addHeader("User-Agent", getUserAgent(mApp))
                 .head()
@@ -6414,7 +6797,7 @@ public class INaturalistService extends IntentService {
         }
 
         // request login unless passive
-        if (!mPassive) {
+        if (!mPassive.get()) {
             throw new AuthenticationException();
         }
 
@@ -6446,13 +6829,7 @@ public class INaturalistService extends IntentService {
         INaturalistApp app = (INaturalistApp) context.getApplicationContext();
         String url = HOST + (authType == LoginType.OAUTH_PASSWORD ? "/oauth/token" : "/oauth/assertion_token");
 
-        OkHttpClient client = new OkHttpClient().newBuilder()
-                .followRedirects(true)
-                .followSslRedirects(true)
-                .connectTimeout(HTTP_CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS)
-                .writeTimeout(HTTP_READ_WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
-                .readTimeout(HTTP_READ_WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
-                .build();
+        OkHttpClient client = SharedHttpClient.getInstance().getClient();
 
 
         FormBody.Builder requestBodyBuilder = new FormBody.Builder()
@@ -6523,6 +6900,7 @@ public class INaturalistService extends IntentService {
 
             if (!response.isSuccessful()) {
                 Logger.tag(TAG).error("Authentication failed (edit.json): " + response.code() + ": " + response.message());
+                response.close();
 
                 return new String[]{null, context.getString(R.string.authentication_failed)};
             }
@@ -6561,396 +6939,140 @@ public class INaturalistService extends IntentService {
     }
 
 
-    public void syncJson(JSONArray json, boolean isUser) {
-        synchronized (mSyncJsonLock) {
-            ArrayList<Integer> ids = new ArrayList<Integer>();
-            ArrayList<Integer> existingIds = new ArrayList<Integer>();
-            ArrayList<Integer> newIds = new ArrayList<Integer>();
-            HashMap<Integer, Observation> jsonObservationsById = new HashMap<Integer, Observation>();
-            Observation observation;
-            Observation jsonObservation;
-
-            if (mSyncedJSONs.contains(json.toString())) {
-                // Already synced this exact JSON recently
-                Logger.tag(TAG).info("Skipping syncJSON - already synced same JSON");
-                return;
-            }
-
-            mSyncedJSONs.add(json.toString());
-
-            BetterJSONObject o;
-
-            Logger.tag(TAG).debug("syncJson: " + isUser);
-            Logger.tag(TAG).debug(json.toString());
-
-            for (int i = 0; i < json.length(); i++) {
-                try {
-                    o = new BetterJSONObject(json.getJSONObject(i));
-                    ids.add(o.getInt("id"));
-
-                    Observation obs = new Observation(o);
-                    jsonObservationsById.put(o.getInt("id"), obs);
+    // Decoded contents of a single page of downloaded observations (only the parts needed for syncing - not the raw JSON)
+    private static class SyncPage {
+        // Sorted by remote ID, so new observations are inserted in the same order as before
+        final TreeMap<Integer, Observation> observations = new TreeMap<>();
+        final ArrayList<SerializableJSONArray> projectObservations = new ArrayList<>();
+        final Hashtable<Integer, Hashtable<Integer, ProjectFieldValue>> projectFieldValues = new Hashtable<>();
+        // Digest of the IDs and updated at times of the page's observations (identifies the same page if it's downloaded again)
+        final SyncedPagesCache.Digest digest = new SyncedPagesCache.Digest();
+    }
 
-                    if (isUser) {
-                        // Save the project observations aside (will be later used in the syncing of project observations)
-                        mProjectObservations.add(o.getJSONArray("project_observations"));
+    // Decodes a single downloaded observation into the page
+    private void addToSyncPage(SyncPage page, BetterJSONObject o, boolean isUser) throws JSONException {
+        Observation obs = new Observation(o);
+        page.observations.put(o.getInt("id"), obs);
+        page.digest.add(o.getInt("id")).add(o.getString("updated_at"));
 
-                        // Save project field values
-                        Hashtable<Integer, ProjectFieldValue> fields = new Hashtable<Integer, ProjectFieldValue>();
-                        JSONArray jsonFields = o.getJSONArray(o.has("ofvs") ? "ofvs" : "observation_field_values").getJSONArray();
+        if (isUser) {
+            // Save the project observations aside (will be later used in the syncing of project observations)
+            page.projectObservations.add(o.getJSONArray("project_observations"));
 
-                        for (int j = 0; j < jsonFields.length(); j++) {
-                            BetterJSONObject field = new BetterJSONObject(jsonFields.getJSONObject(j));
-                            int fieldId;
-                            if (field.has("observation_field")) {
-                                fieldId = field.getJSONObject("observation_field").getInt("id");
-                            } else {
-                                fieldId = field.getInt("field_id");
-                            }
-                            fields.put(fieldId, new ProjectFieldValue(field));
-                        }
+            // Save project field values
+            Hashtable<Integer, ProjectFieldValue> fields = new Hashtable<Integer, ProjectFieldValue>();
+            JSONArray jsonFields = o.getJSONArray(o.has("ofvs") ? "ofvs" : "observation_field_values").getJSONArray();
 
-                        mProjectFieldValues.put(o.getInt("id"), fields);
-                    }
-                } catch (JSONException e) {
-                    Logger.tag(TAG).error("syncJson: JSONException: " + e.toString());
+            for (int j = 0; j < jsonFields.length(); j++) {
+                BetterJSONObject field = new BetterJSONObject(jsonFields.getJSONObject(j));
+                int fieldId;
+                if (field.has("observation_field")) {
+                    fieldId = field.getJSONObject("observation_field").getInt("id");
+                } else {
+                    fieldId = field.getInt("field_id");
                 }
+                fields.put(fieldId, new ProjectFieldValue(field));
             }
-            // find obs with existing ids
-            String joinedIds = StringUtils.join(ids, ",");
-            // TODO why doesn't selectionArgs work for id IN (?)
-            Cursor c = getContentResolver().query(Observation.CONTENT_URI,
-                    Observation.PROJECTION,
-                    "id IN (" + joinedIds + ")", null, Observation.DEFAULT_SORT_ORDER);
-
-            // update existing
-            c.moveToFirst();
-            ContentValues cv;
-            while (c.isAfterLast() == false) {
-                observation = new Observation(c);
-                jsonObservation = jsonObservationsById.get(observation.id);
-                boolean isModified = observation.merge(jsonObservation);
-
-                Logger.tag(TAG).debug("syncJson - updating existing: " + observation.id + ":" + observation._id + ":" + observation.preferred_common_name + ":" + observation.taxon_id);
-                Logger.tag(TAG).debug("syncJson - remote obs: " + jsonObservation.id + ":" + jsonObservation.preferred_common_name + ":" + jsonObservation.taxon_id);
-
-                cv = observation.getContentValues();
-                if (observation._updated_at.before(jsonObservation.updated_at)) {
-                    // Remote observation is newer (and thus has overwritten the local one) - update its
-                    // sync at time so we won't update the remote servers later on (since we won't
-                    // accidentally consider this an updated record)
-                    cv.put(Observation._SYNCED_AT, System.currentTimeMillis());
-                }
-
-                // Add any new photos that were added remotely
-                ArrayList<Integer> observationPhotoIds = new ArrayList<Integer>();
-                HashMap<Integer, ObservationPhoto> localPhotos = new HashMap<>();
-                Cursor pc = getContentResolver().query(
-                        ObservationPhoto.CONTENT_URI,
-                        ObservationPhoto.PROJECTION,
-                        "(observation_id = " + observation.id + ")",
-                        null, null);
-                pc.moveToFirst();
-                while (pc.isAfterLast() == false) {
-                    int photoId = pc.getInt(pc.getColumnIndexOrThrow(ObservationPhoto.ID));
-                    if (photoId != 0) {
-                        localPhotos.put(photoId, new ObservationPhoto(pc));
-                    }
-                    pc.moveToNext();
-                }
-                pc.close();
-                Logger.tag(TAG).debug("syncJson: Adding photos for obs " + observation.id + ":" + localPhotos.toString());
-                Logger.tag(TAG).debug("syncJson: JsonObservation: " + jsonObservation + ":" + jsonObservation.photos);
-                for (int j = 0; j < jsonObservation.photos.size(); j++) {
-                    ObservationPhoto photo = jsonObservation.photos.get(j);
-                    photo._observation_id = jsonObservation._id;
-
-                    if (photo.id == null) {
-                        Logger.tag(TAG).warn("syncJson: Null photo ID! " + photo);
-                        continue;
-                    }
 
-                    observationPhotoIds.add(photo.id);
-                    if (localPhotos.containsKey(photo.id)) {
-                        ObservationPhoto localPhoto = localPhotos.get(photo.id);
-
-                        Logger.tag(TAG).debug("syncJson: photo " + photo.id + " has already been added");
-                        localPhoto.merge(photo, true);
-                        Logger.tag(TAG).debug("syncJson: merged: " + localPhoto.isDirty() + ":" + localPhoto);
-                        if (localPhoto.isDirty()) {
-                            ContentValues opcv = localPhoto.getContentValues();
-                            Logger.tag(TAG).debug("syncJson: Setting _SYNCED_AT - " + localPhoto.id + ":" + localPhoto._id + ":" + localPhoto._observation_id + ":" + localPhoto.observation_id + ":" + opcv);
-                            opcv.put(ObservationPhoto._SYNCED_AT, System.currentTimeMillis());
-                            getContentResolver().update(localPhoto.getUri(), opcv, null, null);
-                        }
-                        continue;
-                    }
-                    ContentValues opcv = photo.getContentValues();
-                    // So we won't re-add this photo as though it was a local photo
-                    Logger.tag(TAG).debug("syncJson: Setting _SYNCED_AT - " + photo.id + ":" + photo._id + ":" + photo._observation_id + ":" + photo.observation_id);
-                    opcv.put(ObservationPhoto._SYNCED_AT, System.currentTimeMillis());
-                    opcv.put(ObservationPhoto._OBSERVATION_ID, observation._id);
-                    opcv.put(ObservationPhoto._PHOTO_ID, photo._photo_id);
-                    opcv.put(ObservationPhoto.ID, photo.id);
-
-                    Cursor obsc = getContentResolver().query(Observation.CONTENT_URI,
-                            Observation.PROJECTION,
-                            "id = " + photo.observation_id, null, Observation.DEFAULT_SORT_ORDER);
-                    if (obsc.getCount() > 0) {
-                        obsc.moveToFirst();
-                        Observation obs = new Observation(obsc);
-                        opcv.put(ObservationPhoto.OBSERVATION_UUID, obs.uuid);
-                    }
-                    obsc.close();
-                    try {
-                        getContentResolver().insert(ObservationPhoto.CONTENT_URI, opcv);
-                    } catch (SQLException ex) {
-                        // Happens when the photo already exists - ignore
-                        Logger.tag(TAG).error(ex);
-                    }
-                }
+            page.projectFieldValues.put(o.getInt("id"), fields);
+        }
+    }
 
-                // Delete photos that were synced but weren't present in the remote response,
-                // indicating they were deleted elsewhere
-                String joinedPhotoIds = StringUtils.join(observationPhotoIds, ",");
-                String where = "observation_id = " + observation.id + " AND id IS NOT NULL";
-                if (observationPhotoIds.size() > 0) {
-                    where += " AND id NOT in (" + joinedPhotoIds + ")";
-                }
-                Logger.tag(TAG).debug("syncJson: Deleting local photos: " + where);
-                Logger.tag(TAG).debug("syncJson: Deleting local photos, IDs: " + observationPhotoIds);
-                int deleteCount = getContentResolver().delete(
-                        ObservationPhoto.CONTENT_URI,
-                        where,
-                        null);
-                Logger.tag(TAG).debug("syncJson: Deleting local photos: " + deleteCount);
-
-                if (deleteCount > 0) {
-                    Logger.tag(TAG).error(String.format(Locale.ENGLISH, "Warning: Deleted %d photos locally after sever did not contain those IDs - observation id: %s, photo ids: %s",
-                            deleteCount, observation.id, joinedPhotoIds));
-                }
+    // Downloads a page of observations and syncs it - the observations are decoded one at a time while being downloaded
+    private JSONArray downloadAndSyncObservations(String url, boolean isUser) throws AuthenticationException {
+        final SyncPage page = new SyncPage();
+        JSONArray json = request(url, "get", null, null, true, false, false, result -> {
+            try {
+                addToSyncPage(page, new BetterJSONObject(result), isUser);
+            } catch (JSONException e) {
+                Logger.tag(TAG).error("downloadAndSyncObservations: JSONException: " + e.toString());
+            }
+        });
 
-                // Add any new sounds that were added remotely
-                ArrayList<Integer> observationSoundIds = new ArrayList<Integer>();
-                ArrayList<Integer> existingObservationSoundIds = new ArrayList<Integer>();
-                Cursor sc = getContentResolver().query(
-                        ObservationSound.CONTENT_URI,
-                        ObservationSound.PROJECTION,
-                        "(observation_id = " + observation.id + ")",
-                        null, null);
-                sc.moveToFirst();
-                while (sc.isAfterLast() == false) {
-                    int soundId = sc.getInt(sc.getColumnIndexOrThrow(ObservationSound.ID));
-                    if (soundId != 0) {
-                        existingObservationSoundIds.add(soundId);
-                    }
-                    sc.moveToNext();
-                }
-                sc.close();
-                Logger.tag(TAG).debug("syncJson: Adding sounds for obs " + observation.id + ":" + existingObservationSoundIds.toString());
-                Logger.tag(TAG).debug("syncJson: JsonObservation: " + jsonObservation + ":" + jsonObservation.sounds);
-                for (int j = 0; j < jsonObservation.sounds.size(); j++) {
-                    ObservationSound sound = jsonObservation.sounds.get(j);
-                    sound._observation_id = jsonObservation._id;
-
-                    if (sound.id == null) {
-                        Logger.tag(TAG).warn("syncJson: Null sound ID! " + sound);
-                        continue;
-                    }
+        if (json != null && json.length() > 0) {
+            Logger.tag(TAG).debug("downloadAndSyncObservations: " + page.observations.size() + " observations");
+            syncPage(page, isUser);
+        }
 
-                    observationSoundIds.add(sound.id);
-                    if (existingObservationSoundIds.contains(sound.id)) {
-                        Logger.tag(TAG).debug("syncJson: sound " + sound.id + " has already been added, skipping...");
-                        continue;
-                    }
-                    ContentValues oscv = sound.getContentValues();
-                    oscv.put(ObservationSound._OBSERVATION_ID, sound.observation_id);
-                    oscv.put(ObservationSound.ID, sound.id);
-
-                    Cursor obsc = getContentResolver().query(Observation.CONTENT_URI,
-                            Observation.PROJECTION,
-                            "id = " + sound.observation_id, null, Observation.DEFAULT_SORT_ORDER);
-                    if (obsc.getCount() > 0) {
-                        obsc.moveToFirst();
-                        Observation obs = new Observation(obsc);
-                        oscv.put(ObservationSound.OBSERVATION_UUID, obs.uuid);
-                    }
-                    obsc.close();
-                    try {
-                        getContentResolver().insert(ObservationSound.CONTENT_URI, oscv);
-                    } catch (SQLException ex) {
-                        // Happens when the sound already exists - ignore
-                        Logger.tag(TAG).error(ex);
-                    }
-                }
+        return json;
+    }
 
-                // Delete sounds that were synced but weren't present in the remote response,
-                // indicating they were deleted elsewhere
-                String joinedSoundIds = StringUtils.join(observationSoundIds, ",");
-                where = "observation_id = " + observation.id + " AND id IS NOT NULL";
-                if (observationSoundIds.size() > 0) {
-                    where += " AND id NOT in (" + joinedSoundIds + ")";
-                }
-                Logger.tag(TAG).debug("syncJson: Deleting local sounds: " + where);
-                Logger.tag(TAG).debug("syncJson: Deleting local sounds, IDs: " + observationSoundIds);
-                deleteCount = getContentResolver().delete(
-                        ObservationSound.CONTENT_URI,
-                        where,
-                        null);
-                Logger.tag(TAG).debug("syncJson: Deleting local sounds: " + deleteCount);
-
-                if (deleteCount > 0) {
-                    Logger.tag(TAG).error(String.format(Locale.ENGLISH, "Warning: Deleted %d sounds locally after server did not contain those IDs - observation id: %s, sound ids: %s",
-                            deleteCount, observation.id, joinedSoundIds));
-                }
+    public void syncJson(JSONArray json, boolean isUser) {
+        SyncPage page = new SyncPage();
 
+        Logger.tag(TAG).debug("syncJson: " + isUser + "; " + json.length() + " observations");
 
-                if (isModified) {
-                    // Only update the DB if needed
-                    Logger.tag(TAG).debug("syncJson: Updating observation: " + observation.id + ":" + observation._id);
-                    getContentResolver().update(observation.getUri(), cv, null, null);
-                }
-                existingIds.add(observation.id);
-                c.moveToNext();
+        for (int i = 0; i < json.length(); i++) {
+            try {
+                addToSyncPage(page, new BetterJSONObject(json.getJSONObject(i)), isUser);
+            } catch (JSONException e) {
+                Logger.tag(TAG).error("syncJson: JSONException: " + e.toString());
             }
-            c.close();
-
-            // insert new
-            List<Observation> newObservations = new ArrayList<Observation>();
-            newIds = (ArrayList<Integer>) CollectionUtils.subtract(ids, existingIds);
-            Collections.sort(newIds);
-            Logger.tag(TAG).debug("syncJson: Adding new observations: " + newIds);
-            for (int i = 0; i < newIds.size(); i++) {
-                jsonObservation = jsonObservationsById.get(newIds.get(i));
+        }
 
-                Cursor c2 = getContentResolver().query(Observation.CONTENT_URI,
-                        Observation.PROJECTION,
-                        "id = ?", new String[]{String.valueOf(jsonObservation.id)}, Observation.DEFAULT_SORT_ORDER);
-                int count = c2.getCount();
-                c2.close();
+        syncPage(page, isUser);
+    }
 
-                if (count > 0) {
-                    Logger.tag(TAG).debug("syncJson: Observation " + jsonObservation.id + " already exists locally - not adding");
-                    continue;
-                }
+    private void syncPage(SyncPage page, boolean isUser) {
+        synchronized (mSyncJsonLock) {
+            TreeMap<Integer, Observation> jsonObservationsById = page.observations;
 
-                cv = jsonObservation.getContentValues();
-                cv.put(Observation._SYNCED_AT, System.currentTimeMillis());
-                cv.put(Observation.LAST_COMMENTS_COUNT, jsonObservation.comments_count);
-                cv.put(Observation.LAST_IDENTIFICATIONS_COUNT, jsonObservation.identifications_count);
-                Uri newObs = getContentResolver().insert(Observation.CONTENT_URI, cv);
-                Long newObsId = ContentUris.parseId(newObs);
-                jsonObservation._id = Integer.valueOf(newObsId.toString());
-                Logger.tag(TAG).debug("syncJson: Adding new obs: " + jsonObservation);
-                newObservations.add(jsonObservation);
+            if (!mSyncedPages.add(page.digest.getValue())) {
+                // Already synced this exact page recently
+                Logger.tag(TAG).info(String.format(Locale.ENGLISH, "Skipping syncJSON - already synced same JSON (synced pages cache: %d hits / %d misses)",
+                        mSyncedPages.getHits(), mSyncedPages.getMisses()));
+                return;
             }
 
             if (isUser) {
-                for (int i = 0; i < newObservations.size(); i++) {
-                    jsonObservation = newObservations.get(i);
-
-                    // Save new observation's sounds
-                    Logger.tag(TAG).debug("syncJson: Saving new obs' sounds: " + jsonObservation + ":" + jsonObservation.sounds);
-                    for (int j = 0; j < jsonObservation.sounds.size(); j++) {
-                        ObservationSound sound = jsonObservation.sounds.get(j);
-
-                        c = getContentResolver().query(ObservationSound.CONTENT_URI,
-                                ObservationSound.PROJECTION,
-                                "id = ?", new String[]{String.valueOf(sound.id)}, ObservationSound.DEFAULT_SORT_ORDER);
-
-                        if (c.getCount() > 0) {
-                            // Sound already exists - don't save
-                            Logger.tag(TAG).debug("syncJson: Sound already exists - skipping: " + sound.id);
-                            c.close();
-                            continue;
-                        }
-
-                        c.close();
-
-                        sound._observation_id = jsonObservation._id;
-
-                        ContentValues opcv = sound.getContentValues();
-                        Logger.tag(TAG).debug("syncJson: Setting _SYNCED_AT - " + sound.id + ":" + sound._id + ":" + sound._observation_id + ":" + sound.observation_id);
-                        Logger.tag(TAG).debug("syncJson: Setting _SYNCED_AT - " + sound);
-                        opcv.put(ObservationSound._OBSERVATION_ID, sound._observation_id);
-                        opcv.put(ObservationSound._ID, sound.id);
-                        Cursor obsc = getContentResolver().query(Observation.CONTENT_URI,
-                                Observation.PROJECTION,
-                                "id = " + sound.observation_id, null, Observation.DEFAULT_SORT_ORDER);
-                        if (obsc.getCount() > 0) {
-                            obsc.moveToFirst();
-                            Observation obs = new Observation(obsc);
-                            opcv.put(ObservationSound.OBSERVATION_UUID, obs.uuid);
-                        }
-                        obsc.close();
-                        try {
-                            getContentResolver().insert(ObservationSound.CONTENT_URI, opcv);
-                        } catch (SQLException ex) {
-                            // Happens when the sound already exists - ignore
-                            Logger.tag(TAG).error(ex);
-                        }
-                    }
-
-                    // Save the new observation's photos
-                    Logger.tag(TAG).debug("syncJson: Saving new obs' photos: " + jsonObservation + ":" + jsonObservation.photos);
-                    for (int j = 0; j < jsonObservation.photos.size(); j++) {
-                        ObservationPhoto photo = jsonObservation.photos.get(j);
-
-                        if (photo.uuid == null) {
-                            c = getContentResolver().query(ObservationPhoto.CONTENT_URI,
-                                    ObservationPhoto.PROJECTION,
-                                    "_id = ?", new String[]{String.valueOf(photo.id)}, ObservationPhoto.DEFAULT_SORT_ORDER);
-                        } else {
-                            c = getContentResolver().query(ObservationPhoto.CONTENT_URI,
-                                    ObservationPhoto.PROJECTION,
-                                    "uuid = ?", new String[]{String.valueOf(photo.uuid)}, ObservationPhoto.DEFAULT_SORT_ORDER);
-                        }
-
-                        if (c.getCount() > 0) {
-                            // Photo already exists - don't save
-                            Logger.tag(TAG).debug("syncJson: Photo already exists - skipping: " + photo.id);
-                            c.close();
-                            continue;
-                        }
-
-                        c.close();
+                mProjectObservations.addAll(page.projectObservations);
+                mProjectFieldValues.putAll(page.projectFieldValues);
+            }
 
-                        photo._observation_id = jsonObservation._id;
-
-                        ContentValues opcv = photo.getContentValues();
-                        Logger.tag(TAG).debug("syncJson: Setting _SYNCED_AT - " + photo.id + ":" + photo._id + ":" + photo._observation_id + ":" + photo.observation_id);
-                        Logger.tag(TAG).debug("syncJson: Setting _SYNCED_AT - " + photo);
-                        opcv.put(ObservationPhoto._SYNCED_AT, System.currentTimeMillis()); // So we won't re-add this photo as though it was a local photo
-                        opcv.put(ObservationPhoto._OBSERVATION_ID, photo._observation_id);
-                        opcv.put(ObservationPhoto._PHOTO_ID, photo._photo_id);
-                        opcv.put(ObservationPhoto._ID, photo.id);
-                        Cursor obsc = getContentResolver().query(Observation.CONTENT_URI,
-                                Observation.PROJECTION,
-                                "id = " + photo.observation_id, null, Observation.DEFAULT_SORT_ORDER);
-                        if (obsc.getCount() > 0) {
-                            obsc.moveToFirst();
-                            Observation obs = new Observation(obsc);
-                            opcv.put(ObservationPhoto.OBSERVATION_UUID, obs.uuid);
-                        }
-                        obsc.close();
-                        try {
-                            getContentResolver().insert(ObservationPhoto.CONTENT_URI, opcv);
-                        } catch (SQLException ex) {
-                            // Happens when the photo already exists - ignore
-                            Logger.tag(TAG).error(ex);
-                        }
+            // Diff the page against the local DB (a constant number of queries, regardless of page size)
+            ObservationSyncMerger merger = new ObservationSyncMerger(getContentResolver());
+            ObservationSyncMerger.MergeResult mergeResult = merger.merge(jsonObservationsById, isUser);
+            ArrayList<ContentProviderOperation> operations = mergeResult.operations;
+            List<Observation> newObservations = mergeResult.newObservations;
+            Map<Integer, Integer> newObservationOperationIndexes = mergeResult.newObservationOperationIndexes;
+            Map<Integer, String> deleteOperationDescriptions = mergeResult.deleteOperationDescriptions;
+            Logger.tag(TAG).debug("syncJson: Merged " + jsonObservationsById.size() + " observations using " + merger.getQueryCount() + " queries");
+
+            // Apply all changes at once (single transaction)
+            Logger.tag(TAG).debug("syncJson: Applying " + operations.size() + " operations");
+            ContentProviderResult[] results = applyOperations(operations);
+            if (results != null) {
+                for (Integer index : deleteOperationDescriptions.keySet()) {
+                    int deleteCount = results[index].count != null ? results[index].count : 0;
+                    if (deleteCount > 0) {
+                        Logger.tag(TAG).error(String.format(Locale.ENGLISH, "Warning: Deleted %d %s", deleteCount, deleteOperationDescriptions.get(index)));
                     }
                 }
+                for (Observation newObservation : newObservations) {
+                    ContentProviderResult result = results[newObservationOperationIndexes.get(newObservation.id)];
+                    if (result.uri != null) newObservation._id = (int) ContentUris.parseId(result.uri);
+                }
             }
 
             if (isUser) {
                 storeProjectObservations();
             }
+        }
+    }
 
-            if (mSyncedJSONs.size() > 5) {
-                mSyncedJSONs.remove(0);
-            }
+    // Applies a list of content provider operations as a single batch (one DB transaction, one change notification per URI)
+    private ContentProviderResult[] applyOperations(ArrayList<ContentProviderOperation> operations) {
+        if (operations.isEmpty()) return new ContentProviderResult[0];
+
+        try {
+            return getContentResolver().applyBatch(Observation.AUTHORITY, operations);
+        } catch (RemoteException e) {
+            Logger.tag(TAG).error(e);
+        } catch (OperationApplicationException e) {
+            Logger.tag(TAG).error(e);
         }
+
+        return null;
     }
 
     private JSONObject observationToJsonObject(Observation observation, boolean isPOST) {
@@ -6999,18 +7121,18 @@ public class INaturalistService extends IntentService {
         }
     }
 
-    private boolean handleObservationResponse(Observation observation, JSONArray response) {
+    private boolean handleObservationResponse(Observation observation, ApiResponse response) {
         try {
-            if (response == null || response.length() != 1) {
+            if (!response.isSuccessful() || (response.body.length() != 1)) {
                 return false;
             }
-            JSONObject json = response.getJSONObject(0);
+            JSONObject json = response.body.getJSONObject(0);
             BetterJSONObject o = new BetterJSONObject(json);
             Logger.tag(TAG).debug("handleObservationResponse: Observation: " + observation);
             Logger.tag(TAG).debug("handleObservationResponse: JSON: ");
             Logger.tag(TAG).debug(json.toString());
 
-            if ((json.has("error") && !json.isNull("error")) || ((mLastStatusCode >= 400) && (mLastStatusCode < 500))) {
+            if ((json.has("error") && !json.isNull("error")) || response.isClientError()) {
                 // Error
                 Logger.tag(TAG).debug("handleObservationResponse - error response (probably validation error)");
                 JSONObject original = json.optJSONObject("error").optJSONObject("original");
@@ -7021,7 +7143,7 @@ public class INaturalistService extends IntentService {
                 }
 
                 return false;
-            } else if (mLastStatusCode == HTTP_UNAVAILABLE) {
+            } else if (response.statusCode == HTTP_UNAVAILABLE) {
                 // Server not available
                 Logger.tag(TAG).error("503 - server not available");
                 return false;
@@ -7193,30 +7315,45 @@ public class INaturalistService extends IntentService {
     }
 
     private boolean downloadToFile(String uri, String outputFilename) {
-        HttpURLConnection conn = null;
-        StringBuilder jsonResults = new StringBuilder();
+        Request request = new Request.Builder()
+                .addHeader("User-Agent", getUserAgent(mApp))
+                .url(uri)
+                .build();
+
+        Response response = null;
+        FileOutputStream output = null;
         try {
-            URL url = new URL(uri);
-            conn = (HttpURLConnection) url.openConnection();
-            InputStream in = conn.getInputStream();
-            FileOutputStream output = new FileOutputStream(outputFilename);
+            response = SharedHttpClient.getInstance().getClient().newCall(request).execute();
+            if (!response.isSuccessful()) {
+                return false;
+            }
+
+            InputStream in = response.body().byteStream();
+            output = new FileOutputStream(outputFilename);
 
             int read;
-            byte[] buff = new byte[1024];
+            byte[] buff = new byte[8192];
             while ((read = in.read(buff)) != -1) {
                 output.write(buff, 0, read);
             }
 
             output.close();
-
-            conn.disconnect();
-        } catch (MalformedURLException e) {
+            output = null;
+        } catch (IllegalArgumentException e) {
+            // Malformed URL
             return false;
         } catch (IOException e) {
             return false;
+        } finally {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException e) {
+                }
+            }
+            if (response != null) response.close();
         }
 
         return true;
     }
 }
-
@@ -0,0 +1,433 @@
+package org.inaturalist.android;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.AsyncTask;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.engine.cache.MemoryCache;
+import com.koushikdutta.urlimageviewhelper.BitmapCache;
+import com.koushikdutta.urlimageviewhelper.UrlDownloader;
+import com.koushikdutta.urlimageviewhelper.UrlImageViewHelper;
+
+import org.tinylog.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * App-wide image cache (singleton class), shared by all image loaders (Picasso, Glide and UrlImageViewHelper):
+ * a single memory cache with one global budget (instead of a separate memory cache per loader), and a single HTTP
+ * disk cache that all image downloads go through. Each loader plugs into it using its own adapter.
+ */
+public class ImageCache {
+    private static final String TAG = "ImageCache";
+
+    public static final String CONSUMER_PICASSO = "Picasso";
+    public static final String CONSUMER_GLIDE = "Glide";
+    public static final String CONSUMER_URL_IMAGE_VIEW_HELPER = "UrlImageViewHelper";
+
+    private static final String DISK_CACHE_DIRECTORY = "image_cache";
+    private static final long DISK_CACHE_SIZE_BYTES = 100 * 1024 * 1024;
+    // Used for image responses that don't specify how long they can be cached for
+    private static final int DEFAULT_MAX_AGE_SECONDS = 60 * 60 * 24 * 7;
+
+    // Singleton instance
+    private static ImageCache sInstance = null;
+
+    private final LruCache<ConsumerKey, Entry> mMemoryCache;
+    private final Map<String, ConsumerStats> mStats = new LinkedHashMap<>();
+    private final Cache mDiskCache;
+    private final OkHttpClient mClient;
+
+    private final PicassoCache mPicassoCache = new PicassoCache();
+    private final GlideMemoryCache mGlideMemoryCache = new GlideMemoryCache();
+    private final UrlImageViewHelperCache mUrlImageViewHelperCache = new UrlImageViewHelperCache();
+
+    private ImageCache(Context context) {
+        // A quarter of the heap for all loaders together
+        int maxSizeBytes = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 4);
+
+        mMemoryCache = new LruCache<ConsumerKey, Entry>(maxSizeBytes) {
+            @Override
+            protected int sizeOf(ConsumerKey key, Entry entry) {
+                return entry.size;
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, ConsumerKey key, Entry oldEntry, Entry newEntry) {
+                ConsumerStats stats = getStats(key.consumer);
+                stats.residentBytes.addAndGet(-oldEntry.size);
+                stats.residentCount.decrementAndGet();
+
+                if (evicted || ((newEntry != null) && (newEntry.value != oldEntry.value))) {
+                    stats.evictions.incrementAndGet();
+                    if (key.consumer.equals(CONSUMER_GLIDE)) {
+                        mGlideMemoryCache.onEvicted((Resource<?>) oldEntry.value);
+                    }
+                }
+            }
+        };
+
+        for (String consumer : new String[] { CONSUMER_PICASSO, CONSUMER_GLIDE, CONSUMER_URL_IMAGE_VIEW_HELPER }) {
+            mStats.put(consumer, new ConsumerStats());
+        }
+
+        mDiskCache = new Cache(new File(context.getApplicationContext().getCacheDir(), DISK_CACHE_DIRECTORY), DISK_CACHE_SIZE_BYTES);
+        mClient = SharedHttpClient.getInstance().getClient().newBuilder()
+                .cache(mDiskCache)
+                .addNetworkInterceptor(chain -> {
+                    Response response = chain.proceed(chain.request());
+                    if (response.isSuccessful() && (response.header("Cache-Control") == null) && (response.header("Expires") == null)) {
+                        return response.newBuilder().header("Cache-Control", "max-age=" + DEFAULT_MAX_AGE_SECONDS).build();
+                    }
+                    return response;
+                })
+                .build();
+    }
+
+    public static synchronized ImageCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ImageCache(context);
+        }
+
+        return sInstance;
+    }
+
+    /** HTTP client for downloading images (goes through the shared disk cache) */
+    public OkHttpClient getHttpClient() {
+        return mClient;
+    }
+
+    public com.squareup.picasso.Cache getPicassoCache() {
+        return mPicassoCache;
+    }
+
+    public MemoryCache getGlideMemoryCache() {
+        return mGlideMemoryCache;
+    }
+
+    /** Makes UrlImageViewHelper use the shared memory cache, and download images through the shared disk cache */
+    public void installIntoUrlImageViewHelper() {
+        UrlImageViewHelper.setBitmapCache(mUrlImageViewHelperCache);
+        UrlImageViewHelper.getDownloaders().add(0, new UrlImageViewHelperDownloader());
+    }
+
+    private Object get(String consumer, Object key) {
+        Entry entry = mMemoryCache.get(new ConsumerKey(consumer, key));
+        ConsumerStats stats = getStats(consumer);
+        if (entry != null) {
+            stats.hits.incrementAndGet();
+            return entry.value;
+        } else {
+            stats.misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    private Object put(String consumer, Object key, Object value, int size) {
+        ConsumerStats stats = getStats(consumer);
+        stats.residentBytes.addAndGet(size);
+        stats.residentCount.incrementAndGet();
+
+        Entry old = mMemoryCache.put(new ConsumerKey(consumer, key), new Entry(value, size));
+        return old != null ? old.value : null;
+    }
+
+    private Object remove(String consumer, Object key) {
+        Entry old = mMemoryCache.remove(new ConsumerKey(consumer, key));
+        return old != null ? old.value : null;
+    }
+
+    /** Removes all entries of a consumer (whose keys start with the given prefix, if not null) */
+    private void clear(String consumer, String keyPrefix) {
+        for (ConsumerKey key : mMemoryCache.snapshot().keySet()) {
+            if (!key.consumer.equals(consumer)) continue;
+            if ((keyPrefix != null) && !key.key.toString().startsWith(keyPrefix)) continue;
+            Entry old = mMemoryCache.remove(key);
+
+            // Unlike a resource that Glide removes itself (to use it), a cleared one is released by Glide (recycled)
+            if ((old != null) && consumer.equals(CONSUMER_GLIDE)) {
+                mGlideMemoryCache.onEvicted((Resource<?>) old.value);
+            }
+        }
+    }
+
+    private ConsumerStats getStats(String consumer) {
+        return mStats.get(consumer);
+    }
+
+    private static int getBitmapSize(Bitmap bitmap) {
+        return bitmap.getAllocationByteCount();
+    }
+
+    /** Releases memory according to the level passed to onTrimMemory (also trims the photo resizing bitmap pool) */
+    public void trimMemory(int level) {
+        Logger.tag(TAG).debug("trimMemory: " + level);
+
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            // App is in the background (and might be killed) - release everything
+            mMemoryCache.evictAll();
+            BitmapPool.getInstance().clear();
+        } else if ((level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) || (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL)) {
+            mMemoryCache.trimToSize(mMemoryCache.maxSize() / 2);
+            BitmapPool.getInstance().clear();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            mMemoryCache.trimToSize(mMemoryCache.maxSize() * 3 / 4);
+            BitmapPool.getInstance().trimToSize(BitmapPool.getInstance().getSizeBytes() / 2);
+        }
+    }
+
+    public void clearMemory() {
+        mMemoryCache.evictAll();
+    }
+
+    public long getDiskCacheSize() {
+        try {
+            return mDiskCache.size();
+        } catch (IOException e) {
+            Logger.tag(TAG).error(e);
+            return 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(String.format(Locale.ENGLISH, "Images: %d KB / %d KB in memory; %d KB on disk",
+                mMemoryCache.size() / 1024, mMemoryCache.maxSize() / 1024, getDiskCacheSize() / 1024));
+
+        for (Map.Entry<String, ConsumerStats> entry : mStats.entrySet()) {
+            builder.append(String.format(Locale.ENGLISH, "; %s: %s", entry.getKey(), entry.getValue()));
+        }
+
+        return builder.toString();
+    }
+
+    private static class ConsumerKey {
+        final String consumer;
+        final Object key;
+
+        ConsumerKey(String consumer, Object key) {
+            this.consumer = consumer;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ConsumerKey)) return false;
+            ConsumerKey other = (ConsumerKey) o;
+            return consumer.equals(other.consumer) && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * consumer.hashCode() + key.hashCode();
+        }
+    }
+
+    private static class Entry {
+        final Object value;
+        final int size;
+
+        Entry(Object value, int size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    private static class ConsumerStats {
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+        final AtomicLong evictions = new AtomicLong();
+        final AtomicLong residentBytes = new AtomicLong();
+        final AtomicLong residentCount = new AtomicLong();
+
+        @Override
+        public String toString() {
+            long requests = hits.get() + misses.get();
+            return String.format(Locale.ENGLISH, "%d images (%d KB), %d%% hit rate, %d evicted",
+                    residentCount.get(), residentBytes.get() / 1024, requests > 0 ? hits.get() * 100 / requests : 0, evictions.get());
+        }
+    }
+
+    /** Picasso's memory cache */
+    private class PicassoCache implements com.squareup.picasso.Cache {
+        @Override
+        public Bitmap get(String key) {
+            return (Bitmap) ImageCache.this.get(CONSUMER_PICASSO, key);
+        }
+
+        @Override
+        public void set(String key, Bitmap bitmap) {
+            if ((key == null) || (bitmap == null)) {
+                throw new NullPointerException("key == null || bitmap == null");
+            }
+            put(CONSUMER_PICASSO, key, bitmap, getBitmapSize(bitmap));
+        }
+
+        @Override
+        public int size() {
+            return mMemoryCache.size();
+        }
+
+        @Override
+        public int maxSize() {
+            return mMemoryCache.maxSize();
+        }
+
+        @Override
+        public void clear() {
+            ImageCache.this.clear(CONSUMER_PICASSO, null);
+        }
+
+        @Override
+        public void clearKeyUri(String keyPrefix) {
+            ImageCache.this.clear(CONSUMER_PICASSO, keyPrefix);
+        }
+    }
+
+    /** Glide's memory cache */
+    private class GlideMemoryCache implements MemoryCache {
+        private volatile ResourceRemovedListener mListener;
+
+        void onEvicted(Resource<?> resource) {
+            ResourceRemovedListener listener = mListener;
+            if (listener != null) listener.onResourceRemoved(resource);
+        }
+
+        @Override
+        public long getCurrentSize() {
+            return mMemoryCache.size();
+        }
+
+        @Override
+        public long getMaxSize() {
+            return mMemoryCache.maxSize();
+        }
+
+        @Override
+        public void setSizeMultiplier(float multiplier) {
+            // The budget is shared with the other loaders - not adjustable by Glide
+        }
+
+        @Nullable
+        @Override
+        public Resource<?> remove(@NonNull Key key) {
+            return (Resource<?>) ImageCache.this.remove(CONSUMER_GLIDE, key);
+        }
+
+        @Nullable
+        @Override
+        public Resource<?> put(@NonNull Key key, @Nullable Resource<?> resource) {
+            if (resource == null) return null;
+
+            if (resource.getSize() >= mMemoryCache.maxSize()) {
+                // Too large to be cached
+                onEvicted(resource);
+                return null;
+            }
+
+            return (Resource<?>) ImageCache.this.put(CONSUMER_GLIDE, key, resource, resource.getSize());
+        }
+
+        @Override
+        public void setResourceRemovedListener(@NonNull ResourceRemovedListener listener) {
+            mListener = listener;
+        }
+
+        @Override
+        public void clearMemory() {
+            ImageCache.this.clear(CONSUMER_GLIDE, null);
+        }
+
+        @Override
+        public void trimMemory(int level) {
+            // The shared cache as a whole is trimmed by the app itself (INaturalistApp.onTrimMemory) - once the app is
+            // in the background, Glide's entries are released (and recycled by Glide) here as well
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+                clearMemory();
+            }
+        }
+    }
+
+    /** UrlImageViewHelper's cache of bitmaps that are not currently displayed */
+    private class UrlImageViewHelperCache implements BitmapCache {
+        @Override
+        public Bitmap get(String url) {
+            return (Bitmap) ImageCache.this.get(CONSUMER_URL_IMAGE_VIEW_HELPER, url);
+        }
+
+        @Override
+        public Bitmap put(String url, Bitmap bitmap) {
+            return (Bitmap) ImageCache.this.put(CONSUMER_URL_IMAGE_VIEW_HELPER, url, bitmap, getBitmapSize(bitmap));
+        }
+
+        @Override
+        public Bitmap remove(String url) {
+            return (Bitmap) ImageCache.this.remove(CONSUMER_URL_IMAGE_VIEW_HELPER, url);
+        }
+    }
+
+    /**
+     * Downloads UrlImageViewHelper's images through the shared disk cache (instead of keeping its own copy of
+     * each image in the app's files directory)
+     */
+    private class UrlImageViewHelperDownloader implements UrlDownloader {
+        @Override
+        public void download(Context context, String url, String filename, UrlDownloaderCallback callback, Runnable completion) {
+            new AsyncTask<Void, Void, Void>() {
+                @Override
+                protected Void doInBackground(Void... params) {
+                    Response response = null;
+                    try {
+                        response = mClient.newCall(new Request.Builder().url(url).build()).execute();
+                        if (!response.isSuccessful()) {
+                            Logger.tag(TAG).error("UrlImageViewHelperDownloader: " + url + ": " + response.code());
+                            return null;
+                        }
+
+                        InputStream is = response.body().byteStream();
+                        callback.onDownloadComplete(UrlImageViewHelperDownloader.this, is, null);
+                    } catch (IOException e) {
+                        Logger.tag(TAG).error(e);
+                    } finally {
+                        if (response != null) response.close();
+                    }
+                    return null;
+                }
+
+                @Override
+                protected void onPostExecute(Void result) {
+                    completion.run();
+                }
+            }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        }
+
+        @Override
+        public boolean allowCache() {
+            // The downloaded file is only used for decoding - the disk cache keeps the image itself
+            return false;
+        }
+
+        @Override
+        public boolean canDownloadUrl(String url) {
+            return url.startsWith("http");
+        }
+    }
+}
@@ -14,7 +14,6 @@ import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.Rect;
 import android.graphics.RectF;
-import android.media.ExifInterface;
 import android.net.Uri;
 import android.os.Environment;
 import android.provider.MediaStore;
@@ -30,18 +29,6 @@ import androidx.renderscript.ScriptIntrinsicBlur;
 
 import com.schokoladenbrown.Smooth;
 
-import org.apache.sanselan.ImageReadException;
-import org.apache.sanselan.ImageWriteException;
-import org.apache.sanselan.Sanselan;
-import org.apache.sanselan.common.IImageMetadata;
-import org.apache.sanselan.formats.jpeg.JpegImageMetadata;
-import org.apache.sanselan.formats.jpeg.exifRewrite.ExifRewriter;
-import org.apache.sanselan.formats.tiff.TiffImageMetadata;
-import org.apache.sanselan.formats.tiff.constants.TagInfo;
-import org.apache.sanselan.formats.tiff.constants.TiffConstants;
-import org.apache.sanselan.formats.tiff.write.TiffOutputDirectory;
-import org.apache.sanselan.formats.tiff.write.TiffOutputField;
-import org.apache.sanselan.formats.tiff.write.TiffOutputSet;
 import org.tinylog.Logger;
 
 import java.io.BufferedOutputStream;
@@ -54,8 +41,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.channels.FileChannel;
 import java.text.SimpleDateFormat;
-import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Semaphore;
 
 import javax.microedition.khronos.egl.EGL10;
 import javax.microedition.khronos.egl.EGLConfig;
@@ -320,32 +307,13 @@ public class ImageUtils {
 
 
     public static int getImageOrientation(String imgFilePath) {
-        ExifInterface exif = null;
-        try {
-            exif = new ExifInterface(imgFilePath);
-            int degrees = exifOrientationToDegrees(exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL));
-            return degrees;
-        } catch (Exception e) {
-            Logger.tag(TAG).error(e);
-            // No orientation
-            return 0;
-        }
-    }
-
-    private static int exifOrientationToDegrees(int orientation) {
-        switch (orientation) {
-        case ExifInterface.ORIENTATION_ROTATE_90:
-            return 90;
-        case ExifInterface.ORIENTATION_ROTATE_180:
-            return 180;
-        case ExifInterface.ORIENTATION_ROTATE_270:
-            return -90;
-        default:
-            return 0;
-        }
-
+        PhotoMetadata metadata = PhotoMetadata.read(imgFilePath);
+        // No orientation if the photo couldn't be read
+        int degrees = metadata != null ? metadata.getRotationDegrees() : 0;
+        return degrees == 270 ? -90 : degrees;
     }
 
+    // Note: the original bitmap is recycled when a rotated copy is returned
     public static Bitmap rotateAccordingToOrientation(Bitmap bitmapImage, String filename) {
         int orientation = getImageOrientation(filename);
 
@@ -353,7 +321,9 @@ public class ImageUtils {
             // Rotate the image
             Matrix matrix = new Matrix();
             matrix.setRotate((float) orientation, bitmapImage.getWidth() / 2, bitmapImage.getHeight() / 2);
-            return Bitmap.createBitmap(bitmapImage, 0, 0, bitmapImage.getWidth(), bitmapImage.getHeight(), matrix, true);
+            Bitmap rotated = Bitmap.createBitmap(bitmapImage, 0, 0, bitmapImage.getWidth(), bitmapImage.getHeight(), matrix, true);
+            if (rotated != bitmapImage) bitmapImage.recycle();
+            return rotated;
         } else {
             return bitmapImage;
         }
@@ -373,108 +343,77 @@ public class ImageUtils {
     public static String resizeImage(Context context, String path, Uri photoUri, int maxDimensions, boolean noLanczos) {
         InputStream is = null;
         BitmapFactory.Options options = new BitmapFactory.Options();
+        BitmapPool pool = BitmapPool.getInstance();
+        int budgetKb = 0;
 
         try {
-            if (photoUri != null) {
-                try {
-                    is = context.getContentResolver().openInputStream(photoUri);
-                } catch (SecurityException exc) {
-                    // This could happen when if the app that exposes this URI is still active (not in background).
-                    // Could happen if it's been a while between importing the photo and actually triggering the import itself (e.g.
-                    // share from Google Photos app to iNat -> first time asking for media permissions -> taking some time to approve this permission ->
-                    // Google Photos is in the background for a while during this time)
-                    Logger.tag(TAG).error(exc);
-                    return null;
-                }
-            } else {
-                is = new FileInputStream(new File(path));
-            }
+            is = openImageStream(context, path, photoUri);
+            if (is == null) return null;
 
             // Just read the input image dimensions
             options.inJustDecodeBounds = true;
-            Bitmap bitmap = BitmapFactory.decodeStream(is, null, options);
+            BitmapFactory.decodeStream(is, null, options);
             int originalHeight = options.outHeight;
             int originalWidth = options.outWidth;
             int newHeight, newWidth;
 
             // BitmapFactory.decodeStream moves the reading cursor
             is.close();
+            is = null;
 
-            if (photoUri != null) {
-                is = context.getContentResolver().openInputStream(photoUri);
-            } else {
-                is = new FileInputStream(new File(path));
+            if ((originalHeight <= 0) || (originalWidth <= 0)) {
+                Logger.tag(TAG).error("resizeImage: couldn't decode image bounds: " + path);
+                return null;
             }
 
-            if (Math.max(originalHeight, originalWidth) < maxDimensions) {
-                // Original file is smaller than max
-                // Don't resize because image is smaller than max - however, make a local copy of it
-                newHeight = originalHeight;
-                newWidth = originalWidth;
-            } else {
-                // Resize but make sure we have the same width/height aspect ratio
-                if (originalHeight > originalWidth) {
-                    newHeight = maxDimensions;
-                    newWidth = (int) (maxDimensions * ((float) originalWidth / originalHeight));
-                } else {
-                    newWidth = maxDimensions;
-                    newHeight = (int) (maxDimensions * ((float) originalHeight / originalWidth));
-                }
-            }
+            int[] newSize = getResizedDimensions(originalWidth, originalHeight, maxDimensions);
+            newWidth = newSize[0];
+            newHeight = newSize[1];
+
+            // The EXIF rotation is applied to the pixels as part of the final scale (instead of keeping the orientation tag)
+            PhotoMetadata metadata = PhotoMetadata.read(context, path, photoUri);
+            int degrees = metadata != null ? metadata.getRotationDegrees() : 0;
+
+            // Decode at the smallest power-of-two sample size that is still at least the size of the resized image,
+            // so a full-resolution bitmap is only decoded when it's actually needed
+            options.inSampleSize = calculateSampleSizeAbove(originalWidth, originalHeight, newWidth, newHeight);
+            int sampledWidth = (originalWidth + options.inSampleSize - 1) / options.inSampleSize;
+            int sampledHeight = (originalHeight + options.inSampleSize - 1) / options.inSampleSize;
 
-            Logger.tag(TAG).debug("Bitmap h:" + options.outHeight + "; w:" + options.outWidth);
+            Logger.tag(TAG).debug("Bitmap h:" + originalHeight + "; w:" + originalWidth + "; sample size: " + options.inSampleSize + "; rotation: " + degrees);
             Logger.tag(TAG).debug("Resized Bitmap h:" + newHeight + "; w:" + newWidth);
 
-            Bitmap resizedBitmap = BitmapFactory.decodeStream(is);
-
-            if ((resizedBitmap != null) && ((newHeight != originalHeight) || (newWidth != originalWidth))) {
-                if (!noLanczos && android.os.Build.VERSION.SDK_INT > android.os.Build.VERSION_CODES.JELLY_BEAN_MR2) {
-                    // Resize bitmap using Lanczos algorithm (provides smoother/better results than the
-                    // built-in Android resize methods)
-                    try {
-                        resizedBitmap = Smooth.rescale(resizedBitmap, newWidth, newHeight, Smooth.AlgoParametrized1.LANCZOS, 1.0);
-                    } catch (Throwable exc) {
-                        Logger.tag(TAG).error("Crashed while using SmoothRescale library - resizing using Android OS");
-                        Logger.tag(TAG).error(exc);
-                        resizedBitmap = Bitmap.createScaledBitmap(resizedBitmap, newWidth, newHeight, true);
-                    }
-                } else {
-                    // The Smooth rescale library has issues with Older Android versions (causes crashes) - use
-                    // built-in Android resizing
-                    resizedBitmap = Bitmap.createScaledBitmap(resizedBitmap, newWidth, newHeight, !noLanczos);
-                }
-            }
+            // Wait until there's enough of the memory budget for the decoded + resized bitmaps (when resizing several photos concurrently)
+            long requiredBytes = BitmapPool.getSizeBytes(sampledWidth, sampledHeight, Bitmap.Config.ARGB_8888) +
+                    BitmapPool.getSizeBytes(newWidth, newHeight, Bitmap.Config.ARGB_8888);
+            budgetKb = acquireResizeBudget(requiredBytes);
 
-            if (resizedBitmap == null) {
+            Bitmap decodedBitmap = decodeImage(context, path, photoUri, options, sampledWidth, sampledHeight, pool);
+            if (decodedBitmap == null) {
                 Logger.tag(TAG).error("resizeImage: resizedBitmap is null");
                 return null;
             }
 
+            Bitmap resizedBitmap = scaleAndRotate(decodedBitmap, newWidth, newHeight, degrees, noLanczos, pool);
+
             // Save resized image
             File imageFile = new File(context.getFilesDir(), UUID.randomUUID().toString() + ".jpeg");
-            OutputStream os = new FileOutputStream(imageFile);
-            resizedBitmap.compress(Bitmap.CompressFormat.JPEG, 100, os);
-            os.flush();
-            os.close();
+            saveJpeg(resizedBitmap, imageFile);
 
             Logger.tag(TAG).debug(String.format("resizeImage: %s => %s", path, imageFile.getAbsolutePath()));
 
-            resizedBitmap.recycle();
+            int resizedWidth = resizedBitmap.getWidth();
+            int resizedHeight = resizedBitmap.getHeight();
+            pool.put(resizedBitmap);
+            releaseResizeBudget(budgetKb);
+            budgetKb = 0;
 
-            // BitmapFactory.decodeStream moves the reading cursor
-            is.close();
-
-            if (photoUri != null) {
-                is = context.getContentResolver().openInputStream(photoUri);
-            } else {
-                is = new FileInputStream(new File(path));
+            // Copy all EXIF data from original image into resized image (except for the orientation, in case
+            // the image has already been rotated)
+            if ((metadata != null) && metadata.hasExif()) {
+                metadata.writeExif(imageFile, resizedWidth, resizedHeight, degrees != 0);
             }
 
-            // Copy all EXIF data from original image into resized image
-            copyExifData(is, new File(imageFile.getAbsolutePath()), null);
-
-            is.close();
-
             return imageFile.getAbsolutePath();
 
         } catch (OutOfMemoryError e) {
@@ -485,169 +424,331 @@ public class ImageUtils {
             Logger.tag(TAG).error(e);
         } catch (SecurityException e) {
             Logger.tag(TAG).error(e);
+        } finally {
+            releaseResizeBudget(budgetKb);
+
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (IOException e) {
+                }
+            }
         }
 
         // Failed copying the image
         return null;
     }
 
-
-    // EXIF-copying code taken from: https://bricolsoftconsulting.com/copying-exif-metadata-using-sanselan/
-    private static boolean copyExifData(InputStream sourceFileStream, File destFile, List<TagInfo> excludedFields) {
-        String tempFileName = destFile.getAbsolutePath() + ".tmp";
-        File tempFile = null;
-        OutputStream tempStream = null;
+    /**
+     * Imports an image - creates both a resized copy of it (up to max size) and an original-sized copy of it,
+     * decoding the image at most once for both copies. If the original-sized copy doesn't need any changes
+     * (a JPEG image with no rotation) it's a byte-for-byte copy of the image, and the image is only decoded
+     * (sampled down) for the resized copy.
+     * @param path the path to the image filename (optional)
+     * @param photoUri the original Uri of the image
+     * @param maxDimensions the max size of the resized copy
+     * @return the resized copy filename and the original-sized copy filename - or null if failed
+     */
+    public static String[] importImage(Context context, String path, Uri photoUri, int maxDimensions) {
+        InputStream is = null;
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        BitmapPool pool = BitmapPool.getInstance();
+        int budgetKb = 0;
+        File resizedFile = new File(context.getFilesDir(), UUID.randomUUID().toString() + ".jpeg");
+        File originalFile = new File(context.getFilesDir(), UUID.randomUUID().toString() + ".jpeg");
+        boolean success = false;
 
         try {
-            tempFile = new File (tempFileName);
-
-            TiffOutputSet sourceSet = getSanselanOutputSet(sourceFileStream, TiffConstants.DEFAULT_TIFF_BYTE_ORDER);
-            if (sourceSet == null) return false;
-            TiffOutputSet destSet = getSanselanOutputSet(destFile, sourceSet.byteOrder);
-            if (destSet == null) return false;
-
-            // If the EXIF data endianess of the source and destination files
-            // differ then fail. This only happens if the source and
-            // destination images were created on different devices. It's
-            // technically possible to copy this data by changing the byte
-            // order of the data, but handling this case is outside the scope
-            // of this implementation
-            if (sourceSet.byteOrder != destSet.byteOrder) return false;
-
-            destSet.getOrCreateExifDirectory();
-
-            // Go through the source directories
-            List<?> sourceDirectories = sourceSet.getDirectories();
-            for (int i=0; i<sourceDirectories.size(); i++) {
-                TiffOutputDirectory sourceDirectory = (TiffOutputDirectory)sourceDirectories.get(i);
-                TiffOutputDirectory destinationDirectory = getOrCreateExifDirectory(destSet, sourceDirectory);
-
-                if (destinationDirectory == null) continue; // failed to create
-
-                // Loop the fields
-                List<?> sourceFields = sourceDirectory.getFields();
-                for (int j=0; j<sourceFields.size(); j++) {
-                    // Get the source field
-                    TiffOutputField sourceField = (TiffOutputField) sourceFields.get(j);
-
-                    // Check exclusion list
-                    if (excludedFields != null && excludedFields.contains(sourceField.tagInfo)) {
-                        destinationDirectory.removeField(sourceField.tagInfo);
-                        continue;
-                    }
-
-                    // Remove any existing field
-                    destinationDirectory.removeField(sourceField.tagInfo);
-
-                    // Add field
-                    destinationDirectory.add(sourceField);
-                }
-            }
+            is = openImageStream(context, path, photoUri);
+            if (is == null) return null;
 
-            // Save data to destination
-            tempStream = new BufferedOutputStream(new FileOutputStream(tempFile));
-            new ExifRewriter().updateExifMetadataLossless(destFile, tempStream, destSet);
-            tempStream.close();
+            // Just read the input image dimensions
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeStream(is, null, options);
+            int originalWidth = options.outWidth;
+            int originalHeight = options.outHeight;
+            is.close();
+            is = null;
 
-            // Replace file
-            if (destFile.delete()) {
-                tempFile.renameTo(destFile);
+            if ((originalHeight <= 0) || (originalWidth <= 0)) {
+                Logger.tag(TAG).error("importImage: couldn't decode image bounds: " + path);
+                return null;
             }
 
-            return true;
+            PhotoMetadata metadata = PhotoMetadata.read(context, path, photoUri);
+            int degrees = metadata != null ? metadata.getRotationDegrees() : 0;
+            boolean isJpeg = "image/jpeg".equals(options.outMimeType);
+            int[] newSize = getResizedDimensions(originalWidth, originalHeight, maxDimensions);
+            boolean needsResizing = (newSize[0] != originalWidth) || (newSize[1] != originalHeight);
+
+            // The EXIF data of the image is read once (from its header), and written into both copies (without the
+            // orientation, in case the copies are rotated)
+            boolean hasExif = (metadata != null) && metadata.hasExif();
+
+            Logger.tag(TAG).debug("importImage: " + path + " - " + originalWidth + "x" + originalHeight + " (" + options.outMimeType +
+                    "); rotation: " + degrees + "; resized: " + newSize[0] + "x" + newSize[1]);
+
+            if (isJpeg && (degrees == 0)) {
+                // Original-sized copy - as-is (including all of its metadata)
+                is = openImageStream(context, path, photoUri);
+                if (is == null) return null;
+                FileUtils.copyInputStream(is, originalFile);
+                is = null;
+
+                if (!needsResizing) {
+                    // Resized copy is the same as the original-sized one
+                    FileUtils.copyFile(originalFile, resizedFile);
+                } else {
+                    // Decode the image sampled down to (at least) the resized copy size
+                    options.inSampleSize = calculateSampleSizeAbove(originalWidth, originalHeight, newSize[0], newSize[1]);
+                    int sampledWidth = (originalWidth + options.inSampleSize - 1) / options.inSampleSize;
+                    int sampledHeight = (originalHeight + options.inSampleSize - 1) / options.inSampleSize;
+
+                    budgetKb = acquireResizeBudget(BitmapPool.getSizeBytes(sampledWidth, sampledHeight, Bitmap.Config.ARGB_8888) +
+                            BitmapPool.getSizeBytes(newSize[0], newSize[1], Bitmap.Config.ARGB_8888));
 
-        } catch (ImageReadException exception) {
-            Logger.tag(TAG).error(exception);
+                    Bitmap decodedBitmap = decodeImage(context, path, photoUri, options, sampledWidth, sampledHeight, pool);
+                    if (decodedBitmap == null) return null;
 
-        } catch (ImageWriteException exception) {
-            Logger.tag(TAG).error(exception);
+                    Bitmap resizedBitmap = scaleAndRotate(decodedBitmap, newSize[0], newSize[1], 0, false, pool);
+                    saveJpeg(resizedBitmap, resizedFile);
+                    pool.put(resizedBitmap);
+                    releaseResizeBudget(budgetKb);
+                    budgetKb = 0;
 
-        } catch (IOException exception) {
-            Logger.tag(TAG).error(exception);
+                    if (hasExif) metadata.writeExif(resizedFile, newSize[0], newSize[1], false);
+                }
 
+            } else {
+                // The original-sized copy needs to be rotated/converted - decode the image once (in full size),
+                // and create both copies from that decoded image
+                budgetKb = acquireResizeBudget(2 * BitmapPool.getSizeBytes(originalWidth, originalHeight, Bitmap.Config.ARGB_8888) +
+                        BitmapPool.getSizeBytes(newSize[0], newSize[1], Bitmap.Config.ARGB_8888));
+
+                options.inSampleSize = 1;
+                Bitmap decodedBitmap = decodeImage(context, path, photoUri, options, originalWidth, originalHeight, pool);
+                if (decodedBitmap == null) return null;
+
+                Bitmap originalBitmap = scaleAndRotate(decodedBitmap, originalWidth, originalHeight, degrees, false, pool);
+                int rotatedWidth = originalBitmap.getWidth();
+                int rotatedHeight = originalBitmap.getHeight();
+                saveJpeg(originalBitmap, originalFile);
+
+                int resizedWidth = rotatedWidth;
+                int resizedHeight = rotatedHeight;
+                if (!needsResizing) {
+                    pool.put(originalBitmap);
+                } else {
+                    // The original-sized bitmap is already rotated
+                    boolean swapDimensions = (Math.abs(degrees) % 180) == 90;
+                    Bitmap resizedBitmap = scaleAndRotate(originalBitmap,
+                            swapDimensions ? newSize[1] : newSize[0], swapDimensions ? newSize[0] : newSize[1], 0, false, pool);
+                    resizedWidth = resizedBitmap.getWidth();
+                    resizedHeight = resizedBitmap.getHeight();
+                    saveJpeg(resizedBitmap, resizedFile);
+                    pool.put(resizedBitmap);
+                }
+
+                // All bitmaps are back in the pool - the EXIF writes and file copies below don't need the budget
+                releaseResizeBudget(budgetKb);
+                budgetKb = 0;
+
+                if (hasExif) metadata.writeExif(originalFile, rotatedWidth, rotatedHeight, degrees != 0);
+
+                if (!needsResizing) {
+                    FileUtils.copyFile(originalFile, resizedFile);
+                } else if (hasExif) {
+                    metadata.writeExif(resizedFile, resizedWidth, resizedHeight, degrees != 0);
+                }
+            }
+
+            Logger.tag(TAG).debug(String.format("importImage: %s => %s, %s", path, resizedFile.getAbsolutePath(), originalFile.getAbsolutePath()));
+
+            success = true;
+            return new String[] { resizedFile.getAbsolutePath(), originalFile.getAbsolutePath() };
+
+        } catch (OutOfMemoryError e) {
+            Logger.tag(TAG).error(e);
+        } catch (FileNotFoundException e) {
+            Logger.tag(TAG).error(e);
+        } catch (IOException e) {
+            Logger.tag(TAG).error(e);
+        } catch (SecurityException e) {
+            Logger.tag(TAG).error(e);
         } finally {
-            if (tempStream != null) {
+            releaseResizeBudget(budgetKb);
+
+            if (is != null) {
                 try {
-                    tempStream.close();
+                    is.close();
                 } catch (IOException e) {
                 }
             }
 
-            if (tempFile != null) {
-                if (tempFile.exists()) tempFile.delete();
+            if (!success) {
+                resizedFile.delete();
+                originalFile.delete();
             }
         }
 
-        return false;
+        // Failed importing the image
+        return null;
     }
 
-    private static TiffOutputDirectory getOrCreateExifDirectory(TiffOutputSet outputSet, TiffOutputDirectory outputDirectory) {
-        TiffOutputDirectory result = outputSet.findDirectory(outputDirectory.type);
-        if (result != null)
-            return result;
-        result = new TiffOutputDirectory(outputDirectory.type);
-        try {
-            outputSet.addDirectory(result);
-        } catch (ImageWriteException e) {
+    // Returns the size of an image resized to max size (keeping the same width/height aspect ratio)
+    private static int[] getResizedDimensions(int width, int height, int maxDimensions) {
+        if (Math.max(height, width) < maxDimensions) {
+            // Image is smaller than max - no need to resize it
+            return new int[] { width, height };
+        } else if (height > width) {
+            return new int[] { (int) (maxDimensions * ((float) width / height)), maxDimensions };
+        } else {
+            return new int[] { maxDimensions, (int) (maxDimensions * ((float) height / width)) };
+        }
+    }
+
+    /**
+     * Decodes an image (according to the sample size set in the options) into a pooled bitmap, when possible
+     * @return the decoded bitmap, or null if failed
+     */
+    private static Bitmap decodeImage(Context context, String path, Uri photoUri, BitmapFactory.Options options,
+                                      int sampledWidth, int sampledHeight, BitmapPool pool) throws IOException {
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inBitmap = pool.get(sampledWidth, sampledHeight, Bitmap.Config.ARGB_8888);
+
+        Bitmap decodedBitmap;
+        InputStream is = openImageStream(context, path, photoUri);
+        if (is == null) {
+            pool.put(options.inBitmap);
             return null;
         }
-        return result;
+        try {
+            decodedBitmap = BitmapFactory.decodeStream(is, null, options);
+        } catch (IllegalArgumentException exc) {
+            // The pooled bitmap can't be reused for this image - decode into a new one
+            Logger.tag(TAG).debug("decodeImage: couldn't decode into a pooled bitmap: " + exc);
+            pool.put(options.inBitmap);
+            options.inBitmap = null;
+            is.close();
+            is = openImageStream(context, path, photoUri);
+            if (is == null) return null;
+            decodedBitmap = BitmapFactory.decodeStream(is, null, options);
+        } finally {
+            if (is != null) is.close();
+        }
+
+        if ((decodedBitmap == null) && (options.inBitmap != null)) {
+            pool.put(options.inBitmap);
+        }
+
+        return decodedBitmap;
     }
 
+    private static void saveJpeg(Bitmap bitmap, File file) throws IOException {
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+        try {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, 100, os);
+            os.flush();
+        } finally {
+            os.close();
+        }
+    }
 
-    private static TiffOutputSet getSanselanOutputSet(InputStream stream, int defaultByteOrder)
-            throws IOException, ImageReadException, ImageWriteException {
-        TiffImageMetadata exif = null;
-        TiffOutputSet outputSet = null;
+    private static InputStream openImageStream(Context context, String path, Uri photoUri) throws FileNotFoundException {
+        if (photoUri == null) {
+            return new FileInputStream(new File(path));
+        }
 
-        IImageMetadata metadata = Sanselan.getMetadata(stream, null);
-        if (!(metadata instanceof  JpegImageMetadata)) {
-            // Not a JPEG -> No EXIF data
+        try {
+            return context.getContentResolver().openInputStream(photoUri);
+        } catch (SecurityException exc) {
+            // This could happen when if the app that exposes this URI is still active (not in background).
+            // Could happen if it's been a while between importing the photo and actually triggering the import itself (e.g.
+            // share from Google Photos app to iNat -> first time asking for media permissions -> taking some time to approve this permission ->
+            // Google Photos is in the background for a while during this time)
+            Logger.tag(TAG).error(exc);
             return null;
         }
+    }
 
-        JpegImageMetadata jpegMetadata = (JpegImageMetadata) metadata;
-        if (jpegMetadata != null) {
-            exif = jpegMetadata.getExif();
+    /**
+     * Returns the largest power-of-two sample size that keeps the sampled image at least as large as the requested size
+     * (unlike calculateInSampleSize, which is meant for thumbnails)
+     */
+    public static int calculateSampleSizeAbove(int width, int height, int reqWidth, int reqHeight) {
+        int sampleSize = 1;
+        while ((width / (sampleSize * 2) >= reqWidth) && (height / (sampleSize * 2) >= reqHeight)) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
 
-            if (exif != null) {
-                outputSet = exif.getOutputSet();
+    /**
+     * Scales a bitmap to the requested size and rotates it (clockwise, by the given degrees) in a single pass.
+     * The source bitmap is returned to the pool if it's not the returned bitmap.
+     */
+    private static Bitmap scaleAndRotate(Bitmap source, int width, int height, int degrees, boolean noLanczos, BitmapPool pool) {
+        boolean needsScaling = (source.getWidth() != width) || (source.getHeight() != height);
+
+        if (!needsScaling && (degrees == 0)) return source;
+
+        if (needsScaling && !noLanczos) {
+            // Resize bitmap using Lanczos algorithm (provides smoother/better results than the
+            // built-in Android resize methods) - the source bitmap is already sampled down to less than twice the size
+            try {
+                Bitmap scaled = Smooth.rescale(source, width, height, Smooth.AlgoParametrized1.LANCZOS, 1.0);
+                if (scaled != null) {
+                    if (scaled != source) pool.put(source);
+                    source = scaled;
+                    needsScaling = false;
+                }
+            } catch (Throwable exc) {
+                Logger.tag(TAG).error("Crashed while using SmoothRescale library - resizing using Android OS");
+                Logger.tag(TAG).error(exc);
             }
+
+            if (!needsScaling && (degrees == 0)) return source;
         }
 
-        // If JPEG file contains no EXIF metadata, create an empty set
-        // of EXIF metadata. Otherwise, use existing EXIF metadata to
-        // keep all other existing tags
-        if (outputSet == null)
-            outputSet = new TiffOutputSet(exif==null?defaultByteOrder:exif.contents.header.byteOrder);
+        // Scale (if still needed) and rotate into a single (pooled) target bitmap
+        boolean swapDimensions = (Math.abs(degrees) % 180) == 90;
+        int targetWidth = swapDimensions ? height : width;
+        int targetHeight = swapDimensions ? width : height;
 
-        return outputSet;
-    }
+        Matrix matrix = new Matrix();
+        matrix.setScale((float) width / source.getWidth(), (float) height / source.getHeight());
+        matrix.postRotate(degrees);
+        RectF bounds = new RectF(0, 0, source.getWidth(), source.getHeight());
+        matrix.mapRect(bounds);
+        matrix.postTranslate(-bounds.left, -bounds.top);
 
-    private static TiffOutputSet getSanselanOutputSet(File jpegImageFile, int defaultByteOrder)
-            throws IOException, ImageReadException, ImageWriteException {
-        TiffImageMetadata exif = null;
-        TiffOutputSet outputSet = null;
+        Bitmap target = pool.getOrCreate(targetWidth, targetHeight, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(target);
+        canvas.drawBitmap(source, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
 
-        IImageMetadata metadata = Sanselan.getMetadata(jpegImageFile);
-        JpegImageMetadata jpegMetadata = (JpegImageMetadata) metadata;
-        if (jpegMetadata != null) {
-            exif = jpegMetadata.getExif();
+        pool.put(source);
 
-            if (exif != null) {
-                outputSet = exif.getOutputSet();
-            }
-        }
+        return target;
+    }
 
-        // If JPEG file contains no EXIF metadata, create an empty set
-        // of EXIF metadata. Otherwise, use existing EXIF metadata to
-        // keep all other existing tags
-        if (outputSet == null)
-            outputSet = new TiffOutputSet(exif == null ? defaultByteOrder : exif.contents.header.byteOrder);
+    // Memory budget (in KB) shared by all concurrent resizes, so resizing a batch of photos in parallel has bounded peak memory
+    private static final int RESIZE_MEMORY_BUDGET_KB = (int) (Runtime.getRuntime().maxMemory() / 4 / 1024);
+    private static final Semaphore sResizeBudget = new Semaphore(RESIZE_MEMORY_BUDGET_KB, true);
 
-        return outputSet;
+    private static int acquireResizeBudget(long requiredBytes) {
+        // A single image larger than the entire budget still gets resized (on its own)
+        int permits = (int) Math.max(1, Math.min(RESIZE_MEMORY_BUDGET_KB, requiredBytes / 1024));
+        sResizeBudget.acquireUninterruptibly(permits);
+        return permits;
     }
 
+    private static void releaseResizeBudget(int permits) {
+        if (permits > 0) sResizeBudget.release(permits);
+    }
+
+
     /** Adds a photo to the phone's camera gallery */
     public static String addPhotoToGallery(Context context, String path) {
         if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.Q) {
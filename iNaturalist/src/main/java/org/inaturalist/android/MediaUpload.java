@@ -0,0 +1,163 @@
+package org.inaturalist.android;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.BaseColumns;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Upload journal entry - an in-flight (or previously interrupted) upload of an observation photo/sound file.
+ * Entries are removed once their upload is acknowledged by the server.
+ */
+public class MediaUpload implements BaseColumns, Serializable {
+    public Integer _id;
+    public String media_type;
+    public Integer media_id;
+    public String media_uuid;
+    public Integer observation_id;
+    public String filename;
+    public Long file_size;
+    public Long bytes_sent;
+    public Integer attempts;
+    public String state;
+    public Long started_at;
+    public Long updated_at;
+
+    public static final int MEDIA_UPLOADS_URI_CODE = 2103;
+    public static final int MEDIA_UPLOAD_ID_URI_CODE = 2104;
+
+    public static final String AUTHORITY = "org.inaturalist.android.media_upload";
+    public static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/media_uploads");
+    public static final String DEFAULT_SORT_ORDER = "_id ASC";
+
+    public static final String TABLE_NAME = "media_uploads";
+
+    public static final String MEDIA_TYPE = "media_type";
+    public static final String MEDIA_ID = "media_id";
+    public static final String MEDIA_UUID = "media_uuid";
+    public static final String OBSERVATION_ID = "observation_id";
+    public static final String FILENAME = "filename";
+    public static final String FILE_SIZE = "file_size";
+    public static final String BYTES_SENT = "bytes_sent";
+    public static final String ATTEMPTS = "attempts";
+    public static final String STATE = "state";
+    public static final String STARTED_AT = "started_at";
+    public static final String UPDATED_AT = "updated_at";
+
+    public static final String MEDIA_TYPE_PHOTO = "photo";
+    public static final String MEDIA_TYPE_SOUND = "sound";
+
+    // Upload request is being sent
+    public static final String STATE_SENDING = "sending";
+    // The entire file was sent, but no response was received yet (if interrupted now - the server might have the file)
+    public static final String STATE_SENT = "sent";
+    // Upload failed (an error response or an interrupted request)
+    public static final String STATE_FAILED = "failed";
+
+    public static HashMap<String, String> PROJECTION_MAP;
+
+    public static final String[] PROJECTION = new String[] {
+        MediaUpload._ID,
+        MediaUpload.MEDIA_TYPE,
+        MediaUpload.MEDIA_ID,
+        MediaUpload.MEDIA_UUID,
+        MediaUpload.OBSERVATION_ID,
+        MediaUpload.FILENAME,
+        MediaUpload.FILE_SIZE,
+        MediaUpload.BYTES_SENT,
+        MediaUpload.ATTEMPTS,
+        MediaUpload.STATE,
+        MediaUpload.STARTED_AT,
+        MediaUpload.UPDATED_AT
+    };
+
+    static {
+        PROJECTION_MAP = new HashMap<String, String>();
+        for (String column : PROJECTION) {
+            PROJECTION_MAP.put(column, column);
+        }
+    }
+
+    public String toString() {
+        return String.format(Locale.ENGLISH, "MediaUpload (%d): %s %d (%s) - %s - %d / %d bytes, %d attempts, %s",
+                _id, media_type, media_id, media_uuid, filename, bytes_sent, file_size, attempts, state);
+    }
+
+    public MediaUpload() {}
+
+    public MediaUpload(Cursor c) {
+        if (c.getPosition() == -1) c.moveToFirst();
+        BetterCursor bc = new BetterCursor(c);
+        this._id = bc.getInt(_ID);
+        this.media_type = bc.getString(MEDIA_TYPE);
+        this.media_id = bc.getInteger(MEDIA_ID);
+        this.media_uuid = bc.getString(MEDIA_UUID);
+        this.observation_id = bc.getInteger(OBSERVATION_ID);
+        this.filename = bc.getString(FILENAME);
+        this.file_size = bc.getLong(FILE_SIZE);
+        this.bytes_sent = bc.getLong(BYTES_SENT);
+        this.attempts = bc.getInteger(ATTEMPTS);
+        this.state = bc.getString(STATE);
+        this.started_at = bc.getLong(STARTED_AT);
+        this.updated_at = bc.getLong(UPDATED_AT);
+    }
+
+    /** Whether the entire file was delivered during a previous attempt (i.e. the server might already have it) */
+    public boolean wasDelivered() {
+        return STATE_SENT.equals(state) || ((file_size != null) && (bytes_sent != null) && (file_size > 0) && (bytes_sent >= file_size));
+    }
+
+    public static String sqlCreate() {
+        return "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " ("
+                + MediaUpload._ID + " INTEGER PRIMARY KEY,"
+                + "media_type TEXT,"
+                + "media_id INTEGER,"
+                + "media_uuid TEXT,"
+                + "observation_id INTEGER,"
+                + "filename TEXT,"
+                + "file_size INTEGER,"
+                + "bytes_sent INTEGER,"
+                + "attempts INTEGER,"
+                + "state TEXT,"
+                + "started_at INTEGER,"
+                + "updated_at INTEGER"
+                + ");";
+    }
+
+    // Entries are looked up by the local ID of the photo/sound being uploaded
+    public static String[] sqlCreateIndexes() {
+        return new String[] {
+                "CREATE UNIQUE INDEX IF NOT EXISTS " + TABLE_NAME + "_media_index ON " + TABLE_NAME + " (media_type, media_id)"
+        };
+    }
+
+    public ContentValues getContentValues() {
+        ContentValues cv = new ContentValues();
+        cv.put(MEDIA_TYPE, media_type);
+        cv.put(MEDIA_ID, media_id);
+        cv.put(MEDIA_UUID, media_uuid);
+        cv.put(OBSERVATION_ID, observation_id);
+        cv.put(FILENAME, filename);
+        cv.put(FILE_SIZE, file_size);
+        cv.put(BYTES_SENT, bytes_sent);
+        cv.put(ATTEMPTS, attempts);
+        cv.put(STATE, state);
+        cv.put(STARTED_AT, started_at);
+        cv.put(UPDATED_AT, updated_at);
+
+        return cv;
+    }
+
+    public Uri getUri() {
+        if (_id == null) {
+            return null;
+        } else {
+            return ContentUris.withAppendedId(CONTENT_URI, _id);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package org.inaturalist.android;
+
+import org.tinylog.Logger;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Uploads media files (photos/sounds) using a bounded pool of concurrent workers.
+ *
+ * Uploads of a single observation are submitted together and their results are consumed in submission order
+ * (so photo positions and DB updates remain the same as with serial uploading). Uploads that failed in a retryable
+ * way (see isRetryable) are retried with an exponential backoff, which is extended in case the server asked us to
+ * retry later.
+ */
+public class MediaUploadPipeline {
+    private static final String TAG = "MediaUploadPipeline";
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final long INITIAL_BACKOFF_MILLIS = 2000;
+    // Don't wait more than this for a single retry (in case the server asks for a longer delay - fail the upload instead)
+    private static final long MAX_BACKOFF_MILLIS = 60000;
+    // How often to check whether syncing was cancelled, while waiting for an upload to finish
+    private static final long CANCEL_CHECK_INTERVAL_MILLIS = 500;
+
+    /** A single upload */
+    public interface Upload {
+        ApiResponse upload() throws Exception;
+    }
+
+    public interface Callbacks {
+        /** Whether or not syncing was cancelled by the user */
+        boolean isCancelled();
+        /** Called (on the calling thread) whenever an upload finishes */
+        void onProgress(int completedCount, int queuedCount, long bytesPerSecond);
+    }
+
+    /** The result of a single upload */
+    public static class Result {
+        // Response of the last upload attempt (null if none was received)
+        public final ApiResponse response;
+        // Exception thrown by the upload (if any)
+        public final Exception error;
+
+        Result(ApiResponse response, Exception error) {
+            this.response = response;
+            this.error = error;
+        }
+
+        public boolean isSuccessful() {
+            return (response != null) && response.isSuccessful();
+        }
+    }
+
+    public static class Ticket {
+        private Future<Result> mFuture;
+        private final long mSize;
+        // Set either by the worker that starts the upload, or by await() when cancelling it before it started
+        private final AtomicBoolean mClaimed = new AtomicBoolean(false);
+
+        private Ticket(long size) {
+            mSize = size;
+        }
+    }
+
+    private final ExecutorService mExecutor;
+    private final Callbacks mCallbacks;
+
+    private final AtomicInteger mQueued = new AtomicInteger();
+    private int mCompleted = 0;
+    private long mUploadedBytes = 0;
+    private final AtomicLong mUploadMillis = new AtomicLong();
+
+    public MediaUploadPipeline(int workerCount, Callbacks callbacks) {
+        mCallbacks = callbacks;
+        mExecutor = Executors.newFixedThreadPool(workerCount, new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG + "-" + mCount.incrementAndGet());
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Queues an upload
+     * @param size size of the uploaded file (in bytes), used for throughput reporting
+     */
+    public Ticket submit(final Upload upload, long size) {
+        final Ticket ticket = new Ticket(size);
+        mQueued.incrementAndGet();
+        ticket.mFuture = mExecutor.submit(() -> {
+            if (!ticket.mClaimed.compareAndSet(false, true)) {
+                // Cancelled before it started
+                return new Result(null, new CancelSyncException());
+            }
+            try {
+                return performUpload(upload);
+            } finally {
+                mQueued.decrementAndGet();
+            }
+        });
+
+        return ticket;
+    }
+
+    /**
+     * Waits for an upload to finish (while checking for sync cancellation). In case syncing was cancelled, an
+     * upload that hasn't started yet is cancelled - but an upload already in progress is waited for (so its result
+     * could still be saved, and the file won't be uploaded twice).
+     */
+    public Result await(Ticket ticket) throws CancelSyncException {
+        Result result;
+
+        while (true) {
+            if (mCallbacks.isCancelled() && ticket.mClaimed.compareAndSet(false, true)) {
+                ticket.mFuture.cancel(false);
+                mQueued.decrementAndGet();
+                throw new CancelSyncException();
+            }
+
+            try {
+                result = ticket.mFuture.get(CANCEL_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                break;
+            } catch (TimeoutException e) {
+                // Still uploading
+            } catch (InterruptedException | CancellationException e) {
+                throw new CancelSyncException();
+            } catch (ExecutionException e) {
+                result = new Result(null, e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+                break;
+            }
+        }
+
+        if (result.isSuccessful()) {
+            mCompleted++;
+            mUploadedBytes += ticket.mSize;
+        }
+
+        long millis = mUploadMillis.get();
+        mCallbacks.onProgress(mCompleted, mQueued.get(), millis > 0 ? (mUploadedBytes * 1000) / millis : 0);
+
+        return result;
+    }
+
+    /** Stops the workers once all queued uploads are done */
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+
+    private Result performUpload(Upload upload) {
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        ApiResponse response = null;
+
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            if (mCallbacks.isCancelled()) return new Result(null, new CancelSyncException());
+
+            long startTime = System.currentTimeMillis();
+            try {
+                response = upload.upload();
+            } catch (Exception e) {
+                // Not retryable (e.g. authentication error)
+                return new Result(null, e);
+            } finally {
+                mUploadMillis.addAndGet(System.currentTimeMillis() - startTime);
+            }
+
+            if (response.isSuccessful()) return new Result(response, null);
+            if (!isRetryable(response)) {
+                Logger.tag(TAG).error("Upload failed (" + response + ") - not retrying");
+                break;
+            }
+            if (attempt == MAX_ATTEMPTS) break;
+
+            long delay = backoff;
+            if (response.retryAfter != null) {
+                delay = Math.max(delay, response.retryAfter.getTime() - System.currentTimeMillis());
+            }
+            if (delay > MAX_BACKOFF_MILLIS) {
+                Logger.tag(TAG).error("Upload failed - server asked to retry in " + delay + " ms, not retrying");
+                break;
+            }
+
+            Logger.tag(TAG).debug("Upload failed (attempt " + attempt + ") - retrying in " + delay + " ms");
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                return new Result(null, new CancelSyncException());
+            }
+            backoff *= 2;
+        }
+
+        return new Result(response, null);
+    }
+
+    /**
+     * Whether a failed upload can be sent again: "service unavailable" (503), "too many requests" (429) and network
+     * errors that happened before the whole request was sent - none of which could have created the photo/sound on
+     * the server. Client errors (4xx) would just fail again. Other server errors (500/502/504), and an upload that was
+     * fully sent but got no response (e.g. a read timeout), might have been created on the server already - they're
+     * left for the upload journal to check against the server on the next sync (instead of creating a duplicate).
+     */
+    static boolean isRetryable(ApiResponse response) {
+        if (response.serviceUnavailable || (response.statusCode == HTTP_TOO_MANY_REQUESTS)) return true;
+        if (response.isNetworkError()) return !response.requestSent;
+        return false;
+    }
+}
@@ -244,7 +244,7 @@ public class MentionsAutoComplete implements TextWatcher, AdapterView.OnItemClic
             SerializableJSONArray resultsJSON;
 
             if (isSharedOnApp) {
-                resultsObject = (BetterJSONObject) mApp.getServiceResult(intent.getAction());
+                resultsObject = ServiceResultBus.getInstance().get(intent, intent.getAction(), BetterJSONObject.class, this);
             } else {
                 resultsObject = (BetterJSONObject) intent.getSerializableExtra(INaturalistService.RESULTS);
             }
@@ -316,7 +316,7 @@ public class MessagesActivity extends BaseFragmentActivity implements MessageAda
             }
 
             if (isSharedOnApp) {
-                object = mApp.getServiceResult(intent.getAction());
+                object = ServiceResultBus.getInstance().get(intent, intent.getAction(), Object.class, this);
             } else {
                 object = intent.getSerializableExtra(INaturalistService.ACTION_MESSAGES_RESULT);
             }
@@ -542,7 +542,7 @@ public class MessagesThreadActivity extends AppCompatActivity {
             }
 
             if (isSharedOnApp) {
-                object = mApp.getServiceResult(intent.getAction());
+                object = ServiceResultBus.getInstance().get(intent, intent.getAction(), Object.class, this);
             } else {
                 object = intent.getSerializableExtra(INaturalistService.ACTION_MESSAGES_RESULT);
             }
@@ -605,7 +605,7 @@ public class MessagesThreadActivity extends AppCompatActivity {
 
 
             if (isSharedOnApp) {
-                object = mApp.getServiceResult(intent.getAction());
+                object = ServiceResultBus.getInstance().get(intent, intent.getAction(), Object.class, this);
             } else {
                 object = intent.getSerializableExtra(INaturalistService.ACTION_MESSAGES_RESULT);
             }
@@ -140,7 +140,7 @@ public class MissionDetails extends AppCompatActivity implements AppBarLayout.On
             BetterJSONObject taxon = new BetterJSONObject(mMission.getJSONObject("taxon"));
             int taxonId = taxon.getInt("id");
 
-            BetterJSONObject resultsObject = (BetterJSONObject) mApp.getServiceResult(INaturalistService.RECOMMENDED_MISSIONS_RESULT);
+            BetterJSONObject resultsObject = ServiceResultBus.getInstance().get(INaturalistService.RECOMMENDED_MISSIONS_RESULT, BetterJSONObject.class, this);
 
             if (resultsObject != null) {
                 JSONArray results = resultsObject.getJSONArray("results").getJSONArray();
@@ -241,7 +241,7 @@ public class MissionDetails extends AppCompatActivity implements AppBarLayout.On
                 // Show the observation editor screen with the taxon already pre-filled
                 BetterJSONObject taxon = new BetterJSONObject(mMission.getJSONObject("taxon"));
                 Intent intent = new Intent(Intent.ACTION_INSERT, Observation.CONTENT_URI, MissionDetails.this, ObservationEditorSlider.class);
-                mApp.setServiceResult(ObservationEditor.TAXON, taxon.getJSONObject().toString());
+                ServiceResultBus.getInstance().put(ObservationEditor.TAXON, taxon);
                 startActivity(intent);
 
 
@@ -481,7 +481,7 @@ public class MissionDetails extends AppCompatActivity implements AppBarLayout.On
                 return;
             }
 
-            SerializableJSONArray resultsJSON = (SerializableJSONArray) mApp.getServiceResult(INaturalistService.ACTION_NEARBY);
+            SerializableJSONArray resultsJSON = ServiceResultBus.getInstance().get(intent, INaturalistService.ACTION_NEARBY, SerializableJSONArray.class, this);
             JSONArray results = resultsJSON.getJSONArray();
             ArrayList<JSONObject> resultsArray = new ArrayList<JSONObject>();
 
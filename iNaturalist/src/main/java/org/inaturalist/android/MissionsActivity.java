@@ -192,7 +192,7 @@ public class MissionsActivity extends BaseFragmentActivity {
             JSONArray results = null;
 
             if (isSharedOnApp) {
-                object = mApp.getServiceResult(intent.getAction());
+                object = ServiceResultBus.getInstance().get(intent, intent.getAction(), Object.class, this);
             } else {
                 object = intent.getSerializableExtra(INaturalistService.RECOMMENDED_MISSIONS_RESULT);
             }
@@ -95,7 +95,7 @@ public class MissionsGridActivity extends AppCompatActivity {
     }
 
     private void loadMissions(String actionName) {
-        Object object = mApp.getServiceResult(actionName);
+        Object object = ServiceResultBus.getInstance().get(actionName, Object.class, this);
         BetterJSONObject resultsObject;
         JSONArray results = null;
 
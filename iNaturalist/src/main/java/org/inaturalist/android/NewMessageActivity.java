@@ -161,7 +161,7 @@ public class NewMessageActivity extends AppCompatActivity {
 
 
             if (isSharedOnApp) {
-                object = mApp.getServiceResult(intent.getAction());
+                object = ServiceResultBus.getInstance().get(intent, intent.getAction(), Object.class, this);
             } else {
                 object = intent.getSerializableExtra(INaturalistService.ACTION_MESSAGES_RESULT);
             }
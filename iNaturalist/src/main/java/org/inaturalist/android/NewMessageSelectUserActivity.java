@@ -261,7 +261,7 @@ public class NewMessageSelectUserActivity extends AppCompatActivity implements U
             }
 
             if (isSharedOnApp) {
-                object = mApp.getServiceResult(intent.getAction());
+                object = ServiceResultBus.getInstance().get(intent, intent.getAction(), Object.class, this);
             } else {
                 object = intent.getSerializableExtra(INaturalistService.ACTION_MESSAGES_RESULT);
             }
@@ -291,7 +291,25 @@ public class Observation implements BaseColumns, Serializable {
 
     public Observation(Cursor c) {
         if (c.getPosition() == -1) c.moveToFirst();
-        BetterCursor bc = new BetterCursor(c);
+        readFrom(new BetterCursor(c));
+    }
+
+    /** Creates an observation from the current row of a cursor (see CursorRowMapper) */
+    public Observation(BetterCursor bc) {
+        readFrom(bc);
+    }
+
+    /** Sets all of the fields from a cursor row (so an existing instance can be reused for another row) */
+    public void readFrom(BetterCursor bc) {
+        // Not stored in the observations table
+        this.comments = null;
+        this.identifications = null;
+        this.favorites = null;
+        this.field_values = null;
+        this.projects = null;
+        this.photos = null;
+        this.sounds = null;
+
         this._id = bc.getInt(_ID);
         this._created_at = bc.getTimestamp(_CREATED_AT);
         this._created_at_was = this._created_at;
@@ -937,6 +955,17 @@ public class Observation implements BaseColumns, Serializable {
                 + ");";
     }
 
+    // Secondary indexes for the columns used in sync-state and foreign key lookups
+    public static String[] sqlCreateIndexes() {
+        return new String[] {
+                "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_id_index ON " + TABLE_NAME + " (id)",
+                "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_uuid_index ON " + TABLE_NAME + " (uuid)",
+                "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_user_login_index ON " + TABLE_NAME + " (user_login)",
+                "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_is_deleted_index ON " + TABLE_NAME + " (is_deleted)",
+                "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_sync_state_index ON " + TABLE_NAME + " (_synced_at, _updated_at)"
+        };
+    }
+
     public boolean _created_at_changed() { return !String.valueOf(_created_at).equals(String.valueOf(_created_at_was)); }
     public boolean _synced_at_changed() { return !String.valueOf(_synced_at).equals(String.valueOf(_synced_at_was)); }
     public boolean _updated_at_changed() { return !String.valueOf(_updated_at).equals(String.valueOf(_updated_at_was)); }
@@ -43,18 +43,12 @@ import com.squareup.picasso.Callback;
 import com.squareup.picasso.Picasso;
 import com.squareup.picasso.RequestCreator;
 
-import org.apache.commons.lang3.StringUtils;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.tinylog.Logger;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.lang.ref.WeakReference;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
@@ -77,8 +71,7 @@ class ObservationCursorAdapter extends SimpleCursorAdapter implements AbsListVie
     private final Resources mResources;
 
     private int mDimension;
-    private HashMap<String, String[]> mPhotoInfo = new HashMap<>();
-    private HashMap<String, Boolean> mHasSounds = new HashMap<>();
+    private final PhotoInfoIndex mPhotoIndex;
     private boolean mIsGrid;
 
     private final Activity mContext;
@@ -129,8 +122,9 @@ class ObservationCursorAdapter extends SimpleCursorAdapter implements AbsListVie
         mApp = (INaturalistApp) mContext.getApplicationContext();
         mHelper = new ActivityHelper(mContext);
         mResources = context.getResources();
+        mPhotoIndex = PhotoInfoIndex.getInstance(mContext);
 
-        getPhotoInfo(true);
+        getPhotoInfo();
 
         GetAdditionalObsReceiver mGetAdditionalObsReceiver = new GetAdditionalObsReceiver();
         IntentFilter filter = new IntentFilter();
@@ -172,36 +166,6 @@ class ObservationCursorAdapter extends SimpleCursorAdapter implements AbsListVie
         }
     }
 
-    // Loads the photo info map from a cached file (for faster loading)
-    private void loadPhotoInfo() {
-        mPhotoInfo = new HashMap<>();
-        mHasSounds = new HashMap<>();
-
-        File file = new File(mContext.getFilesDir(), "observations_photo_info.dat");
-        try {
-            ObjectInputStream inputStream = new ObjectInputStream(new FileInputStream(file));
-            mPhotoInfo = (HashMap<String, String[]>) inputStream.readObject();
-            mHasSounds = (HashMap<String, Boolean>) inputStream.readObject();
-            inputStream.close();
-        } catch (IOException | ClassCastException | ClassNotFoundException e) {
-            Logger.tag(TAG).error(e);
-        }
-    }
-
-    // Save the photo info map into a file (for caching and faster loading)
-    private void savePhotoInfo() {
-        File file = new File(mContext.getFilesDir(), "observations_photo_info.dat");
-        try {
-            ObjectOutputStream outputStream = new ObjectOutputStream(new FileOutputStream(file));
-            outputStream.writeObject(mPhotoInfo);
-            outputStream.writeObject(mHasSounds);
-            outputStream.flush();
-            outputStream.close();
-        } catch (IOException e) {
-            Logger.tag(TAG).error(e);
-        }
-    }
-
     public void refreshCursor() {
         refreshCursor(null);
     }
@@ -244,7 +208,7 @@ class ObservationCursorAdapter extends SimpleCursorAdapter implements AbsListVie
         if ((oldCursor != null) && (!oldCursor.isClosed())) oldCursor.close();
 
         Logger.tag(TAG).info("refershCursor");
-        getPhotoInfo(true);
+        getPhotoInfo();
     }
 
     public void close() {
@@ -264,122 +228,34 @@ class ObservationCursorAdapter extends SimpleCursorAdapter implements AbsListVie
     }
 
     /**
-     * Retrieves photo ids and orientations for photos associated with the listed observations.
+     * Brings the photo info of the listed observations up to date (only observations that are missing from the
+     * photo info index, or whose photos/sounds changed since, are queried).
      */
-    public void getPhotoInfo(boolean loadFromCache) {
-        Logger.tag(TAG).info("getPhotoInfo - " + loadFromCache);
-
-        if (loadFromCache) loadPhotoInfo();
+    public void getPhotoInfo() {
+        Logger.tag(TAG).info("getPhotoInfo");
 
         Cursor c = getNewCursor();
-        int originalPosition = c.getPosition();
         if (c.getCount() == 0) {
             c.close();
             return;
         }
 
-        ArrayList<Long> obsIds = new ArrayList<>();
-        ArrayList<Long> externalObsIds = new ArrayList<>();
-        ArrayList<String> obsUUIDsList = new ArrayList<>();
-        HashMap<Long, String> externalObsUUIDs = new HashMap<>();
-
-        c.moveToFirst();
-        while (!c.isAfterLast()) {
-            long obsId = c.getLong(c.getColumnIndexOrThrow(Observation._ID));
-            long obsExternalId = c.getLong(c.getColumnIndexOrThrow(Observation.ID));
-            String obsUUID = c.getString(c.getColumnIndexOrThrow(Observation.UUID));
-
-            obsIds.add(obsId);
-            externalObsIds.add(obsExternalId);
-            obsUUIDsList.add('"' + obsUUID + '"');
-            externalObsUUIDs.put(obsExternalId, obsUUID);
+        int uuidIndex = c.getColumnIndexOrThrow(Observation.UUID);
+        int idIndex = c.getColumnIndexOrThrow(Observation.ID);
+        HashMap<String, Long> observations = new HashMap<>();
 
-            c.moveToNext();
+        while (c.moveToNext()) {
+            observations.put(c.getString(uuidIndex), c.getLong(idIndex));
         }
 
-        c.moveToPosition(originalPosition);
         c.close();
 
-        // Add any photos that were added/changed
-        Cursor onlinePc = mContext.getContentResolver().query(ObservationPhoto.CONTENT_URI,
-                new String[]{ ObservationPhoto._OBSERVATION_ID, ObservationPhoto.OBSERVATION_UUID, ObservationPhoto.OBSERVATION_ID, ObservationPhoto._PHOTO_ID, ObservationPhoto.PHOTO_URL, ObservationPhoto.PHOTO_FILENAME, ObservationPhoto.ORIGINAL_PHOTO_FILENAME, ObservationPhoto.POSITION },
-                "(observation_uuid IN (" + StringUtils.join(obsUUIDsList, ",") + "))",
-                null,
-                ObservationPhoto.DEFAULT_SORT_ORDER);
-
-        if (onlinePc != null) {
-            onlinePc.moveToFirst();
-            while (!onlinePc.isAfterLast()) {
-                String photoUrl;
-                String photoFilename;
-                String obsUUID;
-
-                try {
-                    photoUrl = onlinePc.getString(onlinePc.getColumnIndexOrThrow(ObservationPhoto.PHOTO_URL));
-                    photoFilename = onlinePc.getString(onlinePc.getColumnIndexOrThrow(ObservationPhoto.PHOTO_FILENAME));
-                    obsUUID = onlinePc.getString(onlinePc.getColumnIndexOrThrow(ObservationPhoto.OBSERVATION_UUID));
-                } catch (IllegalStateException exc) {
-                    // This could happen in case we're of out of memory (not enough memory to allocate the contents of another cursor row)
-                    exc.printStackTrace();
-                    break;
-                }
-
-                onlinePc.moveToNext();
-
-                if (mPhotoInfo.containsKey(obsUUID)) {
-                    continue;
-                }
-
-                mPhotoInfo.put(
-                        obsUUID,
-                        new String[]{
-                                photoFilename,
-                                null,
-                                photoUrl,
-                                null,
-                                null
-                        });
-            }
-            onlinePc.close();
-        }
-
-                // Add any photos that were added/changed
-        Cursor soundCursor = mContext.getContentResolver().query(ObservationSound.CONTENT_URI,
-                new String[]{ ObservationSound._OBSERVATION_ID, ObservationSound.OBSERVATION_ID, ObservationSound.OBSERVATION_UUID },
-                "((_observation_id IN (" + StringUtils.join(obsIds, ",") + ") OR observation_id IN (" + StringUtils.join(externalObsIds, ",") + "))) AND " +
-                        "(is_deleted IS NULL OR is_deleted = 0)",
-                null,
-                ObservationSound.DEFAULT_SORT_ORDER);
-
-        if (soundCursor != null) {
-            soundCursor.moveToFirst();
-            while (!soundCursor.isAfterLast()) {
-                Long externalObsId = soundCursor.getLong(soundCursor.getColumnIndexOrThrow(ObservationSound.OBSERVATION_ID));
-                String obsUUID = soundCursor.getString(soundCursor.getColumnIndexOrThrow(ObservationSound.OBSERVATION_UUID));
-
-                if (obsUUID == null) {
-                    obsUUID = externalObsUUIDs.get(externalObsId);
-                }
-
-                soundCursor.moveToNext();
-
-                if (mHasSounds.containsKey(obsUUID)) {
-                    continue;
-                }
-
-                mHasSounds.put(obsUUID, true);
-            }
-            soundCursor.close();
-        }
-
-        savePhotoInfo();
+        mPhotoIndex.update(mContext.getContentResolver(), observations);
     }
 
     public void refreshPhotoInfo() {
         Logger.tag(TAG).info("refreshPhotoInfo");
-        mPhotoInfo = new HashMap<>();
-        mHasSounds = new HashMap<>();
-        getPhotoInfo(false);
+        getPhotoInfo();
     }
 
     private static class ViewHolder {
@@ -452,6 +328,7 @@ class ObservationCursorAdapter extends SimpleCursorAdapter implements AbsListVie
     }
 
     private Map<Long, Boolean> mIsSyncNeededForObs = new HashMap<>();
+    private CursorRowMapper<Observation> mObservationMapper = null;
 
     private boolean isSyncNeededForObs(Long obsId) {
         if (mIsSyncNeededForObs.containsKey(obsId)) {
@@ -483,6 +360,14 @@ class ObservationCursorAdapter extends SimpleCursorAdapter implements AbsListVie
         return syncNeeded;
     }
 
+    // Column indexes are resolved once per cursor
+    private CursorRowMapper<Observation> getObservationMapper(Cursor c) {
+        if ((mObservationMapper == null) || (mObservationMapper.getCursor() != c)) {
+            mObservationMapper = CursorRowMapper.forObservations(c);
+        }
+        return mObservationMapper;
+    }
+
     public void onObservationChanged() {
         // Observation was modified - clear the cache
         mIsSyncNeededForObs.clear();
@@ -512,8 +397,8 @@ class ObservationCursorAdapter extends SimpleCursorAdapter implements AbsListVie
         long updatedAt = c.getLong(c.getColumnIndexOrThrow(Observation._UPDATED_AT));
         final String obsUUID = c.getString(c.getColumnIndexOrThrow(Observation.UUID));
         String speciesGuessValue = c.getString(c.getColumnIndexOrThrow(Observation.SPECIES_GUESS));
-        String[] photoInfo = obsUUID != null ? mPhotoInfo.get(obsUUID) : null;
-        boolean hasSounds = (obsUUID != null && mHasSounds.get(obsUUID) != null);
+        String[] photoInfo = obsUUID != null ? mPhotoIndex.getPhotoInfo(obsUUID) : null;
+        boolean hasSounds = (obsUUID != null && mPhotoIndex.hasSounds(obsUUID));
         boolean hasErrors = (mApp.getErrorsForObservation(((int)(externalObsId > 0 ? externalObsId : obsId))).length() > 0);
         Trace.endSection();
 
@@ -920,7 +805,8 @@ class ObservationCursorAdapter extends SimpleCursorAdapter implements AbsListVie
 
         holder.obsId = obsId;
         holder.updatedAt = updatedAt;
-        holder.observation = new Observation(c);
+        // The holder's observation is only used while the view shows this row - so it can be reused
+        holder.observation = getObservationMapper(c).map(holder.observation);
         Trace.endSection();
 
 
@@ -992,7 +878,7 @@ class ObservationCursorAdapter extends SimpleCursorAdapter implements AbsListVie
         c.close();
 
         Integer obsId = obs._id;
-        String[] photoInfo = mPhotoInfo.get(obs.uuid);
+        String[] photoInfo = mPhotoIndex.getPhotoInfo(obs.uuid);
         Timestamp syncedAt = obs._synced_at;
         Timestamp updatedAt = obs._updated_at;
         boolean syncNeeded = (syncedAt == null) || (updatedAt.after(syncedAt));
@@ -1155,10 +1041,9 @@ class ObservationCursorAdapter extends SimpleCursorAdapter implements AbsListVie
                 // See if the obs has a remote URL
                 Cursor c = this.getCursor();
                 int oldPosition = c.getPosition();
-                c.moveToPosition(position);
-                Observation obs = new Observation(c);
+                Observation obs = getObservationMapper(c).mapAt(position);
                 c.moveToPosition(oldPosition);
-                String[] photoInfo = mPhotoInfo.get(obs.uuid);
+                String[] photoInfo = mPhotoIndex.getPhotoInfo(obs.uuid);
 
                 if ((photoInfo == null) || (photoInfo[2] == null)) {
                     // No remote image
@@ -6,12 +6,6 @@ import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.request.RequestOptions;
 import com.bumptech.glide.request.target.CustomTarget;
 import com.bumptech.glide.request.transition.Transition;
-import com.drew.imaging.ImageMetadataReader;
-import com.drew.imaging.ImageProcessingException;
-import com.drew.lang.Rational;
-import com.drew.metadata.Directory;
-import com.drew.metadata.Metadata;
-import com.drew.metadata.exif.GpsDirectory;
 import com.evernote.android.state.State;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
@@ -39,8 +33,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.TimeZone;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -157,6 +154,7 @@ public class ObservationEditor extends Fragment {
     public static final int RESULT_REFRESH_OBS = 0x1002;
 
     public static final int MAX_PHOTOS_PER_OBSERVATION = 20; // Max photos per observation
+    private static final int MAX_CONCURRENT_PHOTO_IMPORTS = 4;
     private static final int PHOTO_COUNT_WARNING = 10; // After how many photos should we show a warning to to the user
 
     @State(AndroidStateBundlers.UriBundler.class) public Uri mUri;
@@ -1085,9 +1083,9 @@ public class ObservationEditor extends Fragment {
         if (intent != null) {
             mObsJson = intent.getStringExtra(OBSERVATION_JSON);
 
-            String taxonJson = (String) mApp.getServiceResult(TAXON);
-            if (taxonJson != null) {
-                BetterJSONObject taxon = new BetterJSONObject(taxonJson);
+            // Taxon pre-filled by the previous screen
+            BetterJSONObject taxon = ServiceResultBus.getInstance().take(TAXON, BetterJSONObject.class, this);
+            if (taxon != null) {
                 JSONObject idPhoto = taxon.getJSONObject("default_photo");
                 int rankLevel = 0;
                 if (!taxon.isNull("rank_level")) {
@@ -1099,7 +1097,6 @@ public class ObservationEditor extends Fragment {
                     }
                 }
                 setTaxon(getTaxonName(taxon.getJSONObject()), taxon.getString("name"), rankLevel, taxon.getString("rank"), false, taxon.getInt("id"), idPhoto != null ? idPhoto.optString("square_url") : null, taxon.getString("iconic_taxon_name"), false);
-                mApp.setServiceResult(TAXON, null);
             } else if (mObservation.taxon_id != null) {
                 // Taxon info not loaded - download it now
                 mTaxonReceiver = new TaxonReceiver();
@@ -3405,14 +3402,37 @@ public class ObservationEditor extends Fragment {
                 mPhotoImported = true;
 
                 if (mPhotosAndSoundsAdded != null) {
-                    for (final Uri photo : photos) {
+                    mPhotosChanged = true;
+
+                    List<Uri> photosToImport = new ArrayList<>();
+                    for (Uri photo : photos) {
                         if (photo == null) continue;
-                        if (position >= MAX_PHOTOS_PER_OBSERVATION) break;
+                        if (position + photosToImport.size() >= MAX_PHOTOS_PER_OBSERVATION) break;
+                        photosToImport.add(photo);
+                    }
+
+                    // Photos are resized concurrently (ImageUtils.resizeImage keeps the total memory used within its budget),
+                    // and then added to the observation in their original order
+                    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(photosToImport.size(), MAX_CONCURRENT_PHOTO_IMPORTS)));
+                    List<Future<String[]>> resizedPhotos = new ArrayList<>();
+                    for (final Uri photo : photosToImport) {
+                        resizedPhotos.add(executor.submit(() -> resizePhotoForImport(photo, false)));
+                    }
+                    executor.shutdown();
 
-                        Uri createdUri = createObservationPhotoForPhoto(photo, position, false);
+                    for (int i = 0; i < photosToImport.size(); i++) {
+                        final Uri photo = photosToImport.get(i);
+                        String[] resizedFilenames = getResizedPhotos(resizedPhotos.get(i));
+
+                        Uri createdUri = resizedFilenames != null ? insertObservationPhoto(resizedFilenames[0], resizedFilenames[1], position) : null;
 
                         if (createdUri == null) {
                             errorImporting = true;
+
+                            // Discard the resized copies of the photos that won't be added
+                            for (int j = i + 1; j < photosToImport.size(); j++) {
+                                deleteResizedPhotos(getResizedPhotos(resizedPhotos.get(j)));
+                            }
                             break;
                         }
 
@@ -3528,11 +3548,41 @@ public class ObservationEditor extends Fragment {
         return getActivity().getContentResolver().insert(ObservationSound.CONTENT_URI, cv);
     }
 
+    private String[] getResizedPhotos(Future<String[]> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException | ExecutionException e) {
+            Logger.tag(TAG).error(e);
+            return null;
+        }
+    }
+
+    private void deleteResizedPhotos(String[] filenames) {
+        if (filenames == null) return;
+
+        for (String filename : filenames) {
+            if (filename != null) new File(filename).delete();
+        }
+    }
+
     private Uri createObservationPhotoForPhoto(Uri photoUri, int position, boolean isDuplicated) {
         Logger.tag(TAG).debug("createObservationPhotoForPhoto: " + photoUri + ":" + position + ":" + isDuplicated);
 
         mPhotosChanged = true;
 
+        String[] resizedFilenames = resizePhotoForImport(photoUri, isDuplicated);
+        if (resizedFilenames == null) {
+            return null;
+        }
+
+        return insertObservationPhoto(resizedFilenames[0], resizedFilenames[1], position);
+    }
+
+    /**
+     * Creates the resized copies of a photo (can be called from any thread)
+     * @return the resized photo filename and the original-sized photo filename - or null if failed
+     */
+    private String[] resizePhotoForImport(Uri photoUri, boolean isDuplicated) {
         if (photoUri == null) {
             return null;
         }
@@ -3560,19 +3610,16 @@ public class ObservationEditor extends Fragment {
             return null;
         }
 
-        // Resize photo to 2048x2048 max
-        String resizedPhoto = ImageUtils.resizeImage(getActivity(), path, isDuplicated ? null : photoUri, 2048);
+        // Resize photo to 2048x2048 max, and save an original-sized copy of the photo as well (so when cropping,
+        // we'll crop from the original sized photo) - both are created from a single decode of the photo
+        return ImageUtils.importImage(getActivity(), path, isDuplicated ? null : photoUri, 2048);
+    }
 
-        if (resizedPhoto == null) {
-            return null;
-        }
+    private Uri insertObservationPhoto(String resizedPhoto, String originalSizePhoto, int position) {
         if (getActivity() == null) {
             return null;
         }
 
-        // Save original-sized copy of the photo (so when cropping, we'll crop from the original sized photo)
-        String originalSizePhoto = ImageUtils.resizeImage(getActivity(), path, isDuplicated ? null : photoUri, Integer.MAX_VALUE);
-
         ObservationPhoto op = new ObservationPhoto();
 
         op.uuid = UUID.randomUUID().toString();
@@ -3623,180 +3670,84 @@ public class ObservationEditor extends Fragment {
             }
         }
 
-        try {
-            InputStream is = getActivity().getContentResolver().openInputStream(photoUri);
-            Logger.tag(TAG).info("importPhotoMetadata: IS = " + is);
-
-            double[] latLng = null;
-
-            it.sephiroth.android.library.exif2.ExifInterface exif = null;
-
-            try {
-                exif = new it.sephiroth.android.library.exif2.ExifInterface();
-                exif.readExif(is, it.sephiroth.android.library.exif2.ExifInterface.Options.OPTION_ALL);
-                Logger.tag(TAG).info("importPhotoMetadata: Exif = " + exif);
-            } catch (Exception exc) {
-                Logger.tag(TAG).error("Exception while reading EXIF data from file:");
-                Logger.tag(TAG).error(exc);
-                exif = null;
-            }
-
-            ExifInterface orgExif = null;
-
-            if (exif == null) {
-                Logger.tag(TAG).error("Could not read EXIF data from photo using Sephiroth library - trying built-in Android library");
-            }
-
-            is.close();
-            is = getActivity().getContentResolver().openInputStream(photoUri);
-            orgExif = new ExifInterface(is);
-            Logger.tag(TAG).info("importPhotoMetadata - EXIF 2: " + orgExif);
-
-            uiToObservation();
-
-            if (exif != null) {
-                latLng = exif.getLatLongAsDoubles();
-            }
-
-            if (!areCoordsValid(latLng)) {
-                Logger.tag(TAG).error("importPhotoMetadata: Invalid lat/lng = " + latLng + ": trying regular EXIF library");
-
-                latLng = orgExif.getLatLong();
-            }
-
-            if (areCoordsValid(latLng)) {
-                Logger.tag(TAG).info("importPhotoMetadata: Got lng/lat = " + latLng[0] + "/" + latLng[1]);
-                stopGetLocation();
-                mObservation.latitude = latLng[0];
-                mObservation.longitude = latLng[1];
-                mObservation.positional_accuracy = null;
+        // Only the header of the photo is read (once) - for the coordinates, positional accuracy and date taken
+        PhotoMetadata metadata = PhotoMetadata.read(getActivity(), null, photoUri);
+        if (metadata == null) {
+            Logger.tag(TAG).error("couldn't find " + photoUri);
+            return;
+        }
 
-                Logger.tag(TAG).info("importPhotoMetadata: Geoprivacy: " + mObservation.geoprivacy);
-                if ((mObservation.geoprivacy != null) && ((mObservation.geoprivacy.equals("private") || mObservation.geoprivacy.equals("obscured")))) {
-                    Logger.tag(TAG).info("importPhotoMetadata: Setting private lat/lng");
-                    mObservation.private_longitude = mObservation.longitude;
-                    mObservation.private_latitude = mObservation.latitude;
-                }
+        Logger.tag(TAG).info("importPhotoMetadata: Metadata = " + metadata);
 
-                if (mObservation.latitude_changed()) {
-                    if (isNetworkAvailable()) {
-                        guessLocation(true);
-                    } else {
-                        setPlaceGuess(null);
-                    }
-                }
+        uiToObservation();
 
-            } else {
-                // No coordinates - don't override the observation coordinates
-                Logger.tag(TAG).error("importPhotoMetadata: No lat/lng: " + latLng);
-            }
+        double[] latLng = metadata.getLatLng();
 
-            try {
-                // Read GPSHPositioningError EXIF tag to get positional accuracy
-                is.close();
-                is = getActivity().getContentResolver().openInputStream(photoUri);
-                Metadata metadata = ImageMetadataReader.readMetadata(is);
-
-                Directory directory = metadata.getFirstDirectoryOfType(GpsDirectory.class);
-                if (directory != null) {
-                    Rational value = directory.getRational(GpsDirectory.TAG_H_POSITIONING_ERROR);
-                    if (value != null) {
-                        // Round any accuracy less than 1 (but greater than zero) to 1
-                        Float acc = value.floatValue();
-                        mObservation.positional_accuracy = acc > 0 & acc < 1 ? 1 : acc.intValue();
-                    }
-                }
+        if (areCoordsValid(latLng)) {
+            Logger.tag(TAG).info("importPhotoMetadata: Got lng/lat = " + latLng[0] + "/" + latLng[1]);
+            stopGetLocation();
+            mObservation.latitude = latLng[0];
+            mObservation.longitude = latLng[1];
+            mObservation.positional_accuracy = null;
 
-            } catch (ImageProcessingException e) {
-                Logger.tag(TAG).error(e);
+            Logger.tag(TAG).info("importPhotoMetadata: Geoprivacy: " + mObservation.geoprivacy);
+            if ((mObservation.geoprivacy != null) && ((mObservation.geoprivacy.equals("private") || mObservation.geoprivacy.equals("obscured")))) {
+                Logger.tag(TAG).info("importPhotoMetadata: Setting private lat/lng");
+                mObservation.private_longitude = mObservation.longitude;
+                mObservation.private_latitude = mObservation.latitude;
             }
 
-
-            String datetime = null;
-            boolean useLocalTimezone = false;
-
-            SimpleDateFormat exifDateFormat = new SimpleDateFormat("yyyy:MM:dd HH:mm:ss");
-
-            if (exif != null) {
-                // TAG_GPS_DATE_STAMP is defined as UTC / GMT+0
-                String date = exif.getTagStringValue(it.sephiroth.android.library.exif2.ExifInterface.TAG_GPS_DATE_STAMP);
-                String time = exif.getTagStringValue(it.sephiroth.android.library.exif2.ExifInterface.TAG_GPS_TIME_STAMP);
-
-                if ((date == null) || (date.length() == 0) || (time == null) || (time.length() == 0)) {
-                    // Try getting GPS datetime from other EXIF library
-                    date = orgExif.getAttribute(ExifInterface.TAG_GPS_DATESTAMP);
-                    time = orgExif.getAttribute(ExifInterface.TAG_GPS_TIMESTAMP);
-                }
-
-                if ((date == null) || (date.length() == 0) || (date.startsWith("1970")) || (time == null) || (time.length() == 0)) {
-                    // No timezone defined - assume user's local timezone
-                    useLocalTimezone = true;
-                    String dateTimeValue = exif.getTagStringValue(it.sephiroth.android.library.exif2.ExifInterface.TAG_DATE_TIME_ORIGINAL);
-                    datetime = dateTimeValue != null ? dateTimeValue.trim() : null;
+            if (mObservation.latitude_changed()) {
+                if (isNetworkAvailable()) {
+                    guessLocation(true);
                 } else {
-                    datetime = date.trim() + " " + time.trim();
-                }
-
-                if (datetime == null) {
-                    datetime = exif.getTagStringValue(it.sephiroth.android.library.exif2.ExifInterface.TAG_DATE_TIME);
+                    setPlaceGuess(null);
                 }
             }
 
-            if ((exif == null) || (datetime == null)) {
-                // Try using built-in EXIF library instead
-                String date = orgExif.getAttribute(ExifInterface.TAG_GPS_DATESTAMP);
-                String time = orgExif.getAttribute(ExifInterface.TAG_GPS_TIMESTAMP);
+        } else {
+            // No coordinates - don't override the observation coordinates
+            Logger.tag(TAG).error("importPhotoMetadata: No lat/lng: " + latLng);
+        }
 
-                if ((date == null) || (time == null) || (date.startsWith("1970"))) {
-                    useLocalTimezone = true;
-                    datetime = orgExif.getAttribute(ExifInterface.TAG_DATETIME_ORIGINAL);
-                } else {
-                    datetime = date.trim() + " " + time.trim();
-                }
+        // GPSHPositioningError EXIF tag is the positional accuracy
+        Float acc = metadata.getPositionalAccuracy();
+        if (acc != null) {
+            // Round any accuracy less than 1 (but greater than zero) to 1
+            mObservation.positional_accuracy = acc > 0 & acc < 1 ? 1 : acc.intValue();
+        }
 
-                if (datetime == null) {
-                    datetime = orgExif.getAttribute(ExifInterface.TAG_DATETIME);
-                }
-            }
+        // GPS date/time is defined as UTC - otherwise the original datetime is in the recorded timezone offset
+        // (or the user's local timezone, if no offset was recorded)
+        Date date = metadata.getDateTaken();
 
-            if (datetime != null) {
-                if (!useLocalTimezone) exifDateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        if (date != null) {
+            Logger.tag(TAG).info("importPhotoMetadata: Date taken = " + date);
+            Timestamp timestamp = new Timestamp(date.getTime());
+            mObservation.observed_on = timestamp;
+            mObservation.time_observed_at = timestamp;
+            mObservation.observed_on_string = mApp.formatDatetimeISONoTimezone(timestamp);
+            mObservation.time_zone = mApp.getCurrentTimeZoneName();
 
-                try {
-                    Date date = exifDateFormat.parse(datetime);
-                    Logger.tag(TAG).info(String.format("importPhotoMetadata: %s - %s", datetime, date));
-                    Timestamp timestamp = new Timestamp(date.getTime());
-                    mObservation.observed_on = timestamp;
-                    mObservation.time_observed_at = timestamp;
-                    mObservation.observed_on_string = mApp.formatDatetimeISONoTimezone(timestamp);
-                    mObservation.time_zone = mApp.getCurrentTimeZoneName();
-
-                    mObservedOnStringTextView.setText(mApp.formatDatetimeISONoTimezone(timestamp));
-                    mObservedOnStringTextView.setTextColor(Color.parseColor("#000000"));
-                    mTimeObservedAtButton.setText(mApp.shortFormatTime(timestamp));
-                    mTimeObservedAtButton.setTextColor(Color.parseColor("#000000"));
-                    mDateSetByUser = timestamp;
-                    mTimeSetByUser = timestamp;
-                } catch (ParseException e) {
-                    Logger.tag(TAG).debug("Failed to parse " + datetime + ": " + e);
-                }
-            } else {
-                // No original datetime - nullify the date
-                mObservation.observed_on = null;
-                mObservation.time_observed_at = null;
-                mObservation.observed_on_string = null;
-            }
+            mObservedOnStringTextView.setText(mApp.formatDatetimeISONoTimezone(timestamp));
+            mObservedOnStringTextView.setTextColor(Color.parseColor("#000000"));
+            mTimeObservedAtButton.setText(mApp.shortFormatTime(timestamp));
+            mTimeObservedAtButton.setTextColor(Color.parseColor("#000000"));
+            mDateSetByUser = timestamp;
+            mTimeSetByUser = timestamp;
+        } else {
+            // No original datetime - nullify the date
+            mObservation.observed_on = null;
+            mObservation.time_observed_at = null;
+            mObservation.observed_on_string = null;
+        }
 
-            is.close();
-            observationToUi();
+        observationToUi();
 
-            // Save imported photo metadata (in case app will get killed)
-            ContentValues cv = mObservation.getContentValues();
-            Logger.tag(TAG).debug("importPhotoMetadata: Update: " + mUri + ":" + cv);
-            getActivity().getContentResolver().update(mUri, cv, null, null);
-        } catch (IOException e) {
-            Logger.tag(TAG).error("couldn't find " + photoUri);
-        }
+        // Save imported photo metadata (in case app will get killed)
+        ContentValues cv = mObservation.getContentValues();
+        Logger.tag(TAG).debug("importPhotoMetadata: Update: " + mUri + ":" + cv);
+        getActivity().getContentResolver().update(mUri, cv, null, null);
     }
 
     private void deleteSound(int id) {
@@ -3853,14 +3804,15 @@ public class ObservationEditor extends Fragment {
         } else {
             // Online only - need to download it and then copy
             new Thread(() -> {
+                Response response = null;
                 try {
-                    OkHttpClient client = new OkHttpClient();
+                    OkHttpClient client = SharedHttpClient.getInstance().getClient();
                     Request request = new Request.Builder()
                             .url(soundUrl)
                             .addHeader("Accept", "*/*")
                             .build();
 
-                    Response response = client.newCall(request).execute();
+                    response = client.newCall(request).execute();
 
                     FileOutputStream fileOutput = new FileOutputStream(destFile);
                     InputStream inputStream = response.body().byteStream();
@@ -3868,10 +3820,15 @@ public class ObservationEditor extends Fragment {
                     byte[] buffer = new byte[1024];
                     int bufferLength = 0;
 
-                    while ( (bufferLength = inputStream.read(buffer)) > 0 ) {
-                        fileOutput.write(buffer, 0, bufferLength);
+                    try {
+                        while ( (bufferLength = inputStream.read(buffer)) > 0 ) {
+                            fileOutput.write(buffer, 0, bufferLength);
+                        }
+                    } finally {
+                        fileOutput.close();
                     }
-                    fileOutput.close();
+                    response.close();
+                    response = null;
 
                     addDuplicatedSound(destFile, refreshPositions);
 
@@ -3905,6 +3862,8 @@ public class ObservationEditor extends Fragment {
                             Toast.makeText(getActivity().getApplicationContext(), getString(R.string.couldnt_duplicate_sound), Toast.LENGTH_SHORT).show();
                         }
                     });
+                } finally {
+                    if (response != null) response.close();
                 }
             }).start();
 
@@ -4862,7 +4821,7 @@ public class ObservationEditor extends Fragment {
             BetterJSONObject taxon;
 
             if (isSharedOnApp) {
-                taxon = (BetterJSONObject) mApp.getServiceResult(intent.getAction());
+                taxon = ServiceResultBus.getInstance().get(intent, intent.getAction(), BetterJSONObject.class, this);
             } else {
                 taxon = (BetterJSONObject) intent.getSerializableExtra(INaturalistService.TAXON_RESULT);
             }
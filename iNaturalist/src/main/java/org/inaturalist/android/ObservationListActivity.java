@@ -1765,7 +1765,7 @@ public class ObservationListActivity extends BaseFragmentActivity implements INo
             JSONArray results = null;
 
             if (isSharedOnApp) {
-                object = mApp.getServiceResult(intent.getAction());
+                object = ServiceResultBus.getInstance().get(intent, intent.getAction(), Object.class, this);
             } else {
                 object = intent.getSerializableExtra(actionToResultsParam(intent.getAction()));
             }
@@ -1890,7 +1890,7 @@ public class ObservationListActivity extends BaseFragmentActivity implements INo
             SerializableJSONArray resultsJSON;
 
             if (isSharedOnApp) {
-                resultsJSON = (SerializableJSONArray) mApp.getServiceResult(intent.getAction());
+                resultsJSON = ServiceResultBus.getInstance().get(intent, intent.getAction(), SerializableJSONArray.class, this);
             } else {
                 resultsJSON = (SerializableJSONArray) intent.getSerializableExtra(INaturalistService.RESULTS);
             }
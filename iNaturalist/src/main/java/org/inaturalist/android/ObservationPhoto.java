@@ -131,7 +131,16 @@ public class ObservationPhoto implements BaseColumns, Serializable {
 
     public ObservationPhoto(Cursor c) {
         if (c.getPosition() == -1) c.moveToFirst();
-        BetterCursor bc = new BetterCursor(c);
+        readFrom(new BetterCursor(c));
+    }
+
+    /** Creates a photo from the current row of a cursor (see CursorRowMapper) */
+    public ObservationPhoto(BetterCursor bc) {
+        readFrom(bc);
+    }
+
+    /** Sets all of the fields from a cursor row (so an existing instance can be reused for another row) */
+    public void readFrom(BetterCursor bc) {
         this._id = bc.getInt(_ID);
         this._created_at = bc.getTimestamp(_CREATED_AT);
         this._created_at_was = this._created_at;
@@ -156,7 +165,8 @@ public class ObservationPhoto implements BaseColumns, Serializable {
         this.position = bc.getInteger(POSITION);
         this.position_was = this.position;
         this.updated_at = bc.getTimestamp(UPDATED_AT);
-        this.is_deleted_was = this.is_deleted;
+        // Not read from the row (always unset in a new instance) - a reused instance doesn't carry over the previous row's
+        this.is_deleted_was = null;
         this.is_deleted = bc.getBoolean(IS_DELETED);
         this.updated_at_was = this.updated_at;
         this.photo_url = bc.getString(PHOTO_URL);
@@ -358,6 +368,18 @@ public class ObservationPhoto implements BaseColumns, Serializable {
                 + ");";
     }
 
+    // Indexes for looking up photos by their observation (remote ID / UUID / local ID) and sync state
+    public static String[] sqlCreateIndexes() {
+        return new String[] {
+                "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_id_index ON " + TABLE_NAME + " (id)",
+                "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_uuid_index ON " + TABLE_NAME + " (uuid)",
+                "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_observation_id_index ON " + TABLE_NAME + " (observation_id, _synced_at, _updated_at)",
+                "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_observation_uuid_index ON " + TABLE_NAME + " (observation_uuid, _synced_at, _updated_at)",
+                "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "__observation_id_index ON " + TABLE_NAME + " (_observation_id, _synced_at)",
+                "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_sync_state_index ON " + TABLE_NAME + " (_synced_at, _updated_at)"
+        };
+    }
+
     public boolean _created_at_changed() { return !String.valueOf(_created_at).equals(String.valueOf(_created_at_was)); }
     public boolean _observation_id_changed() { return !String.valueOf(_observation_id).equals(String.valueOf(_observation_id_was)); }
     public boolean _photo_id_changed() { return !String.valueOf(_photo_id).equals(String.valueOf(_photo_id_was)); }
@@ -1,21 +1,30 @@
 package org.inaturalist.android;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
 import org.tinylog.Logger;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
 import android.provider.BaseColumns;
 import android.provider.MediaStore;
@@ -25,7 +34,7 @@ import android.text.TextUtils;
 public class ObservationProvider extends ContentProvider {
     private static final String TAG = "ObservationProvider";
     private static final String DATABASE_NAME = "inaturalist.db";
-    private static final int DATABASE_VERSION = 23;
+    private static final int DATABASE_VERSION = 25;
     private static final SQLiteCursorFactory sFactory;
     public static final UriMatcher URI_MATCHER;
 
@@ -46,6 +55,8 @@ public class ObservationProvider extends ContentProvider {
         URI_MATCHER.addURI(ProjectField.AUTHORITY, "project_fields/#", ProjectField.PROJECT_FIELD_ID_URI_CODE);
         URI_MATCHER.addURI(ProjectFieldValue.AUTHORITY, "project_field_values", ProjectFieldValue.PROJECT_FIELD_VALUES_URI_CODE);
         URI_MATCHER.addURI(ProjectFieldValue.AUTHORITY, "project_field_values/#", ProjectFieldValue.PROJECT_FIELD_VALUE_ID_URI_CODE);
+        URI_MATCHER.addURI(MediaUpload.AUTHORITY, "media_uploads", MediaUpload.MEDIA_UPLOADS_URI_CODE);
+        URI_MATCHER.addURI(MediaUpload.AUTHORITY, "media_uploads/#", MediaUpload.MEDIA_UPLOAD_ID_URI_CODE);
     }
 
     /**
@@ -69,6 +80,8 @@ public class ObservationProvider extends ContentProvider {
             db.execSQL(ProjectObservation.sqlCreate());
             db.execSQL(ProjectField.sqlCreate());
             db.execSQL(ProjectFieldValue.sqlCreate());
+            createMediaUploadsTable(db);
+            createIndexes(db);
         }
 
         @Override
@@ -153,6 +166,40 @@ public class ObservationProvider extends ContentProvider {
                 // New ID column for project observation
                 addColumnIfNotExists(db, ProjectObservation.TABLE_NAME, "id", "INTEGER DEFAULT NULL");
             }
+            if (oldVersion < 24) {
+                // Secondary indexes for sync-state predicates and foreign keys
+                createIndexes(db);
+            }
+            if (oldVersion < 25) {
+                // New "media_uploads" table (upload journal)
+                createMediaUploadsTable(db);
+            }
+        }
+
+        private void createMediaUploadsTable(SQLiteDatabase db) {
+            db.execSQL(MediaUpload.sqlCreate());
+            for (String sql : MediaUpload.sqlCreateIndexes()) {
+                db.execSQL(sql);
+            }
+        }
+
+        private void createIndexes(SQLiteDatabase db) {
+            String[][] allIndexes = {
+                    Observation.sqlCreateIndexes(),
+                    ObservationPhoto.sqlCreateIndexes(),
+                    ObservationSound.sqlCreateIndexes(),
+                    ProjectObservation.sqlCreateIndexes(),
+                    ProjectFieldValue.sqlCreateIndexes()
+            };
+
+            for (String[] indexes : allIndexes) {
+                for (String sql : indexes) {
+                    db.execSQL(sql);
+                }
+            }
+
+            // Have the query planner use the new indexes
+            db.execSQL("ANALYZE");
         }
 
         // Adds a new column to a table if doesn't exist already
@@ -174,14 +221,80 @@ public class ObservationProvider extends ContentProvider {
         }
     }
 
+    /**
+     * State of a batch (applyBatch/bulkInsert) running on the current thread - the whole batch runs
+     * in a single transaction, inserts re-use compiled statements, and change notifications are
+     * collected and sent once per URI only after the transaction commits.
+     */
+    private static class BatchState {
+        Set<Uri> pendingNotifications = new LinkedHashSet<>();
+        Map<String, SQLiteStatement> insertStatements = new HashMap<>();
+
+        long insert(SQLiteDatabase db, String tableName, ContentValues values) {
+            // Statements are cached by table + column names (in the order returned by the ContentValues)
+            StringBuilder key = new StringBuilder(tableName);
+            Set<String> columns = values.keySet();
+            for (String column : columns) {
+                key.append(',').append(column);
+            }
+
+            SQLiteStatement statement = insertStatements.get(key.toString());
+            if (statement == null) {
+                StringBuilder sql = new StringBuilder("INSERT INTO ").append(tableName).append(" (");
+                StringBuilder params = new StringBuilder();
+                int i = 0;
+                for (String column : columns) {
+                    if (i > 0) {
+                        sql.append(',');
+                        params.append(',');
+                    }
+                    sql.append(column);
+                    params.append('?');
+                    i++;
+                }
+                if (i == 0) {
+                    sql.append(BaseColumns._ID);
+                    params.append("NULL");
+                }
+                sql.append(") VALUES (").append(params).append(')');
+
+                statement = db.compileStatement(sql.toString());
+                insertStatements.put(key.toString(), statement);
+            }
+
+            statement.clearBindings();
+            int index = 1;
+            for (String column : columns) {
+                DatabaseUtils.bindObjectToProgram(statement, index++, values.get(column));
+            }
+
+            return statement.executeInsert();
+        }
+
+        void close() {
+            for (SQLiteStatement statement : insertStatements.values()) {
+                statement.close();
+            }
+            insertStatements.clear();
+        }
+    }
+
+    private final ThreadLocal<BatchState> mBatchState = new ThreadLocal<>();
+
     private DatabaseHelper mOpenHelper;
 
     @Override
     public boolean onCreate() {
         mOpenHelper = new DatabaseHelper(getContext());
+        sFactory.setExplainQueryPlans(getContext().getSharedPreferences("iNaturalistPreferences", Context.MODE_PRIVATE)
+                .getBoolean(SQLiteCursorFactory.PREF_EXPLAIN_QUERY_PLANS, false));
         return true;
     }
 
+    public static SQLiteCursorFactory getCursorFactory() {
+        return sFactory;
+    }
+
     @Override
     public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
             String sortOrder) {
@@ -266,6 +379,17 @@ public class ObservationProvider extends ContentProvider {
             qb.appendWhere(ProjectFieldValue._ID + "=" + uri.getPathSegments().get(1));
             orderBy = TextUtils.isEmpty(sortOrder) ? ProjectFieldValue.DEFAULT_SORT_ORDER : sortOrder;
             break;
+        case MediaUpload.MEDIA_UPLOADS_URI_CODE:
+            qb.setTables(MediaUpload.TABLE_NAME);
+            qb.setProjectionMap(MediaUpload.PROJECTION_MAP);
+            orderBy = TextUtils.isEmpty(sortOrder) ? MediaUpload.DEFAULT_SORT_ORDER : sortOrder;
+            break;
+        case MediaUpload.MEDIA_UPLOAD_ID_URI_CODE:
+            qb.setTables(MediaUpload.TABLE_NAME);
+            qb.setProjectionMap(MediaUpload.PROJECTION_MAP);
+            qb.appendWhere(MediaUpload._ID + "=" + uri.getPathSegments().get(1));
+            orderBy = TextUtils.isEmpty(sortOrder) ? MediaUpload.DEFAULT_SORT_ORDER : sortOrder;
+            break;
              
         default:
             throw new IllegalArgumentException("Unknown URI " + uri);
@@ -370,6 +494,11 @@ public class ObservationProvider extends ContentProvider {
             tableName = ProjectFieldValue.TABLE_NAME;
             contentUri = ProjectFieldValue.CONTENT_URI;
             break;
+        case MediaUpload.MEDIA_UPLOADS_URI_CODE:
+        case MediaUpload.MEDIA_UPLOAD_ID_URI_CODE:
+            tableName = MediaUpload.TABLE_NAME;
+            contentUri = MediaUpload.CONTENT_URI;
+            break;
             
         default:
             throw new IllegalArgumentException("Unknown URI " + uri);
@@ -394,7 +523,8 @@ public class ObservationProvider extends ContentProvider {
         } else if ((uriCode != Project.PROJECTS_URI_CODE) && (uriCode != Project.PROJECT_ID_URI_CODE) &&
                 (uriCode != ProjectObservation.PROJECT_OBSERVATIONS_URI_CODE) && (uriCode != ProjectObservation.PROJECT_OBSERVATION_ID_URI_CODE) &&
                 (uriCode != ProjectField.PROJECT_FIELDS_URI_CODE) && (uriCode != ProjectField.PROJECT_FIELD_ID_URI_CODE) &&
-                (uriCode != ObservationSound.OBSERVATION_SOUNDS_URI_CODE) && (uriCode != ObservationSound.OBSERVATION_SOUND_ID_URI_CODE)) {
+                (uriCode != ObservationSound.OBSERVATION_SOUNDS_URI_CODE) && (uriCode != ObservationSound.OBSERVATION_SOUND_ID_URI_CODE) &&
+                (uriCode != MediaUpload.MEDIA_UPLOADS_URI_CODE) && (uriCode != MediaUpload.MEDIA_UPLOAD_ID_URI_CODE)) {
             values.put(Observation._CREATED_AT, now);
             values.put(Observation.CREATED_AT, now);
             values.put(Observation._UPDATED_AT, now);
@@ -402,10 +532,15 @@ public class ObservationProvider extends ContentProvider {
 
         SQLiteDatabase db = mOpenHelper.getWritableDatabase();
         Logger.tag(TAG).debug("Insert: " + tableName + "; values: " + values.toString());
-        long rowId = db.insertOrThrow(tableName, BaseColumns._ID, values);
+        BatchState batchState = mBatchState.get();
+        long rowId = batchState != null ? batchState.insert(db, tableName, values) : db.insertOrThrow(tableName, BaseColumns._ID, values);
         if (rowId >= 0) {
+            if (tableName.equals(ObservationPhoto.TABLE_NAME) || tableName.equals(ObservationSound.TABLE_NAME)) {
+                PhotoInfoIndex.getInstance(getContext()).invalidate(values.getAsString(ObservationPhoto.OBSERVATION_UUID));
+            }
+
             Uri newUri = ContentUris.withAppendedId(contentUri, rowId);
-            getContext().getContentResolver().notifyChange(newUri, null);
+            notifyChange(newUri);
             return newUri;
         }
 
@@ -436,24 +571,32 @@ public class ObservationProvider extends ContentProvider {
             delete(ObservationSound.CONTENT_URI, ObservationSound._OBSERVATION_ID + "=" + id, null);
             break;
         case ObservationPhoto.OBSERVATION_PHOTOS_URI_CODE:
+            invalidatePhotoIndex(db, ObservationPhoto.TABLE_NAME, where, whereArgs, null);
+            deleteUploadJournalEntries(db, ObservationPhoto.TABLE_NAME, MediaUpload.MEDIA_TYPE_PHOTO, where, whereArgs);
             count = db.delete(ObservationPhoto.TABLE_NAME, where, whereArgs);
             contentUri = ObservationPhoto.CONTENT_URI;
             break;
         case ObservationPhoto.OBSERVATION_PHOTO_ID_URI_CODE:
             id = uri.getPathSegments().get(1);
             contentUri = ObservationPhoto.CONTENT_URI;
-            count = db.delete(ObservationPhoto.TABLE_NAME, ObservationPhoto._ID + "=" + id
-                    + (!TextUtils.isEmpty(where) ? " AND (" + where + ')' : ""), whereArgs);
+            where = ObservationPhoto._ID + "=" + id + (!TextUtils.isEmpty(where) ? " AND (" + where + ')' : "");
+            invalidatePhotoIndex(db, ObservationPhoto.TABLE_NAME, where, whereArgs, null);
+            deleteUploadJournalEntries(db, ObservationPhoto.TABLE_NAME, MediaUpload.MEDIA_TYPE_PHOTO, where, whereArgs);
+            count = db.delete(ObservationPhoto.TABLE_NAME, where, whereArgs);
             break;
         case ObservationSound.OBSERVATION_SOUNDS_URI_CODE:
+            invalidatePhotoIndex(db, ObservationSound.TABLE_NAME, where, whereArgs, null);
+            deleteUploadJournalEntries(db, ObservationSound.TABLE_NAME, MediaUpload.MEDIA_TYPE_SOUND, where, whereArgs);
             count = db.delete(ObservationSound.TABLE_NAME, where, whereArgs);
             contentUri = ObservationSound.CONTENT_URI;
             break;
         case ObservationSound.OBSERVATION_SOUND_ID_URI_CODE:
             id = uri.getPathSegments().get(1);
             contentUri = ObservationSound.CONTENT_URI;
-            count = db.delete(ObservationSound.TABLE_NAME, ObservationSound._ID + "=" + id
-                    + (!TextUtils.isEmpty(where) ? " AND (" + where + ')' : ""), whereArgs);
+            where = ObservationSound._ID + "=" + id + (!TextUtils.isEmpty(where) ? " AND (" + where + ')' : "");
+            invalidatePhotoIndex(db, ObservationSound.TABLE_NAME, where, whereArgs, null);
+            deleteUploadJournalEntries(db, ObservationSound.TABLE_NAME, MediaUpload.MEDIA_TYPE_SOUND, where, whereArgs);
+            count = db.delete(ObservationSound.TABLE_NAME, where, whereArgs);
             break;
         case Project.PROJECTS_URI_CODE:
             count = db.delete(Project.TABLE_NAME, where, whereArgs);
@@ -495,14 +638,24 @@ public class ObservationProvider extends ContentProvider {
             count = db.delete(ProjectFieldValue.TABLE_NAME, Project._ID + "=" + id
                     + (!TextUtils.isEmpty(where) ? " AND (" + where + ')' : ""), whereArgs);
             break;
+        case MediaUpload.MEDIA_UPLOADS_URI_CODE:
+            count = db.delete(MediaUpload.TABLE_NAME, where, whereArgs);
+            contentUri = MediaUpload.CONTENT_URI;
+            break;
+        case MediaUpload.MEDIA_UPLOAD_ID_URI_CODE:
+            id = uri.getPathSegments().get(1);
+            contentUri = MediaUpload.CONTENT_URI;
+            count = db.delete(MediaUpload.TABLE_NAME, MediaUpload._ID + "=" + id
+                    + (!TextUtils.isEmpty(where) ? " AND (" + where + ')' : ""), whereArgs);
+            break;
             
             
         default:
             throw new IllegalArgumentException("Unknown URI " + uri);
         }
 
-        getContext().getContentResolver().notifyChange(uri, null);
-        getContext().getContentResolver().notifyChange(contentUri, null);
+        notifyChange(uri);
+        notifyChange(contentUri);
         return count;
     }
     
@@ -545,7 +698,8 @@ public class ObservationProvider extends ContentProvider {
         } else if ((uriCode != Project.PROJECTS_URI_CODE) && (uriCode != Project.PROJECT_ID_URI_CODE) &&
                 (uriCode != ProjectObservation.PROJECT_OBSERVATIONS_URI_CODE) && (uriCode != ProjectObservation.PROJECT_OBSERVATION_ID_URI_CODE) &&
                 (uriCode != ProjectField.PROJECT_FIELDS_URI_CODE) && (uriCode != ProjectField.PROJECT_FIELD_ID_URI_CODE) &&
-                (uriCode != ObservationSound.OBSERVATION_SOUNDS_URI_CODE) && (uriCode != ObservationSound.OBSERVATION_SOUND_ID_URI_CODE)) {
+                (uriCode != ObservationSound.OBSERVATION_SOUNDS_URI_CODE) && (uriCode != ObservationSound.OBSERVATION_SOUND_ID_URI_CODE) &&
+                (uriCode != MediaUpload.MEDIA_UPLOADS_URI_CODE) && (uriCode != MediaUpload.MEDIA_UPLOAD_ID_URI_CODE)) {
             values.put(Observation._UPDATED_AT, System.currentTimeMillis());
         }
 
@@ -592,6 +746,7 @@ public class ObservationProvider extends ContentProvider {
             
             break;
         case ObservationPhoto.OBSERVATION_PHOTOS_URI_CODE:
+            invalidatePhotoIndex(db, ObservationPhoto.TABLE_NAME, where, whereArgs, values);
             count = db.update(ObservationPhoto.TABLE_NAME, values, where, whereArgs);
             contentUri = ObservationPhoto.CONTENT_URI;
             break;
@@ -599,10 +754,12 @@ public class ObservationProvider extends ContentProvider {
             id = uri.getPathSegments().get(1);
             contentUri = ObservationPhoto.CONTENT_URI;
             Logger.tag(TAG).debug("Update " + ObservationPhoto.TABLE_NAME + "; " + values.toString());
-            count = db.update(ObservationPhoto.TABLE_NAME, values, ObservationPhoto._ID + "=" + id
-                    + (!TextUtils.isEmpty(where) ? " AND (" + where + ')' : ""), whereArgs);
+            where = ObservationPhoto._ID + "=" + id + (!TextUtils.isEmpty(where) ? " AND (" + where + ')' : "");
+            invalidatePhotoIndex(db, ObservationPhoto.TABLE_NAME, where, whereArgs, values);
+            count = db.update(ObservationPhoto.TABLE_NAME, values, where, whereArgs);
             break;
         case ObservationSound.OBSERVATION_SOUNDS_URI_CODE:
+            invalidatePhotoIndex(db, ObservationSound.TABLE_NAME, where, whereArgs, values);
             count = db.update(ObservationSound.TABLE_NAME, values, where, whereArgs);
             contentUri = ObservationSound.CONTENT_URI;
             break;
@@ -610,8 +767,9 @@ public class ObservationProvider extends ContentProvider {
             id = uri.getPathSegments().get(1);
             contentUri = ObservationSound.CONTENT_URI;
             Logger.tag(TAG).debug("Update " + ObservationSound.TABLE_NAME + "; " + values.toString());
-            count = db.update(ObservationSound.TABLE_NAME, values, ObservationSound._ID + "=" + id
-                    + (!TextUtils.isEmpty(where) ? " AND (" + where + ')' : ""), whereArgs);
+            where = ObservationSound._ID + "=" + id + (!TextUtils.isEmpty(where) ? " AND (" + where + ')' : "");
+            invalidatePhotoIndex(db, ObservationSound.TABLE_NAME, where, whereArgs, values);
+            count = db.update(ObservationSound.TABLE_NAME, values, where, whereArgs);
             break;
         case Project.PROJECTS_URI_CODE:
             count = db.update(Project.TABLE_NAME, values, where, whereArgs);
@@ -653,13 +811,145 @@ public class ObservationProvider extends ContentProvider {
             count = db.update(ProjectFieldValue.TABLE_NAME, values, ProjectFieldValue._ID + "=" + id
                     + (!TextUtils.isEmpty(where) ? " AND (" + where + ')' : ""), whereArgs);
             break;
+        case MediaUpload.MEDIA_UPLOADS_URI_CODE:
+            count = db.update(MediaUpload.TABLE_NAME, values, where, whereArgs);
+            contentUri = MediaUpload.CONTENT_URI;
+            break;
+        case MediaUpload.MEDIA_UPLOAD_ID_URI_CODE:
+            id = uri.getPathSegments().get(1);
+            contentUri = MediaUpload.CONTENT_URI;
+            count = db.update(MediaUpload.TABLE_NAME, values, MediaUpload._ID + "=" + id
+                    + (!TextUtils.isEmpty(where) ? " AND (" + where + ')' : ""), whereArgs);
+            break;
  
         default:
             throw new IllegalArgumentException("Unknown URI " + uri);
         }
         
-        getContext().getContentResolver().notifyChange(uri, null);
-        getContext().getContentResolver().notifyChange(contentUri, null);
+        notifyChange(uri);
+        notifyChange(contentUri);
+        return count;
+    }
+
+    // Marks the photo info index entries of the observations whose photos/sounds are about to change as stale
+    private void invalidatePhotoIndex(SQLiteDatabase db, String tableName, String where, String[] whereArgs, ContentValues values) {
+        PhotoInfoIndex photoIndex = PhotoInfoIndex.getInstance(getContext());
+
+        String newObsUUID = values != null ? values.getAsString(ObservationPhoto.OBSERVATION_UUID) : null;
+        if (newObsUUID != null) {
+            // Might be moved to another observation
+            photoIndex.invalidate(newObsUUID);
+        }
+
+        Cursor c = db.query(tableName, new String[] { ObservationPhoto.OBSERVATION_UUID }, where, whereArgs, null, null, null);
+        while (c.moveToNext()) {
+            photoIndex.invalidate(c.getString(0));
+        }
+        c.close();
+    }
+
+    // Deleted photos/sounds no longer have pending uploads - removes their upload journal entries
+    private void deleteUploadJournalEntries(SQLiteDatabase db, String tableName, String mediaType, String where, String[] whereArgs) {
+        String[] args = new String[1 + (whereArgs != null ? whereArgs.length : 0)];
+        args[0] = mediaType;
+        if (whereArgs != null) System.arraycopy(whereArgs, 0, args, 1, whereArgs.length);
+
+        db.delete(MediaUpload.TABLE_NAME, MediaUpload.MEDIA_TYPE + " = ? AND " + MediaUpload.MEDIA_ID + " IN (SELECT _id FROM " + tableName +
+                (!TextUtils.isEmpty(where) ? " WHERE " + where : "") + ")", args);
+    }
+
+    // Notifies observers of a change - or, when inside a batch, defers it until the batch commits
+    private void notifyChange(Uri uri) {
+        BatchState batchState = mBatchState.get();
+        if (batchState != null) {
+            batchState.pendingNotifications.add(uri);
+        } else {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+    }
+
+    private BatchState beginBatch(SQLiteDatabase db) {
+        if (mBatchState.get() != null) {
+            // Nested batch - becomes part of the outer one
+            return null;
+        }
+
+        BatchState batchState = new BatchState();
+        mBatchState.set(batchState);
+        db.beginTransaction();
+        return batchState;
+    }
+
+    private void endBatch(SQLiteDatabase db, BatchState batchState, boolean successful) {
+        if (batchState == null) return;
+
+        try {
+            if (successful) db.setTransactionSuccessful();
+            batchState.close();
+            db.endTransaction();
+        } finally {
+            mBatchState.remove();
+        }
+
+        if (successful) {
+            for (Uri uri : batchState.pendingNotifications) {
+                getContext().getContentResolver().notifyChange(uri, null);
+            }
+        }
+    }
+
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        BatchState batchState = beginBatch(db);
+        boolean successful = false;
+        int count = 0;
+
+        try {
+            for (ContentValues cv : values) {
+                try {
+                    insert(uri, cv);
+                    count++;
+                } catch (SQLException e) {
+                    // Constraint failure of a single row (e.g. row already exists) - skip that row only
+                    Logger.tag(TAG).error(e);
+                }
+            }
+            successful = true;
+        } finally {
+            endBatch(db, batchState, successful);
+        }
+
+        Logger.tag(TAG).debug("bulkInsert: " + uri + "; " + count + " / " + values.length + " rows");
+
         return count;
     }
+
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations) throws OperationApplicationException {
+        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        BatchState batchState = beginBatch(db);
+        boolean successful = false;
+        ContentProviderResult[] results = new ContentProviderResult[operations.size()];
+
+        try {
+            for (int i = 0; i < operations.size(); i++) {
+                ContentProviderOperation operation = operations.get(i);
+                try {
+                    results[i] = operation.apply(this, results, i);
+                } catch (SQLException e) {
+                    // Later operations might refer back to this one (e.g. the photos of an inserted observation) -
+                    // fail (and roll back) the whole batch, same as ContentProvider.applyBatch does
+                    throw new OperationApplicationException("applyBatch: operation " + i + " failed: " + operation, e);
+                }
+            }
+            successful = true;
+        } finally {
+            endBatch(db, batchState, successful);
+        }
+
+        Logger.tag(TAG).debug("applyBatch: " + operations.size() + " operations");
+
+        return results;
+    }
 }
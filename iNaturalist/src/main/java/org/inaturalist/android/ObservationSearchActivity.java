@@ -337,7 +337,7 @@ public class ObservationSearchActivity extends AppCompatActivity implements Adap
 
             SerializableJSONArray resultsObject;
             if (isSharedOnApp) {
-                resultsObject = (SerializableJSONArray) mApp.getServiceResult(INaturalistService.USER_SEARCH_OBSERVATIONS_RESULT);
+                resultsObject = ServiceResultBus.getInstance().get(intent, INaturalistService.USER_SEARCH_OBSERVATIONS_RESULT, SerializableJSONArray.class, this);
             } else {
                 resultsObject = (SerializableJSONArray) intent.getSerializableExtra(INaturalistService.USER_SEARCH_OBSERVATIONS_RESULT);
             }
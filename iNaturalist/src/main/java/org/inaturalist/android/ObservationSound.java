@@ -90,7 +90,16 @@ public class ObservationSound implements BaseColumns, Serializable {
 
     public ObservationSound(Cursor c) {
         if (c.getPosition() == -1) c.moveToFirst();
-        BetterCursor bc = new BetterCursor(c);
+        readFrom(new BetterCursor(c));
+    }
+
+    /** Creates a sound from the current row of a cursor (see CursorRowMapper) */
+    public ObservationSound(BetterCursor bc) {
+        readFrom(bc);
+    }
+
+    /** Sets all of the fields from a cursor row (so an existing instance can be reused for another row) */
+    public void readFrom(BetterCursor bc) {
         this._id = bc.getInt(_ID);
         this._observation_id = bc.getInteger(_OBSERVATION_ID);
         this.id = bc.getInteger(ID);
@@ -141,6 +150,16 @@ public class ObservationSound implements BaseColumns, Serializable {
                 + ");";
     }
 
+    // Indexes for looking up sounds by their observation
+    public static String[] sqlCreateIndexes() {
+        return new String[] {
+                "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_id_index ON " + TABLE_NAME + " (id)",
+                "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_observation_id_index ON " + TABLE_NAME + " (observation_id)",
+                "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_observation_uuid_index ON " + TABLE_NAME + " (observation_uuid)",
+                "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "__observation_id_index ON " + TABLE_NAME + " (_observation_id, is_deleted)"
+        };
+    }
+
     public ContentValues getContentValues() {
         ContentValues cv = new ContentValues();
         cv.put(ID, id);
@@ -0,0 +1,389 @@
+package org.inaturalist.android;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.net.Uri;
+
+import org.apache.commons.lang3.StringUtils;
+import org.tinylog.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merges a page of remote observations (as downloaded from the API) into the local DB.
+ *
+ * All local rows the page touches are loaded up-front using a few IN (...) queries, then diffed in memory
+ * (keyed by remote ID / UUID), and the resulting changes are returned as a single list of operations that
+ * should be applied as one batch - so the number of queries per page is constant, regardless of the
+ * number of observations and photos in it.
+ */
+public class ObservationSyncMerger {
+    private static final String TAG = "ObservationSyncMerger";
+
+    private final ContentResolver mContentResolver;
+    private int mQueryCount = 0;
+
+    /** The result of merging a single page */
+    public static class MergeResult {
+        // All changes to apply (as a single batch)
+        public final ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        // Newly-added observations, and the index of the insert operation of each one (by remote ID)
+        public final List<Observation> newObservations = new ArrayList<>();
+        public final Map<Integer, Integer> newObservationOperationIndexes = new HashMap<>();
+        // Indexes of delete operations of remotely-removed photos/sounds (used for logging how many were deleted)
+        public final Map<Integer, String> deleteOperationDescriptions = new HashMap<>();
+    }
+
+    public ObservationSyncMerger(ContentResolver contentResolver) {
+        mContentResolver = contentResolver;
+    }
+
+    /** Number of DB queries performed so far by this merger */
+    public int getQueryCount() {
+        return mQueryCount;
+    }
+
+    /**
+     * Merges the remote observations (ordered by remote ID) into the local DB
+     * @param remoteObservations remote observations, keyed by their remote ID
+     * @param saveNewMedia whether or not to save the photos/sounds of newly-added observations
+     */
+    public MergeResult merge(Map<Integer, Observation> remoteObservations, boolean saveNewMedia) {
+        MergeResult result = new MergeResult();
+        if (remoteObservations.isEmpty()) return result;
+
+        // Remote ID -> UUID of all observations in this page (used for the observation_uuid of photos/sounds)
+        Map<Integer, String> uuidsById = new HashMap<>();
+        for (Observation remote : remoteObservations.values()) {
+            if (remote.uuid != null) uuidsById.put(remote.id, remote.uuid);
+        }
+
+        // Query #1: existing local observations
+        List<Observation> existingObservations = new ArrayList<>();
+        Cursor c = query(Observation.CONTENT_URI, Observation.PROJECTION,
+                "id IN (" + StringUtils.join(remoteObservations.keySet(), ",") + ")", Observation.DEFAULT_SORT_ORDER);
+        CursorRowMapper<Observation> observationMapper = CursorRowMapper.forObservations(c);
+        c.moveToFirst();
+        while (!c.isAfterLast()) {
+            Observation observation = observationMapper.map();
+            existingObservations.add(observation);
+            if (observation.uuid != null) uuidsById.put(observation.id, observation.uuid);
+            c.moveToNext();
+        }
+        c.close();
+
+        if (!existingObservations.isEmpty()) {
+            mergeExistingObservations(existingObservations, remoteObservations, uuidsById, result);
+        }
+
+        // Insert new observations
+        Set<Integer> existingIds = new HashSet<>();
+        for (Observation observation : existingObservations) {
+            existingIds.add(observation.id);
+        }
+
+        for (Observation remote : remoteObservations.values()) {
+            if (existingIds.contains(remote.id)) continue;
+
+            ContentValues cv = remote.getContentValues();
+            cv.put(Observation._SYNCED_AT, System.currentTimeMillis());
+            cv.put(Observation.LAST_COMMENTS_COUNT, remote.comments_count);
+            cv.put(Observation.LAST_IDENTIFICATIONS_COUNT, remote.identifications_count);
+            result.newObservationOperationIndexes.put(remote.id, result.operations.size());
+            result.operations.add(ContentProviderOperation.newInsert(Observation.CONTENT_URI).withValues(cv).build());
+            result.newObservations.add(remote);
+        }
+
+        Logger.tag(TAG).debug("merge: Adding new observations: " + result.newObservationOperationIndexes.keySet());
+
+        if (saveNewMedia && !result.newObservations.isEmpty()) {
+            addNewObservationsMedia(result, uuidsById);
+        }
+
+        return result;
+    }
+
+    private void mergeExistingObservations(List<Observation> existingObservations, Map<Integer, Observation> remoteObservations,
+                                           Map<Integer, String> uuidsById, MergeResult result) {
+        String joinedExistingIds = joinIds(existingObservations);
+
+        // Query #2: all synced photos of the existing observations, by observation ID and then photo ID
+        Map<Integer, Map<Integer, ObservationPhoto>> localPhotos = new HashMap<>();
+        Cursor c = query(ObservationPhoto.CONTENT_URI, ObservationPhoto.PROJECTION,
+                "observation_id IN (" + joinedExistingIds + ")", null);
+        CursorRowMapper<ObservationPhoto> photoMapper = CursorRowMapper.forPhotos(c);
+        c.moveToFirst();
+        while (!c.isAfterLast()) {
+            ObservationPhoto photo = photoMapper.map();
+            if ((photo.id != null) && (photo.id != 0)) {
+                getOrCreate(localPhotos, photo.observation_id).put(photo.id, photo);
+            }
+            c.moveToNext();
+        }
+        c.close();
+
+        // Query #3: all synced sound IDs of the existing observations, by observation ID
+        Map<Integer, Set<Integer>> localSoundIds = new HashMap<>();
+        c = query(ObservationSound.CONTENT_URI, new String[]{ObservationSound.OBSERVATION_ID, ObservationSound.ID},
+                "observation_id IN (" + joinedExistingIds + ")", null);
+        c.moveToFirst();
+        while (!c.isAfterLast()) {
+            int soundId = c.getInt(1);
+            if (soundId != 0) {
+                Set<Integer> soundIds = localSoundIds.get(c.getInt(0));
+                if (soundIds == null) {
+                    soundIds = new HashSet<>();
+                    localSoundIds.put(c.getInt(0), soundIds);
+                }
+                soundIds.add(soundId);
+            }
+            c.moveToNext();
+        }
+        c.close();
+
+        for (Observation observation : existingObservations) {
+            Observation remote = remoteObservations.get(observation.id);
+            boolean isModified = observation.merge(remote);
+
+            Logger.tag(TAG).debug("merge - updating existing: " + observation.id + ":" + observation._id + ":" + observation.preferred_common_name + ":" + observation.taxon_id);
+
+            ContentValues cv = observation.getContentValues();
+            if (observation._updated_at.before(remote.updated_at)) {
+                // Remote observation is newer (and thus has overwritten the local one) - update its
+                // sync at time so we won't update the remote servers later on (since we won't
+                // accidentally consider this an updated record)
+                cv.put(Observation._SYNCED_AT, System.currentTimeMillis());
+            }
+
+            // Add any new photos that were added remotely
+            Map<Integer, ObservationPhoto> photos = localPhotos.get(observation.id);
+            ArrayList<Integer> observationPhotoIds = new ArrayList<>();
+            for (ObservationPhoto photo : remote.photos) {
+                photo._observation_id = remote._id;
+
+                if (photo.id == null) {
+                    Logger.tag(TAG).warn("merge: Null photo ID! " + photo);
+                    continue;
+                }
+
+                observationPhotoIds.add(photo.id);
+                ObservationPhoto localPhoto = photos != null ? photos.get(photo.id) : null;
+                if (localPhoto != null) {
+                    localPhoto.merge(photo, true);
+                    if (localPhoto.isDirty()) {
+                        ContentValues opcv = localPhoto.getContentValues();
+                        opcv.put(ObservationPhoto._SYNCED_AT, System.currentTimeMillis());
+                        result.operations.add(ContentProviderOperation.newUpdate(localPhoto.getUri()).withValues(opcv).build());
+                    }
+                    continue;
+                }
+
+                ContentValues opcv = photo.getContentValues();
+                // So we won't re-add this photo as though it was a local photo
+                opcv.put(ObservationPhoto._SYNCED_AT, System.currentTimeMillis());
+                opcv.put(ObservationPhoto._OBSERVATION_ID, observation._id);
+                opcv.put(ObservationPhoto._PHOTO_ID, photo._photo_id);
+                opcv.put(ObservationPhoto.ID, photo.id);
+                putObservationUUID(opcv, ObservationPhoto.OBSERVATION_UUID, photo.observation_id, uuidsById);
+                // In case the photo already exists - the insert is skipped by the batch
+                result.operations.add(ContentProviderOperation.newInsert(ObservationPhoto.CONTENT_URI).withValues(opcv).build());
+            }
+
+            // Delete photos that were synced but weren't present in the remote response,
+            // indicating they were deleted elsewhere
+            String joinedPhotoIds = StringUtils.join(observationPhotoIds, ",");
+            String where = "observation_id = " + observation.id + " AND id IS NOT NULL";
+            if (observationPhotoIds.size() > 0) {
+                where += " AND id NOT in (" + joinedPhotoIds + ")";
+            }
+            if ((photos != null) && (photos.size() > 0) && !observationPhotoIds.containsAll(photos.keySet())) {
+                result.deleteOperationDescriptions.put(result.operations.size(), String.format(Locale.ENGLISH, "photos locally after sever did not contain those IDs - observation id: %s, photo ids: %s",
+                        observation.id, joinedPhotoIds));
+                result.operations.add(ContentProviderOperation.newDelete(ObservationPhoto.CONTENT_URI).withSelection(where, null).build());
+            }
+
+            // Add any new sounds that were added remotely
+            Set<Integer> existingSoundIds = localSoundIds.get(observation.id);
+            ArrayList<Integer> observationSoundIds = new ArrayList<>();
+            for (ObservationSound sound : remote.sounds) {
+                sound._observation_id = remote._id;
+
+                if (sound.id == null) {
+                    Logger.tag(TAG).warn("merge: Null sound ID! " + sound);
+                    continue;
+                }
+
+                observationSoundIds.add(sound.id);
+                if ((existingSoundIds != null) && existingSoundIds.contains(sound.id)) {
+                    continue;
+                }
+
+                ContentValues oscv = sound.getContentValues();
+                oscv.put(ObservationSound._OBSERVATION_ID, sound.observation_id);
+                oscv.put(ObservationSound.ID, sound.id);
+                putObservationUUID(oscv, ObservationSound.OBSERVATION_UUID, sound.observation_id, uuidsById);
+                // In case the sound already exists - the insert is skipped by the batch
+                result.operations.add(ContentProviderOperation.newInsert(ObservationSound.CONTENT_URI).withValues(oscv).build());
+            }
+
+            // Delete sounds that were synced but weren't present in the remote response,
+            // indicating they were deleted elsewhere
+            String joinedSoundIds = StringUtils.join(observationSoundIds, ",");
+            where = "observation_id = " + observation.id + " AND id IS NOT NULL";
+            if (observationSoundIds.size() > 0) {
+                where += " AND id NOT in (" + joinedSoundIds + ")";
+            }
+            if ((existingSoundIds != null) && (existingSoundIds.size() > 0) && !observationSoundIds.containsAll(existingSoundIds)) {
+                result.deleteOperationDescriptions.put(result.operations.size(), String.format(Locale.ENGLISH, "sounds locally after server did not contain those IDs - observation id: %s, sound ids: %s",
+                        observation.id, joinedSoundIds));
+                result.operations.add(ContentProviderOperation.newDelete(ObservationSound.CONTENT_URI).withSelection(where, null).build());
+            }
+
+            if (isModified) {
+                // Only update the DB if needed
+                result.operations.add(ContentProviderOperation.newUpdate(observation.getUri()).withValues(cv).build());
+            }
+        }
+    }
+
+    private void addNewObservationsMedia(MergeResult result, Map<Integer, String> uuidsById) {
+        // Query #4: sounds of the new observations that already exist locally
+        Set<Integer> soundIds = new HashSet<>();
+        // Query #5: photos of the new observations that already exist locally (by UUID, or by _id for photos without a UUID)
+        Set<String> photoUUIDs = new HashSet<>();
+        Set<Integer> photoIds = new HashSet<>();
+
+        for (Observation observation : result.newObservations) {
+            for (ObservationSound sound : observation.sounds) {
+                if (sound.id != null) soundIds.add(sound.id);
+            }
+            for (ObservationPhoto photo : observation.photos) {
+                if (photo.uuid != null) {
+                    photoUUIDs.add(DatabaseUtils.sqlEscapeString(photo.uuid));
+                } else if (photo.id != null) {
+                    photoIds.add(photo.id);
+                }
+            }
+        }
+
+        Set<Integer> existingSoundIds = new HashSet<>();
+        if (!soundIds.isEmpty()) {
+            Cursor c = query(ObservationSound.CONTENT_URI, new String[]{ObservationSound.ID},
+                    "id IN (" + StringUtils.join(soundIds, ",") + ")", null);
+            c.moveToFirst();
+            while (!c.isAfterLast()) {
+                existingSoundIds.add(c.getInt(0));
+                c.moveToNext();
+            }
+            c.close();
+        }
+
+        Set<String> existingPhotoUUIDs = new HashSet<>();
+        Set<Integer> existingPhotoIds = new HashSet<>();
+        if (!photoUUIDs.isEmpty() || !photoIds.isEmpty()) {
+            List<String> conditions = new ArrayList<>();
+            if (!photoUUIDs.isEmpty()) conditions.add("(uuid IN (" + StringUtils.join(photoUUIDs, ",") + "))");
+            if (!photoIds.isEmpty()) conditions.add("(_id IN (" + StringUtils.join(photoIds, ",") + "))");
+            String where = StringUtils.join(conditions, " OR ");
+            Cursor c = query(ObservationPhoto.CONTENT_URI, new String[]{ObservationPhoto._ID, ObservationPhoto.UUID}, where, null);
+            c.moveToFirst();
+            while (!c.isAfterLast()) {
+                existingPhotoIds.add(c.getInt(0));
+                if (!c.isNull(1)) existingPhotoUUIDs.add(c.getString(1));
+                c.moveToNext();
+            }
+            c.close();
+        }
+
+        for (Observation observation : result.newObservations) {
+            int observationOperationIndex = result.newObservationOperationIndexes.get(observation.id);
+
+            // Save new observation's sounds
+            for (ObservationSound sound : observation.sounds) {
+                if (existingSoundIds.contains(sound.id)) {
+                    // Sound already exists - don't save
+                    Logger.tag(TAG).debug("merge: Sound already exists - skipping: " + sound.id);
+                    continue;
+                }
+
+                ContentValues opcv = sound.getContentValues();
+                opcv.put(ObservationSound._ID, sound.id);
+                putObservationUUID(opcv, ObservationSound.OBSERVATION_UUID, sound.observation_id, uuidsById);
+                // In case the sound already exists - the insert is skipped by the batch
+                result.operations.add(ContentProviderOperation.newInsert(ObservationSound.CONTENT_URI)
+                        .withValues(opcv)
+                        .withValueBackReference(ObservationSound._OBSERVATION_ID, observationOperationIndex)
+                        .build());
+            }
+
+            // Save the new observation's photos
+            for (ObservationPhoto photo : observation.photos) {
+                boolean exists = photo.uuid != null ? existingPhotoUUIDs.contains(photo.uuid) : existingPhotoIds.contains(photo.id);
+                if (exists) {
+                    // Photo already exists - don't save
+                    Logger.tag(TAG).debug("merge: Photo already exists - skipping: " + photo.id);
+                    continue;
+                }
+
+                ContentValues opcv = photo.getContentValues();
+                opcv.put(ObservationPhoto._SYNCED_AT, System.currentTimeMillis()); // So we won't re-add this photo as though it was a local photo
+                opcv.put(ObservationPhoto._PHOTO_ID, photo._photo_id);
+                opcv.put(ObservationPhoto._ID, photo.id);
+                putObservationUUID(opcv, ObservationPhoto.OBSERVATION_UUID, photo.observation_id, uuidsById);
+                // In case the photo already exists - the insert is skipped by the batch
+                result.operations.add(ContentProviderOperation.newInsert(ObservationPhoto.CONTENT_URI)
+                        .withValues(opcv)
+                        .withValueBackReference(ObservationPhoto._OBSERVATION_ID, observationOperationIndex)
+                        .build());
+            }
+        }
+    }
+
+    private void putObservationUUID(ContentValues cv, String column, Integer observationId, Map<Integer, String> uuidsById) {
+        if (observationId == null) return;
+
+        String uuid = uuidsById.get(observationId);
+        if ((uuid == null) && !uuidsById.containsKey(observationId)) {
+            // Media belonging to an observation outside of this page (shouldn't normally happen) - look it up
+            Cursor c = query(Observation.CONTENT_URI, new String[]{Observation.UUID}, "id = " + observationId, null);
+            if (c.moveToFirst()) uuid = c.getString(0);
+            c.close();
+            uuidsById.put(observationId, uuid);
+        }
+
+        if (uuid != null) cv.put(column, uuid);
+    }
+
+    private Cursor query(Uri uri, String[] projection, String selection, String sortOrder) {
+        mQueryCount++;
+        return mContentResolver.query(uri, projection, selection, null, sortOrder);
+    }
+
+    private static String joinIds(Collection<Observation> observations) {
+        List<Integer> ids = new ArrayList<>();
+        for (Observation observation : observations) {
+            ids.add(observation.id);
+        }
+        return StringUtils.join(ids, ",");
+    }
+
+    private static <T> Map<Integer, T> getOrCreate(Map<Integer, Map<Integer, T>> map, Integer key) {
+        Map<Integer, T> value = map.get(key);
+        if (value == null) {
+            value = new LinkedHashMap<>();
+            map.put(key, value);
+        }
+        return value;
+    }
+}
@@ -2344,7 +2344,7 @@ public class ObservationViewerFragment extends Fragment implements AnnotationsAd
                 return true;
             case R.id.edit_observation:
                 intent = new Intent(Intent.ACTION_EDIT, mUri, getActivity(), ObservationEditorSlider.class);
-                if (mTaxon != null) mApp.setServiceResult(ObservationEditor.TAXON, mTaxon.toString());
+                if (mTaxon != null) ServiceResultBus.getInstance().put(ObservationEditor.TAXON, new BetterJSONObject(mTaxon));
                 if (mObsJson != null) intent.putExtra(ObservationEditor.OBSERVATION_JSON, mObsJson);
                 getActivity().startActivityForResult(intent, REQUEST_CODE_EDIT_OBSERVATION);
                 return true;
@@ -2513,7 +2513,7 @@ public class ObservationViewerFragment extends Fragment implements AnnotationsAd
 	    public void onReceive(Context context, Intent intent) {
             Logger.tag(TAG).info("AttributesReceiver");
 
-            BetterJSONObject resultsObj = (BetterJSONObject) mApp.getServiceResult(INaturalistService.GET_ATTRIBUTES_FOR_TAXON_RESULT);
+            BetterJSONObject resultsObj = ServiceResultBus.getInstance().get(intent, INaturalistService.GET_ATTRIBUTES_FOR_TAXON_RESULT, BetterJSONObject.class, this);
 
             if (resultsObj == null) {
                 mAttributes = new SerializableJSONArray();
@@ -2576,7 +2576,7 @@ public class ObservationViewerFragment extends Fragment implements AnnotationsAd
             boolean isSharedOnApp = intent.getBooleanExtra(INaturalistService.IS_SHARED_ON_APP, false);
             SerializableJSONArray subscriptions;
             if (isSharedOnApp) {
-                subscriptions = (SerializableJSONArray) mApp.getServiceResult(INaturalistService.ACTION_GET_OBSERVATION_SUBSCRIPTIONS_RESULT);
+                subscriptions = ServiceResultBus.getInstance().get(intent, INaturalistService.ACTION_GET_OBSERVATION_SUBSCRIPTIONS_RESULT, SerializableJSONArray.class, this);
             } else {
                 subscriptions = (SerializableJSONArray) intent.getSerializableExtra(INaturalistService.RESULTS);
             }
@@ -2606,7 +2606,7 @@ public class ObservationViewerFragment extends Fragment implements AnnotationsAd
             boolean isSharedOnApp = intent.getBooleanExtra(INaturalistService.IS_SHARED_ON_APP, false);
             Observation observation;
             if (isSharedOnApp) {
-                observation = (Observation) mApp.getServiceResult(INaturalistService.ACTION_OBSERVATION_RESULT + mObservation.id);
+                observation = ServiceResultBus.getInstance().get(intent, INaturalistService.ACTION_OBSERVATION_RESULT + mObservation.id, Observation.class, this);
             } else {
                 observation = (Observation) intent.getSerializableExtra(INaturalistService.OBSERVATION_RESULT + mObservation.id);
             }
@@ -2696,7 +2696,7 @@ public class ObservationViewerFragment extends Fragment implements AnnotationsAd
 
             if (mReloadObs || mLoadObsJson) {
                 if (isSharedOnApp) {
-                    mObsJson = (String) mApp.getServiceResult(INaturalistService.OBSERVATION_JSON_RESULT + mObservation.id);
+                    mObsJson = ServiceResultBus.getInstance().get(intent, INaturalistService.OBSERVATION_JSON_RESULT + mObservation.id, String.class, this);
                 } else {
                     mObsJson = intent.getStringExtra(INaturalistService.OBSERVATION_JSON_RESULT + mObservation.id);
                 }
@@ -2771,7 +2771,7 @@ public class ObservationViewerFragment extends Fragment implements AnnotationsAd
             boolean isSharedOnApp = intent.getBooleanExtra(INaturalistService.IS_SHARED_ON_APP, false);
             Observation observation;
             if (isSharedOnApp) {
-                observation = (Observation) mApp.getServiceResult(INaturalistService.ACTION_OBSERVATION_RESULT + mObservation.id);
+                observation = ServiceResultBus.getInstance().get(intent, INaturalistService.ACTION_OBSERVATION_RESULT + mObservation.id, Observation.class, this);
             } else {
                 observation = (Observation) intent.getSerializableExtra(INaturalistService.OBSERVATION_RESULT);
             }
@@ -2797,7 +2797,7 @@ public class ObservationViewerFragment extends Fragment implements AnnotationsAd
 
             String obsJson;
             if (isSharedOnApp) {
-                obsJson = (String) mApp.getServiceResult(INaturalistService.OBSERVATION_JSON_RESULT + mObservation.id);
+                obsJson = ServiceResultBus.getInstance().get(intent, INaturalistService.OBSERVATION_JSON_RESULT + mObservation.id, String.class, this);
             } else {
                 obsJson = intent.getStringExtra(INaturalistService.OBSERVATION_JSON_RESULT);
             }
@@ -189,7 +189,7 @@ public class ObservationViewerSlider extends AppCompatActivity {
 
 
             String obsJson = intent.getStringExtra("observation");
-            String obsResults = (String) mApp.getServiceResult("observation_results");
+            List obsResults = ServiceResultBus.getInstance().get("observation_results", List.class, this);
             Integer obsIndex = intent.getIntExtra("observation_index", -1);
             Integer totalResults = intent.getIntExtra("total_results", 0);
             Integer resultsPage = intent.getIntExtra("results_page", 0);
@@ -215,15 +215,7 @@ public class ObservationViewerSlider extends AppCompatActivity {
 
             if ((obsResults != null) && (obsIndex > -1)) {
                 mLastPosition = obsIndex;
-                try {
-                    JSONArray array = new JSONArray(obsResults);
-                    mObsResults = new ArrayList<>();
-                    for (int i = 0; i < array.length(); i++) {
-                        mObsResults.add(array.getJSONObject(i));
-                    }
-                } catch (JSONException e) {
-                    e.printStackTrace();
-                }
+                mObsResults = new ArrayList<>((List<JSONObject>) obsResults);
                 mTotalResults = totalResults;
                 mCurrentResultsPage = resultsPage;
                 mSearchFilters = (ExploreSearchFilters) intent.getSerializableExtra("search_filters");
@@ -392,7 +384,7 @@ public class ObservationViewerSlider extends AppCompatActivity {
                 SerializableJSONArray resultsJSON;
 
                 if (isSharedOnApp) {
-                    resultsObject = (BetterJSONObject) mApp.getServiceResult(intent.getAction());
+                    resultsObject = ServiceResultBus.getInstance().get(intent, intent.getAction(), BetterJSONObject.class, this);
                 } else {
                     resultsObject = (BetterJSONObject) intent.getSerializableExtra(INaturalistService.RESULTS);
                 }
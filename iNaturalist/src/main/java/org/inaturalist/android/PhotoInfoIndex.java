@@ -0,0 +1,563 @@
+package org.inaturalist.android;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+
+import org.apache.commons.lang3.StringUtils;
+import org.tinylog.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Index of observation UUID to its first photo (filename / URL) and whether it has any sounds (singleton class) - used
+ * by the observation list/grid.
+ *
+ * The index is stored in a compact binary file that is memory-mapped (instead of deserializing it into maps of boxed
+ * objects): a header, fixed-size records sorted by UUID (looked up using a binary search), and a pool of UTF-8 strings.
+ * Entries are updated incrementally: the provider marks observations as stale whenever their photos/sounds change,
+ * and only stale or missing entries are queried again. Updated entries are kept in memory and merged into the file
+ * in the background.
+ */
+public class PhotoInfoIndex {
+    private static final String TAG = "PhotoInfoIndex";
+
+    private static final String INDEX_FILE = "observations_photo_index.bin";
+    // Java-serialized maps used by older versions
+    private static final String LEGACY_FILE = "observations_photo_info.dat";
+
+    private static final int MAGIC = 0x4F504958; // "OPIX"
+    private static final int VERSION = 1;
+    // Magic, version, record count, strings offset, written at
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 8;
+    // UUID (most / least significant bits), flags, photo filename offset, photo URL offset
+    private static final int RECORD_SIZE = 8 + 8 + 4 + 4 + 4;
+    private static final int FLAG_HAS_SOUNDS = 1;
+    private static final int NO_STRING = -1;
+
+    // Max number of observations per query
+    private static final int QUERY_CHUNK_SIZE = 500;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static class Entry {
+        final String photoFilename;
+        final String photoUrl;
+        final boolean hasSounds;
+
+        Entry(String photoFilename, String photoUrl, boolean hasSounds) {
+            this.photoFilename = photoFilename;
+            this.photoUrl = photoUrl;
+            this.hasSounds = hasSounds;
+        }
+    }
+
+    // An updated entry, about to be written into the index file
+    private static class Record {
+        final String key;
+        final long msb;
+        final long lsb;
+        final Entry entry;
+
+        Record(String key, UUID uuid, Entry entry) {
+            this.key = key;
+            this.msb = uuid.getMostSignificantBits();
+            this.lsb = uuid.getLeastSignificantBits();
+            this.entry = entry;
+        }
+    }
+
+    // Singleton instance
+    private static PhotoInfoIndex sInstance = null;
+
+    private final File mFile;
+    private final File mLegacyFile;
+    private final ExecutorService mWriteExecutor = Executors.newSingleThreadExecutor();
+
+    private boolean mLoaded = false;
+    // Contents of the index file (null if there's none)
+    private ByteBuffer mBase = null;
+    private int mBaseCount = 0;
+    private int mStringsOffset = 0;
+    private long mWrittenAt = 0;
+    // Entries updated since the index file was written
+    private final Map<String, Entry> mOverlay = new HashMap<>();
+    private boolean mWriteScheduled = false;
+    // Incremented whenever the index is reset (so files written from older contents are discarded)
+    private int mGeneration = 0;
+
+    // Invalidated by the provider (possibly while inside a DB transaction) - so these don't require the index lock
+    private final Set<String> mStale = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile boolean mAllStale = false;
+    private volatile boolean mCheckChangesSinceWrite = true;
+
+    private long mLoadTimeMillis = 0;
+    private long mLastUpdateMillis = 0;
+    private int mLastUpdateQueried = 0;
+
+    private PhotoInfoIndex(Context context) {
+        mFile = new File(context.getFilesDir(), INDEX_FILE);
+        mLegacyFile = new File(context.getFilesDir(), LEGACY_FILE);
+    }
+
+    public static synchronized PhotoInfoIndex getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new PhotoInfoIndex(context.getApplicationContext());
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * Returns the photo info of the observation's first photo - {photo filename, null, photo URL, null, null}
+     * (or null if the observation has no photos / it isn't indexed yet)
+     */
+    public synchronized String[] getPhotoInfo(String obsUUID) {
+        Entry entry = getEntry(obsUUID);
+        if ((entry == null) || ((entry.photoFilename == null) && (entry.photoUrl == null))) return null;
+
+        return new String[] { entry.photoFilename, null, entry.photoUrl, null, null };
+    }
+
+    public synchronized boolean hasSounds(String obsUUID) {
+        Entry entry = getEntry(obsUUID);
+        return (entry != null) && entry.hasSounds;
+    }
+
+    /** Marks the entry of an observation as stale (e.g. its photos or sounds were changed) */
+    public void invalidate(String obsUUID) {
+        if (obsUUID == null) {
+            // Unknown observation
+            invalidateAll();
+        } else {
+            mStale.add(obsUUID);
+        }
+    }
+
+    public void invalidateAll() {
+        mAllStale = true;
+    }
+
+    /**
+     * Brings the entries of the given observations up to date - only those that are missing or stale are queried
+     * @param observations observation UUID to its (external) ID
+     */
+    public void update(ContentResolver resolver, Map<String, Long> observations) {
+        long start = System.currentTimeMillis();
+
+        synchronized (this) {
+            load();
+        }
+
+        if (mCheckChangesSinceWrite) {
+            // Photos changed after the index file was written (e.g. the app was killed before stale entries were updated)
+            mCheckChangesSinceWrite = false;
+            invalidatePhotosChangedSince(resolver, mWrittenAt);
+        }
+
+        boolean allStale = mAllStale;
+        mAllStale = false;
+
+        List<String> needed = new ArrayList<>();
+        synchronized (this) {
+            for (String uuid : observations.keySet()) {
+                if (uuid == null) continue;
+                // Removed from the stale set *before* querying - so invalidations made meanwhile aren't lost
+                boolean stale = mStale.remove(uuid);
+                if (allStale || stale || !contains(uuid)) needed.add(uuid);
+            }
+        }
+
+        Map<String, Entry> entries = new HashMap<>();
+        for (int i = 0; i < needed.size(); i += QUERY_CHUNK_SIZE) {
+            List<String> chunk = needed.subList(i, Math.min(i + QUERY_CHUNK_SIZE, needed.size()));
+            queryEntries(resolver, chunk, observations, entries);
+        }
+
+        synchronized (this) {
+            if (allStale) {
+                // Start over - only the given observations are kept
+                mBase = null;
+                mBaseCount = 0;
+                mOverlay.clear();
+                mGeneration++;
+            }
+            mOverlay.putAll(entries);
+
+            if ((!entries.isEmpty() || allStale) && !mWriteScheduled) {
+                mWriteScheduled = true;
+                mWriteExecutor.execute(this::write);
+            }
+
+            mLastUpdateMillis = System.currentTimeMillis() - start;
+            mLastUpdateQueried = needed.size();
+        }
+
+        Logger.tag(TAG).debug(String.format(Locale.ENGLISH, "Updated %d / %d observations in %d ms",
+                needed.size(), observations.size(), mLastUpdateMillis));
+    }
+
+    /** Removes the index (e.g. when the user signs out) */
+    public synchronized void clear() {
+        mGeneration++;
+        mBase = null;
+        mBaseCount = 0;
+        mOverlay.clear();
+        mStale.clear();
+        mFile.delete();
+        mLegacyFile.delete();
+    }
+
+    private void queryEntries(ContentResolver resolver, List<String> uuids, Map<String, Long> observations, Map<String, Entry> entries) {
+        List<String> quotedUUIDs = new ArrayList<>();
+        List<Long> externalIds = new ArrayList<>();
+        Map<Long, String> uuidsByExternalId = new HashMap<>();
+        for (String uuid : uuids) {
+            quotedUUIDs.add('"' + uuid + '"');
+            Long externalId = observations.get(uuid);
+            if ((externalId != null) && (externalId > 0)) {
+                externalIds.add(externalId);
+                uuidsByExternalId.put(externalId, uuid);
+            }
+        }
+
+        Map<String, String[]> photos = new HashMap<>();
+        Cursor pc = resolver.query(ObservationPhoto.CONTENT_URI,
+                new String[]{ ObservationPhoto.OBSERVATION_UUID, ObservationPhoto.PHOTO_URL, ObservationPhoto.PHOTO_FILENAME },
+                "(observation_uuid IN (" + StringUtils.join(quotedUUIDs, ",") + "))",
+                null,
+                ObservationPhoto.DEFAULT_SORT_ORDER);
+
+        if (pc != null) {
+            while (pc.moveToNext()) {
+                String obsUUID = pc.getString(0);
+                // Only the first photo is used
+                if (!photos.containsKey(obsUUID)) photos.put(obsUUID, new String[] { pc.getString(2), pc.getString(1) });
+            }
+            pc.close();
+        }
+
+        Set<String> withSounds = new HashSet<>();
+        Cursor sc = resolver.query(ObservationSound.CONTENT_URI,
+                new String[]{ ObservationSound.OBSERVATION_UUID, ObservationSound.OBSERVATION_ID },
+                "((observation_uuid IN (" + StringUtils.join(quotedUUIDs, ",") + ")" +
+                        (externalIds.isEmpty() ? "" : " OR observation_id IN (" + StringUtils.join(externalIds, ",") + ")") + ")) AND " +
+                        "(is_deleted IS NULL OR is_deleted = 0)",
+                null,
+                ObservationSound.DEFAULT_SORT_ORDER);
+
+        if (sc != null) {
+            while (sc.moveToNext()) {
+                String obsUUID = sc.getString(0);
+                if (obsUUID == null) obsUUID = uuidsByExternalId.get(sc.getLong(1));
+                if (obsUUID != null) withSounds.add(obsUUID);
+            }
+            sc.close();
+        }
+
+        for (String uuid : uuids) {
+            String[] photo = photos.get(uuid);
+            entries.put(uuid, new Entry(photo != null ? photo[0] : null, photo != null ? photo[1] : null, withSounds.contains(uuid)));
+        }
+    }
+
+    private void invalidatePhotosChangedSince(ContentResolver resolver, long time) {
+        if (time <= 0) return;
+
+        Cursor c = resolver.query(ObservationPhoto.CONTENT_URI, new String[]{ ObservationPhoto.OBSERVATION_UUID },
+                "_updated_at > ? OR _synced_at > ?", new String[] { String.valueOf(time), String.valueOf(time) }, null);
+        if (c == null) return;
+
+        while (c.moveToNext()) {
+            invalidate(c.getString(0));
+        }
+        c.close();
+    }
+
+    private boolean contains(String obsUUID) {
+        return mOverlay.containsKey(obsUUID) || (findRecord(obsUUID) >= 0);
+    }
+
+    private Entry getEntry(String obsUUID) {
+        if (obsUUID == null) return null;
+
+        Entry entry = mOverlay.get(obsUUID);
+        if (entry != null) return entry;
+
+        int index = findRecord(obsUUID);
+        return index >= 0 ? readRecord(index) : null;
+    }
+
+    // Binary search of the UUID in the index file records
+    private int findRecord(String obsUUID) {
+        if (mBase == null) return -1;
+
+        UUID uuid;
+        try {
+            uuid = UUID.fromString(obsUUID);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        int low = 0;
+        int high = mBaseCount - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int offset = HEADER_SIZE + middle * RECORD_SIZE;
+            int result = compare(mBase.getLong(offset), mBase.getLong(offset + 8), msb, lsb);
+            if (result < 0) {
+                low = middle + 1;
+            } else if (result > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return -1;
+    }
+
+    private Entry readRecord(int index) {
+        int offset = HEADER_SIZE + index * RECORD_SIZE;
+        int flags = mBase.getInt(offset + 16);
+        return new Entry(readString(mBase.getInt(offset + 20)), readString(mBase.getInt(offset + 24)), (flags & FLAG_HAS_SOUNDS) != 0);
+    }
+
+    private String readString(int offset) {
+        if (offset == NO_STRING) return null;
+
+        int position = mStringsOffset + offset;
+        int length = mBase.getChar(position);
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = mBase.get(position + 2 + i);
+        }
+        return new String(bytes, UTF8);
+    }
+
+    private static int compare(long msb1, long lsb1, long msb2, long lsb2) {
+        int result = Long.compare(msb1, msb2);
+        return result != 0 ? result : Long.compare(lsb1, lsb2);
+    }
+
+    // Maps the index file into memory (once)
+    private void load() {
+        if (mLoaded) return;
+        mLoaded = true;
+
+        if (mLegacyFile.exists()) mLegacyFile.delete();
+        if (!mFile.exists()) return;
+
+        long start = System.currentTimeMillis();
+
+        try {
+            map(mFile);
+        } catch (IOException | IllegalStateException | IndexOutOfBoundsException e) {
+            Logger.tag(TAG).error("Invalid index file - starting over", e);
+            mBase = null;
+            mBaseCount = 0;
+            mFile.delete();
+        }
+
+        mLoadTimeMillis = System.currentTimeMillis() - start;
+        Logger.tag(TAG).info(String.format(Locale.ENGLISH, "Loaded index of %d observations (%d KB) in %d ms",
+                mBaseCount, mFile.length() / 1024, mLoadTimeMillis));
+    }
+
+    private void map(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if ((buffer.getInt(0) != MAGIC) || (buffer.getInt(4) != VERSION)) {
+                throw new IllegalStateException("Unknown index file format");
+            }
+
+            int count = buffer.getInt(8);
+            int stringsOffset = buffer.getInt(12);
+            if (HEADER_SIZE + count * RECORD_SIZE > stringsOffset || stringsOffset > buffer.capacity()) {
+                throw new IllegalStateException("Truncated index file");
+            }
+
+            mBase = buffer;
+            mBaseCount = count;
+            mStringsOffset = stringsOffset;
+            mWrittenAt = buffer.getLong(16);
+        } finally {
+            // The mapping stays valid after the file is closed
+            randomAccessFile.close();
+        }
+    }
+
+    // Merges the updated entries into a new index file (runs in the background)
+    private void write() {
+        ByteBuffer base;
+        int baseCount;
+        int stringsOffset;
+        Map<String, Entry> overlay;
+        int generation;
+
+        synchronized (this) {
+            generation = mGeneration;
+            mWriteScheduled = false;
+            base = mBase;
+            baseCount = mBaseCount;
+            stringsOffset = mStringsOffset;
+            overlay = new HashMap<>(mOverlay);
+        }
+
+        long start = System.currentTimeMillis();
+
+        // Updated entries, sorted by UUID (entries with non-standard UUIDs are kept in memory only)
+        List<Record> updated = new ArrayList<>();
+        for (Map.Entry<String, Entry> entry : overlay.entrySet()) {
+            try {
+                updated.add(new Record(entry.getKey(), UUID.fromString(entry.getKey()), entry.getValue()));
+            } catch (IllegalArgumentException e) {
+                // Skip it
+            }
+        }
+        Collections.sort(updated, (a, b) -> compare(a.msb, a.lsb, b.msb, b.lsb));
+
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        int count = 0;
+        int baseIndex = 0;
+        int updatedIndex = 0;
+
+        // Merge the (sorted) file records with the (sorted) updated entries - updated entries replace existing ones
+        while ((baseIndex < baseCount) || (updatedIndex < updated.size())) {
+            long msb, lsb;
+            int flags;
+            int photoFilename, photoUrl;
+
+            int result;
+            if (baseIndex >= baseCount) {
+                result = 1;
+            } else if (updatedIndex >= updated.size()) {
+                result = -1;
+            } else {
+                int offset = HEADER_SIZE + baseIndex * RECORD_SIZE;
+                Record next = updated.get(updatedIndex);
+                result = compare(base.getLong(offset), base.getLong(offset + 8), next.msb, next.lsb);
+            }
+
+            if (result < 0) {
+                int offset = HEADER_SIZE + baseIndex * RECORD_SIZE;
+                msb = base.getLong(offset);
+                lsb = base.getLong(offset + 8);
+                flags = base.getInt(offset + 16);
+                photoFilename = copyString(base, stringsOffset, base.getInt(offset + 20), strings);
+                photoUrl = copyString(base, stringsOffset, base.getInt(offset + 24), strings);
+                baseIndex++;
+            } else {
+                if (result == 0) baseIndex++;
+                Record next = updated.get(updatedIndex++);
+                msb = next.msb;
+                lsb = next.lsb;
+                flags = next.entry.hasSounds ? FLAG_HAS_SOUNDS : 0;
+                photoFilename = writeString(next.entry.photoFilename, strings);
+                photoUrl = writeString(next.entry.photoUrl, strings);
+            }
+
+            record.clear();
+            record.putLong(msb).putLong(lsb).putInt(flags).putInt(photoFilename).putInt(photoUrl);
+            records.write(record.array(), 0, RECORD_SIZE);
+            count++;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(HEADER_SIZE + records.size()).putLong(System.currentTimeMillis());
+
+        File tempFile = new File(mFile.getPath() + ".tmp");
+        try {
+            FileOutputStream outputStream = new FileOutputStream(tempFile);
+            try {
+                outputStream.write(header.array());
+                records.writeTo(outputStream);
+                strings.writeTo(outputStream);
+                outputStream.getFD().sync();
+            } finally {
+                outputStream.close();
+            }
+
+            synchronized (this) {
+                if (mGeneration != generation) {
+                    // Index was cleared / started over meanwhile - this file is outdated
+                    tempFile.delete();
+                    return;
+                }
+
+                if (!tempFile.renameTo(mFile)) throw new IOException("Couldn't rename " + tempFile);
+                map(mFile);
+
+                // Written entries (that weren't updated again meanwhile) don't need to be kept in memory anymore
+                for (Record next : updated) {
+                    if (mOverlay.get(next.key) == next.entry) mOverlay.remove(next.key);
+                }
+            }
+
+            Logger.tag(TAG).debug(String.format(Locale.ENGLISH, "Wrote index of %d observations (%d KB) in %d ms",
+                    count, mFile.length() / 1024, System.currentTimeMillis() - start));
+        } catch (IOException | IllegalStateException e) {
+            Logger.tag(TAG).error(e);
+            tempFile.delete();
+        }
+    }
+
+    private static int copyString(ByteBuffer base, int stringsOffset, int offset, ByteArrayOutputStream strings) {
+        if (offset == NO_STRING) return NO_STRING;
+
+        int position = stringsOffset + offset;
+        int length = base.getChar(position);
+        int newOffset = strings.size();
+        for (int i = 0; i < length + 2; i++) {
+            strings.write(base.get(position + i));
+        }
+        return newOffset;
+    }
+
+    private static int writeString(String value, ByteArrayOutputStream strings) {
+        if (value == null) return NO_STRING;
+
+        byte[] bytes = value.getBytes(UTF8);
+        int length = Math.min(bytes.length, Character.MAX_VALUE);
+        int offset = strings.size();
+        strings.write((length >> 8) & 0xFF);
+        strings.write(length & 0xFF);
+        strings.write(bytes, 0, length);
+        return offset;
+    }
+
+    public String toString() {
+        synchronized (this) {
+            return String.format(Locale.ENGLISH, "Photo index: %d observations (%d KB file, %d in memory); loaded in %d ms; last update: %d queried in %d ms",
+                    mBaseCount, mFile.length() / 1024, mOverlay.size(), mLoadTimeMillis, mLastUpdateQueried, mLastUpdateMillis);
+        }
+    }
+}
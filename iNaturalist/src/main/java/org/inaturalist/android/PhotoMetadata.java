@@ -0,0 +1,635 @@
+package org.inaturalist.android;
+
+import android.Manifest;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.MediaStore;
+import android.util.LruCache;
+
+import androidx.core.content.PermissionChecker;
+import androidx.exifinterface.media.ExifInterface;
+
+import org.tinylog.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Photo metadata (orientation, location, date/time taken) - read from the photo's EXIF data.
+ *
+ * For JPEG photos only the header segments are read (up to the EXIF segment), and the raw EXIF segment is kept so it
+ * can be written as-is into resized copies of the photo. Other formats (HEIF/PNG) are read using ExifInterface.
+ * Read metadata is cached, so the import, resize and geotagging code can all share the same instance.
+ */
+public class PhotoMetadata {
+    private static final String TAG = "PhotoMetadata";
+
+    // How many bytes of the photo header we go through (at most) looking for the EXIF segment
+    private static final int MAX_HEADER_BYTES = 256 * 1024;
+
+    // JPEG markers
+    private static final int MARKER_SOI = 0xD8;
+    private static final int MARKER_EOI = 0xD9;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_APP1 = 0xE1;
+    private static final byte[] EXIF_HEADER = { 'E', 'x', 'i', 'f', 0, 0 };
+
+    // EXIF tags
+    private static final int TAG_ORIENTATION = 0x0112;
+    private static final int TAG_DATETIME = 0x0132;
+    private static final int TAG_EXIF_IFD = 0x8769;
+    private static final int TAG_GPS_IFD = 0x8825;
+    private static final int TAG_DATETIME_ORIGINAL = 0x9003;
+    private static final int TAG_OFFSET_TIME = 0x9010;
+    private static final int TAG_OFFSET_TIME_ORIGINAL = 0x9011;
+    private static final int TAG_PIXEL_X_DIMENSION = 0xA002;
+    private static final int TAG_PIXEL_Y_DIMENSION = 0xA003;
+    private static final int TAG_GPS_LATITUDE_REF = 0x0001;
+    private static final int TAG_GPS_LATITUDE = 0x0002;
+    private static final int TAG_GPS_LONGITUDE_REF = 0x0003;
+    private static final int TAG_GPS_LONGITUDE = 0x0004;
+    private static final int TAG_GPS_TIMESTAMP = 0x0007;
+    private static final int TAG_GPS_DATESTAMP = 0x001D;
+    private static final int TAG_GPS_H_POSITIONING_ERROR = 0x001F;
+
+    // TIFF field types
+    private static final int TYPE_ASCII = 2;
+    private static final int TYPE_SHORT = 3;
+    private static final int TYPE_LONG = 4;
+    private static final int TYPE_RATIONAL = 5;
+    private static final int[] TYPE_SIZES = { 0, 1, 1, 2, 4, 8, 1, 1, 2, 4, 8, 4, 8 };
+
+    private static final int IFD_0 = 0;
+    private static final int IFD_EXIF = 1;
+    private static final int IFD_GPS = 2;
+
+    // Recently read metadata (key = file path / content URI + modification time + size, and for a content URI - whether
+    // its location could be read)
+    private static final LruCache<String, PhotoMetadata> sCache = new LruCache<>(64);
+
+    private int mOrientation = ExifInterface.ORIENTATION_NORMAL;
+    private Double mLatitude;
+    private Double mLongitude;
+    private String mLatitudeRef;
+    private String mLongitudeRef;
+    private Float mPositionalAccuracy;
+    private String mDateTime;
+    private String mDateTimeOriginal;
+    private String mOffsetTime;
+    private String mOffsetTimeOriginal;
+    private String mGpsDateStamp;
+    private String mGpsTimeStamp;
+
+    // Raw EXIF data (TIFF structure) of a JPEG photo, and the offsets of the values we update when writing it
+    private byte[] mExif;
+    private ByteOrder mByteOrder;
+    private int mOrientationOffset = -1;
+    private int mPixelXOffset = -1, mPixelXType;
+    private int mPixelYOffset = -1, mPixelYType;
+
+    // Parsing state
+    private ByteBuffer mBuffer;
+
+    private PhotoMetadata() {
+    }
+
+    /**
+     * Reads the metadata of a photo
+     * @param path the path to the photo filename (used if photoUri is null)
+     * @param photoUri the Uri of the photo
+     * @return the photo metadata (empty if the photo has none), or null if the photo couldn't be opened
+     */
+    public static PhotoMetadata read(Context context, String path, Uri photoUri) {
+        if (photoUri == null) return read(path);
+
+        String key = getCacheKey(context, photoUri);
+        PhotoMetadata metadata = key != null ? sCache.get(key) : null;
+        if (metadata != null) return metadata;
+
+        InputStream is = null;
+        try {
+            is = context.getContentResolver().openInputStream(photoUri);
+            if (is == null) return null;
+
+            metadata = read(is);
+            if (metadata == null) {
+                // Not a JPEG
+                is.close();
+                is = context.getContentResolver().openInputStream(photoUri);
+                if (is == null) return null;
+                metadata = readWithExifInterface(is);
+            }
+        } catch (IOException | SecurityException e) {
+            Logger.tag(TAG).error(e);
+            return null;
+        } finally {
+            closeStream(is);
+        }
+
+        if (key != null) sCache.put(key, metadata);
+        return metadata;
+    }
+
+    /**
+     * Returns the cache key of a content URI - including its modification time and size, so a photo that was
+     * edited (or a URI that was reused for a different photo) isn't returned from the cache. Also includes whether
+     * the media location permission is granted (on Q+, without it the location is removed from the photo's EXIF),
+     * so metadata read before the permission was granted isn't returned once it is.
+     * @return the cache key, or null if the provider doesn't supply the modification time/size (not cached)
+     */
+    private static String getCacheKey(Context context, Uri photoUri) {
+        Cursor cursor = null;
+        try {
+            cursor = context.getContentResolver().query(photoUri,
+                    new String[] { MediaStore.MediaColumns.DATE_MODIFIED, MediaStore.MediaColumns.SIZE }, null, null, null);
+            if ((cursor == null) || !cursor.moveToFirst() || cursor.isNull(0) || cursor.isNull(1)) return null;
+
+            boolean hasLocationAccess = (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) ||
+                    (PermissionChecker.checkSelfPermission(context, Manifest.permission.ACCESS_MEDIA_LOCATION) == PermissionChecker.PERMISSION_GRANTED);
+
+            return photoUri + ":" + cursor.getLong(0) + ":" + cursor.getLong(1) + (hasLocationAccess ? "" : ":no-location");
+        } catch (IllegalArgumentException | SecurityException e) {
+            // Provider doesn't support these columns
+            Logger.tag(TAG).debug("No modification time/size for " + photoUri + ": " + e);
+            return null;
+        } finally {
+            if (cursor != null) cursor.close();
+        }
+    }
+
+    /**
+     * Reads the metadata of a photo file
+     * @return the photo metadata (empty if the photo has none), or null if the photo couldn't be opened
+     */
+    public static PhotoMetadata read(String path) {
+        if (path == null) return null;
+
+        File file = new File(path);
+        String key = path + ":" + file.lastModified() + ":" + file.length();
+        PhotoMetadata metadata = sCache.get(key);
+        if (metadata != null) return metadata;
+
+        InputStream is = null;
+        try {
+            is = new FileInputStream(file);
+            metadata = read(is);
+            if (metadata == null) {
+                // Not a JPEG
+                is.close();
+                is = new FileInputStream(file);
+                metadata = readWithExifInterface(is);
+            }
+        } catch (IOException e) {
+            Logger.tag(TAG).error(e);
+            return null;
+        } finally {
+            closeStream(is);
+        }
+
+        sCache.put(key, metadata);
+        return metadata;
+    }
+
+    /**
+     * Reads the metadata of a JPEG photo from its header segments
+     * @return the photo metadata (empty if the photo has none), or null if the photo is not a JPEG
+     */
+    public static PhotoMetadata read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 8 * 1024));
+        PhotoMetadata metadata = new PhotoMetadata();
+
+        if ((in.readUnsignedByte() != 0xFF) || (in.readUnsignedByte() != MARKER_SOI)) {
+            return null;
+        }
+
+        int bytesRead = 2;
+
+        try {
+            while (bytesRead < MAX_HEADER_BYTES) {
+                if (in.readUnsignedByte() != 0xFF) break; // Not a marker - corrupt header
+
+                int marker = in.readUnsignedByte();
+                bytesRead += 2;
+                while (marker == 0xFF) {
+                    // Fill bytes
+                    marker = in.readUnsignedByte();
+                    bytesRead++;
+                }
+
+                if ((marker == MARKER_SOS) || (marker == MARKER_EOI)) break; // Image data starts - no EXIF segment
+                if ((marker == 0x01) || ((marker >= 0xD0) && (marker <= 0xD7))) continue; // Markers without a segment
+
+                int length = in.readUnsignedShort() - 2;
+                bytesRead += 2;
+                if (length < 0) break;
+
+                if ((marker == MARKER_APP1) && (length > EXIF_HEADER.length)) {
+                    byte[] segment = new byte[length];
+                    in.readFully(segment);
+                    bytesRead += length;
+
+                    if (startsWith(segment, EXIF_HEADER)) {
+                        metadata.parseExif(Arrays.copyOfRange(segment, EXIF_HEADER.length, segment.length));
+                        break;
+                    }
+                } else {
+                    skipFully(in, length);
+                    bytesRead += length;
+                }
+            }
+        } catch (EOFException e) {
+            // Truncated file - use whatever was read so far
+        }
+
+        return metadata;
+    }
+
+    // Reads the metadata of a non-JPEG photo (e.g. HEIF)
+    private static PhotoMetadata readWithExifInterface(InputStream is) {
+        PhotoMetadata metadata = new PhotoMetadata();
+
+        try {
+            ExifInterface exif = new ExifInterface(is);
+
+            metadata.mOrientation = exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+            double[] latLng = exif.getLatLong();
+            if (latLng != null) {
+                metadata.mLatitude = latLng[0];
+                metadata.mLongitude = latLng[1];
+            }
+            metadata.mDateTime = exif.getAttribute(ExifInterface.TAG_DATETIME);
+            metadata.mDateTimeOriginal = exif.getAttribute(ExifInterface.TAG_DATETIME_ORIGINAL);
+            metadata.mOffsetTime = exif.getAttribute(ExifInterface.TAG_OFFSET_TIME);
+            metadata.mOffsetTimeOriginal = exif.getAttribute(ExifInterface.TAG_OFFSET_TIME_ORIGINAL);
+            metadata.mGpsDateStamp = exif.getAttribute(ExifInterface.TAG_GPS_DATESTAMP);
+            metadata.mGpsTimeStamp = exif.getAttribute(ExifInterface.TAG_GPS_TIMESTAMP);
+
+            String accuracy = exif.getAttribute("GPSHPositioningError");
+            if (accuracy != null) {
+                String[] parts = accuracy.split("/");
+                double value = parts.length == 2 ? Double.parseDouble(parts[0]) / Double.parseDouble(parts[1]) : Double.parseDouble(accuracy);
+                if (!Double.isNaN(value) && !Double.isInfinite(value)) metadata.mPositionalAccuracy = (float) value;
+            }
+        } catch (IOException | NumberFormatException e) {
+            Logger.tag(TAG).error(e);
+        }
+
+        return metadata;
+    }
+
+    private void parseExif(byte[] exif) {
+        if (exif.length < 8) return;
+
+        mBuffer = ByteBuffer.wrap(exif);
+        if ((exif[0] == 'I') && (exif[1] == 'I')) {
+            mByteOrder = ByteOrder.LITTLE_ENDIAN;
+        } else if ((exif[0] == 'M') && (exif[1] == 'M')) {
+            mByteOrder = ByteOrder.BIG_ENDIAN;
+        } else {
+            return;
+        }
+        mBuffer.order(mByteOrder);
+
+        if (mBuffer.getShort(2) != 42) return;
+
+        mExif = exif;
+
+        try {
+            parseIfd(mBuffer.getInt(4), IFD_0);
+        } catch (IndexOutOfBoundsException e) {
+            // Corrupt EXIF data - use whatever was read so far
+            Logger.tag(TAG).error("Corrupt EXIF data: " + e);
+        }
+
+        mBuffer = null;
+    }
+
+    private void parseIfd(int offset, int ifd) {
+        if ((offset < 8) || (offset + 2 > mExif.length)) return;
+
+        int entryCount = mBuffer.getShort(offset) & 0xFFFF;
+
+        for (int i = 0; i < entryCount; i++) {
+            int entry = offset + 2 + i * 12;
+            if (entry + 12 > mExif.length) return;
+
+            int tag = mBuffer.getShort(entry) & 0xFFFF;
+            int type = mBuffer.getShort(entry + 2) & 0xFFFF;
+            int count = mBuffer.getInt(entry + 4);
+            if ((type <= 0) || (type >= TYPE_SIZES.length) || (count < 0)) continue;
+
+            // Values of up to 4 bytes are stored in the entry itself
+            long size = (long) TYPE_SIZES[type] * count;
+            int valueOffset = size <= 4 ? entry + 8 : mBuffer.getInt(entry + 8);
+            if ((valueOffset < 0) || (valueOffset + size > mExif.length)) continue;
+
+            if (ifd == IFD_0) {
+                switch (tag) {
+                    case TAG_ORIENTATION:
+                        if (type == TYPE_SHORT) {
+                            mOrientation = mBuffer.getShort(valueOffset) & 0xFFFF;
+                            mOrientationOffset = valueOffset;
+                        }
+                        break;
+                    case TAG_DATETIME:
+                        mDateTime = getAscii(type, valueOffset, count);
+                        break;
+                    case TAG_EXIF_IFD:
+                        parseIfd(getInt(type, valueOffset), IFD_EXIF);
+                        break;
+                    case TAG_GPS_IFD:
+                        parseIfd(getInt(type, valueOffset), IFD_GPS);
+                        break;
+                }
+            } else if (ifd == IFD_EXIF) {
+                switch (tag) {
+                    case TAG_DATETIME_ORIGINAL:
+                        mDateTimeOriginal = getAscii(type, valueOffset, count);
+                        break;
+                    case TAG_OFFSET_TIME:
+                        mOffsetTime = getAscii(type, valueOffset, count);
+                        break;
+                    case TAG_OFFSET_TIME_ORIGINAL:
+                        mOffsetTimeOriginal = getAscii(type, valueOffset, count);
+                        break;
+                    case TAG_PIXEL_X_DIMENSION:
+                        mPixelXOffset = valueOffset;
+                        mPixelXType = type;
+                        break;
+                    case TAG_PIXEL_Y_DIMENSION:
+                        mPixelYOffset = valueOffset;
+                        mPixelYType = type;
+                        break;
+                }
+            } else if (ifd == IFD_GPS) {
+                switch (tag) {
+                    case TAG_GPS_LATITUDE_REF:
+                        mLatitudeRef = getAscii(type, valueOffset, count);
+                        break;
+                    case TAG_GPS_LATITUDE:
+                        mLatitude = getCoordinate(type, valueOffset, count);
+                        break;
+                    case TAG_GPS_LONGITUDE_REF:
+                        mLongitudeRef = getAscii(type, valueOffset, count);
+                        break;
+                    case TAG_GPS_LONGITUDE:
+                        mLongitude = getCoordinate(type, valueOffset, count);
+                        break;
+                    case TAG_GPS_TIMESTAMP:
+                        if ((type == TYPE_RATIONAL) && (count >= 3)) {
+                            mGpsTimeStamp = String.format(Locale.ENGLISH, "%02d:%02d:%02d",
+                                    (int) getRational(valueOffset), (int) getRational(valueOffset + 8), (int) getRational(valueOffset + 16));
+                        }
+                        break;
+                    case TAG_GPS_DATESTAMP:
+                        mGpsDateStamp = getAscii(type, valueOffset, count);
+                        break;
+                    case TAG_GPS_H_POSITIONING_ERROR:
+                        if (type == TYPE_RATIONAL) {
+                            double accuracy = getRational(valueOffset);
+                            if (!Double.isNaN(accuracy)) mPositionalAccuracy = (float) accuracy;
+                        }
+                        break;
+                }
+            }
+        }
+    }
+
+    // Returns a degrees/minutes/seconds coordinate as decimal degrees
+    private Double getCoordinate(int type, int offset, int count) {
+        if ((type != TYPE_RATIONAL) || (count < 3)) return null;
+
+        double value = getRational(offset) + getRational(offset + 8) / 60 + getRational(offset + 16) / 3600;
+        return Double.isNaN(value) ? null : value;
+    }
+
+    private double getRational(int offset) {
+        long numerator = mBuffer.getInt(offset) & 0xFFFFFFFFL;
+        long denominator = mBuffer.getInt(offset + 4) & 0xFFFFFFFFL;
+        return denominator == 0 ? Double.NaN : (double) numerator / denominator;
+    }
+
+    private int getInt(int type, int offset) {
+        return type == TYPE_SHORT ? mBuffer.getShort(offset) & 0xFFFF : mBuffer.getInt(offset);
+    }
+
+    private String getAscii(int type, int offset, int count) {
+        if (type != TYPE_ASCII) return null;
+
+        int length = 0;
+        while ((length < count) && (mExif[offset + length] != 0)) length++;
+
+        return new String(mExif, offset, length, StandardCharsets.US_ASCII).trim();
+    }
+
+    /** Returns the EXIF orientation value (ExifInterface.ORIENTATION_*) */
+    public int getOrientation() {
+        return mOrientation;
+    }
+
+    /** Returns the rotation (clockwise, in degrees) needed to show the photo upright */
+    public int getRotationDegrees() {
+        switch (mOrientation) {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                return 90;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                return 180;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                return 270;
+            default:
+                return 0;
+        }
+    }
+
+    /** Returns the photo location (latitude, longitude) - or null if it has none */
+    public double[] getLatLng() {
+        if ((mLatitude == null) || (mLongitude == null)) return null;
+        return new double[] {
+                "S".equalsIgnoreCase(mLatitudeRef) ? -mLatitude : mLatitude,
+                "W".equalsIgnoreCase(mLongitudeRef) ? -mLongitude : mLongitude
+        };
+    }
+
+    /** Returns the photo location accuracy (in meters) - or null if not available */
+    public Float getPositionalAccuracy() {
+        return mPositionalAccuracy;
+    }
+
+    /** Returns the timezone offset of the original date/time (e.g. "+02:00") - or null if not available */
+    public String getTimeZoneOffset() {
+        return mOffsetTimeOriginal != null ? mOffsetTimeOriginal : mOffsetTime;
+    }
+
+    /**
+     * Returns the date/time the photo was taken - the GPS date/time (which is in UTC), if available; otherwise, the
+     * original date/time in the photo's timezone (if recorded in the photo) or in the device's timezone.
+     * @return the date/time taken, or null if not available
+     */
+    public Date getDateTaken() {
+        String datetime;
+        TimeZone timeZone;
+
+        if ((mGpsDateStamp != null) && (mGpsDateStamp.length() > 0) && (!mGpsDateStamp.startsWith("1970")) &&
+                (mGpsTimeStamp != null) && (mGpsTimeStamp.length() > 0)) {
+            // GPS date/time stamp is defined as UTC / GMT+0
+            datetime = mGpsDateStamp + " " + mGpsTimeStamp;
+            timeZone = TimeZone.getTimeZone("UTC");
+        } else {
+            datetime = mDateTimeOriginal != null ? mDateTimeOriginal : mDateTime;
+            String offset = mDateTimeOriginal != null ? mOffsetTimeOriginal : mOffsetTime;
+            timeZone = offset != null ? TimeZone.getTimeZone("GMT" + offset) : TimeZone.getDefault();
+        }
+
+        if (datetime == null) return null;
+
+        SimpleDateFormat exifDateFormat = new SimpleDateFormat("yyyy:MM:dd HH:mm:ss", Locale.ENGLISH);
+        exifDateFormat.setTimeZone(timeZone);
+
+        try {
+            return exifDateFormat.parse(datetime);
+        } catch (ParseException e) {
+            Logger.tag(TAG).debug("Failed to parse " + datetime + ": " + e);
+            return null;
+        }
+    }
+
+    /** Returns whether the photo has EXIF data that can be written into other JPEG files */
+    public boolean hasExif() {
+        return mExif != null;
+    }
+
+    /**
+     * Writes the EXIF data of the photo into a JPEG file (e.g. a resized copy of the photo) - with the pixel size
+     * updated, and optionally the orientation reset (when the copy has already been rotated)
+     * @param jpegFile the JPEG file (with no EXIF data of its own, e.g. as saved by Bitmap.compress)
+     * @return true/false status
+     */
+    public boolean writeExif(File jpegFile, int width, int height, boolean resetOrientation) {
+        if (mExif == null) return false;
+
+        // APP1 segment length includes the length field itself
+        int segmentLength = 2 + EXIF_HEADER.length + mExif.length;
+        if (segmentLength > 0xFFFF) {
+            Logger.tag(TAG).error("writeExif: EXIF data too large - " + mExif.length);
+            return false;
+        }
+
+        byte[] exif = mExif.clone();
+        ByteBuffer buffer = ByteBuffer.wrap(exif).order(mByteOrder);
+        if (resetOrientation && (mOrientationOffset >= 0)) {
+            buffer.putShort(mOrientationOffset, (short) ExifInterface.ORIENTATION_NORMAL);
+        }
+        putDimension(buffer, mPixelXOffset, mPixelXType, width);
+        putDimension(buffer, mPixelYOffset, mPixelYType, height);
+
+        File tempFile = new File(jpegFile.getAbsolutePath() + ".tmp");
+        InputStream in = null;
+        OutputStream out = null;
+
+        try {
+            in = new BufferedInputStream(new FileInputStream(jpegFile), 64 * 1024);
+            if ((in.read() != 0xFF) || (in.read() != MARKER_SOI)) {
+                Logger.tag(TAG).error("writeExif: not a JPEG file - " + jpegFile);
+                return false;
+            }
+
+            out = new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024);
+            out.write(0xFF);
+            out.write(MARKER_SOI);
+            out.write(0xFF);
+            out.write(MARKER_APP1);
+            out.write((segmentLength >> 8) & 0xFF);
+            out.write(segmentLength & 0xFF);
+            out.write(EXIF_HEADER);
+            out.write(exif);
+
+            // Rest of the JPEG file as-is
+            FileUtils.copyStreamToStream(in, out);
+
+            out.close();
+            out = null;
+            in.close();
+            in = null;
+
+            if (!jpegFile.delete() || !tempFile.renameTo(jpegFile)) {
+                Logger.tag(TAG).error("writeExif: couldn't replace " + jpegFile);
+                return false;
+            }
+
+            return true;
+
+        } catch (IOException e) {
+            Logger.tag(TAG).error(e);
+            return false;
+        } finally {
+            closeStream(in);
+            closeStream(out);
+            if (tempFile.exists()) tempFile.delete();
+        }
+    }
+
+    private static void putDimension(ByteBuffer buffer, int offset, int type, int value) {
+        if (offset < 0) return;
+
+        if (type == TYPE_SHORT) {
+            buffer.putShort(offset, (short) Math.min(value, 0xFFFF));
+        } else if (type == TYPE_LONG) {
+            buffer.putInt(offset, value);
+        }
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+        if (bytes.length < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    private static void skipFully(DataInputStream in, int count) throws IOException {
+        while (count > 0) {
+            int skipped = in.skipBytes(count);
+            if (skipped <= 0) {
+                // skipBytes may skip less than requested - make sure we're not at the end of the stream
+                in.readUnsignedByte();
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    private static void closeStream(Closeable stream) {
+        if (stream == null) return;
+        try {
+            stream.close();
+        } catch (IOException e) {
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH, "PhotoMetadata: orientation %d; lat/lng %s/%s (accuracy %s); taken %s (GPS %s %s, tz %s); EXIF %d bytes",
+                mOrientation, mLatitude, mLongitude, mPositionalAccuracy, mDateTimeOriginal != null ? mDateTimeOriginal : mDateTime,
+                mGpsDateStamp, mGpsTimeStamp, getTimeZoneOffset(), mExif != null ? mExif.length : 0);
+    }
+}
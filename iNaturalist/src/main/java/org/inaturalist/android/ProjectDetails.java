@@ -486,7 +486,7 @@ public class ProjectDetails extends AppCompatActivity implements AppBarLayout.On
             SerializableJSONArray resultsJSON;
 
             if (isSharedOnApp) {
-                resultsObject = (BetterJSONObject) mApp.getServiceResult(intent.getAction());
+                resultsObject = ServiceResultBus.getInstance().get(intent, intent.getAction(), BetterJSONObject.class, this);
             } else {
                 resultsObject = (BetterJSONObject) intent.getSerializableExtra(INaturalistService.RESULTS);
             }
@@ -154,5 +154,11 @@ public class ProjectFieldValue implements BaseColumns, Serializable {
                 + ");";
     }
 
+    public static String[] sqlCreateIndexes() {
+        return new String[] {
+                "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_observation_id_index ON " + TABLE_NAME + " (observation_id)"
+        };
+    }
+
 
 }
@@ -187,7 +187,7 @@ public class ProjectNews extends BaseFragmentActivity {
             SerializableJSONArray resultsJSON;
 
             if (isSharedOnApp) {
-                resultsJSON = (SerializableJSONArray) mApp.getServiceResult(intent.getAction());
+                resultsJSON = ServiceResultBus.getInstance().get(intent, intent.getAction(), SerializableJSONArray.class, this);
             } else {
                 resultsJSON = (SerializableJSONArray) intent.getSerializableExtra(INaturalistService.RESULTS);
             }
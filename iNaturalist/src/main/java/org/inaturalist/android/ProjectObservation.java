@@ -119,4 +119,10 @@ public class ProjectObservation implements BaseColumns, Serializable {
                 + ");";
     }
 
+    public static String[] sqlCreateIndexes() {
+        return new String[] {
+                "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_observation_id_index ON " + TABLE_NAME + " (observation_id)"
+        };
+    }
+
 }
@@ -0,0 +1,117 @@
+package org.inaturalist.android;
+
+import org.tinylog.Logger;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces identical API calls that are in flight at the same time (singleton class) - e.g. several screens asking
+ * for the same taxon or user details at once. Only the first caller performs the call; concurrent callers with the
+ * same key wait for it and receive their own copy of its response (or its exception).
+ */
+public class RequestCoalescer {
+    private static final String TAG = "RequestCoalescer";
+
+    public interface Call {
+        ApiResponse execute() throws Exception;
+    }
+
+    private static class InFlight {
+        final CountDownLatch done = new CountDownLatch(1);
+        ApiResponse.Snapshot snapshot;
+        Exception error;
+        int waiters = 0;
+    }
+
+    // Singleton instance
+    private static RequestCoalescer sInstance = null;
+
+    private final Map<String, InFlight> mInFlight = new HashMap<>();
+    private final AtomicLong mIssued = new AtomicLong();
+    private final AtomicLong mCoalesced = new AtomicLong();
+
+    private RequestCoalescer() {
+    }
+
+    public static synchronized RequestCoalescer getInstance() {
+        if (sInstance == null) {
+            sInstance = new RequestCoalescer();
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * Performs the call, unless an identical one is already in flight - in which case its response is shared
+     * @param key identifies identical calls (e.g. normalized URL + auth identity)
+     */
+    public ApiResponse execute(String key, Call call) throws Exception {
+        InFlight inFlight;
+        boolean isLeader = false;
+
+        synchronized (mInFlight) {
+            inFlight = mInFlight.get(key);
+            if (inFlight == null) {
+                inFlight = new InFlight();
+                mInFlight.put(key, inFlight);
+                isLeader = true;
+            } else {
+                inFlight.waiters++;
+            }
+        }
+
+        if (isLeader) {
+            mIssued.incrementAndGet();
+            ApiResponse response = null;
+            try {
+                response = call.execute();
+            } catch (Exception e) {
+                inFlight.error = e;
+                throw e;
+            } finally {
+                int waiters;
+                synchronized (mInFlight) {
+                    mInFlight.remove(key);
+                    waiters = inFlight.waiters;
+                    if (waiters > 0) {
+                        Logger.tag(TAG).debug(String.format(Locale.ENGLISH, "Shared response with %d waiting callers: %s", waiters, key));
+                    }
+                }
+
+                try {
+                    // No more callers can join now. If any did, the response is shared as an immutable snapshot, taken
+                    // before anyone gets to use it - and every caller (this one included) parses its own copy of it
+                    if ((waiters > 0) && (response != null)) inFlight.snapshot = response.snapshot();
+                } finally {
+                    inFlight.done.countDown();
+                }
+            }
+
+            return inFlight.snapshot != null ? inFlight.snapshot.toResponse() : response;
+        }
+
+        mCoalesced.incrementAndGet();
+        inFlight.done.await();
+
+        if (inFlight.error != null) throw inFlight.error;
+        return inFlight.snapshot != null ? inFlight.snapshot.toResponse() : null;
+    }
+
+    /** Number of calls actually performed */
+    public long getIssuedCount() {
+        return mIssued.get();
+    }
+
+    /** Number of calls that were served by an identical in-flight call */
+    public long getCoalescedCount() {
+        return mCoalesced.get();
+    }
+
+    public String toString() {
+        return String.format(Locale.ENGLISH, "Coalescing: %d calls issued, %d coalesced", getIssuedCount(), getCoalescedCount());
+    }
+}
@@ -10,8 +10,11 @@ import android.util.Log;
 
 import org.tinylog.Logger;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Implement the cursor factory in order to log the queries before returning 
@@ -23,10 +26,20 @@ import java.util.List;
 public class SQLiteCursorFactory implements CursorFactory {
 
     private static final String TAG = "SQLiteCursorFactory";
+
+    public static final String PREF_EXPLAIN_QUERY_PLANS = "debug_explain_query_plans";
+
+    private static final String QUERY_PREFIX = "SQLiteQuery: ";
+
     private boolean debugQueries = false;
+    private boolean explainQueryPlans = false;
 
     private static String lastQuery = null;
 
+    // Queries already explained (each distinct query is only explained once) and the ones flagged as table scans
+    private final Set<String> mExplainedQueries = Collections.synchronizedSet(new HashSet<String>());
+    private final List<String> mTableScanQueries = Collections.synchronizedList(new LinkedList<String>());
+
     public SQLiteCursorFactory() {
         this.debugQueries = false;
   }
@@ -35,6 +48,25 @@ public class SQLiteCursorFactory implements CursorFactory {
         this.debugQueries = debugQueries;
     }
 
+    // When enabled (debug only), runs EXPLAIN QUERY PLAN on every distinct query and flags full table scans
+    public void setExplainQueryPlans(boolean explainQueryPlans) {
+        this.explainQueryPlans = explainQueryPlans;
+    }
+
+    public boolean isExplainingQueryPlans() {
+        return explainQueryPlans;
+    }
+
+    public int getExplainedQueryCount() {
+        return mExplainedQueries.size();
+    }
+
+    public List<String> getTableScanQueries() {
+        synchronized (mTableScanQueries) {
+            return new LinkedList<>(mTableScanQueries);
+        }
+    }
+
     @Override
     public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver masterQuery, String editTable, SQLiteQuery query) {
         if (debugQueries) {
@@ -44,9 +76,60 @@ public class SQLiteCursorFactory implements CursorFactory {
                 Logger.tag(TAG).debug(currentQuery);
             }
 
+            if (explainQueryPlans) {
+                explainQueryPlan(db, currentQuery);
+            }
+
             return new TrackingCursor(db, masterQuery, editTable, query);
         } else {
             return new SQLiteCursor(db, masterQuery, editTable, query);
         }
     }
-}
\ No newline at end of file
+
+    private void explainQueryPlan(SQLiteDatabase db, String query) {
+        String sql = query.startsWith(QUERY_PREFIX) ? query.substring(QUERY_PREFIX.length()) : query;
+        if (!sql.trim().toUpperCase().startsWith("SELECT")) return;
+        if (!mExplainedQueries.add(sql)) return;
+
+        // Count the bind parameters - they're bound with empty values (the plan doesn't depend on the actual values)
+        int paramCount = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            if (sql.charAt(i) == '?') paramCount++;
+        }
+        String[] args = paramCount > 0 ? new String[paramCount] : null;
+        if (args != null) {
+            for (int i = 0; i < paramCount; i++) args[i] = "";
+        }
+
+        boolean hasWhereClause = sql.toUpperCase().contains(" WHERE ");
+        Cursor c = null;
+        try {
+            // Use a plain (non-debug) factory so the EXPLAIN query itself won't be explained
+            c = db.rawQueryWithFactory(new SQLiteCursorFactory(false), "EXPLAIN QUERY PLAN " + sql, args, null);
+            int detailIndex = c.getColumnIndexOrThrow("detail");
+            StringBuilder plan = new StringBuilder();
+            boolean tableScan = false;
+
+            while (c.moveToNext()) {
+                String detail = c.getString(detailIndex);
+                plan.append(detail).append("; ");
+                if (detail.startsWith("SCAN") && !detail.contains(" USING ") && hasWhereClause) {
+                    // Full table scan (and not an index scan) for a query with a WHERE clause
+                    tableScan = true;
+                }
+            }
+
+            if (tableScan) {
+                mTableScanQueries.add(sql);
+                Logger.tag(TAG).warn("Query plan - TABLE SCAN: " + plan + " - for query: " + sql);
+            } else {
+                Logger.tag(TAG).debug("Query plan: " + plan + " - for query: " + sql);
+            }
+        } catch (Exception e) {
+            Logger.tag(TAG).error("Could not explain query: " + sql);
+            Logger.tag(TAG).error(e);
+        } finally {
+            if (c != null) c.close();
+        }
+    }
+}
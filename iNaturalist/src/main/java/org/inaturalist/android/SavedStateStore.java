@@ -0,0 +1,528 @@
+package org.inaturalist.android;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Parcel;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.tinylog.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Disk-backed storage for large lists in saved activity state (singleton class).
+ *
+ * Instead of serializing a whole result list (explore results, species, identifications, taxon suggestions...) into
+ * the saved state bundle every time the activity is stopped, a list that's larger than a few items is written to a
+ * file (only if its contents changed since it was last written) - and only its handle is kept in the bundle. Handles are made
+ * of the saved instance's ID plus the field key. A list is written before its handle is returned, so a saved handle
+ * never refers to a missing (or older) file if the process is killed right after the state was saved.
+ *
+ * Restoring is lazy: after a configuration change the same (in-memory) list is returned as-is, and after the process
+ * was killed the returned list only reads and parses its file once it's first accessed. The total size of the store
+ * is kept under a byte budget, by evicting the least recently used files.
+ *
+ * Also keeps track of the size of each activity's saved state bundle (when enabled in the debug settings).
+ */
+public class SavedStateStore {
+    private static final String TAG = "SavedStateStore";
+
+    private static final String DIRECTORY = "saved_state";
+    private static final String EXTENSION = ".json";
+
+    // Bundle keys of the saved instance ID, and of the handle of a spilled field (followed by the field key)
+    private static final String INSTANCE_ID_KEY = "saved_state_store:instance_id";
+    private static final String HANDLE_KEY = "saved_state_store:handle:";
+
+    public static final String PREF_RECORD_BUNDLE_SIZES = "debug_record_bundle_sizes";
+
+    // Lists with more items than this are spilled to disk (smaller ones stay in the bundle)
+    private static final int MIN_SPILLED_ITEMS = 10;
+
+    private static final long MAX_AGE = 3 * 24 * 60 * 60 * 1000;
+    private static final long MAX_SIZE_BYTES = 8 * 1024 * 1024;
+    // When over budget, evict files until the total size is down to this
+    private static final long EVICT_TO_BYTES = 6 * 1024 * 1024;
+
+    /** Converts list items to / from JSON */
+    public interface Converter<T> {
+        JSONObject toJSON(T item);
+        T fromJSON(JSONObject json) throws JSONException;
+    }
+
+    // A list that was written to disk
+    private static class Spill {
+        final String handle;
+        final WeakReference<List<?>> list;
+        long fingerprint;
+
+        Spill(String handle, List<?> list, long fingerprint) {
+            this.handle = handle;
+            this.list = new WeakReference<List<?>>(list);
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    // Bundle sizes of a single screen
+    private static class BundleSizes {
+        long count;
+        long lastBytes;
+        long maxBytes;
+    }
+
+    // Singleton instance
+    private static SavedStateStore sInstance = null;
+
+    private final File mDirectory;
+    private final ExecutorService mWriteExecutor = Executors.newSingleThreadExecutor();
+
+    // Spilled lists, by handle (the lists themselves are only weakly referenced)
+    private final Map<String, Spill> mSpills = new HashMap<>();
+    private final Map<String, BundleSizes> mBundleSizes = new HashMap<>();
+
+    private final AtomicLong mSpilled = new AtomicLong();
+    private final AtomicLong mUnchanged = new AtomicLong();
+    private final AtomicLong mBytesWritten = new AtomicLong();
+    private final AtomicLong mRestoredFromMemory = new AtomicLong();
+    private final AtomicLong mRestoredFromDisk = new AtomicLong();
+    private final AtomicLong mLoaded = new AtomicLong();
+    private final AtomicLong mEvicted = new AtomicLong();
+
+    private volatile boolean mRecordBundleSizes = false;
+
+    private SavedStateStore(Context context) {
+        mDirectory = new File(context.getCacheDir(), DIRECTORY);
+        mDirectory.mkdirs();
+    }
+
+    public static synchronized SavedStateStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new SavedStateStore(context.getApplicationContext());
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * Saves a list into a bundle as a handle to a file - if it's large enough to be worth it
+     * @return true if the list was spilled, false if it should be saved into the bundle as usual
+     */
+    public <T> boolean put(String key, List<T> value, Bundle bundle, Converter<T> converter) {
+        if (value == null) return false;
+
+        Spill spill = findSpill(value);
+
+        if ((spill == null) && (value instanceof LazyList) && !((LazyList) value).isLoaded()) {
+            // A restored list that wasn't touched yet - its file is still up to date
+            spill = registerSpill(((LazyList) value).getHandle(), value, 0);
+        }
+
+        if ((spill == null) && (value.size() <= MIN_SPILLED_ITEMS)) return false;
+
+        if ((spill != null) && (value instanceof LazyList) && !((LazyList) value).isLoaded()) {
+            touch(spill);
+        } else {
+            if (spill == null) {
+                spill = registerSpill(getInstanceId(bundle) + "-" + Integer.toHexString(key.hashCode()), value, 0);
+            }
+
+            // Items might have been modified in place (e.g. a result object that was updated) - so the list is compared
+            // by its serialized contents, not only by which items it has
+            byte[] data = toJSON(value, converter).getBytes(StandardCharsets.UTF_8);
+            long fingerprint = getFingerprint(data);
+            if (fingerprint != spill.fingerprint) {
+                // Only considered written once it actually was (otherwise it's written again on the next save)
+                spill.fingerprint = write(spill, data) ? fingerprint : 0;
+            } else {
+                touch(spill);
+            }
+        }
+
+        bundle.putString(HANDLE_KEY + key, spill.handle);
+        return true;
+    }
+
+    /** Whether a field was saved as a handle (see put) */
+    public static boolean isSpilled(String key, Bundle bundle) {
+        return bundle.containsKey(HANDLE_KEY + key);
+    }
+
+    static String getHandle(String key, Bundle bundle) {
+        return bundle.getString(HANDLE_KEY + key);
+    }
+
+    /**
+     * Returns a list saved as a handle - the same list if it's still in memory, or one that reads its file once it's
+     * first accessed
+     */
+    public <T> List<T> get(String key, Bundle bundle, Converter<T> converter) {
+        String handle = getHandle(key, bundle);
+        if (handle == null) return null;
+
+        synchronized (this) {
+            Spill spill = mSpills.get(handle);
+            List<?> list = spill != null ? spill.list.get() : null;
+            if (list != null) {
+                mRestoredFromMemory.incrementAndGet();
+                return (List<T>) list;
+            }
+        }
+
+        mRestoredFromDisk.incrementAndGet();
+        return new LazyList<T>(this, handle, converter);
+    }
+
+    /** Whether to record the size of each saved state bundle (parceling it again, so only enabled for debugging) */
+    public void setRecordBundleSizes(boolean recordBundleSizes) {
+        mRecordBundleSizes = recordBundleSizes;
+    }
+
+    public boolean isRecordingBundleSizes() {
+        return mRecordBundleSizes;
+    }
+
+    /** Records the size of a screen's saved state (as parceled) - if enabled */
+    public void recordBundleSize(Object target, Bundle state) {
+        if (!mRecordBundleSizes) return;
+
+        Parcel parcel = Parcel.obtain();
+        int size;
+        try {
+            parcel.writeBundle(state);
+            size = parcel.dataSize();
+        } finally {
+            parcel.recycle();
+        }
+
+        String screen = target.getClass().getSimpleName();
+        synchronized (mBundleSizes) {
+            BundleSizes sizes = mBundleSizes.get(screen);
+            if (sizes == null) {
+                sizes = new BundleSizes();
+                mBundleSizes.put(screen, sizes);
+            }
+            sizes.count++;
+            sizes.lastBytes = size;
+            sizes.maxBytes = Math.max(sizes.maxBytes, size);
+        }
+    }
+
+    // The ID of the instance whose state is saved into a bundle (all spilled fields of a bundle share it)
+    private static String getInstanceId(Bundle bundle) {
+        String instanceId = bundle.getString(INSTANCE_ID_KEY);
+        if (instanceId == null) {
+            instanceId = UUID.randomUUID().toString();
+            bundle.putString(INSTANCE_ID_KEY, instanceId);
+        }
+        return instanceId;
+    }
+
+    private synchronized Spill findSpill(List<?> list) {
+        Iterator<Spill> iterator = mSpills.values().iterator();
+        while (iterator.hasNext()) {
+            Spill spill = iterator.next();
+            List<?> spilledList = spill.list.get();
+            if (spilledList == null) {
+                // The file itself is kept (the handle might still be in a saved bundle)
+                iterator.remove();
+            } else if (spilledList == list) {
+                return spill;
+            }
+        }
+        return null;
+    }
+
+    private synchronized Spill registerSpill(String handle, List<?> list, long fingerprint) {
+        Spill spill = new Spill(handle, list, fingerprint);
+        mSpills.put(handle, spill);
+        return spill;
+    }
+
+    private static <T> String toJSON(List<T> list, Converter<T> converter) {
+        JSONArray array = new JSONArray();
+        for (T item : list) {
+            array.put(converter.toJSON(item));
+        }
+        return array.toString();
+    }
+
+    // Identifies the serialized contents of a list - so an unchanged list isn't written again
+    private static long getFingerprint(byte[] data) {
+        return ((long) data.length << 32) | (Arrays.hashCode(data) & 0xFFFFFFFFL);
+    }
+
+    // Writes a spilled list, returning whether it succeeded
+    private boolean write(Spill spill, final byte[] data) {
+        mSpilled.incrementAndGet();
+
+        final String handle = spill.handle;
+        Future<Boolean> written = mWriteExecutor.submit(() -> {
+            File file = new File(mDirectory, handle + EXTENSION);
+            File tempFile = new File(mDirectory, handle + EXTENSION + ".tmp");
+            OutputStream os = null;
+            try {
+                os = new FileOutputStream(tempFile);
+                os.write(data);
+                os.close();
+                os = null;
+
+                if (!tempFile.renameTo(file)) {
+                    tempFile.delete();
+                    return false;
+                }
+
+                mBytesWritten.addAndGet(data.length);
+                return true;
+            } catch (IOException e) {
+                Logger.tag(TAG).error(e);
+                tempFile.delete();
+                return false;
+            } finally {
+                if (os != null) {
+                    try {
+                        os.close();
+                    } catch (IOException e) {
+                    }
+                }
+            }
+        });
+
+        // The handle is about to be saved - wait for the file it refers to (only evicting old files in the background)
+        boolean success = false;
+        try {
+            success = written.get();
+        } catch (InterruptedException | ExecutionException e) {
+            Logger.tag(TAG).error(e);
+        }
+
+        mWriteExecutor.execute(this::trim);
+        return success;
+    }
+
+    // Marks the file of an unchanged list as recently used (so it isn't evicted while its handle is still saved)
+    private void touch(Spill spill) {
+        mUnchanged.incrementAndGet();
+
+        final String handle = spill.handle;
+        mWriteExecutor.execute(() -> new File(mDirectory, handle + EXTENSION).setLastModified(System.currentTimeMillis()));
+    }
+
+    // Reads a spilled list (when a restored list is first accessed)
+    private <T> List<T> read(String handle, Converter<T> converter) {
+        List<T> results = new ArrayList<>();
+        File file = new File(mDirectory, handle + EXTENSION);
+        if (!file.exists()) {
+            Logger.tag(TAG).error("Missing saved state: " + handle);
+            return results;
+        }
+
+        InputStream is = null;
+        try {
+            is = new FileInputStream(file);
+            ByteArrayOutputStream os = new ByteArrayOutputStream((int) file.length());
+            FileUtils.copyStreamToStream(is, os);
+            JSONArray array = new JSONArray(new String(os.toByteArray(), StandardCharsets.UTF_8));
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject item = array.optJSONObject(i);
+                if (item != null) results.add(converter.fromJSON(item));
+            }
+            file.setLastModified(System.currentTimeMillis());
+            mLoaded.incrementAndGet();
+        } catch (IOException | JSONException e) {
+            Logger.tag(TAG).error(e);
+        } finally {
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+
+        return results;
+    }
+
+    private synchronized void trim() {
+        mEvicted.addAndGet(DiskCacheTrimmer.trim(mDirectory, file -> MAX_AGE, MAX_SIZE_BYTES, EVICT_TO_BYTES));
+    }
+
+    /** Removes all spilled lists (lists still in memory are kept, and written again when next saved) */
+    public void clear() {
+        synchronized (this) {
+            mSpills.clear();
+        }
+
+        mWriteExecutor.execute(() -> {
+            synchronized (SavedStateStore.this) {
+                File[] files = mDirectory.listFiles();
+                if (files == null) return;
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+        });
+    }
+
+    /**
+     * A restored list that reads its items only once it's first accessed. Extends ArrayList, since that's how most
+     * of the saved fields are declared.
+     */
+    static class LazyList<T> extends ArrayList<T> {
+        private final String mHandle;
+        private SavedStateStore mStore;
+        private Converter<T> mConverter;
+
+        LazyList(SavedStateStore store, String handle, Converter<T> converter) {
+            mStore = store;
+            mHandle = handle;
+            mConverter = converter;
+        }
+
+        String getHandle() {
+            return mHandle;
+        }
+
+        boolean isLoaded() {
+            return mStore == null;
+        }
+
+        private void load() {
+            if (mStore == null) return;
+
+            SavedStateStore store = mStore;
+            mStore = null;
+            super.addAll(store.read(mHandle, mConverter));
+            mConverter = null;
+        }
+
+        private Object writeReplace() throws ObjectStreamException {
+            load();
+            return new ArrayList<>(this);
+        }
+
+        @Override public void trimToSize() { load(); super.trimToSize(); }
+        @Override public void ensureCapacity(int minCapacity) { load(); super.ensureCapacity(minCapacity); }
+        @Override public int size() { load(); return super.size(); }
+        @Override public boolean isEmpty() { load(); return super.isEmpty(); }
+        @Override public boolean contains(Object o) { load(); return super.contains(o); }
+        @Override public boolean containsAll(Collection<?> c) { load(); return super.containsAll(c); }
+        @Override public int indexOf(Object o) { load(); return super.indexOf(o); }
+        @Override public int lastIndexOf(Object o) { load(); return super.lastIndexOf(o); }
+        @Override public Object clone() { load(); return super.clone(); }
+        @Override public Object[] toArray() { load(); return super.toArray(); }
+        @Override public <E> E[] toArray(E[] a) { load(); return super.toArray(a); }
+        @Override public T get(int index) { load(); return super.get(index); }
+        @Override public T set(int index, T element) { load(); return super.set(index, element); }
+        @Override public boolean add(T t) { load(); return super.add(t); }
+        @Override public void add(int index, T element) { load(); super.add(index, element); }
+        @Override public T remove(int index) { load(); return super.remove(index); }
+        @Override public boolean remove(Object o) { load(); return super.remove(o); }
+        @Override public void clear() { load(); super.clear(); }
+        @Override public boolean addAll(Collection<? extends T> c) { load(); return super.addAll(c); }
+        @Override public boolean addAll(int index, Collection<? extends T> c) { load(); return super.addAll(index, c); }
+        @Override public boolean removeAll(Collection<?> c) { load(); return super.removeAll(c); }
+        @Override public boolean retainAll(Collection<?> c) { load(); return super.retainAll(c); }
+        @Override public ListIterator<T> listIterator(int index) { load(); return super.listIterator(index); }
+        @Override public ListIterator<T> listIterator() { load(); return super.listIterator(); }
+        @Override public Iterator<T> iterator() { load(); return super.iterator(); }
+        @Override public List<T> subList(int fromIndex, int toIndex) { load(); return super.subList(fromIndex, toIndex); }
+        @Override public void forEach(Consumer<? super T> action) { load(); super.forEach(action); }
+        @Override public Spliterator<T> spliterator() { load(); return super.spliterator(); }
+        @Override public boolean removeIf(Predicate<? super T> filter) { load(); return super.removeIf(filter); }
+        @Override public void replaceAll(UnaryOperator<T> operator) { load(); super.replaceAll(operator); }
+        @Override public void sort(Comparator<? super T> c) { load(); super.sort(c); }
+        @Override public boolean equals(Object o) { load(); return super.equals(o); }
+        @Override public int hashCode() { load(); return super.hashCode(); }
+        @Override public String toString() { load(); return super.toString(); }
+    }
+
+    public long getSpilledCount() {
+        return mSpilled.get();
+    }
+
+    /** Saves of an already spilled list that didn't need writing it again */
+    public long getUnchangedCount() {
+        return mUnchanged.get();
+    }
+
+    public long getRestoredFromMemoryCount() {
+        return mRestoredFromMemory.get();
+    }
+
+    public long getRestoredFromDiskCount() {
+        return mRestoredFromDisk.get();
+    }
+
+    /** Lists restored from disk that were actually accessed (and read) */
+    public long getLoadedCount() {
+        return mLoaded.get();
+    }
+
+    /** Largest saved state bundle size of each screen */
+    public Map<String, Long> getMaxBundleSizes() {
+        Map<String, Long> maxSizes = new HashMap<>();
+        synchronized (mBundleSizes) {
+            for (Map.Entry<String, BundleSizes> entry : mBundleSizes.entrySet()) {
+                maxSizes.put(entry.getKey(), entry.getValue().maxBytes);
+            }
+        }
+        return maxSizes;
+    }
+
+    /** Latest saved state bundle size of a screen (or -1 if it wasn't saved yet) */
+    public long getLastBundleSize(String screen) {
+        synchronized (mBundleSizes) {
+            BundleSizes sizes = mBundleSizes.get(screen);
+            return sizes != null ? sizes.lastBytes : -1;
+        }
+    }
+
+    public String toString() {
+        final Map<String, Long> maxSizes = getMaxBundleSizes();
+        List<String> screens = new ArrayList<>(maxSizes.keySet());
+        Collections.sort(screens, (a, b) -> Long.compare(maxSizes.get(b), maxSizes.get(a)));
+
+        StringBuilder largestBundles = new StringBuilder();
+        for (int i = 0; i < Math.min(screens.size(), 3); i++) {
+            if (i > 0) largestBundles.append(", ");
+            largestBundles.append(String.format(Locale.ENGLISH, "%s %d KB", screens.get(i), maxSizes.get(screens.get(i)) / 1024));
+        }
+
+        return String.format(Locale.ENGLISH, "Saved state: %d lists spilled (%d KB written) / %d unchanged; restored %d from memory / %d from disk (%d read); %d evicted; largest bundles: %s",
+                getSpilledCount(), mBytesWritten.get() / 1024, getUnchangedCount(), getRestoredFromMemoryCount(),
+                getRestoredFromDiskCount(), getLoadedCount(), mEvicted.get(),
+                largestBundles.length() > 0 ? largestBundles.toString() : "-");
+    }
+}
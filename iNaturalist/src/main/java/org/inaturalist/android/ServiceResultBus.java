@@ -0,0 +1,347 @@
+package org.inaturalist.android;
+
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.tinylog.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process channel for handing results (service results, large lists passed between screens) over to activities
+ * as-is - instead of serializing them into intent extras (singleton class).
+ *
+ * Every published result gets its own request ID, which is added to the broadcast reply - so concurrent requests of
+ * the same action don't overwrite each other's results. The latest result of each key stays available for screens
+ * that read it later on (e.g. when resumed); older results are released once delivered, and the total number of
+ * results held is bounded (least recently used ones are evicted first).
+ */
+public class ServiceResultBus {
+    private static final String TAG = "ServiceResultBus";
+
+    // Intent extra (prefix) of the request ID of a result, followed by its key
+    private static final String RESULT_ID_EXTRA = "service_result_id:";
+
+    private static final int MAX_RESULTS = 32;
+    // Superseded results that were never read are released after this long
+    private static final long MAX_UNREAD_AGE_MS = 60 * 1000;
+
+    private static class Result {
+        final long id;
+        final String key;
+        final Object value;
+        final long size;
+        final long publishedAt;
+        boolean read;
+
+        Result(long id, String key, Object value, long size) {
+            this.id = id;
+            this.key = key;
+            this.value = value;
+            this.size = size;
+            this.publishedAt = System.currentTimeMillis();
+        }
+    }
+
+    // Singleton instance
+    private static ServiceResultBus sInstance = null;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // Results by request ID (in access order)
+    private final LinkedHashMap<Long, Result> mResults = new LinkedHashMap<Long, Result>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Result> eldest) {
+            if (size() <= MAX_RESULTS) return false;
+            mEvicted.incrementAndGet();
+            if (eldest.getKey().equals(mLatestIds.get(eldest.getValue().key))) mLatestIds.remove(eldest.getValue().key);
+            return true;
+        }
+    };
+    // Request ID of the latest result of each key
+    private final Map<String, Long> mLatestIds = new HashMap<>();
+    private long mNextId = 1;
+
+    private final AtomicLong mPublished = new AtomicLong();
+    private final AtomicLong mDelivered = new AtomicLong();
+    private final AtomicLong mReleased = new AtomicLong();
+    private final AtomicLong mEvicted = new AtomicLong();
+    // Bytes that would have been serialized (and re-parsed), by the screen receiving the result
+    private final Map<String, AtomicLong> mBytesSavedByScreen = new HashMap<>();
+
+    private ServiceResultBus() {
+    }
+
+    public static synchronized ServiceResultBus getInstance() {
+        if (sInstance == null) {
+            sInstance = new ServiceResultBus();
+        }
+
+        return sInstance;
+    }
+
+    private static String getIdExtra(String key) {
+        return RESULT_ID_EXTRA + key;
+    }
+
+    /**
+     * Publishes a result sent along with a broadcast reply (tagging the reply with the result's request ID)
+     * @param key the result key (usually the reply action)
+     * @return the request ID of the result
+     */
+    public long publish(Intent reply, String key, Object result) {
+        long id = put(key, result);
+        reply.putExtra(getIdExtra(key), id);
+        reply.putExtra(INaturalistService.IS_SHARED_ON_APP, true);
+        return id;
+    }
+
+    /**
+     * Stores a result that isn't sent with a reply (e.g. a list handed over to the next screen) - replacing the
+     * previous result of the same key
+     * @return the request ID of the result
+     */
+    public long put(String key, Object result) {
+        // Estimated on the caller's (usually background) thread
+        long size = estimateSize(result);
+
+        synchronized (this) {
+            long id = mNextId++;
+            Long previousId = mLatestIds.put(key, id);
+            mResults.put(id, new Result(id, key, result, size));
+            mPublished.incrementAndGet();
+
+            if (previousId != null) {
+                Result previous = mResults.get(previousId);
+                // A superseded result that wasn't read yet might still be waiting for delivery (a concurrent request)
+                if ((previous != null) && previous.read) release(previous);
+            }
+
+            releaseUnread();
+            return id;
+        }
+    }
+
+    /**
+     * Returns the result sent with a broadcast reply (by its request ID - or the latest result of the key, if the
+     * reply has none)
+     * @param owner the receiving screen (activity / fragment / one of their inner classes)
+     * @return the result, or null if there's none (already released, or it's not of the expected type)
+     */
+    public <T> T get(Intent reply, String key, Class<T> type, Object owner) {
+        long id = reply != null ? reply.getLongExtra(getIdExtra(key), -1) : -1;
+
+        synchronized (this) {
+            // A reply whose result was already released doesn't get another request's result instead
+            Result result = id > -1 ? mResults.get(id) : getLatest(key);
+            return deliver(result, type, owner, false);
+        }
+    }
+
+    /** Returns the latest result of a key (see get) */
+    public <T> T get(String key, Class<T> type, Object owner) {
+        return get(null, key, type, owner);
+    }
+
+    /** Returns the latest result of a key, and releases it (when there's a single consumer) */
+    public synchronized <T> T take(String key, Class<T> type, Object owner) {
+        return deliver(getLatest(key), type, owner, true);
+    }
+
+    /** Releases all results of a key (once the screen that uses them is done) */
+    public synchronized void release(String key) {
+        Iterator<Result> iterator = mResults.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().key.equals(key)) {
+                iterator.remove();
+                mReleased.incrementAndGet();
+            }
+        }
+        mLatestIds.remove(key);
+    }
+
+    /** Releases all results that were already delivered (e.g. when running low on memory) */
+    public synchronized void trimMemory() {
+        for (Result result : new ArrayList<>(mResults.values())) {
+            if (result.read) release(result);
+        }
+    }
+
+    private Result getLatest(String key) {
+        Long id = mLatestIds.get(key);
+        return id != null ? mResults.get(id) : null;
+    }
+
+    private <T> T deliver(Result result, Class<T> type, Object owner, boolean release) {
+        if ((result == null) || (result.value == null)) {
+            if (release && (result != null)) release(result);
+            return null;
+        }
+
+        if (!type.isInstance(result.value)) {
+            Logger.tag(TAG).error(String.format(Locale.ENGLISH, "Result %s is %s - expected %s",
+                    result.key, result.value.getClass().getSimpleName(), type.getSimpleName()));
+            return null;
+        }
+
+        mDelivered.incrementAndGet();
+        getBytesSavedCounter(getScreenName(owner)).addAndGet(result.size);
+
+        if (release) {
+            release(result);
+        } else if (!result.read) {
+            result.read = true;
+            final long id = result.id;
+            final String key = result.key;
+            // All receivers of the same broadcast get it in the same main thread message - so once they're done, a
+            // superseded result isn't needed anymore
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (ServiceResultBus.this) {
+                        Result delivered = mResults.get(id);
+                        Long latestId = mLatestIds.get(key);
+                        if ((delivered != null) && ((latestId == null) || (latestId != id))) release(delivered);
+                    }
+                }
+            });
+        }
+
+        return type.cast(result.value);
+    }
+
+    private void release(Result result) {
+        if (mResults.remove(result.id) != null) mReleased.incrementAndGet();
+        Long latestId = mLatestIds.get(result.key);
+        if ((latestId != null) && (latestId == result.id)) mLatestIds.remove(result.key);
+    }
+
+    // Releases superseded results that were never read (their receiver is gone)
+    private void releaseUnread() {
+        long now = System.currentTimeMillis();
+        for (Result result : new ArrayList<>(mResults.values())) {
+            Long latestId = mLatestIds.get(result.key);
+            boolean isLatest = (latestId != null) && (latestId == result.id);
+            if (!isLatest && !result.read && (now - result.publishedAt > MAX_UNREAD_AGE_MS)) release(result);
+        }
+    }
+
+    // The top-level class of a screen (so results received by an inner receiver class count for their activity)
+    private static String getScreenName(Object owner) {
+        if (owner == null) return "?";
+        Class<?> cls = owner.getClass();
+        while (cls.getEnclosingClass() != null) cls = cls.getEnclosingClass();
+        return cls.getSimpleName();
+    }
+
+    private synchronized AtomicLong getBytesSavedCounter(String screen) {
+        AtomicLong counter = mBytesSavedByScreen.get(screen);
+        if (counter == null) {
+            counter = new AtomicLong();
+            mBytesSavedByScreen.put(screen, counter);
+        }
+        return counter;
+    }
+
+    /**
+     * Returns the (approximate) number of bytes a result would take when serialized as JSON - which is how results
+     * used to be passed in intent extras
+     */
+    static long estimateSize(Object value) {
+        if (value == null) return 0;
+        if (value instanceof BetterJSONObject) return estimateSize(((BetterJSONObject) value).getJSONObject());
+        if (value instanceof SerializableJSONArray) return estimateSize(((SerializableJSONArray) value).getJSONArray());
+        if (value instanceof String) return ((String) value).length() + 2;
+
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            long size = 2;
+            Iterator<String> keys = object.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                // "key":value,
+                size += key.length() + 4 + estimateSize(object.opt(key));
+            }
+            return size;
+        }
+
+        if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            long size = 2;
+            for (int i = 0; i < array.length(); i++) {
+                size += estimateSize(array.opt(i)) + 1;
+            }
+            return size;
+        }
+
+        if (value instanceof Collection) {
+            long size = 2;
+            for (Object item : (Collection<?>) value) {
+                size += estimateSize(item) + 1;
+            }
+            return size;
+        }
+
+        if ((value instanceof Number) || (value instanceof Boolean)) return value.toString().length();
+
+        // Other objects (e.g. Observation) - not counted
+        return 0;
+    }
+
+    public long getPublishedCount() {
+        return mPublished.get();
+    }
+
+    public long getDeliveredCount() {
+        return mDelivered.get();
+    }
+
+    public synchronized int getHeldCount() {
+        return mResults.size();
+    }
+
+    /** Bytes no longer serialized into intent extras (and re-parsed), by screen */
+    public synchronized Map<String, Long> getBytesSavedByScreen() {
+        Map<String, Long> bytesSaved = new HashMap<>();
+        for (Map.Entry<String, AtomicLong> entry : mBytesSavedByScreen.entrySet()) {
+            bytesSaved.put(entry.getKey(), entry.getValue().get());
+        }
+        return bytesSaved;
+    }
+
+    public long getBytesSaved() {
+        long total = 0;
+        for (long bytes : getBytesSavedByScreen().values()) {
+            total += bytes;
+        }
+        return total;
+    }
+
+    public String toString() {
+        final Map<String, Long> bytesSaved = getBytesSavedByScreen();
+        List<String> screens = new ArrayList<>(bytesSaved.keySet());
+        Collections.sort(screens, (a, b) -> Long.compare(bytesSaved.get(b), bytesSaved.get(a)));
+
+        StringBuilder topScreens = new StringBuilder();
+        for (int i = 0; i < Math.min(screens.size(), 3); i++) {
+            if (i > 0) topScreens.append(", ");
+            topScreens.append(String.format(Locale.ENGLISH, "%s %d KB", screens.get(i), bytesSaved.get(screens.get(i)) / 1024));
+        }
+
+        return String.format(Locale.ENGLISH, "Service results: %d published / %d delivered; %d held; %d released / %d evicted; %d KB not serialized (%s)",
+                getPublishedCount(), getDeliveredCount(), getHeldCount(), mReleased.get(), mEvicted.get(), getBytesSaved() / 1024,
+                topScreens.length() > 0 ? topScreens.toString() : "-");
+    }
+}
@@ -0,0 +1,194 @@
+package org.inaturalist.android;
+
+import org.tinylog.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * App-wide scheduler (singleton class) for the service's work items (intents). Instead of a new thread per intent,
+ * work runs on one of several lanes:
+ *  - Interactive: a bounded pool for (mostly read-only) API calls that screens are waiting on.
+ *  - Write: a single thread, so the user's changes (comments, IDs, favorites, etc.) are sent in the order they were made.
+ *  - Sync: a single thread for syncing and anything else that merges downloaded observations into the local DB.
+ * Within each lane, foreground work is always picked before background work (and FIFO within the same priority).
+ */
+public class ServiceScheduler {
+    private static final String TAG = "ServiceScheduler";
+
+    private static final int INTERACTIVE_THREADS = 4;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    // Log work items that waited in queue for longer than this
+    private static final long SLOW_WAIT_MILLIS = 2000;
+
+    public enum Lane {
+        INTERACTIVE,
+        WRITE,
+        SYNC
+    }
+
+    public enum Priority {
+        // Someone is looking at the screen waiting for this
+        FOREGROUND,
+        // Prefetches, periodic refreshes, etc.
+        BACKGROUND
+    }
+
+    // Singleton instance
+    private static ServiceScheduler sInstance = null;
+
+    private final LaneExecutor[] mLanes = new LaneExecutor[Lane.values().length];
+    private final AtomicLong mSequence = new AtomicLong();
+
+    private ServiceScheduler() {
+        mLanes[Lane.INTERACTIVE.ordinal()] = new LaneExecutor(Lane.INTERACTIVE, INTERACTIVE_THREADS);
+        mLanes[Lane.WRITE.ordinal()] = new LaneExecutor(Lane.WRITE, 1);
+        mLanes[Lane.SYNC.ordinal()] = new LaneExecutor(Lane.SYNC, 1);
+    }
+
+    public static synchronized ServiceScheduler getInstance() {
+        if (sInstance == null) {
+            sInstance = new ServiceScheduler();
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * Queues a work item
+     * @param name used for logging (e.g. the intent action)
+     */
+    public void submit(String name, Lane lane, Priority priority, Runnable runnable) {
+        LaneExecutor executor = mLanes[lane.ordinal()];
+        executor.execute(new WorkItem(executor, name, priority, mSequence.incrementAndGet(), runnable));
+    }
+
+    /** Returns the current stats of all lanes */
+    public List<LaneStats> getStats() {
+        List<LaneStats> stats = new ArrayList<>();
+        for (LaneExecutor lane : mLanes) {
+            stats.add(lane.getStats());
+        }
+        return stats;
+    }
+
+    public static class LaneStats {
+        public final Lane lane;
+        // Number of work items waiting to run
+        public final int queueDepth;
+        public final int running;
+        public final long completed;
+        public final long averageWaitMillis;
+        public final long maxWaitMillis;
+        public final long averageRunMillis;
+
+        LaneStats(Lane lane, int queueDepth, int running, long completed, long averageWaitMillis, long maxWaitMillis, long averageRunMillis) {
+            this.lane = lane;
+            this.queueDepth = queueDepth;
+            this.running = running;
+            this.completed = completed;
+            this.averageWaitMillis = averageWaitMillis;
+            this.maxWaitMillis = maxWaitMillis;
+            this.averageRunMillis = averageRunMillis;
+        }
+
+        public String toString() {
+            return String.format(Locale.ENGLISH, "%s: %d queued, %d running, %d done; wait %d ms avg / %d ms max; run %d ms avg",
+                    lane.toString().toLowerCase(Locale.ENGLISH), queueDepth, running, completed, averageWaitMillis, maxWaitMillis, averageRunMillis);
+        }
+    }
+
+    private static class LaneExecutor extends ThreadPoolExecutor {
+        private final Lane mLane;
+
+        private final AtomicInteger mRunning = new AtomicInteger();
+        private final AtomicLong mCompleted = new AtomicLong();
+        private final AtomicLong mTotalWaitMillis = new AtomicLong();
+        private final AtomicLong mMaxWaitMillis = new AtomicLong();
+        private final AtomicLong mTotalRunMillis = new AtomicLong();
+
+        LaneExecutor(final Lane lane, int threadCount) {
+            super(threadCount, threadCount, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    return new Thread(runnable, TAG + "-" + lane.toString().toLowerCase(Locale.ENGLISH) + "-" + mCount.incrementAndGet());
+                }
+            });
+            mLane = lane;
+            allowCoreThreadTimeOut(true);
+        }
+
+        LaneStats getStats() {
+            long completed = mCompleted.get();
+            return new LaneStats(mLane, getQueue().size(), mRunning.get(), completed,
+                    completed > 0 ? mTotalWaitMillis.get() / completed : 0, mMaxWaitMillis.get(),
+                    completed > 0 ? mTotalRunMillis.get() / completed : 0);
+        }
+
+        void onStarted(WorkItem item, long waitMillis) {
+            mRunning.incrementAndGet();
+            mTotalWaitMillis.addAndGet(waitMillis);
+
+            long max;
+            while (waitMillis > (max = mMaxWaitMillis.get())) {
+                if (mMaxWaitMillis.compareAndSet(max, waitMillis)) break;
+            }
+
+            if (waitMillis > SLOW_WAIT_MILLIS) {
+                Logger.tag(TAG).info(String.format(Locale.ENGLISH, "%s waited %d ms in queue - %s", item.mName, waitMillis, getStats()));
+            }
+        }
+
+        void onFinished(long runMillis) {
+            mRunning.decrementAndGet();
+            mCompleted.incrementAndGet();
+            mTotalRunMillis.addAndGet(runMillis);
+        }
+    }
+
+    private static class WorkItem implements Runnable, Comparable<WorkItem> {
+        private final LaneExecutor mLane;
+        private final String mName;
+        private final Priority mPriority;
+        private final long mSequence;
+        private final Runnable mRunnable;
+        private final long mQueuedAt = System.currentTimeMillis();
+
+        WorkItem(LaneExecutor lane, String name, Priority priority, long sequence, Runnable runnable) {
+            mLane = lane;
+            mName = name;
+            mPriority = priority;
+            mSequence = sequence;
+            mRunnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            long startTime = System.currentTimeMillis();
+            mLane.onStarted(this, startTime - mQueuedAt);
+
+            try {
+                mRunnable.run();
+            } finally {
+                mLane.onFinished(System.currentTimeMillis() - startTime);
+            }
+        }
+
+        @Override
+        public int compareTo(WorkItem other) {
+            if (mPriority != other.mPriority) {
+                return mPriority.compareTo(other.mPriority);
+            }
+            return Long.compare(mSequence, other.mSequence);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package org.inaturalist.android;
+
+import android.content.Context;
+import android.net.Uri;
+
+import com.squareup.picasso.Downloader;
+import com.squareup.picasso.NetworkPolicy;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.tinylog.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Cache;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * App-wide HTTP engine (singleton class) - a single OkHttp client whose connection pool, TLS sessions,
+ * HTTP/2 connections and dispatcher are shared by all API calls and image downloads.
+ */
+public class SharedHttpClient {
+    private static final String TAG = "SharedHttpClient";
+
+    public static final long CONNECTION_TIMEOUT_SECONDS = 10;
+    public static final long READ_WRITE_TIMEOUT_SECONDS = 40;
+
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final int MAX_REQUESTS = 32;
+    private static final int MAX_REQUESTS_PER_HOST = 6;
+
+    // Singleton instance
+    private static SharedHttpClient sInstance = null;
+
+    private final OkHttpClient mClient;
+
+    // Since the dispatcher only limits asynchronous calls, synchronous calls (which is what the service uses)
+    // are limited per host using these semaphores
+    private final Map<String, Semaphore> mHostPermits = new HashMap<>();
+
+    private final AtomicLong mConnectionsOpened = new AtomicLong();
+    private final AtomicLong mConnectionsAcquired = new AtomicLong();
+    private final AtomicLong mBytesSent = new AtomicLong();
+    private final AtomicLong mBytesReceived = new AtomicLong();
+    private final AtomicLong mRequestCount = new AtomicLong();
+
+    private SharedHttpClient() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(MAX_REQUESTS);
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+
+        mClient = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .dispatcher(dispatcher)
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .followRedirects(true)
+                .followSslRedirects(true)
+                .connectTimeout(CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .writeTimeout(READ_WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .readTimeout(READ_WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .addInterceptor(new HostConcurrencyInterceptor())
+                .eventListener(new StatsEventListener())
+                .build();
+    }
+
+    public static synchronized SharedHttpClient getInstance() {
+        if (sInstance == null) {
+            sInstance = new SharedHttpClient();
+        }
+
+        return sInstance;
+    }
+
+    /** Returns the shared client - use newBuilder() on it for per-call settings (shares the same pool and dispatcher) */
+    public OkHttpClient getClient() {
+        return mClient;
+    }
+
+    public long getConnectionsOpened() {
+        return mConnectionsOpened.get();
+    }
+
+    public long getConnectionsReused() {
+        return Math.max(0, mConnectionsAcquired.get() - mConnectionsOpened.get());
+    }
+
+    public long getBytesSent() {
+        return mBytesSent.get();
+    }
+
+    public long getBytesReceived() {
+        return mBytesReceived.get();
+    }
+
+    public long getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    public JSONObject getStats() {
+        JSONObject stats = new JSONObject();
+        try {
+            stats.put("requests", getRequestCount());
+            stats.put("connections_opened", getConnectionsOpened());
+            stats.put("connections_reused", getConnectionsReused());
+            stats.put("bytes_sent", getBytesSent());
+            stats.put("bytes_received", getBytesReceived());
+            stats.put("idle_connections", mClient.connectionPool().idleConnectionCount());
+            stats.put("pooled_connections", mClient.connectionPool().connectionCount());
+        } catch (JSONException e) {
+            Logger.tag(TAG).error(e);
+        }
+        return stats;
+    }
+
+    private synchronized Semaphore getHostPermits(String host) {
+        Semaphore permits = mHostPermits.get(host);
+        if (permits == null) {
+            permits = new Semaphore(MAX_REQUESTS_PER_HOST, true);
+            mHostPermits.put(host, permits);
+        }
+        return permits;
+    }
+
+    // Holds a per-host permit from the time a call starts until its response body is closed (i.e. until the
+    // download is actually done - not just until the response headers arrive)
+    private class HostConcurrencyInterceptor implements Interceptor {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            String host = chain.request().url().host();
+            Semaphore permits = getHostPermits(host);
+
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(READ_WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IOException("Interrupted while waiting for a connection to " + host);
+            }
+
+            if (!acquired) {
+                // Fail the call (it wasn't sent) instead of exceeding the host's limit
+                Logger.tag(TAG).warn("Timed out waiting for a connection to " + host);
+                throw new IOException("Timed out waiting for a connection to " + host);
+            }
+
+            Response response;
+            try {
+                response = chain.proceed(chain.request());
+            } catch (IOException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+
+            ResponseBody body = response.body();
+            if (body == null) {
+                permits.release();
+                return response;
+            }
+
+            return response.newBuilder().body(new PermitReleasingBody(body, permits)).build();
+        }
+    }
+
+    // Response body that releases its host permit once closed
+    private static class PermitReleasingBody extends ResponseBody {
+        private final ResponseBody mBody;
+        private final BufferedSource mSource;
+
+        PermitReleasingBody(ResponseBody body, final Semaphore permits) {
+            mBody = body;
+            final AtomicBoolean released = new AtomicBoolean();
+            mSource = Okio.buffer(new ForwardingSource(body.source()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        if (released.compareAndSet(false, true)) permits.release();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public MediaType contentType() {
+            return mBody.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return mBody.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return mSource;
+        }
+    }
+
+    private class StatsEventListener extends EventListener {
+        @Override
+        public void callStart(Call call) {
+            mRequestCount.incrementAndGet();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            mConnectionsOpened.incrementAndGet();
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            mConnectionsAcquired.incrementAndGet();
+        }
+
+        @Override
+        public void requestHeadersEnd(Call call, Request request) {
+            mBytesSent.addAndGet(request.headers().byteCount());
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            mBytesSent.addAndGet(byteCount);
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            mBytesReceived.addAndGet(response.headers().byteCount());
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            mBytesReceived.addAndGet(byteCount);
+        }
+    }
+
+    /** Picasso downloader that goes through the shared client (instead of Picasso's own HttpURLConnection) */
+    public static class PicassoDownloader implements Downloader {
+        // Used when the given client has no disk cache (Picasso's own downloaders always had one)
+        private static final String DISK_CACHE_DIRECTORY = "picasso-cache";
+        private static final long DISK_CACHE_SIZE_BYTES = 50 * 1024 * 1024;
+
+        private final OkHttpClient mClient;
+
+        /** @param client a client derived from the shared one (e.g. the image cache's client, with its disk cache) */
+        public PicassoDownloader(Context context, OkHttpClient client) {
+            if (client.cache() == null) {
+                client = client.newBuilder()
+                        .cache(new Cache(new File(context.getApplicationContext().getCacheDir(), DISK_CACHE_DIRECTORY), DISK_CACHE_SIZE_BYTES))
+                        .build();
+            }
+            mClient = client;
+        }
+
+        @Override
+        public Response load(Uri uri, int networkPolicy) throws IOException {
+            okhttp3.CacheControl cacheControl = null;
+            if (NetworkPolicy.isOfflineOnly(networkPolicy)) {
+                cacheControl = okhttp3.CacheControl.FORCE_CACHE;
+            } else if (!NetworkPolicy.shouldReadFromDiskCache(networkPolicy) || !NetworkPolicy.shouldWriteToDiskCache(networkPolicy)) {
+                cacheControl = new okhttp3.CacheControl.Builder().noCache().noStore().build();
+            }
+
+            Request.Builder builder = new Request.Builder().url(uri.toString());
+            if (cacheControl != null) builder.cacheControl(cacheControl);
+
+            okhttp3.Response response = mClient.newCall(builder.build()).execute();
+            int responseCode = response.code();
+            if (responseCode >= 300) {
+                response.close();
+                throw new ResponseException(responseCode + " " + response.message(), networkPolicy, responseCode);
+            }
+
+            ResponseBody body = response.body();
+            return new Response(body.byteStream(), response.cacheResponse() != null, body.contentLength());
+        }
+
+        @Override
+        public void shutdown() {
+            // Shared client - nothing to shut down
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.inaturalist.android;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Pull-parses a JSON API response directly from its body stream - the elements of its (potentially large) results
+ * array are decoded and handed over one at a time, so neither the raw response string nor the entire results
+ * array are ever held in memory.
+ */
+public class StreamingJsonResponse {
+
+    /** Receives the elements of the results array, one at a time, as soon as each one is decoded */
+    public interface ResultHandler {
+        void onResult(JSONObject result) throws JSONException;
+    }
+
+    /**
+     * Reads a response body
+     * @param reader the response body
+     * @param resultsName name of the results array (in case the response is a JSON object)
+     * @param handler receives the elements of the results array (or of the response itself, if it's a JSON array)
+     * @return the response object, without the results array (e.g. total_results, page, per_page or errors)
+     */
+    public static JSONObject read(Reader reader, String resultsName, ResultHandler handler) throws IOException, JSONException {
+        JsonReader jsonReader = new JsonReader(reader);
+        JSONObject response = new JSONObject();
+
+        try {
+            if (jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+                readResults(jsonReader, handler);
+                return response;
+            }
+
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                String name = jsonReader.nextName();
+                if (name.equals(resultsName) && (jsonReader.peek() == JsonToken.BEGIN_ARRAY)) {
+                    readResults(jsonReader, handler);
+                } else {
+                    response.put(name, readValue(jsonReader));
+                }
+            }
+            jsonReader.endObject();
+        } finally {
+            jsonReader.close();
+        }
+
+        return response;
+    }
+
+    private static void readResults(JsonReader reader, ResultHandler handler) throws IOException, JSONException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            Object value = readValue(reader);
+            if (value instanceof JSONObject) {
+                handler.onResult((JSONObject) value);
+            }
+        }
+        reader.endArray();
+    }
+
+    private static Object readValue(JsonReader reader) throws IOException, JSONException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                JSONObject object = new JSONObject();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    object.put(reader.nextName(), readValue(reader));
+                }
+                reader.endObject();
+                return object;
+
+            case BEGIN_ARRAY:
+                JSONArray array = new JSONArray();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    array.put(readValue(reader));
+                }
+                reader.endArray();
+                return array;
+
+            case NUMBER:
+                return parseNumber(reader.nextString());
+
+            case BOOLEAN:
+                return reader.nextBoolean();
+
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+
+            case STRING:
+            default:
+                return reader.nextString();
+        }
+    }
+
+    // Same number types as org.json's own parser (Integer, then Long, then Double)
+    private static Object parseNumber(String value) {
+        if ((value.indexOf('.') == -1) && (value.indexOf('e') == -1) && (value.indexOf('E') == -1)) {
+            try {
+                long longValue = Long.parseLong(value);
+                if ((longValue <= Integer.MAX_VALUE) && (longValue >= Integer.MIN_VALUE)) {
+                    return (int) longValue;
+                }
+                return longValue;
+            } catch (NumberFormatException e) {
+                // Fall through to a double
+            }
+        }
+
+        return Double.valueOf(value);
+    }
+}
@@ -0,0 +1,87 @@
+package org.inaturalist.android;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers which pages of downloaded observations were recently synced, so the same page won't be merged twice.
+ * Each page is identified by a 64-bit digest of its observation IDs and updated at times (instead of its full
+ * JSON), and only the most recently used digests are kept.
+ */
+public class SyncedPagesCache {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Map<Long, Boolean> mDigests;
+    private long mHits = 0;
+    private long mMisses = 0;
+
+    public SyncedPagesCache(final int maxSize) {
+        mDigests = new LinkedHashMap<Long, Boolean>(maxSize + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /** Incrementally calculates the digest of a single page (64-bit FNV-1a) */
+    public static class Digest {
+        private long mValue = FNV_OFFSET_BASIS;
+
+        public Digest add(int value) {
+            for (int i = 0; i < 4; i++) {
+                mValue ^= (value >>> (i * 8)) & 0xff;
+                mValue *= FNV_PRIME;
+            }
+            return this;
+        }
+
+        public Digest add(String value) {
+            if (value == null) return add(0);
+
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                mValue ^= c & 0xff;
+                mValue *= FNV_PRIME;
+                mValue ^= c >>> 8;
+                mValue *= FNV_PRIME;
+            }
+            // Separator, so that consecutive values won't run into each other
+            mValue ^= 0xff;
+            mValue *= FNV_PRIME;
+            return this;
+        }
+
+        public long getValue() {
+            return mValue;
+        }
+    }
+
+    /**
+     * Marks the page as synced
+     * @return false if the page was already synced recently
+     */
+    public synchronized boolean add(long digest) {
+        if (mDigests.get(digest) != null) {
+            mHits++;
+            return false;
+        }
+
+        mMisses++;
+        mDigests.put(digest, Boolean.TRUE);
+        return true;
+    }
+
+    public synchronized long getHits() {
+        return mHits;
+    }
+
+    public synchronized long getMisses() {
+        return mMisses;
+    }
+
+    public synchronized int size() {
+        return mDigests.size();
+    }
+}
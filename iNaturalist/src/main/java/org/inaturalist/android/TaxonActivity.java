@@ -56,7 +56,6 @@ import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.TileOverlay;
 import com.google.android.gms.maps.model.TileOverlayOptions;
 import com.google.android.gms.maps.model.TileProvider;
-import com.google.android.gms.maps.model.UrlTileProvider;
 import com.livefront.bridge.Bridge;
 import com.squareup.picasso.Callback;
 import com.squareup.picasso.Picasso;
@@ -66,8 +65,6 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 import org.tinylog.Logger;
 
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -593,7 +590,7 @@ public class TaxonActivity extends AppCompatActivity implements TaxonomyAdapter.
             BetterJSONObject taxon;
 
             if (isSharedOnApp) {
-                taxon = (BetterJSONObject) mApp.getServiceResult(intent.getAction());
+                taxon = ServiceResultBus.getInstance().get(intent, intent.getAction(), BetterJSONObject.class, this);
             } else {
                 taxon = (BetterJSONObject) intent.getSerializableExtra(INaturalistService.TAXON_RESULT);
             }
@@ -693,19 +690,9 @@ public class TaxonActivity extends AppCompatActivity implements TaxonomyAdapter.
                 mMap.getUiSettings().setZoomControlsEnabled(false);
 
                 // Set the tile overlay (for the taxon's observations map)
-                TileProvider tileProvider = new UrlTileProvider(512, 512) {
-                    @Override
-                    public URL getTileUrl(int x, int y, int zoom) {
-
-                        String s = String.format(Locale.ENGLISH, INaturalistService.API_HOST + "/grid/%d/%d/%d.png?taxon_id=%d&verifiable=true",
-                                zoom, x, y, mTaxon.getInt("id"));
-                        try {
-                            return new URL(s);
-                        } catch (MalformedURLException e) {
-                            throw new AssertionError(e);
-                        }
-                    }
-                };
+                TileProvider tileProvider = new CachingTileProvider(TaxonActivity.this, 512, (x, y, zoom) ->
+                        String.format(Locale.ENGLISH, INaturalistService.API_HOST + "/grid/%d/%d/%d.png?taxon_id=%d&verifiable=true",
+                                zoom, x, y, mTaxon.getInt("id")));
 
                 TileOverlay tileOverlay = mMap.addTileOverlay(new TileOverlayOptions().tileProvider(tileProvider));
 
@@ -23,11 +23,8 @@ import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.TileOverlay;
 import com.google.android.gms.maps.model.TileOverlayOptions;
 import com.google.android.gms.maps.model.TileProvider;
-import com.google.android.gms.maps.model.UrlTileProvider;
 import com.livefront.bridge.Bridge;
 
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.util.Locale;
 
 public class TaxonMapActivity extends AppCompatActivity {
@@ -108,19 +105,9 @@ public class TaxonMapActivity extends AppCompatActivity {
                 mMap.setMapType(GoogleMap.MAP_TYPE_NORMAL);
 
                 // Set the tile overlay (for the taxon's observations map)
-                TileProvider tileProvider = new UrlTileProvider(256, 256) {
-                    @Override
-                    public URL getTileUrl(int x, int y, int zoom) {
-
-                        String s = String.format(Locale.ENGLISH, INaturalistService.API_HOST + "/grid/%d/%d/%d.png?taxon_id=%d&verifiable=true",
-                                zoom, x, y, mTaxonId);
-                        try {
-                            return new URL(s);
-                        } catch (MalformedURLException e) {
-                            throw new AssertionError(e);
-                        }
-                    }
-                };
+                TileProvider tileProvider = new CachingTileProvider(TaxonMapActivity.this, 256, (x, y, zoom) ->
+                        String.format(Locale.ENGLISH, INaturalistService.API_HOST + "/grid/%d/%d/%d.png?taxon_id=%d&verifiable=true",
+                                zoom, x, y, mTaxonId));
 
                 TileOverlay tileOverlay = mMap.addTileOverlay(new TileOverlayOptions().tileProvider(tileProvider));
 
@@ -174,7 +174,7 @@ public class TaxonSuggestionsActivity extends AppCompatActivity {
             BetterJSONObject resultsObject;
             SerializableJSONArray resultsJSON;
 
-            resultsObject = (BetterJSONObject) mApp.getServiceResult(intent.getAction());
+            resultsObject = ServiceResultBus.getInstance().get(intent, intent.getAction(), BetterJSONObject.class, this);
 
             JSONArray results = null;
             int totalResults = 0;
@@ -232,7 +232,7 @@ public class TaxonSuggestionsActivity extends AppCompatActivity {
                 return;
             }
 
-            BetterJSONObject resultsObject = (BetterJSONObject) intent.getSerializableExtra(INaturalistService.TAXON_SUGGESTIONS);
+            BetterJSONObject resultsObject = ServiceResultBus.getInstance().get(intent, INaturalistService.ACTION_GET_TAXON_SUGGESTIONS_RESULT, BetterJSONObject.class, this);
 
             if (resultsObject == null) {
                 return;
@@ -1016,7 +1016,7 @@ public class TaxonSuggestionsActivity extends AppCompatActivity {
             BetterJSONObject taxon;
 
             if (isSharedOnApp) {
-                taxon = (BetterJSONObject) mApp.getServiceResult(intent.getAction());
+                taxon = ServiceResultBus.getInstance().get(intent, intent.getAction(), BetterJSONObject.class, this);
             } else {
                 taxon = (BetterJSONObject) intent.getSerializableExtra(INaturalistService.TAXON_RESULT);
             }
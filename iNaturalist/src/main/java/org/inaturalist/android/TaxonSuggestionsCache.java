@@ -0,0 +1,314 @@
+package org.inaturalist.android;
+
+import android.content.Context;
+import android.util.LruCache;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.tinylog.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * On-disk cache of taxon (vision) suggestions (singleton class).
+ *
+ * Local photos are identified by a hash of their content, and their 640px query rendition (the resized image that
+ * gets uploaded to the suggestions endpoint) is kept next to the results - so paging through results, or reopening
+ * the suggestions screen for the same photo, doesn't re-encode it. Results are keyed by the photo plus the rest of
+ * the query (rounded coordinates, date, place, taxon filter, source, page and locale), and kept for a limited time.
+ * The total size of the cache is kept under a byte budget, by evicting the least recently used files.
+ */
+public class TaxonSuggestionsCache {
+    private static final String TAG = "TaxonSuggestionsCache";
+
+    private static final String CACHE_DIRECTORY = "taxon_suggestions";
+    private static final String RESULTS_EXTENSION = ".json";
+    private static final String RENDITION_EXTENSION = ".jpg";
+
+    // Max dimensions of the query image
+    private static final int QUERY_IMAGE_SIZE = 640;
+
+    private static final long HOUR = 60 * 60 * 1000;
+    private static final long RESULTS_TTL = 24 * HOUR;
+    private static final long RENDITION_TTL = 7 * 24 * HOUR;
+
+    private static final long MAX_SIZE_BYTES = 16 * 1024 * 1024;
+    // When over budget, evict files until the total size is down to this
+    private static final long EVICT_TO_BYTES = 12 * 1024 * 1024;
+
+    // Coordinates are rounded to ~1km when used as part of the key
+    private static final String COORDINATE_FORMAT = "%.2f";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Singleton instance
+    private static TaxonSuggestionsCache sInstance = null;
+
+    private final Context mContext;
+    private final File mDirectory;
+
+    // Content hashes of photos, by path + last modified + size (so an unchanged photo isn't hashed again)
+    private final LruCache<String, String> mPhotoHashes = new LruCache<>(64);
+
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+    private final AtomicLong mUploadsSaved = new AtomicLong();
+    private final AtomicLong mRenditionsReused = new AtomicLong();
+    private final AtomicLong mRenditionsCreated = new AtomicLong();
+    private final AtomicLong mEvicted = new AtomicLong();
+
+    private TaxonSuggestionsCache(Context context) {
+        mContext = context;
+        mDirectory = new File(context.getCacheDir(), CACHE_DIRECTORY);
+        mDirectory.mkdirs();
+    }
+
+    public static synchronized TaxonSuggestionsCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new TaxonSuggestionsCache(context.getApplicationContext());
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * Returns the hash of a local photo's content
+     * @return the hash (hex string), or null if the photo couldn't be read
+     */
+    public String getPhotoHash(String photoFilename) {
+        File file = new File(photoFilename);
+        String key = photoFilename + ":" + file.lastModified() + ":" + file.length();
+        String hash = mPhotoHashes.get(key);
+        if (hash != null) return hash;
+
+        InputStream is = null;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            is = new FileInputStream(file);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, count);
+            }
+            hash = toHex(digest.digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            Logger.tag(TAG).error(e);
+            return null;
+        } finally {
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+
+        mPhotoHashes.put(key, hash);
+        return hash;
+    }
+
+    /**
+     * Returns the query image of a local photo (resized to 640px max) - creating it if it's not cached yet
+     * @param photoHash the content hash of the photo (see getPhotoHash)
+     * @return the query image filename, or null if the photo couldn't be resized
+     */
+    public synchronized String getQueryImage(String photoFilename, String photoHash) {
+        File rendition = new File(mDirectory, photoHash + RENDITION_EXTENSION);
+        if (rendition.exists() && isFresh(rendition, RENDITION_TTL)) {
+            rendition.setLastModified(System.currentTimeMillis());
+            mRenditionsReused.incrementAndGet();
+            return rendition.getAbsolutePath();
+        }
+
+        // Not using Lanczos
+        String resizedFilename = ImageUtils.resizeImage(mContext, photoFilename, null, QUERY_IMAGE_SIZE, true);
+        if (resizedFilename == null) return null;
+
+        File resizedFile = new File(resizedFilename);
+        if (!resizedFile.renameTo(rendition)) {
+            try {
+                // Different file system
+                FileUtils.copyFile(resizedFile, rendition);
+            } catch (IOException e) {
+                Logger.tag(TAG).error(e);
+                rendition.delete();
+                return resizedFilename;
+            }
+            resizedFile.delete();
+        }
+
+        mRenditionsCreated.incrementAndGet();
+        trim();
+
+        return rendition.getAbsolutePath();
+    }
+
+    /**
+     * Returns the cache key of a suggestions query
+     * @param photoKey the content hash of a local photo, or the URL of an online one (null for non-visual queries)
+     */
+    public static String getKey(String photoKey, Double latitude, Double longitude, Timestamp observedOn, String suggestionSource,
+                                Integer placeId, Integer taxonId, Double placeLat, Double placeLng, Integer limit, Integer page, String locale) {
+        String query = String.format(Locale.ENGLISH, "%s|%s|%s|%s|%s|%s|%s|%s|%s|%s|%s|%s",
+                photoKey, roundCoordinate(latitude), roundCoordinate(longitude),
+                observedOn != null ? new SimpleDateFormat("yyyy-MM-dd", Locale.ENGLISH).format(observedOn) : null,
+                suggestionSource, placeId, taxonId, roundCoordinate(placeLat), roundCoordinate(placeLng), limit, page, locale);
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return toHex(digest.digest(query.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            Logger.tag(TAG).error(e);
+            return String.valueOf(query.hashCode());
+        }
+    }
+
+    private static String roundCoordinate(Double value) {
+        return value != null ? String.format(Locale.ENGLISH, COORDINATE_FORMAT, value) : null;
+    }
+
+    /**
+     * Returns cached suggestion results
+     * @param isLocalPhoto whether the query is for a local photo (i.e. a cache hit saves uploading it)
+     * @return the results, or null if not cached (or expired)
+     */
+    public BetterJSONObject getResults(String key, boolean isLocalPhoto) {
+        File file = new File(mDirectory, key + RESULTS_EXTENSION);
+        if (!file.exists() || !isFresh(file, RESULTS_TTL)) {
+            mMisses.incrementAndGet();
+            return null;
+        }
+
+        InputStream is = null;
+        try {
+            is = new FileInputStream(file);
+            ByteArrayOutputStream os = new ByteArrayOutputStream((int) file.length());
+            FileUtils.copyStreamToStream(is, os);
+            BetterJSONObject results = new BetterJSONObject(new JSONObject(new String(os.toByteArray(), StandardCharsets.UTF_8)));
+
+            mHits.incrementAndGet();
+            if (isLocalPhoto) mUploadsSaved.incrementAndGet();
+            return results;
+        } catch (IOException | JSONException e) {
+            Logger.tag(TAG).error(e);
+            file.delete();
+            mMisses.incrementAndGet();
+            return null;
+        } finally {
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    public void putResults(String key, BetterJSONObject results) {
+        if (results == null) return;
+
+        File file = new File(mDirectory, key + RESULTS_EXTENSION);
+        File tempFile = new File(mDirectory, key + RESULTS_EXTENSION + ".tmp");
+        OutputStream os = null;
+
+        try {
+            os = new FileOutputStream(tempFile);
+            os.write(results.getJSONObject().toString().getBytes(StandardCharsets.UTF_8));
+            os.close();
+            os = null;
+
+            if (!tempFile.renameTo(file)) {
+                tempFile.delete();
+            }
+        } catch (IOException e) {
+            Logger.tag(TAG).error(e);
+            tempFile.delete();
+        } finally {
+            if (os != null) {
+                try {
+                    os.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+
+        trim();
+    }
+
+    private static boolean isFresh(File file, long ttl) {
+        return System.currentTimeMillis() - file.lastModified() < ttl;
+    }
+
+    private synchronized void trim() {
+        mEvicted.addAndGet(DiskCacheTrimmer.trim(mDirectory,
+                file -> file.getName().endsWith(RESULTS_EXTENSION) ? RESULTS_TTL : RENDITION_TTL, MAX_SIZE_BYTES, EVICT_TO_BYTES));
+    }
+
+    /** Removes all cached suggestions and query images */
+    public synchronized void clear() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    public long getHitCount() {
+        return mHits.get();
+    }
+
+    public long getMissCount() {
+        return mMisses.get();
+    }
+
+    /** Local photo queries served from the cache (without re-uploading the photo) */
+    public long getUploadsSaved() {
+        return mUploadsSaved.get();
+    }
+
+    public long getRenditionsReused() {
+        return mRenditionsReused.get();
+    }
+
+    public long getRenditionsCreated() {
+        return mRenditionsCreated.get();
+    }
+
+    private long getSize() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) return 0;
+
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        return total;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(String.format(Locale.ENGLISH, "%02x", b & 0xFF));
+        }
+        return hex.toString();
+    }
+
+    public String toString() {
+        return String.format(Locale.ENGLISH, "Taxon suggestions: %d hits / %d misses; %d uploads saved; query images: %d reused / %d created; %d evicted; %d KB used",
+                getHitCount(), getMissCount(), getUploadsSaved(), getRenditionsReused(), getRenditionsCreated(), mEvicted.get(),
+                getSize() / 1024);
+    }
+}
@@ -14,7 +14,6 @@ import com.livefront.bridge.Bridge;
 
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
 import androidx.viewpager.widget.PagerAdapter;
 import androidx.viewpager.widget.ViewPager.LayoutParams;
@@ -141,7 +140,7 @@ public class TaxonTagPhotosViewer extends AppCompatActivity {
 
             if (mGuideXml.isGuideDownloaded()) {
                 // Show offline photo
-                Bitmap bitmap = BitmapFactory.decodeFile(imageUrl);
+                Bitmap bitmap = mGuideXml.decodeOfflinePhoto(imageUrl);
                 imageView.setImageBitmap(bitmap);
 
                 loading.setVisibility(View.INVISIBLE);
@@ -0,0 +1,275 @@
+package org.inaturalist.android;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import org.tinylog.Logger;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent store of map tiles (singleton class) - an MBTiles-style SQLite file, where each tile is keyed by its
+ * layer (tile server path + normalized filter query) and zoom/column/row. The total size of the stored tiles is kept
+ * under a byte budget, by evicting the least recently accessed tiles.
+ */
+public class TileCache {
+    private static final String TAG = "TileCache";
+
+    private static final String DATABASE_NAME = "tiles.mbtiles";
+    private static final int DATABASE_VERSION = 1;
+    private static final String TABLE_NAME = "tiles";
+
+    private static final long MAX_SIZE_BYTES = 32 * 1024 * 1024;
+    // When over budget, evict tiles until the total size is down to this
+    private static final long EVICT_TO_BYTES = 24 * 1024 * 1024;
+
+    /** A stored tile */
+    public static class CachedTile {
+        public final byte[] data;
+        public final long fetchedAt;
+
+        CachedTile(byte[] data, long fetchedAt) {
+            this.data = data;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    // Singleton instance
+    private static TileCache sInstance = null;
+
+    private final DatabaseHelper mHelper;
+    private final AtomicLong mTotalBytes = new AtomicLong(-1);
+
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+    private final AtomicLong mStaleHits = new AtomicLong();
+    private final AtomicLong mBytesServed = new AtomicLong();
+    private final AtomicLong mPrefetched = new AtomicLong();
+    private final AtomicLong mEvicted = new AtomicLong();
+
+    private static class DatabaseHelper extends SQLiteOpenHelper {
+        DatabaseHelper(Context context) {
+            super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            // Same column names as the MBTiles spec (tile_row uses the TMS scheme - i.e. flipped vertically)
+            db.execSQL("CREATE TABLE " + TABLE_NAME + " ("
+                    + "layer TEXT NOT NULL,"
+                    + "zoom_level INTEGER NOT NULL,"
+                    + "tile_column INTEGER NOT NULL,"
+                    + "tile_row INTEGER NOT NULL,"
+                    + "tile_data BLOB,"
+                    + "size INTEGER NOT NULL,"
+                    + "fetched_at INTEGER NOT NULL,"
+                    + "accessed_at INTEGER NOT NULL,"
+                    + "PRIMARY KEY (layer, zoom_level, tile_column, tile_row)"
+                    + ");");
+            db.execSQL("CREATE INDEX tiles_accessed_at_index ON " + TABLE_NAME + " (accessed_at)");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            // Cached data only - start over
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_NAME);
+            onCreate(db);
+        }
+    }
+
+    private TileCache(Context context) {
+        mHelper = new DatabaseHelper(context);
+    }
+
+    public static synchronized TileCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new TileCache(context.getApplicationContext());
+        }
+
+        return sInstance;
+    }
+
+    private static int toTmsRow(int y, int zoom) {
+        return (1 << zoom) - 1 - y;
+    }
+
+    /** Returns a stored tile (or null if it's not cached) */
+    public CachedTile get(String layer, int x, int y, int zoom) {
+        try {
+            SQLiteDatabase db = mHelper.getWritableDatabase();
+            String[] args = new String[]{layer, String.valueOf(zoom), String.valueOf(x), String.valueOf(toTmsRow(y, zoom))};
+            Cursor c = db.query(TABLE_NAME, new String[]{"tile_data", "fetched_at"},
+                    "layer = ? AND zoom_level = ? AND tile_column = ? AND tile_row = ?", args, null, null, null);
+
+            CachedTile tile = null;
+            if (c.moveToFirst()) {
+                tile = new CachedTile(c.getBlob(0), c.getLong(1));
+            }
+            c.close();
+
+            if (tile != null) {
+                ContentValues cv = new ContentValues();
+                cv.put("accessed_at", System.currentTimeMillis());
+                db.update(TABLE_NAME, cv, "layer = ? AND zoom_level = ? AND tile_column = ? AND tile_row = ?", args);
+            }
+
+            return tile;
+        } catch (SQLiteException e) {
+            Logger.tag(TAG).error(e);
+            return null;
+        }
+    }
+
+    /** Whether a tile is stored (without counting it as accessed) */
+    public boolean contains(String layer, int x, int y, int zoom) {
+        try {
+            SQLiteDatabase db = mHelper.getReadableDatabase();
+            Cursor c = db.query(TABLE_NAME, new String[]{"zoom_level"},
+                    "layer = ? AND zoom_level = ? AND tile_column = ? AND tile_row = ?",
+                    new String[]{layer, String.valueOf(zoom), String.valueOf(x), String.valueOf(toTmsRow(y, zoom))}, null, null, null);
+            boolean exists = c.getCount() > 0;
+            c.close();
+            return exists;
+        } catch (SQLiteException e) {
+            Logger.tag(TAG).error(e);
+            return false;
+        }
+    }
+
+    public synchronized void put(String layer, int x, int y, int zoom, byte[] data) {
+        try {
+            SQLiteDatabase db = mHelper.getWritableDatabase();
+            long now = System.currentTimeMillis();
+
+            ContentValues cv = new ContentValues();
+            cv.put("layer", layer);
+            cv.put("zoom_level", zoom);
+            cv.put("tile_column", x);
+            cv.put("tile_row", toTmsRow(y, zoom));
+            cv.put("tile_data", data);
+            cv.put("size", data.length);
+            cv.put("fetched_at", now);
+            cv.put("accessed_at", now);
+
+            // Make sure the current total is known before changing it
+            getTotalBytes(db);
+
+            db.beginTransaction();
+            try {
+                Cursor c = db.query(TABLE_NAME, new String[]{"size"},
+                        "layer = ? AND zoom_level = ? AND tile_column = ? AND tile_row = ?",
+                        new String[]{layer, String.valueOf(zoom), String.valueOf(x), String.valueOf(toTmsRow(y, zoom))}, null, null, null);
+                long previousSize = c.moveToFirst() ? c.getLong(0) : 0;
+                c.close();
+
+                db.insertWithOnConflict(TABLE_NAME, null, cv, SQLiteDatabase.CONFLICT_REPLACE);
+                db.setTransactionSuccessful();
+
+                mTotalBytes.addAndGet(data.length - previousSize);
+            } finally {
+                db.endTransaction();
+            }
+
+            if (mTotalBytes.get() > MAX_SIZE_BYTES) {
+                evict(db);
+            }
+        } catch (SQLiteException e) {
+            Logger.tag(TAG).error(e);
+        }
+    }
+
+    private long getTotalBytes(SQLiteDatabase db) {
+        if (mTotalBytes.get() < 0) {
+            Cursor c = db.rawQuery("SELECT COALESCE(SUM(size), 0) FROM " + TABLE_NAME, null);
+            mTotalBytes.compareAndSet(-1, c.moveToFirst() ? c.getLong(0) : 0);
+            c.close();
+        }
+
+        return mTotalBytes.get();
+    }
+
+    // Removes the least recently accessed tiles, until the total size is under the budget
+    private synchronized void evict(SQLiteDatabase db) {
+        long total = mTotalBytes.get();
+        if (total <= MAX_SIZE_BYTES) return;
+
+        long cutoff = 0;
+        long remaining = total;
+        int count = 0;
+        Cursor c = db.query(TABLE_NAME, new String[]{"size", "accessed_at"}, null, null, null, null, "accessed_at ASC");
+        while (c.moveToNext() && (remaining > EVICT_TO_BYTES)) {
+            remaining -= c.getLong(0);
+            cutoff = c.getLong(1);
+            count++;
+        }
+        c.close();
+
+        if (count == 0) return;
+
+        int deleted = db.delete(TABLE_NAME, "accessed_at <= ?", new String[]{String.valueOf(cutoff)});
+        mEvicted.addAndGet(deleted);
+
+        // Re-calculate (tiles with the same access time as the cutoff might have been removed as well)
+        mTotalBytes.set(-1);
+        getTotalBytes(db);
+
+        Logger.tag(TAG).debug(String.format(Locale.ENGLISH, "Evicted %d tiles, %d KB used", deleted, mTotalBytes.get() / 1024));
+    }
+
+    public synchronized void clear() {
+        try {
+            mHelper.getWritableDatabase().delete(TABLE_NAME, null, null);
+            mTotalBytes.set(0);
+        } catch (SQLiteException e) {
+            Logger.tag(TAG).error(e);
+        }
+    }
+
+    void onHit(int bytes, boolean stale) {
+        mHits.incrementAndGet();
+        if (stale) mStaleHits.incrementAndGet();
+        mBytesServed.addAndGet(bytes);
+    }
+
+    void onMiss() {
+        mMisses.incrementAndGet();
+    }
+
+    void onPrefetched() {
+        mPrefetched.incrementAndGet();
+    }
+
+    public long getHitCount() {
+        return mHits.get();
+    }
+
+    public long getMissCount() {
+        return mMisses.get();
+    }
+
+    /** Tiles served from the cache because they couldn't be downloaded (e.g. while offline) */
+    public long getStaleHitCount() {
+        return mStaleHits.get();
+    }
+
+    /** Bytes of tiles served from the cache */
+    public long getBytesServed() {
+        return mBytesServed.get();
+    }
+
+    public long getPrefetchedCount() {
+        return mPrefetched.get();
+    }
+
+    public String toString() {
+        long total = mTotalBytes.get();
+        return String.format(Locale.ENGLISH, "Map tiles: %d hits (%d stale) / %d misses; %d KB served from cache; %d prefetched; %d evicted; %d KB used",
+                getHitCount(), getStaleHitCount(), getMissCount(), getBytesServed() / 1024, getPrefetchedCount(), mEvicted.get(),
+                Math.max(total, 0) / 1024);
+    }
+}
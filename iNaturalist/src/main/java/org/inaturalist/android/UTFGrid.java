@@ -1,104 +1,148 @@
 package org.inaturalist.android;
 
-import android.util.Log;
-
-import com.google.android.gms.maps.model.LatLng;
-import com.google.maps.android.geometry.Point;
-
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 
-/** Represents a UTFGrid initialized from a JSON object - see https://github.com/mapbox/mbtiles-spec/blob/master/1.1/utfgrid.md */
+/**
+ * Represents a UTFGrid initialized from a JSON object - see https://github.com/mapbox/mbtiles-spec/blob/master/1.1/utfgrid.md
+ *
+ * The grid is decoded once (when constructed) into an array of key indexes, plus a table of keys and their data objects,
+ * so hit-testing a pixel is just an array lookup.
+ */
 public class UTFGrid {
     private static final int EXPANSION_PIXELS = 8;
 
-    private JSONArray mGrid;
-    private JSONArray mKeys;
-    private JSONObject mData;
-
     private static final int TILE_SIZE = 256;
     private static final String EMPTY_KEY = "";
+    private static final int NO_KEY = 0;
+
+    // Number of rows/columns in the grid (each grid cell covers mFactor x mFactor pixels)
+    private final int mSize;
+    private final int mFactor;
+    // Key index of each grid cell (row by row)
+    private final int[] mKeyIndexes;
+    private final String[] mKeys;
+    // Data object of each key (null if there's no data for that key)
+    private final JSONObject[] mData;
 
     public UTFGrid(JSONObject json) {
-        mGrid = json.optJSONArray("grid");
-        mKeys = json.optJSONArray("keys");
-        mData = json.optJSONObject("data");
+        JSONArray grid = json.optJSONArray("grid");
+        JSONArray keys = json.optJSONArray("keys");
+        JSONObject data = json.optJSONObject("data");
+
+        int keyCount = keys != null ? keys.length() : 0;
+        mKeys = new String[Math.max(keyCount, 1)];
+        mData = new JSONObject[mKeys.length];
+        mKeys[0] = EMPTY_KEY;
+        for (int i = 0; i < keyCount; i++) {
+            mKeys[i] = keys.optString(i);
+            if ((data != null) && (mKeys[i].length() > 0)) {
+                mData[i] = data.optJSONObject(mKeys[i]);
+            }
+        }
+
+        mSize = grid != null ? grid.length() : 0;
+        mFactor = mSize > 0 ? Math.max(TILE_SIZE / mSize, 1) : TILE_SIZE;
+        mKeyIndexes = new int[mSize * mSize];
+
+        for (int row = 0; row < mSize; row++) {
+            String rowString = grid.optString(row);
+            int columns = Math.min(rowString.length(), mSize);
+            for (int col = 0; col < columns; col++) {
+                int id = decodeId(Character.codePointAt(rowString, col));
+                if ((id < 0) || (id >= keyCount)) id = NO_KEY;
+                mKeyIndexes[row * mSize + col] = id;
+            }
+        }
     }
 
-    private int decodeId(int id) {
+    private static int decodeId(int id) {
         if (id >= 93) id--;
         if (id >= 35) id--;
         id -= 32;
         return id;
     }
 
-    public String getKeyForPixel(int x, int y) {
-        int id = 0;
-
-        if ((x >= 0) && (y >= 0) &&
-                (x < TILE_SIZE) && (y < TILE_SIZE)) {
-            int factor = TILE_SIZE / mGrid.length();
-            int row = y / factor;
-            int col = x / factor;
+    // Returns the index of the key for the given pixel (NO_KEY if there's none)
+    private int getKeyIndexForPixel(int x, int y) {
+        if ((x < 0) || (y < 0) || (x >= TILE_SIZE) || (y >= TILE_SIZE)) return NO_KEY;
 
-            id = Character.codePointAt(mGrid.optString(row), col);
-            id = decodeId(id);
-
-            if ((id < 0) || (id >= mKeys.length())) id = 0;
-        }
+        int row = y / mFactor;
+        int col = x / mFactor;
+        if ((row >= mSize) || (col >= mSize)) return NO_KEY;
 
-        String key = mKeys.optString(id);
+        return mKeyIndexes[row * mSize + col];
+    }
 
-        return key;
+    private boolean isEmpty(int keyIndex) {
+        return mKeys[keyIndex].length() == 0;
     }
 
-    public String getKeyForPixelExpansive(int x, int y) {
-        String key = getKeyForPixel(x, y);
-        if (!key.equals(EMPTY_KEY)) return key;
+    private int getKeyIndexForPixelExpansive(int x, int y) {
+        int index = getKeyIndexForPixel(x, y);
+        if (!isEmpty(index)) return index;
 
         // Search nearby pixels
-        int factor = TILE_SIZE / mGrid.length();
-        int expansionFactor = EXPANSION_PIXELS * factor; // Search up to EXPANSION_PIXELS pixels away from all directions
+        int expansionFactor = EXPANSION_PIXELS * mFactor; // Search up to EXPANSION_PIXELS pixels away from all directions
 
         // Slowly expand the search grid around the current pixel
-        for (int expansion = factor; expansion <= expansionFactor; expansion += factor) {
-            key = getKeyForPixel(x - expansion, y - expansion);
-            if (!key.equals(EMPTY_KEY)) return key;
-            key = getKeyForPixel(x, y - expansion);
-            if (!key.equals(EMPTY_KEY)) return key;
-            key = getKeyForPixel(x + expansion, y - expansion);
-            if (!key.equals(EMPTY_KEY)) return key;
-            key = getKeyForPixel(x + expansion, y);
-            if (!key.equals(EMPTY_KEY)) return key;
-            key = getKeyForPixel(x + expansion, y + expansion);
-            if (!key.equals(EMPTY_KEY)) return key;
-            key = getKeyForPixel(x, y + expansion);
-            if (!key.equals(EMPTY_KEY)) return key;
-            key = getKeyForPixel(x - expansion, y + expansion);
-            if (!key.equals(EMPTY_KEY)) return key;
-            key = getKeyForPixel(x - expansion, y);
-            if (!key.equals(EMPTY_KEY)) return key;
+        for (int expansion = mFactor; expansion <= expansionFactor; expansion += mFactor) {
+            index = getKeyIndexForPixel(x - expansion, y - expansion);
+            if (!isEmpty(index)) return index;
+            index = getKeyIndexForPixel(x, y - expansion);
+            if (!isEmpty(index)) return index;
+            index = getKeyIndexForPixel(x + expansion, y - expansion);
+            if (!isEmpty(index)) return index;
+            index = getKeyIndexForPixel(x + expansion, y);
+            if (!isEmpty(index)) return index;
+            index = getKeyIndexForPixel(x + expansion, y + expansion);
+            if (!isEmpty(index)) return index;
+            index = getKeyIndexForPixel(x, y + expansion);
+            if (!isEmpty(index)) return index;
+            index = getKeyIndexForPixel(x - expansion, y + expansion);
+            if (!isEmpty(index)) return index;
+            index = getKeyIndexForPixel(x - expansion, y);
+            if (!isEmpty(index)) return index;
         }
 
-        return EMPTY_KEY;
+        return NO_KEY;
     }
 
+    public String getKeyForPixel(int x, int y) {
+        return mKeys[getKeyIndexForPixel(x, y)];
+    }
 
-
-
+    public String getKeyForPixelExpansive(int x, int y) {
+        int index = getKeyIndexForPixelExpansive(x, y);
+        return isEmpty(index) ? EMPTY_KEY : mKeys[index];
+    }
 
     /** Returns the data object corresponding to the given tile position
-     * @return data object corresponding to the tile position (null if no data for that position)
+     * @return a copy of the data object corresponding to the tile position (null if no data for that position)
      */
     public JSONObject getDataForPixel(int x, int y) {
-        String key = getKeyForPixelExpansive(x, y);
+        JSONObject data = mData[getKeyIndexForPixelExpansive(x, y)];
 
-        // This tile position has no key attached to it - no data
-        if (key.equals(EMPTY_KEY)) return null;
-        // Non existent key
-        if (!mData.has(key)) return null;
+        // This tile position has no key/data attached to it
+        if (data == null) return null;
 
-        return mData.optJSONObject(key);
+        try {
+            // Grids are shared (cached) - callers get their own copy
+            return new JSONObject(data.toString());
+        } catch (JSONException e) {
+            return null;
+        }
     }
 
+    /** Approximate memory used by the decoded grid */
+    public int getSizeBytes() {
+        int size = mKeyIndexes.length * 4;
+        for (int i = 0; i < mKeys.length; i++) {
+            size += mKeys[i].length() * 2;
+            // Rough estimate of a parsed data object
+            if (mData[i] != null) size += mData[i].length() * 64;
+        }
+        return size;
+    }
 }
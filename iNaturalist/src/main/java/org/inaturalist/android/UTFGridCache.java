@@ -0,0 +1,164 @@
+package org.inaturalist.android;
+
+import android.util.LruCache;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.tinylog.Logger;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * In-memory cache of decoded UTFGrid tiles (singleton class), keyed by tile and search filters. Grids of the visible
+ * map tiles are prefetched in the background, so tapping the map can be resolved without any network access.
+ */
+public class UTFGridCache {
+    private static final String TAG = "UTFGridCache";
+
+    private static final int MAX_SIZE_BYTES = 4 * 1024 * 1024;
+    private static final int MAX_QUEUED_PREFETCHES = 32;
+
+    // Singleton instance
+    private static UTFGridCache sInstance = null;
+
+    private final LruCache<String, UTFGrid> mGrids = new LruCache<String, UTFGrid>(MAX_SIZE_BYTES) {
+        @Override
+        protected int sizeOf(String key, UTFGrid grid) {
+            return grid.getSizeBytes();
+        }
+    };
+
+    private final Set<String> mPrefetching = Collections.synchronizedSet(new HashSet<String>());
+    private final ThreadPoolExecutor mPrefetchExecutor;
+
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+    private final AtomicLong mPrefetched = new AtomicLong();
+
+    private UTFGridCache() {
+        mPrefetchExecutor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(MAX_QUEUED_PREFETCHES), (runnable, executor) -> {
+                    // Queue is full - skip this prefetch
+                    mPrefetching.remove(((PrefetchTask) runnable).mKey);
+                });
+        mPrefetchExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    public static synchronized UTFGridCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new UTFGridCache();
+        }
+
+        return sInstance;
+    }
+
+    // The URL's layer already contains the normalized search filters
+    private static String getKey(String url, int x, int y, int zoom) {
+        return CachingTileProvider.getLayer(url) + "/" + zoom + "/" + x + "/" + y;
+    }
+
+    /** Returns the cached grid of a tile (or null if it isn't cached) - doesn't access the network */
+    public UTFGrid get(String url, int x, int y, int zoom) {
+        UTFGrid grid = mGrids.get(getKey(url, x, y, zoom));
+        if (grid != null) {
+            mHits.incrementAndGet();
+        } else {
+            mMisses.incrementAndGet();
+        }
+        return grid;
+    }
+
+    /** Returns the grid of a tile, downloading it if it isn't cached (blocking - don't call from the UI thread)
+     * @return the grid (or null if it couldn't be downloaded)
+     */
+    public UTFGrid load(String url, int x, int y, int zoom) {
+        UTFGrid grid = get(url, x, y, zoom);
+        if (grid != null) return grid;
+
+        return download(getKey(url, x, y, zoom), url);
+    }
+
+    /** Downloads and decodes the grid of a tile in the background (if it isn't cached already) */
+    public void prefetch(final String url, int x, int y, int zoom) {
+        final String key = getKey(url, x, y, zoom);
+        if (mGrids.get(key) != null) return;
+        if (!mPrefetching.add(key)) return;
+
+        mPrefetchExecutor.execute(new PrefetchTask(key, () -> {
+            if (mGrids.get(key) != null) return;
+            if (download(key, url) != null) mPrefetched.incrementAndGet();
+        }));
+    }
+
+    private UTFGrid download(String key, String url) {
+        OkHttpClient client = SharedHttpClient.getInstance().getClient();
+        Request request = new Request.Builder().url(url).build();
+
+        try {
+            Response response = client.newCall(request).execute();
+            try {
+                if (!response.isSuccessful() || (response.body() == null)) return null;
+                UTFGrid grid = new UTFGrid(new JSONObject(response.body().string()));
+                mGrids.put(key, grid);
+                return grid;
+            } finally {
+                response.close();
+            }
+        } catch (IOException | JSONException e) {
+            Logger.tag(TAG).debug("Couldn't download UTFGrid " + url + ": " + e);
+            return null;
+        }
+    }
+
+    public void clear() {
+        mGrids.evictAll();
+    }
+
+    public long getHitCount() {
+        return mHits.get();
+    }
+
+    public long getMissCount() {
+        return mMisses.get();
+    }
+
+    public long getPrefetchedCount() {
+        return mPrefetched.get();
+    }
+
+    public String toString() {
+        return String.format(Locale.ENGLISH, "UTFGrids: %d hits / %d misses; %d prefetched; %d cached (%d KB)",
+                getHitCount(), getMissCount(), getPrefetchedCount(), mGrids.snapshot().size(), mGrids.size() / 1024);
+    }
+
+    private class PrefetchTask implements Runnable {
+        private final String mKey;
+        private final Runnable mRunnable;
+
+        PrefetchTask(String key, Runnable runnable) {
+            mKey = key;
+            mRunnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            try {
+                mRunnable.run();
+            } finally {
+                mPrefetching.remove(mKey);
+            }
+        }
+    }
+}
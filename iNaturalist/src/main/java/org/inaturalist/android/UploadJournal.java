@@ -0,0 +1,201 @@
+package org.inaturalist.android;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.net.Uri;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.tinylog.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+
+/**
+ * Keeps track of in-flight photo/sound uploads (in the media_uploads table), so an interrupted sync knows
+ * which files were already fully delivered to the server (and shouldn't be sent again) and how many times
+ * each upload was attempted.
+ */
+public class UploadJournal {
+    private static final String TAG = "UploadJournal";
+
+    // How often (in bytes) to record the progress of an upload
+    private static final long PROGRESS_UPDATE_INTERVAL_BYTES = 256 * 1024;
+
+    private final ContentResolver mContentResolver;
+
+    public UploadJournal(ContentResolver contentResolver) {
+        mContentResolver = contentResolver;
+    }
+
+    /** Returns the journal entry of a photo/sound (or null if it has no pending upload) */
+    public MediaUpload get(String mediaType, int mediaId) {
+        Cursor c = mContentResolver.query(MediaUpload.CONTENT_URI, MediaUpload.PROJECTION,
+                "media_type = ? AND media_id = ?", new String[]{mediaType, String.valueOf(mediaId)}, null);
+        MediaUpload upload = c.getCount() > 0 ? new MediaUpload(c) : null;
+        c.close();
+        return upload;
+    }
+
+    /** Returns the uploads of an observation that were fully delivered, but never acknowledged by the server */
+    public List<MediaUpload> getUnacknowledged(String mediaType, int observationId) {
+        List<MediaUpload> uploads = new ArrayList<>();
+        Cursor c = mContentResolver.query(MediaUpload.CONTENT_URI, MediaUpload.PROJECTION,
+                "media_type = ? AND observation_id = ?", new String[]{mediaType, String.valueOf(observationId)}, null);
+        c.moveToFirst();
+        while (!c.isAfterLast()) {
+            MediaUpload upload = new MediaUpload(c);
+            if (upload.wasDelivered()) uploads.add(upload);
+            c.moveToNext();
+        }
+        c.close();
+        return uploads;
+    }
+
+    /**
+     * Finds which of the delivered (but unacknowledged) uploads the server already has - matched by their UUID
+     * @param remoteMedia the media of the observation, as returned by the server (e.g. its observation_photos)
+     * @return the server's record of each upload it has (uploads it doesn't have should be sent again)
+     */
+    public Map<MediaUpload, JSONObject> findOnServer(List<MediaUpload> delivered, JSONArray remoteMedia) {
+        Map<String, JSONObject> remoteByUuid = new HashMap<>();
+        if (remoteMedia != null) {
+            for (int i = 0; i < remoteMedia.length(); i++) {
+                JSONObject remote = remoteMedia.optJSONObject(i);
+                if ((remote != null) && remote.has("uuid")) {
+                    remoteByUuid.put(remote.optString("uuid"), remote);
+                }
+            }
+        }
+
+        Map<MediaUpload, JSONObject> onServer = new LinkedHashMap<>();
+        for (MediaUpload upload : delivered) {
+            JSONObject remote = upload.media_uuid != null ? remoteByUuid.get(upload.media_uuid) : null;
+            if (remote != null) onServer.put(upload, remote);
+        }
+
+        return onServer;
+    }
+
+    /** Records the start of a new upload attempt */
+    public MediaUpload begin(String mediaType, int mediaId, String mediaUuid, Integer observationId, File file) {
+        MediaUpload upload = get(mediaType, mediaId);
+        long now = System.currentTimeMillis();
+
+        if (upload == null) {
+            upload = new MediaUpload();
+            upload.media_type = mediaType;
+            upload.media_id = mediaId;
+            upload.attempts = 0;
+            upload.started_at = now;
+        }
+
+        upload.media_uuid = mediaUuid;
+        upload.observation_id = observationId;
+        upload.filename = file.getAbsolutePath();
+        upload.file_size = file.length();
+        upload.bytes_sent = 0L;
+        upload.attempts = (upload.attempts != null ? upload.attempts : 0) + 1;
+        upload.state = MediaUpload.STATE_SENDING;
+        upload.updated_at = now;
+
+        if (upload._id == null) {
+            Uri uri = mContentResolver.insert(MediaUpload.CONTENT_URI, upload.getContentValues());
+            upload._id = (int) ContentUris.parseId(uri);
+        } else {
+            mContentResolver.update(upload.getUri(), upload.getContentValues(), null, null);
+        }
+
+        if (upload.attempts > 1) {
+            Logger.tag(TAG).info("Retrying upload: " + upload);
+        }
+
+        return upload;
+    }
+
+    /** Records how many bytes of the file were sent so far */
+    public void onProgress(MediaUpload upload, long bytesSent) {
+        upload.bytes_sent = bytesSent;
+        if ((upload.file_size != null) && (bytesSent >= upload.file_size)) {
+            upload.state = MediaUpload.STATE_SENT;
+        }
+        upload.updated_at = System.currentTimeMillis();
+        mContentResolver.update(upload.getUri(), upload.getContentValues(), null, null);
+    }
+
+    /** The upload failed - in case the file was fully delivered, it stays marked as such (since the server might have it) */
+    public void fail(MediaUpload upload) {
+        if (!upload.wasDelivered()) {
+            upload.state = MediaUpload.STATE_FAILED;
+        }
+        upload.updated_at = System.currentTimeMillis();
+        mContentResolver.update(upload.getUri(), upload.getContentValues(), null, null);
+        Logger.tag(TAG).debug("Upload failed: " + upload);
+    }
+
+    /** The upload was acknowledged by the server - it's no longer pending */
+    public void complete(MediaUpload upload) {
+        mContentResolver.delete(upload.getUri(), null, null);
+    }
+
+    /** Wraps a file request body, so the number of bytes actually written to the connection is recorded */
+    public RequestBody track(MediaUpload upload, RequestBody body) {
+        return new TrackingRequestBody(upload, body);
+    }
+
+    private class TrackingRequestBody extends RequestBody {
+        private final MediaUpload mUpload;
+        private final RequestBody mBody;
+
+        TrackingRequestBody(MediaUpload upload, RequestBody body) {
+            mUpload = upload;
+            mBody = body;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return mBody.contentType();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return mBody.contentLength();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            // The body might be written more than once (e.g. when OkHttp retries on a new connection)
+            BufferedSink trackingSink = Okio.buffer(new ForwardingSink(sink) {
+                private long mBytesWritten = 0;
+                private long mLastRecorded = 0;
+
+                @Override
+                public void write(Buffer source, long byteCount) throws IOException {
+                    super.write(source, byteCount);
+                    mBytesWritten += byteCount;
+
+                    if ((mBytesWritten - mLastRecorded >= PROGRESS_UPDATE_INTERVAL_BYTES) || (mBytesWritten >= contentLength())) {
+                        mLastRecorded = mBytesWritten;
+                        onProgress(mUpload, mBytesWritten);
+                    }
+                }
+            });
+
+            mBody.writeTo(trackingSink);
+            trackingSink.flush();
+        }
+    }
+}
@@ -460,7 +460,7 @@ class UserActivitiesAdapter extends ArrayAdapter<String> {
 	        Observation observation;
 
             if (isSharedOnApp) {
-                observation = (Observation) mApp.getServiceResult(INaturalistService.ACTION_GET_AND_SAVE_OBSERVATION_RESULT);
+                observation = ServiceResultBus.getInstance().get(intent, INaturalistService.ACTION_GET_AND_SAVE_OBSERVATION_RESULT, Observation.class, this);
             } else {
                 observation = (Observation) intent.getSerializableExtra(INaturalistService.OBSERVATION_RESULT);
             }
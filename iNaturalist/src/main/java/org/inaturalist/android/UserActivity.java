@@ -379,7 +379,7 @@ public class UserActivity extends BaseFragmentActivity implements UserActivities
             SerializableJSONArray resultsJSON;
 
             if (isSharedOnApp) {
-                resultsJSON = (SerializableJSONArray) mApp.getServiceResult(intent.getAction());
+                resultsJSON = ServiceResultBus.getInstance().get(intent, intent.getAction(), SerializableJSONArray.class, this);
             } else {
                 resultsJSON = (SerializableJSONArray) intent.getSerializableExtra(INaturalistService.RESULTS);
             }
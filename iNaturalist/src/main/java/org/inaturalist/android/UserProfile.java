@@ -548,7 +548,7 @@ public class UserProfile extends AppCompatActivity implements TabHost.OnTabChang
             JSONArray results = null;
 
             if (isSharedOnApp) {
-                object = mApp.getServiceResult(intent.getAction());
+                object = ServiceResultBus.getInstance().get(intent, intent.getAction(), Object.class, this);
             } else {
                 object = intent.getSerializableExtra(actionToResultsParam(intent.getAction()));
             }
@@ -1,8 +1,33 @@
 package org.inaturalist.android;
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.Registry;
 import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.integration.okhttp3.OkHttpUrlLoader;
+import com.bumptech.glide.load.engine.cache.DiskCacheAdapter;
+import com.bumptech.glide.load.model.GlideUrl;
 import com.bumptech.glide.module.AppGlideModule;
 
+import java.io.InputStream;
+
 @GlideModule
 public final class iNaturalistGlideModule extends AppGlideModule {
 
+    @Override
+    public void applyOptions(@NonNull Context context, @NonNull GlideBuilder builder) {
+        // Use the app-wide image memory cache - and no disk cache of Glide's own (remote images are cached by
+        // the shared image HTTP client instead)
+        builder.setMemoryCache(ImageCache.getInstance(context).getGlideMemoryCache());
+        builder.setDiskCache(new DiskCacheAdapter.Factory());
+    }
+
+    @Override
+    public void registerComponents(@NonNull Context context, @NonNull Glide glide, @NonNull Registry registry) {
+        // Load images through the app-wide image HTTP client (shared connection pool and disk cache)
+        registry.replace(GlideUrl.class, InputStream.class, new OkHttpUrlLoader.Factory(ImageCache.getInstance(context).getHttpClient()));
+    }
 }
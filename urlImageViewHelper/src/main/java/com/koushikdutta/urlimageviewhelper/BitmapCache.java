@@ -0,0 +1,13 @@
+package com.koushikdutta.urlimageviewhelper;
+
+import android.graphics.Bitmap;
+
+/**
+ * Memory cache of bitmaps that are not currently displayed (the "dead" cache).
+ * Implementations must be thread-safe (bitmaps are put back from drawable finalizers).
+ */
+public interface BitmapCache {
+    public Bitmap get(String url);
+    public Bitmap put(String url, Bitmap bitmap);
+    public Bitmap remove(String url);
+}
@@ -2,7 +2,7 @@ package com.koushikdutta.urlimageviewhelper;
 
 import android.graphics.Bitmap;
 
-public class LruBitmapCache extends LruCache<String, Bitmap> {
+public class LruBitmapCache extends LruCache<String, Bitmap> implements BitmapCache {
     public LruBitmapCache(int maxSize) {
         super(maxSize);
     }
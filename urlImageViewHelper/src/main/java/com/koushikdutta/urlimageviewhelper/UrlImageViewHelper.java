@@ -726,8 +726,18 @@ public final class UrlImageViewHelper {
         mRequestPropertiesCallback = callback;
     }
 
+    /**
+     * Replaces the default in-memory cache of bitmaps that are not currently displayed
+     * (e.g. with a cache that shares its memory budget with other image loaders).
+     * Should be called before loading any images.
+     * @param cache
+     */
+    public static void setBitmapCache(BitmapCache cache) {
+        mDeadCache = cache;
+    }
+
     private static DrawableCache mLiveCache = DrawableCache.getInstance();
-    private static LruBitmapCache mDeadCache;
+    private static BitmapCache mDeadCache;
     private static HashSet<Bitmap> mAllCache = new HashSet<Bitmap>();
 
     private static int getHeapSize(final Context context) {